@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.metrics;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.samza.util.Clock;
+
+/**
+ * A {@link Reservoir} which records values into fixed-size histograms with log-linear buckets, as HdrHistogram does,
+ * instead of retaining every value like {@link SlidingTimeWindowReservoir}.
+ *
+ * The buckets are sized so that the value reported for a bucket is within 10^-significantDigits of every value
+ * recorded into it, so the memory used depends only on the precision and on the highest trackable value, and not on
+ * the rate of updates. Values above the highest trackable value are counted in the highest bucket, but are still
+ * reflected in the max and the sum of the snapshot.
+ *
+ * Recording is lock-free and does not allocate. The reservoir records into the current interval histogram and keeps
+ * the previous one, each covering half of the window, and rotates them as time passes. A snapshot therefore covers
+ * between half a window and a whole window of the most recent values.
+ */
+public class HdrReservoir implements Reservoir {
+
+  /**
+   * default window size, the same as {@link SlidingTimeWindowReservoir}'s
+   */
+  private static final long DEFAULT_WINDOW_MS = 300000;
+
+  /**
+   * default highest trackable value, an hour in nanoseconds, which covers the durations recorded by {@link Timer}s
+   */
+  private static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+  /**
+   * default precision, which keeps the reported values within 1% of the recorded ones
+   */
+  private static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+  private final long intervalMs;
+  private final long highestTrackableValue;
+  private final Clock clock;
+
+  private final int subBucketHalfCountMagnitude;
+  private final int subBucketHalfCount;
+  private final long subBucketMask;
+  private final int leadingZeroCountBase;
+  private final int countsLength;
+
+  private final Object rotationLock = new Object();
+  private volatile Interval current;
+  private volatile Interval previous;
+  private volatile long nextRotationMs;
+
+  /**
+   * Default constructor using the default window size, highest trackable value and precision
+   */
+  public HdrReservoir() {
+    this(DEFAULT_WINDOW_MS, System::currentTimeMillis);
+  }
+
+  /**
+   * Construct the HdrReservoir with window size
+   *
+   * @param windowMs the size of the window. unit is millisecond.
+   * @param clock the clock used to rotate the intervals
+   */
+  public HdrReservoir(long windowMs, Clock clock) {
+    this(windowMs, DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS, clock);
+  }
+
+  /**
+   * Construct the HdrReservoir with window size, highest trackable value and precision
+   *
+   * @param windowMs the size of the window. unit is millisecond.
+   * @param highestTrackableValue the highest value which is recorded with the given precision
+   * @param significantDigits the number of significant decimal digits to which values are recorded, from 1 to 3
+   * @param clock the clock used to rotate the intervals
+   */
+  public HdrReservoir(long windowMs, long highestTrackableValue, int significantDigits, Clock clock) {
+    if (windowMs < 2) {
+      throw new IllegalArgumentException("Window size must be at least 2 ms, but was " + windowMs);
+    }
+    if (significantDigits < 1 || significantDigits > 3) {
+      throw new IllegalArgumentException("Significant digits must be between 1 and 3, but was " + significantDigits);
+    }
+    this.intervalMs = windowMs / 2;
+    this.clock = clock;
+
+    // the sub-buckets of a bucket resolve 2 * 10^significantDigits distinct values, rounded up to a power of 2
+    int subBucketCountMagnitude = (int) Math.ceil(Math.log(2 * Math.pow(10, significantDigits)) / Math.log(2));
+    int subBucketCount = 1 << subBucketCountMagnitude;
+    this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+    this.subBucketHalfCount = subBucketCount / 2;
+    this.subBucketMask = subBucketCount - 1;
+    this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+    this.highestTrackableValue = Math.max(highestTrackableValue, subBucketCount);
+
+    // each bucket after the first doubles the range of values and covers its upper half with half of the sub-buckets
+    int bucketCount = 1;
+    long smallestUntrackableValue = subBucketCount;
+    while (smallestUntrackableValue <= this.highestTrackableValue) {
+      if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+        bucketCount++;
+        break;
+      }
+      smallestUntrackableValue <<= 1;
+      bucketCount++;
+    }
+    this.countsLength = (bucketCount + 1) * subBucketHalfCount;
+
+    this.current = new Interval(countsLength);
+    this.previous = new Interval(countsLength);
+    this.nextRotationMs = clock.currentTimeMillis() + intervalMs;
+  }
+
+  @Override
+  public int size() {
+    return getSnapshot().getSize();
+  }
+
+  @Override
+  public void update(long value) {
+    long now = clock.currentTimeMillis();
+    if (now >= nextRotationMs) {
+      rotate(now);
+    }
+    current.record(value, countsIndex(Math.min(Math.max(value, 0), highestTrackableValue)));
+  }
+
+  @Override
+  public Snapshot getSnapshot() {
+    synchronized (rotationLock) {
+      rotate(clock.currentTimeMillis());
+      long[] counts = new long[countsLength];
+      long totalCount = current.addCountsTo(counts) + previous.addCountsTo(counts);
+      long min = Math.min(current.min.get(), previous.min.get());
+      long max = Math.max(current.max.get(), previous.max.get());
+      double sum = (double) current.sum.get() + previous.sum.get();
+      return new HdrSnapshot(counts, totalCount, min, max, sum);
+    }
+  }
+
+  /**
+   * Returns a view of this reservoir for {@link com.codahale.metrics.Histogram}s, such as the one of
+   * {@link SamzaHistogram}.
+   *
+   * @return a codahale reservoir backed by this reservoir
+   */
+  public com.codahale.metrics.Reservoir asCodahaleReservoir() {
+    return new com.codahale.metrics.Reservoir() {
+      @Override
+      public int size() {
+        return HdrReservoir.this.size();
+      }
+
+      @Override
+      public void update(long value) {
+        HdrReservoir.this.update(value);
+      }
+
+      @Override
+      public com.codahale.metrics.Snapshot getSnapshot() {
+        return new CodahaleSnapshot((HdrSnapshot) HdrReservoir.this.getSnapshot());
+      }
+    };
+  }
+
+  /**
+   * Makes the current interval the previous one and starts a new one, if the current interval is over. Intervals
+   * which ended more than an interval ago are cleared instead, as they are entirely outside of the window.
+   */
+  private void rotate(long now) {
+    synchronized (rotationLock) {
+      if (now < nextRotationMs) {
+        return;
+      }
+      long elapsedIntervals = (now - nextRotationMs) / intervalMs + 1;
+      Interval recycled = previous;
+      recycled.reset();
+      if (elapsedIntervals == 1) {
+        previous = current;
+        current = recycled;
+      } else {
+        Interval stale = current;
+        current = recycled;
+        stale.reset();
+        previous = stale;
+      }
+      nextRotationMs += elapsedIntervals * intervalMs;
+    }
+  }
+
+  private int countsIndex(long value) {
+    int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+    int subBucketIndex = (int) (value >>> bucketIndex);
+    return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + subBucketIndex - subBucketHalfCount;
+  }
+
+  private int bucketIndex(int countsIndex) {
+    return Math.max((countsIndex >> subBucketHalfCountMagnitude) - 1, 0);
+  }
+
+  private long lowestEquivalentValue(int countsIndex) {
+    int bucketIndex = (countsIndex >> subBucketHalfCountMagnitude) - 1;
+    int subBucketIndex = (countsIndex & (subBucketHalfCount - 1)) + subBucketHalfCount;
+    if (bucketIndex < 0) {
+      subBucketIndex -= subBucketHalfCount;
+      bucketIndex = 0;
+    }
+    return (long) subBucketIndex << bucketIndex;
+  }
+
+  private long highestEquivalentValue(int countsIndex) {
+    return lowestEquivalentValue(countsIndex) + (1L << bucketIndex(countsIndex)) - 1;
+  }
+
+  /**
+   * The histogram of the values recorded during one interval.
+   */
+  private static class Interval {
+    private final AtomicLongArray counts;
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    Interval(int countsLength) {
+      this.counts = new AtomicLongArray(countsLength);
+    }
+
+    void record(long value, int countsIndex) {
+      counts.incrementAndGet(countsIndex);
+      sum.addAndGet(value);
+      long currentMin = min.get();
+      while (value < currentMin && !min.compareAndSet(currentMin, value)) {
+        currentMin = min.get();
+      }
+      long currentMax = max.get();
+      while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+        currentMax = max.get();
+      }
+    }
+
+    long addCountsTo(long[] target) {
+      long total = 0;
+      for (int i = 0; i < target.length; i++) {
+        long count = counts.get(i);
+        target[i] += count;
+        total += count;
+      }
+      return total;
+    }
+
+    void reset() {
+      for (int i = 0; i < counts.length(); i++) {
+        counts.set(i, 0);
+      }
+      sum.set(0);
+      min.set(Long.MAX_VALUE);
+      max.set(Long.MIN_VALUE);
+    }
+  }
+
+  /**
+   * A snapshot of the merged interval histograms. Quantiles are reported as the highest value equivalent to the
+   * bucket they fall into, bounded by the min and max of the recorded values.
+   */
+  private class HdrSnapshot extends Snapshot {
+    private final long[] counts;
+    private final long totalCount;
+
+    HdrSnapshot(long[] counts, long totalCount, long min, long max, double sum) {
+      super(totalCount == 0 ? 0 : min, totalCount == 0 ? 0 : max, totalCount == 0 ? 0 : sum,
+          (int) Math.min(totalCount, Integer.MAX_VALUE));
+      this.counts = counts;
+      this.totalCount = totalCount;
+    }
+
+    @Override
+    public long getValue(double quantile) {
+      checkQuantile(quantile);
+      if (totalCount == 0) {
+        return 0;
+      }
+      if (quantile == 0) {
+        return getMin();
+      }
+      long rank = Math.max((long) Math.ceil(quantile * totalCount), 1);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.max(Math.min(highestEquivalentValue(i), getMax()), getMin());
+        }
+      }
+      return getMax();
+    }
+
+    @Override
+    public ArrayList<Long> getValues() {
+      ArrayList<Long> values = new ArrayList<>();
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          values.add(Math.max(Math.min(highestEquivalentValue(i), getMax()), getMin()));
+        }
+      }
+      return values;
+    }
+
+    double getStdDev() {
+      if (totalCount <= 1) {
+        return 0;
+      }
+      double mean = getAverage();
+      double squaredDeviations = 0;
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          double deviation = (lowestEquivalentValue(i) + highestEquivalentValue(i)) / 2.0 - mean;
+          squaredDeviations += deviation * deviation * counts[i];
+        }
+      }
+      return Math.sqrt(squaredDeviations / (totalCount - 1));
+    }
+  }
+
+  /**
+   * Adapts an {@link HdrSnapshot} to the codahale {@link com.codahale.metrics.Snapshot}.
+   */
+  private static class CodahaleSnapshot extends com.codahale.metrics.Snapshot {
+    private final HdrSnapshot snapshot;
+
+    CodahaleSnapshot(HdrSnapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      return snapshot.getValue(quantile);
+    }
+
+    @Override
+    public long[] getValues() {
+      return snapshot.getValues().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public int size() {
+      return snapshot.getSize();
+    }
+
+    @Override
+    public long getMax() {
+      return snapshot.getMax();
+    }
+
+    @Override
+    public double getMean() {
+      return snapshot.getAverage();
+    }
+
+    @Override
+    public long getMin() {
+      return snapshot.getMin();
+    }
+
+    @Override
+    public double getStdDev() {
+      return snapshot.getStdDev();
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+        for (long value : getValues()) {
+          out.printf("%d%n", value);
+        }
+      }
+    }
+  }
+}
@@ -79,4 +79,13 @@ public interface MetricsRegistry {
    * @return Timer that was registered
    */
   Timer newTimer(String group, Timer timer);
+
+  /**
+   * Get the kind of reservoir which backs the {@link org.apache.samza.metrics.Timer}s created by
+   * {@link #newTimer(String, String)}, and the {@link org.apache.samza.metrics.SamzaHistogram}s of this registry
+   * @return the reservoir type of this registry
+   */
+  default ReservoirType getReservoirType() {
+    return ReservoirType.SLIDING_TIME_WINDOW;
+  }
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.metrics;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+
+/**
+ * The kinds of {@link Reservoir} which back the {@link Timer}s and {@link SamzaHistogram}s created through a
+ * {@link MetricsRegistry}, as returned by {@link MetricsRegistry#getReservoirType()}.
+ */
+public enum ReservoirType {
+  /**
+   * {@link SlidingTimeWindowReservoir} for timers and {@link ExponentiallyDecayingReservoir} for histograms, which
+   * retain a sample of the recorded values.
+   */
+  SLIDING_TIME_WINDOW,
+
+  /**
+   * {@link HdrReservoir} for both timers and histograms, which records values into fixed-size histograms.
+   */
+  HDR_HISTOGRAM;
+
+  /**
+   * Create a reservoir of this kind for a {@link Timer}
+   *
+   * @return a new reservoir
+   */
+  public Reservoir newReservoir() {
+    return this == HDR_HISTOGRAM ? new HdrReservoir() : new SlidingTimeWindowReservoir();
+  }
+
+  /**
+   * Create a reservoir of this kind for a codahale {@link com.codahale.metrics.Histogram}
+   *
+   * @return a new codahale reservoir
+   */
+  public com.codahale.metrics.Reservoir newCodahaleReservoir() {
+    return this == HDR_HISTOGRAM ? new HdrReservoir().asCodahaleReservoir() : new ExponentiallyDecayingReservoir();
+  }
+}
@@ -29,7 +29,8 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
- * Creates a {@link Histogram} metric using {@link ExponentiallyDecayingReservoir}
+ * Creates a {@link Histogram} metric using the reservoir of the {@link MetricsRegistry#getReservoirType()} type of its
+ * registry, which is {@link ExponentiallyDecayingReservoir} unless configured otherwise.
  * Keeps a {@link Gauge} for each percentile
  */
 public class SamzaHistogram {
@@ -43,7 +44,9 @@ public class SamzaHistogram {
   }
 
   public SamzaHistogram(MetricsRegistry registry, String group, String name, List<Double> percentiles) {
-    this.histogram = new Histogram(new ExponentiallyDecayingReservoir());
+    ReservoirType reservoirType = registry.getReservoirType();
+    this.histogram = new Histogram(reservoirType != null
+        ? reservoirType.newCodahaleReservoir() : new ExponentiallyDecayingReservoir());
     this.percentiles = percentiles;
     this.gauges = this.percentiles.stream()
         .filter(x -> x > 0 && x <= 100)
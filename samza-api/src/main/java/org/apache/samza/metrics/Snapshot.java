@@ -20,6 +20,7 @@
 package org.apache.samza.metrics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
@@ -64,6 +65,18 @@ public class Snapshot {
     }
   }
 
+  /**
+   * Constructs a snapshot of a reservoir which summarizes its values instead of retaining them. Such snapshots
+   * override {@link #getValue(double)} and {@link #getValues()}.
+   */
+  Snapshot(long min, long max, double sum, int size) {
+    this.values = new ArrayList<>(0);
+    this.min = min;
+    this.max = max;
+    this.sum = sum;
+    this.size = size;
+  }
+
   /**
    * Get the maximum value in the collection
    *
@@ -110,7 +123,29 @@ public class Snapshot {
   }
 
   /**
-   * Return the entire list of values
+   * Get the value at the given quantile of the values in the collection, e.g. 0.99 for the 99th percentile
+   *
+   * @param quantile the quantile, between 0 and 1
+   * @return the smallest value such that the given fraction of the values are less than or equal to it, or 0 if the
+   *         collection is empty
+   */
+  public long getValue(double quantile) {
+    checkQuantile(quantile);
+    if (size == 0) {
+      return 0;
+    }
+    long[] sorted = new long[size];
+    for (int i = 0; i < size; i++) {
+      sorted[i] = values.get(i);
+    }
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(quantile * size);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  /**
+   * Return the entire list of values. Snapshots of reservoirs which summarize their values, such as
+   * {@link HdrReservoir}, return one representative value for each distinct bucket of recorded values instead.
    *
    * @return the list of values
    */
@@ -118,4 +153,10 @@ public class Snapshot {
   public ArrayList<Long> getValues() {
     return (ArrayList<Long>) values.clone();
   }
+
+  static void checkQuantile(double quantile) {
+    if (Double.isNaN(quantile) || quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException(quantile + " is not in [0..1]");
+    }
+  }
 }
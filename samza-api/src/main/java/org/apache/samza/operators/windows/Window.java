@@ -19,6 +19,7 @@
 package org.apache.samza.operators.windows;
 
 import java.io.Serializable;
+import java.time.Duration;
 import org.apache.samza.annotation.InterfaceStability;
 import org.apache.samza.operators.triggers.Trigger;
 
@@ -91,6 +92,16 @@ public interface Window<M, K, WV> extends Serializable {
    */
   Window<M, K, WV> setLateTrigger(Trigger<M> trigger);
 
+  /**
+   * Set how long after the watermark passes the end of an event time {@link Window} its late messages are still
+   * processed. A late message within the allowed lateness updates the window and emits a {@link WindowPane} with
+   * {@link org.apache.samza.operators.triggers.FiringType#LATE} right away. Later messages are dropped.
+   * <p> Defaults to {@link Duration#ZERO}, i.e. all late messages are dropped. Only applies to event time tumbling windows.
+   * @param allowedLateness the allowed lateness
+   * @return the {@link Window} function with the allowed lateness
+   */
+  Window<M, K, WV> setAllowedLateness(Duration allowedLateness);
+
   /**
    * Specify how a {@link Window} should process its previously emitted {@link WindowPane}s.
    * <p> There are two types of {@link AccumulationMode}s:
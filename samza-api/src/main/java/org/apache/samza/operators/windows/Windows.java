@@ -20,6 +20,7 @@
 package org.apache.samza.operators.windows;
 
 import org.apache.samza.annotation.InterfaceStability;
+import org.apache.samza.operators.functions.CombineFunction;
 import org.apache.samza.operators.functions.FoldLeftFunction;
 import org.apache.samza.operators.functions.MapFunction;
 import org.apache.samza.operators.functions.SupplierFunction;
@@ -74,6 +75,14 @@ import java.util.Collection;
  *   <li>
  *     Tumbling Window: A tumbling window defines a series of non-overlapping, fixed size, contiguous intervals.
  *   <li>
+ *     Event Time Tumbling Window: A tumbling window whose intervals are defined by the event time of the messages
+ *     instead of the processing time. A window is closed, and its {@link WindowPane} emitted, when the watermark
+ *     passes the end of its interval.
+ *   <li>
+ *     Sliding Window: A sliding (or hopping) window defines a series of fixed size intervals that start every
+ *     {@code slide}, so that each message belongs to {@code size / slide} overlapping windows. Messages are
+ *     aggregated once per slide-sized pane, and the panes of a window are combined when it is emitted.
+ *   <li>
  *     Session Window: A session window groups a {@link org.apache.samza.operators.MessageStream} into sessions.
  *     A <i>session</i> captures some period of activity over a {@link org.apache.samza.operators.MessageStream}.
  *     The boundary for a session is defined by a {@code sessionGap}. All messages that that arrive within
@@ -224,6 +233,296 @@ public final class Windows {
         WindowType.TUMBLING, null, null, msgSerde);
   }
 
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, non-overlapping event time based windows
+   * based on the provided keyFn and applies the provided fold function to them.
+   *
+   * <p>The event time of a message is extracted with the provided eventTimeFn. A window is closed, and its
+   * {@link WindowPane} emitted, when the watermark passes the end of the window. Messages that arrive after
+   * their window closed are handled according to {@link Window#setAllowedLateness(Duration)}.
+   *
+   * <p>The below example computes the maximum value per-key over fixed size 10 second windows of event time.
+   *
+   * <pre> {@code
+   *    MessageStream<UserClick> stream = ...;
+   *    MapFunction<UserClick, String> keyFn = ...;
+   *    MapFunction<UserClick, Long> eventTimeFn = m -> m.getClickTimeMs();
+   *    SupplierFunction<Integer> initialValue = () -> 0;
+   *    FoldLeftFunction<UserClick, Integer, Integer> maxAggregator = (m, c) -> Math.max(parseInt(m), c);
+   *    MessageStream<WindowPane<String, Integer>> windowedStream = stream.window(
+   *        Windows.keyedEventTimeTumblingWindow(keyFn, eventTimeFn, Duration.ofSeconds(10), initialValue,
+   *            maxAggregator, keySerde, valueSerde));
+   * }
+   * </pre>
+   *
+   * @param keyFn the function to extract the window key from a message
+   * @param eventTimeFn the function to extract the event time in milliseconds from a message
+   * @param interval the duration in event time
+   * @param initialValue the initial value supplier for the aggregator. Invoked when a new window is created.
+   * @param aggregator the function to incrementally update the window value. Invoked when a new message
+   *                   arrives for the window.
+   * @param keySerde the serde for the window key
+   * @param windowValueSerde the serde for the window value
+   * @param <M> the type of the input message
+   * @param <WV> the type of the {@link WindowPane} output value
+   * @param <K> the type of the key in the {@link Window}
+   * @return the created {@link Window} function.
+   */
+  public static <M, K, WV> Window<M, K, WV> keyedEventTimeTumblingWindow(MapFunction<? super M, ? extends K> keyFn,
+      MapFunction<? super M, Long> eventTimeFn, Duration interval, SupplierFunction<? extends WV> initialValue,
+      FoldLeftFunction<? super M, WV> aggregator, Serde<K> keySerde, Serde<WV> windowValueSerde) {
+    return new WindowInternal<>(null, (SupplierFunction<WV>) initialValue, (FoldLeftFunction<M, WV>) aggregator,
+        (MapFunction<M, K>) keyFn, (MapFunction<M, Long>) eventTimeFn, WindowType.TUMBLING, interval, keySerde,
+        windowValueSerde, null);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, non-overlapping event time based windows
+   * using the provided keyFn.
+   *
+   * <p>The event time of a message is extracted with the provided eventTimeFn. A window is closed, and its
+   * {@link WindowPane} emitted, when the watermark passes the end of the window.
+   *
+   * @param keyFn the function to extract the window key from a message
+   * @param eventTimeFn the function to extract the event time in milliseconds from a message
+   * @param interval the duration in event time
+   * @param keySerde the serde for the window key
+   * @param msgSerde the serde for the input message
+   * @param <M> the type of the input message
+   * @param <K> the type of the key in the {@link Window}
+   * @return the created {@link Window} function
+   */
+  public static <M, K> Window<M, K, Collection<M>> keyedEventTimeTumblingWindow(MapFunction<? super M, ? extends K> keyFn,
+      MapFunction<? super M, Long> eventTimeFn, Duration interval, Serde<K> keySerde, Serde<M> msgSerde) {
+    return new WindowInternal<>(null, null, null, (MapFunction<M, K>) keyFn, (MapFunction<M, Long>) eventTimeFn,
+        WindowType.TUMBLING, interval, keySerde, null, msgSerde);
+  }
+
+  /**
+   * Creates a {@link Window} that windows values into fixed-size event time based windows and aggregates
+   * them applying the provided function.
+   *
+   * <p>The event time of a message is extracted with the provided eventTimeFn. A window is closed, and its
+   * {@link WindowPane} emitted, when the watermark passes the end of the window.
+   *
+   * @param eventTimeFn the function to extract the event time in milliseconds from a message
+   * @param interval the duration in event time
+   * @param initialValue the initial value supplier for the aggregator. Invoked when a new window is created.
+   * @param aggregator the function to incrementally update the window value. Invoked when a new message
+   *                   arrives for the window.
+   * @param windowValueSerde the serde for the window value
+   * @param <M> the type of the input message
+   * @param <WV> the type of the {@link WindowPane} output value
+   * @return the created {@link Window} function
+   */
+  public static <M, WV> Window<M, Void, WV> eventTimeTumblingWindow(MapFunction<? super M, Long> eventTimeFn,
+      Duration interval, SupplierFunction<? extends WV> initialValue, FoldLeftFunction<? super M, WV> aggregator,
+      Serde<WV> windowValueSerde) {
+    return new WindowInternal<>(null, (SupplierFunction<WV>) initialValue, (FoldLeftFunction<M, WV>) aggregator,
+        null, (MapFunction<M, Long>) eventTimeFn, WindowType.TUMBLING, interval, null, windowValueSerde, null);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, non-overlapping event time based windows.
+   *
+   * <p>The event time of a message is extracted with the provided eventTimeFn. A window is closed, and its
+   * {@link WindowPane} emitted, when the watermark passes the end of the window.
+   *
+   * @param eventTimeFn the function to extract the event time in milliseconds from a message
+   * @param interval the duration in event time
+   * @param msgSerde the serde for the input message
+   * @param <M> the type of the input message
+   * @return the created {@link Window} function
+   */
+  public static <M> Window<M, Void, Collection<M>> eventTimeTumblingWindow(MapFunction<? super M, Long> eventTimeFn,
+      Duration interval, Serde<M> msgSerde) {
+    return new WindowInternal<>(null, null, null, null, (MapFunction<M, Long>) eventTimeFn, WindowType.TUMBLING,
+        interval, null, null, msgSerde);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, overlapping processing time based windows
+   * that start every {@code slide}, based on the provided keyFn, and applies the provided fold function to them.
+   *
+   * <p>Each message is aggregated only once, into the slide-sized pane it arrives in. When a window ends, the
+   * aggregated values of its panes are combined in order with the provided combiner and emitted.
+   *
+   * <p>The below example computes the count per-key over the last hour, every minute.
+   *
+   * <pre> {@code
+   *    MessageStream<UserClick> stream = ...;
+   *    MapFunction<UserClick, String> keyFn = ...;
+   *    MessageStream<WindowPane<String, Integer>> windowedStream = stream.window(
+   *        Windows.keyedSlidingWindow(keyFn, Duration.ofHours(1), Duration.ofMinutes(1), () -> 0, (m, c) -> c + 1,
+   *            (c1, c2) -> c1 + c2, keySerde, valueSerde));
+   * }
+   * </pre>
+   *
+   * @param keyFn the function to extract the window key from a message
+   * @param size the duration of each window in processing time. Must be a multiple of the slide.
+   * @param slide the interval between the start of consecutive windows
+   * @param initialValue the initial value supplier for the aggregator. Invoked when a new pane is created.
+   * @param aggregator the function to incrementally update the value of a pane. Invoked when a new message
+   *                   arrives for the pane.
+   * @param combiner the function to combine the values of the panes of a window
+   * @param keySerde the serde for the window key
+   * @param windowValueSerde the serde for the window value
+   * @param <M> the type of the input message
+   * @param <WV> the type of the {@link WindowPane} output value
+   * @param <K> the type of the key in the {@link Window}
+   * @return the created {@link Window} function
+   */
+  public static <M, K, WV> Window<M, K, WV> keyedSlidingWindow(MapFunction<? super M, ? extends K> keyFn, Duration size,
+      Duration slide, SupplierFunction<? extends WV> initialValue, FoldLeftFunction<? super M, WV> aggregator,
+      CombineFunction<WV> combiner, Serde<K> keySerde, Serde<WV> windowValueSerde) {
+    Trigger<M> defaultTrigger = new TimeTrigger<>(slide);
+    return new WindowInternal<>(defaultTrigger, (SupplierFunction<WV>) initialValue, (FoldLeftFunction<M, WV>) aggregator,
+        combiner, (MapFunction<M, K>) keyFn, null, WindowType.SLIDING, size, slide, keySerde, windowValueSerde, null);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, overlapping processing time based windows
+   * that start every {@code slide}, based on the provided keyFn, and applies the provided fold function to them.
+   *
+   * <p>Use this variant when partially aggregated values can not be combined. The messages are stored once, in the
+   * slide-sized pane they arrive in, and the messages of all panes of a window are aggregated when it ends.
+   *
+   * @param keyFn the function to extract the window key from a message
+   * @param size the duration of each window in processing time. Must be a multiple of the slide.
+   * @param slide the interval between the start of consecutive windows
+   * @param initialValue the initial value supplier for the aggregator. Invoked when a window is emitted.
+   * @param aggregator the function to aggregate the messages of a window. Invoked for each message in the window
+   *                   when it is emitted.
+   * @param keySerde the serde for the window key
+   * @param msgSerde the serde for the input message
+   * @param <M> the type of the input message
+   * @param <WV> the type of the {@link WindowPane} output value
+   * @param <K> the type of the key in the {@link Window}
+   * @return the created {@link Window} function
+   */
+  public static <M, K, WV> Window<M, K, WV> keyedSlidingWindow(MapFunction<? super M, ? extends K> keyFn, Duration size,
+      Duration slide, SupplierFunction<? extends WV> initialValue, FoldLeftFunction<? super M, WV> aggregator,
+      Serde<K> keySerde, Serde<M> msgSerde) {
+    Trigger<M> defaultTrigger = new TimeTrigger<>(slide);
+    return new WindowInternal<>(defaultTrigger, (SupplierFunction<WV>) initialValue, (FoldLeftFunction<M, WV>) aggregator,
+        null, (MapFunction<M, K>) keyFn, null, WindowType.SLIDING, size, slide, keySerde, null, msgSerde);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, overlapping processing time based windows
+   * that start every {@code slide}, based on the provided keyFn.
+   *
+   * @param keyFn the function to extract the window key from a message
+   * @param size the duration of each window in processing time. Must be a multiple of the slide.
+   * @param slide the interval between the start of consecutive windows
+   * @param keySerde the serde for the window key
+   * @param msgSerde the serde for the input message
+   * @param <M> the type of the input message
+   * @param <K> the type of the key in the {@link Window}
+   * @return the created {@link Window} function
+   */
+  public static <M, K> Window<M, K, Collection<M>> keyedSlidingWindow(MapFunction<? super M, ? extends K> keyFn,
+      Duration size, Duration slide, Serde<K> keySerde, Serde<M> msgSerde) {
+    Trigger<M> defaultTrigger = new TimeTrigger<>(slide);
+    return new WindowInternal<>(defaultTrigger, null, null, null, (MapFunction<M, K>) keyFn, null, WindowType.SLIDING,
+        size, slide, keySerde, null, msgSerde);
+  }
+
+  /**
+   * Creates a {@link Window} that windows values into fixed-size, overlapping processing time based windows that
+   * start every {@code slide}, and aggregates them applying the provided functions.
+   *
+   * @param size the duration of each window in processing time. Must be a multiple of the slide.
+   * @param slide the interval between the start of consecutive windows
+   * @param initialValue the initial value supplier for the aggregator. Invoked when a new pane is created.
+   * @param aggregator the function to incrementally update the value of a pane. Invoked when a new message
+   *                   arrives for the pane.
+   * @param combiner the function to combine the values of the panes of a window
+   * @param windowValueSerde the serde for the window value
+   * @param <M> the type of the input message
+   * @param <WV> the type of the {@link WindowPane} output value
+   * @return the created {@link Window} function
+   */
+  public static <M, WV> Window<M, Void, WV> slidingWindow(Duration size, Duration slide,
+      SupplierFunction<? extends WV> initialValue, FoldLeftFunction<? super M, WV> aggregator,
+      CombineFunction<WV> combiner, Serde<WV> windowValueSerde) {
+    Trigger<M> defaultTrigger = new TimeTrigger<>(slide);
+    return new WindowInternal<>(defaultTrigger, (SupplierFunction<WV>) initialValue, (FoldLeftFunction<M, WV>) aggregator,
+        combiner, null, null, WindowType.SLIDING, size, slide, null, windowValueSerde, null);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, overlapping processing time based windows
+   * that start every {@code slide}.
+   *
+   * @param size the duration of each window in processing time. Must be a multiple of the slide.
+   * @param slide the interval between the start of consecutive windows
+   * @param msgSerde the serde for the input message
+   * @param <M> the type of the input message
+   * @return the created {@link Window} function
+   */
+  public static <M> Window<M, Void, Collection<M>> slidingWindow(Duration size, Duration slide, Serde<M> msgSerde) {
+    Trigger<M> defaultTrigger = new TimeTrigger<>(slide);
+    return new WindowInternal<>(defaultTrigger, null, null, null, null, null, WindowType.SLIDING, size, slide, null,
+        null, msgSerde);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, overlapping event time based windows
+   * that start every {@code slide}, based on the provided keyFn, and applies the provided fold function to them.
+   *
+   * <p>The event time of a message is extracted with the provided eventTimeFn. Each message is aggregated only once,
+   * into the slide-sized pane of its event time. A window is emitted when the watermark passes its end, by combining
+   * the aggregated values of its panes in order with the provided combiner. Messages whose panes are no longer in
+   * any window that has not been emitted are dropped.
+   *
+   * @param keyFn the function to extract the window key from a message
+   * @param eventTimeFn the function to extract the event time in milliseconds from a message
+   * @param size the duration of each window in event time. Must be a multiple of the slide.
+   * @param slide the interval between the start of consecutive windows
+   * @param initialValue the initial value supplier for the aggregator. Invoked when a new pane is created.
+   * @param aggregator the function to incrementally update the value of a pane. Invoked when a new message
+   *                   arrives for the pane.
+   * @param combiner the function to combine the values of the panes of a window
+   * @param keySerde the serde for the window key
+   * @param windowValueSerde the serde for the window value
+   * @param <M> the type of the input message
+   * @param <WV> the type of the {@link WindowPane} output value
+   * @param <K> the type of the key in the {@link Window}
+   * @return the created {@link Window} function
+   */
+  public static <M, K, WV> Window<M, K, WV> keyedEventTimeSlidingWindow(MapFunction<? super M, ? extends K> keyFn,
+      MapFunction<? super M, Long> eventTimeFn, Duration size, Duration slide, SupplierFunction<? extends WV> initialValue,
+      FoldLeftFunction<? super M, WV> aggregator, CombineFunction<WV> combiner, Serde<K> keySerde,
+      Serde<WV> windowValueSerde) {
+    return new WindowInternal<>(null, (SupplierFunction<WV>) initialValue, (FoldLeftFunction<M, WV>) aggregator,
+        combiner, (MapFunction<M, K>) keyFn, (MapFunction<M, Long>) eventTimeFn, WindowType.SLIDING, size, slide,
+        keySerde, windowValueSerde, null);
+  }
+
+  /**
+   * Creates a {@link Window} that groups incoming messages into fixed-size, overlapping event time based windows
+   * that start every {@code slide}, based on the provided keyFn.
+   *
+   * <p>The event time of a message is extracted with the provided eventTimeFn. A window is emitted when the
+   * watermark passes its end.
+   *
+   * @param keyFn the function to extract the window key from a message
+   * @param eventTimeFn the function to extract the event time in milliseconds from a message
+   * @param size the duration of each window in event time. Must be a multiple of the slide.
+   * @param slide the interval between the start of consecutive windows
+   * @param keySerde the serde for the window key
+   * @param msgSerde the serde for the input message
+   * @param <M> the type of the input message
+   * @param <K> the type of the key in the {@link Window}
+   * @return the created {@link Window} function
+   */
+  public static <M, K> Window<M, K, Collection<M>> keyedEventTimeSlidingWindow(MapFunction<? super M, ? extends K> keyFn,
+      MapFunction<? super M, Long> eventTimeFn, Duration size, Duration slide, Serde<K> keySerde, Serde<M> msgSerde) {
+    return new WindowInternal<>(null, null, null, null, (MapFunction<M, K>) keyFn, (MapFunction<M, Long>) eventTimeFn,
+        WindowType.SLIDING, size, slide, keySerde, null, msgSerde);
+  }
+
   /**
    * Creates a {@link Window} that groups incoming messages into sessions per-key based on the provided
    * {@code sessionGap} and applies the provided fold function to them.
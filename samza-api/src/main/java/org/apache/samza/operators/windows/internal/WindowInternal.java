@@ -17,7 +17,10 @@
  * under the License.
  */
 package org.apache.samza.operators.windows.internal;
+
+import java.time.Duration;
 import org.apache.samza.annotation.InterfaceStability;
+import org.apache.samza.operators.functions.CombineFunction;
 import org.apache.samza.operators.functions.MapFunction;
 import org.apache.samza.operators.functions.SupplierFunction;
 import org.apache.samza.operators.functions.FoldLeftFunction;
@@ -52,6 +55,11 @@ public final class WindowInternal<M, WK, WV> implements Window<M, WK, WV> {
    */
   private final FoldLeftFunction<M, WV> foldLeftFunction;
 
+  /*
+   * The function that combines the aggregated values of the panes of a sliding window
+   */
+  private final CombineFunction<WV> combineFunction;
+
   /*
    * The function that extracts the key from a {@link MessageEnvelope}
    */
@@ -63,10 +71,25 @@ public final class WindowInternal<M, WK, WV> implements Window<M, WK, WV> {
   private final MapFunction<M, Long> eventTimeExtractor;
 
   /**
-   * The type of this window. Tumbling and Session windows are supported for now.
+   * The type of this window. Tumbling, Session and Sliding windows are supported for now.
    */
   private final WindowType windowType;
 
+  /*
+   * The size of event time and sliding windows. Other processing time windows are sized by their default trigger.
+   */
+  private final Duration size;
+
+  /*
+   * The interval at which sliding windows advance, which is also the size of their panes
+   */
+  private final Duration slide;
+
+  /*
+   * How long after the watermark passes the end of an event time window late messages are still added to it
+   */
+  private Duration allowedLateness = Duration.ZERO;
+
   private Trigger<M> earlyTrigger;
   private Trigger<M> lateTrigger;
   private AccumulationMode mode;
@@ -82,25 +105,60 @@ public final class WindowInternal<M, WK, WV> implements Window<M, WK, WV> {
   public WindowInternal(Trigger<M> defaultTrigger, SupplierFunction<WV> initializer, FoldLeftFunction<M, WV> foldLeftFunction,
       MapFunction<M, WK> keyExtractor, MapFunction<M, Long> eventTimeExtractor, WindowType windowType, Serde<WK> keySerde,
       Serde<WV> windowValueSerde, Serde<M> msgSerde) {
+    this(defaultTrigger, initializer, foldLeftFunction, keyExtractor, eventTimeExtractor, windowType, null, keySerde,
+        windowValueSerde, msgSerde);
+  }
+
+  public WindowInternal(Trigger<M> defaultTrigger, SupplierFunction<WV> initializer, FoldLeftFunction<M, WV> foldLeftFunction,
+      MapFunction<M, WK> keyExtractor, MapFunction<M, Long> eventTimeExtractor, WindowType windowType, Duration size,
+      Serde<WK> keySerde, Serde<WV> windowValueSerde, Serde<M> msgSerde) {
+    this(defaultTrigger, initializer, foldLeftFunction, null, keyExtractor, eventTimeExtractor, windowType, size, null,
+        keySerde, windowValueSerde, msgSerde);
+  }
+
+  public WindowInternal(Trigger<M> defaultTrigger, SupplierFunction<WV> initializer, FoldLeftFunction<M, WV> foldLeftFunction,
+      CombineFunction<WV> combineFunction, MapFunction<M, WK> keyExtractor, MapFunction<M, Long> eventTimeExtractor,
+      WindowType windowType, Duration size, Duration slide, Serde<WK> keySerde, Serde<WV> windowValueSerde,
+      Serde<M> msgSerde) {
     this.defaultTrigger = defaultTrigger;
     this.initializer = initializer;
     this.foldLeftFunction = foldLeftFunction;
+    this.combineFunction = combineFunction;
     this.eventTimeExtractor = eventTimeExtractor;
     this.keyExtractor = keyExtractor;
     this.windowType = windowType;
+    this.size = size;
+    this.slide = slide;
     this.keySerde = keySerde;
     this.windowValSerde = windowValueSerde;
     this.msgSerde = msgSerde;
 
-    if (defaultTrigger == null) {
+    // event time windows are closed by watermarks instead of a default trigger
+    if (defaultTrigger == null && (eventTimeExtractor == null || windowType == WindowType.SESSION)) {
       throw new IllegalArgumentException("A window must not have a null default trigger");
     }
 
+    if (defaultTrigger == null && (size == null || size.toMillis() <= 0)) {
+      throw new IllegalArgumentException("An event time window must have a positive size");
+    }
+
+    if (windowType == WindowType.SLIDING) {
+      if (size == null || slide == null || slide.toMillis() <= 0 || size.toMillis() < slide.toMillis()
+          || size.toMillis() % slide.toMillis() != 0) {
+        throw new IllegalArgumentException("A sliding window must have a positive slide and a size that is a multiple of it");
+      }
+      if (!hasAggregatedState() && msgSerde == null) {
+        throw new IllegalArgumentException("A sliding window without a CombineFunction must have a msg serde");
+      }
+    } else if (combineFunction != null) {
+      throw new IllegalArgumentException("Only sliding windows can have a CombineFunction");
+    }
+
     if (msgSerde == null && windowValueSerde == null) {
       throw new IllegalArgumentException("A window must not have a null msg serde and a null windowValue serde");
     }
 
-    if (foldLeftFunction != null && windowValSerde == null) {
+    if (hasAggregatedState() && windowValSerde == null) {
       throw new IllegalArgumentException("A window with a FoldLeftFunction must have a windowValue serde");
     }
 
@@ -133,6 +191,10 @@ public final class WindowInternal<M, WK, WV> implements Window<M, WK, WV> {
     return foldLeftFunction;
   }
 
+  public CombineFunction<WV> getCombineFunction() {
+    return combineFunction;
+  }
+
   public MapFunction<M, WK> getKeyExtractor() {
     return keyExtractor;
   }
@@ -145,6 +207,38 @@ public final class WindowInternal<M, WK, WV> implements Window<M, WK, WV> {
     return windowType;
   }
 
+  /**
+   * Returns true if this is an event time window, which is closed when the watermark passes its end.
+   *
+   * @return true if this is an event time window
+   */
+  public boolean isEventTimeWindow() {
+    return defaultTrigger == null;
+  }
+
+  public Duration getSize() {
+    return size;
+  }
+
+  public Duration getSlide() {
+    return slide;
+  }
+
+  /**
+   * Returns true if the state of this window is an aggregated value per window, or per pane for sliding windows,
+   * and false if it is the messages in the window. Sliding windows without a {@link CombineFunction} keep the
+   * messages in each pane and aggregate them when the window is emitted.
+   *
+   * @return true if the state of this window is aggregated
+   */
+  public boolean hasAggregatedState() {
+    return foldLeftFunction != null && (windowType != WindowType.SLIDING || combineFunction != null);
+  }
+
+  public Duration getAllowedLateness() {
+    return allowedLateness;
+  }
+
   public AccumulationMode getAccumulationMode() {
     return mode;
   }
@@ -167,16 +261,34 @@ public final class WindowInternal<M, WK, WV> implements Window<M, WK, WV> {
 
   @Override
   public Window<M, WK, WV> setEarlyTrigger(Trigger<M> trigger) {
+    if (windowType == WindowType.SLIDING) {
+      throw new IllegalArgumentException("Sliding windows do not support early triggers");
+    }
     this.earlyTrigger = trigger;
     return this;
   }
 
   @Override
   public Window<M, WK, WV> setLateTrigger(Trigger<M> trigger) {
+    if (windowType == WindowType.SLIDING) {
+      throw new IllegalArgumentException("Sliding windows do not support late triggers");
+    }
     this.lateTrigger = trigger;
     return this;
   }
 
+  @Override
+  public Window<M, WK, WV> setAllowedLateness(Duration allowedLateness) {
+    if (!isEventTimeWindow() || windowType != WindowType.TUMBLING) {
+      throw new IllegalArgumentException("Allowed lateness can only be set for event time tumbling windows");
+    }
+    if (allowedLateness == null || allowedLateness.isNegative()) {
+      throw new IllegalArgumentException("Allowed lateness must not be null or negative");
+    }
+    this.allowedLateness = allowedLateness;
+    return this;
+  }
+
   @Override
   public Window<M, WK, WV> setAccumulationMode(AccumulationMode mode) {
     this.mode = mode;
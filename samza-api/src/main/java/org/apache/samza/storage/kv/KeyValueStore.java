@@ -20,6 +20,7 @@
 package org.apache.samza.storage.kv;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -116,6 +117,29 @@ public interface KeyValueStore<K, V> {
     }
   }
 
+  /**
+   * Deletes the mappings for a sorted range of keys specified by [{@code from}, {@code to}) from this key-value store.
+   *
+   * <p><b>API Note:</b> The range is compared the same way as in {@link #range(Object, Object)}. The default
+   * implementation iterates over the range and deletes the keys found with {@link #deleteAll(List)}. Stores which
+   * can delete a range without reading it should override this method.</p>
+   * @param from the key specifying the low endpoint (inclusive) of the keys to be deleted.
+   * @param to the key specifying the high endpoint (exclusive) of the keys to be deleted.
+   * @throws NullPointerException if null is used for {@code from} or {@code to}.
+   */
+  default void deleteRange(K from, K to) {
+    List<K> keys = new ArrayList<>();
+    KeyValueIterator<K, V> iterator = range(from, to);
+    try {
+      while (iterator.hasNext()) {
+        keys.add(iterator.next().getKey());
+      }
+    } finally {
+      iterator.close();
+    }
+    deleteAll(keys);
+  }
+
   /**
    * Returns an iterator for a sorted range of entries specified by [{@code from}, {@code to}).
    *
@@ -129,6 +153,18 @@ public interface KeyValueStore<K, V> {
    */
   KeyValueIterator<K, V> range(K from, K to);
 
+  /**
+   * Returns an iterator for the sorted entries whose keys start with {@code prefix}.
+   *
+   * <p><b>API Note:</b> The returned iterator MUST be closed after use. The prefix is matched against the underlying
+   * serialized byte array representation of keys, so this is only meaningful for key serdes which serialize a key
+   * and its prefixes to byte arrays with the same leading bytes.</p>
+   * @param prefix the key specifying the prefix of the keys in the returned iterator.
+   * @return an iterator for the entries whose keys start with the specified prefix.
+   * @throws NullPointerException if null is used for {@code prefix}.
+   */
+  KeyValueIterator<K, V> prefixScan(K prefix);
+
   /**
    * Returns a snapshot of this store for a sorted range of entries specified by [{@code from}, {@code to}).
    * The snapshot is immutable - ie., any mutations to the store are not reflected in the snapshot after it is created.
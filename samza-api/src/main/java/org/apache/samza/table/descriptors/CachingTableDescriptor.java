@@ -45,6 +45,9 @@ public class CachingTableDescriptor<K, V> extends HybridTableDescriptor<K, V, Ca
   public static final String WRITE_TTL_MS = "writeTtl";
   public static final String CACHE_SIZE = "cacheSize";
   public static final String WRITE_AROUND = "writeAround";
+  public static final String READ_COALESCING = "readCoalescing";
+  public static final String REFRESH_AFTER_MS = "refreshAfter";
+  public static final String SERVE_STALE_ON_ERROR = "serveStaleOnError";
 
   private Duration readTtl;
   private Duration writeTtl;
@@ -52,6 +55,9 @@ public class CachingTableDescriptor<K, V> extends HybridTableDescriptor<K, V, Ca
   private TableDescriptor<K, V, ?> cache;
   private TableDescriptor<K, V, ?> table;
   private boolean isWriteAround;
+  private boolean isReadCoalescing;
+  private Duration refreshAfter;
+  private boolean isServeStaleOnError;
 
   /**
    * Constructs a table descriptor instance with internal cache
@@ -134,6 +140,43 @@ public class CachingTableDescriptor<K, V> extends HybridTableDescriptor<K, V, Ca
     return this;
   }
 
+  /**
+   * Specify if concurrent cache misses for the same key should share a single read of the
+   * actual table, instead of each issuing its own. This is useful when the same keys are
+   * read concurrently, e.g. with task.max.concurrency greater than 1. Only reads without
+   * additional arguments are coalesced.
+   * @return this descriptor
+   */
+  public CachingTableDescriptor<K, V> withReadCoalescing() {
+    this.isReadCoalescing = true;
+    return this;
+  }
+
+  /**
+   * Specify the interval after which cached records are refreshed ahead of their expiry, ie. a record
+   * read from the cache more than this duration after it was cached is served from the cache while
+   * it is read again from the actual table in the background. This avoids the latency spikes of reading
+   * hot keys from the actual table every time they expire. To be effective, it should be shorter than
+   * the write TTL.
+   * @param refreshAfter refresh interval
+   * @return this descriptor
+   */
+  public CachingTableDescriptor<K, V> withRefreshAfter(Duration refreshAfter) {
+    this.refreshAfter = refreshAfter;
+    return this;
+  }
+
+  /**
+   * Specify if cached records should still be served when their background refresh fails, until they
+   * expire from the cache. By default, records that fail to refresh are evicted from the cache, such that
+   * the failure surfaces on the next read. Requires {@link #withRefreshAfter(Duration)}.
+   * @return this descriptor
+   */
+  public CachingTableDescriptor<K, V> withServeStaleOnError() {
+    this.isServeStaleOnError = true;
+    return this;
+  }
+
   @Override
   public String getProviderFactoryClassName() {
     return PROVIDER_FACTORY_CLASS_NAME;
@@ -160,6 +203,15 @@ public class CachingTableDescriptor<K, V> extends HybridTableDescriptor<K, V, Ca
 
     addTableConfig(REAL_TABLE_ID, table.getTableId(), tableConfig);
     addTableConfig(WRITE_AROUND, String.valueOf(isWriteAround), tableConfig);
+    if (isReadCoalescing) {
+      addTableConfig(READ_COALESCING, String.valueOf(isReadCoalescing), tableConfig);
+    }
+    if (refreshAfter != null) {
+      addTableConfig(REFRESH_AFTER_MS, String.valueOf(refreshAfter.toMillis()), tableConfig);
+    }
+    if (isServeStaleOnError) {
+      addTableConfig(SERVE_STALE_ON_ERROR, String.valueOf(isServeStaleOnError), tableConfig);
+    }
 
     return Collections.unmodifiableMap(tableConfig);
   }
@@ -173,5 +225,12 @@ public class CachingTableDescriptor<K, V> extends HybridTableDescriptor<K, V, Ca
       Preconditions.checkArgument(readTtl == null && writeTtl == null && cacheSize == 0,
           "Invalid to specify both {cache} and {readTtl|writeTtl|cacheSize} at the same time.");
     }
+    if (refreshAfter != null) {
+      Preconditions.checkArgument(refreshAfter.toMillis() > 0, "refreshAfter must be at least 1 ms.");
+      Preconditions.checkArgument(writeTtl == null || refreshAfter.compareTo(writeTtl) < 0,
+          "refreshAfter must be shorter than writeTtl.");
+    }
+    Preconditions.checkArgument(!isServeStaleOnError || refreshAfter != null,
+        "serveStaleOnError requires refreshAfter to be specified.");
   }
 }
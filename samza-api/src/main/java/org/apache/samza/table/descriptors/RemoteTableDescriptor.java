@@ -81,6 +81,7 @@ public class RemoteTableDescriptor<K, V, U> extends BaseTableDescriptor<K, V, Re
   public static final String READ_RETRY_POLICY = "io.read.retry.policy";
   public static final String WRITE_RETRY_POLICY = "io.write.retry.policy";
   public static final String BATCH_PROVIDER = "io.batch.provider";
+  public static final String READ_COALESCING = "io.read.coalescing";
 
   // Input support for a specific remote store (optional)
   private TableReadFunction<K, V> readFn;
@@ -109,6 +110,9 @@ public class RemoteTableDescriptor<K, V, U> extends BaseTableDescriptor<K, V, Re
   private TableRetryPolicy readRetryPolicy;
   private TableRetryPolicy writeRetryPolicy;
 
+  // Indicate whether concurrent reads of the same key share a single read
+  private boolean isReadCoalescing;
+
   // By default execute future callbacks on the native client threads
   // ie. no additional thread pool for callbacks.
   private int asyncCallbackPoolSize = -1;
@@ -282,6 +286,18 @@ public class RemoteTableDescriptor<K, V, U> extends BaseTableDescriptor<K, V, Re
     return this;
   }
 
+  /**
+   * Coalesce concurrent reads of the same key, such that they share a single read of the remote store instead of
+   * each issuing its own. This reduces the load on the remote store for hot keys, e.g. when a task processes several
+   * messages for the same key concurrently with task.max.concurrency greater than 1. Only reads without additional
+   * arguments are coalesced. Callers sharing a read receive the same value instance, which they should not mutate.
+   * @return this table descriptor instance
+   */
+  public RemoteTableDescriptor<K, V, U> withReadCoalescing() {
+    this.isReadCoalescing = true;
+    return this;
+  }
+
   @Override
   public String getProviderFactoryClassName() {
     return PROVIDER_FACTORY_CLASS_NAME;
@@ -320,6 +336,10 @@ public class RemoteTableDescriptor<K, V, U> extends BaseTableDescriptor<K, V, Re
 
     addTableConfig(ASYNC_CALLBACK_POOL_SIZE, String.valueOf(asyncCallbackPoolSize), tableConfig);
 
+    if (isReadCoalescing) {
+      addTableConfig(READ_COALESCING, String.valueOf(isReadCoalescing), tableConfig);
+    }
+
     // Handle table reader function
     if (readFn != null) {
       addTableConfig(READ_FN, SerdeUtils.serialize("read function", readFn), tableConfig);
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.metrics;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.samza.util.Clock;
+import org.junit.Test;
+
+public class TestHdrReservoir {
+
+  private final Clock clock = mock(Clock.class);
+
+  @Test
+  public void testEmptySnapshot() {
+    HdrReservoir reservoir = new HdrReservoir(300, clock);
+    Snapshot snapshot = reservoir.getSnapshot();
+
+    assertEquals(0, snapshot.getSize());
+    assertEquals(0, snapshot.getMin());
+    assertEquals(0, snapshot.getMax());
+    assertEquals(0, snapshot.getAverage(), 0);
+    assertEquals(0, snapshot.getValue(0.99));
+    assertTrue(snapshot.getValues().isEmpty());
+  }
+
+  @Test
+  public void testSnapshotPercentiles() {
+    HdrReservoir reservoir = new HdrReservoir(300, clock);
+    for (long value = 1; value <= 100000; value++) {
+      reservoir.update(value * 1000);
+    }
+
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(100000, snapshot.getSize());
+    assertEquals(100000, reservoir.size());
+    assertEquals(1000, snapshot.getMin());
+    assertEquals(100000000, snapshot.getMax());
+    assertEquals(50000500, snapshot.getAverage(), 0);
+    assertEquals(50000000, snapshot.getValue(0.5), 50000000 * 0.01);
+    assertEquals(99000000, snapshot.getValue(0.99), 99000000 * 0.01);
+    assertEquals(99900000, snapshot.getValue(0.999), 99900000 * 0.01);
+    assertEquals(1000, snapshot.getValue(0));
+    assertEquals(100000000, snapshot.getValue(1));
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    HdrReservoir reservoir = new HdrReservoir(300, clock);
+    reservoir.update(3L);
+    reservoir.update(1L);
+    reservoir.update(2L);
+
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(3, snapshot.getSize());
+    assertEquals(1, snapshot.getValue(0.2));
+    assertEquals(2, snapshot.getValue(0.5));
+    assertEquals(3, snapshot.getValue(0.9));
+    assertTrue(snapshot.getValues().containsAll(java.util.Arrays.asList(1L, 2L, 3L)));
+  }
+
+  @Test
+  public void testValuesAboveHighestTrackableValue() {
+    HdrReservoir reservoir = new HdrReservoir(300, 1000, 2, clock);
+    reservoir.update(10L);
+    reservoir.update(Long.MAX_VALUE / 4);
+
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(2, snapshot.getSize());
+    assertEquals(Long.MAX_VALUE / 4, snapshot.getMax());
+    assertEquals(10, snapshot.getValue(0.5));
+  }
+
+  @Test
+  public void testIntervalRotation() {
+    when(clock.currentTimeMillis()).thenReturn(0L);
+    HdrReservoir reservoir = new HdrReservoir(300, clock);
+    reservoir.update(1L);
+
+    // the first interval is still in the window, as the previous interval
+    when(clock.currentTimeMillis()).thenReturn(150L);
+    reservoir.update(2L);
+    assertEquals(2, reservoir.size());
+    assertEquals(1, reservoir.getSnapshot().getMin());
+
+    // the first interval is out of the window
+    when(clock.currentTimeMillis()).thenReturn(300L);
+    reservoir.update(3L);
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(2, snapshot.getSize());
+    assertEquals(2, snapshot.getMin());
+    assertEquals(3, snapshot.getMax());
+
+    // both intervals are out of the window
+    when(clock.currentTimeMillis()).thenReturn(1000L);
+    assertEquals(0, reservoir.size());
+    reservoir.update(4L);
+    assertEquals(4, reservoir.getSnapshot().getMin());
+  }
+
+  @Test
+  public void testCodahaleReservoir() {
+    com.codahale.metrics.Reservoir reservoir = new HdrReservoir(300, clock).asCodahaleReservoir();
+    for (long value = 1; value <= 100; value++) {
+      reservoir.update(value);
+    }
+
+    com.codahale.metrics.Snapshot snapshot = reservoir.getSnapshot();
+    assertEquals(100, snapshot.size());
+    assertEquals(50, snapshot.getMedian(), 0);
+    assertEquals(99, snapshot.get99thPercentile(), 0);
+    assertEquals(50.5, snapshot.getMean(), 0);
+    assertEquals(29.01, snapshot.getStdDev(), 0.01);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSignificantDigits() {
+    new HdrReservoir(300, 1000, 4, clock);
+  }
+}
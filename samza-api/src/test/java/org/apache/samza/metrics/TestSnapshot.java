@@ -44,4 +44,21 @@ public class TestSnapshot {
     assertEquals(0, emptySnapshot.getSum(), 0);
     assertEquals(0, emptySnapshot.getSize());
   }
+
+  @Test
+  public void testGetValue() {
+    Snapshot snapshot = new Snapshot(Arrays.asList(5L, 1L, 4L, 2L, 3L));
+    assertEquals(1, snapshot.getValue(0));
+    assertEquals(1, snapshot.getValue(0.2));
+    assertEquals(3, snapshot.getValue(0.5));
+    assertEquals(5, snapshot.getValue(0.99));
+    assertEquals(5, snapshot.getValue(1));
+
+    assertEquals(0, new Snapshot(new ArrayList<>()).getValue(0.5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetValueWithInvalidQuantile() {
+    new Snapshot(Arrays.asList(1L, 2L)).getValue(1.5);
+  }
 }
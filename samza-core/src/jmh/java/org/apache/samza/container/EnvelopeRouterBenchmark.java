@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.container;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.samza.Partition;
+import org.apache.samza.system.IncomingMessageEnvelope;
+import org.apache.samza.system.SystemStreamPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares routing watermark messages to the task workers with the {@link EnvelopeRouter} index against the scan over
+ * all the SSPs previously done by the {@link RunLoop} when elasticity is enabled.
+ *
+ * Usage: ./gradlew samza-core_2.12:jmh -PjmhIncludes=EnvelopeRouterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeRouterBenchmark {
+  private static final int ELASTICITY_FACTOR = 2;
+
+  @Param({"10000"})
+  private int numSsps;
+
+  private Map<SystemStreamPartition, List<Object>> sspToWorkers;
+  private EnvelopeRouter<Object> router;
+  private IncomingMessageEnvelope[] watermarks;
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    int numPartitions = numSsps / ELASTICITY_FACTOR;
+    sspToWorkers = new HashMap<>();
+    watermarks = new IncomingMessageEnvelope[numPartitions];
+    for (int i = 0; i < numPartitions; i++) {
+      SystemStreamPartition ssp = new SystemStreamPartition("system", "stream", new Partition(i));
+      for (int keyBucket = 0; keyBucket < ELASTICITY_FACTOR; keyBucket++) {
+        List<Object> workers = new ArrayList<>();
+        workers.add(new Object());
+        sspToWorkers.put(new SystemStreamPartition(ssp, keyBucket), workers);
+      }
+      watermarks[i] = IncomingMessageEnvelope.buildWatermarkEnvelope(ssp, i);
+    }
+    router = new EnvelopeRouter<>(sspToWorkers, ELASTICITY_FACTOR);
+  }
+
+  @Benchmark
+  public List<Object> indexLookup() {
+    return router.getWorkers(nextWatermark());
+  }
+
+  @Benchmark
+  public List<Object> scanAllSsps() {
+    SystemStreamPartition sspOfEnvelope = nextWatermark().getSystemStreamPartition(ELASTICITY_FACTOR);
+    return sspToWorkers.entrySet()
+        .stream()
+        .filter(sspToTask -> sspToTask.getKey().getSystemStream().equals(sspOfEnvelope.getSystemStream())
+            && sspToTask.getKey().getPartition().equals(sspOfEnvelope.getPartition()))
+        .map(sspToWorker -> sspToWorker.getValue())
+        .flatMap(Collection::stream)
+        .collect(Collectors.toList());
+  }
+
+  private IncomingMessageEnvelope nextWatermark() {
+    IncomingMessageEnvelope watermark = watermarks[next];
+    next = (next + 1) % watermarks.length;
+    return watermark;
+  }
+}
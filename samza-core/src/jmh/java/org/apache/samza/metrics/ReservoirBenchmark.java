@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares recording durations into the {@link HdrReservoir} against the {@link SlidingTimeWindowReservoir}, as the
+ * {@link org.apache.samza.container.RunLoop} timers do for every message, and taking the snapshots read by the
+ * metrics reporters. Run with "-prof gc" to compare the allocation rates as well.
+ *
+ * Usage: ./gradlew samza-core_2.12:jmh -PjmhIncludes=ReservoirBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservoirBenchmark {
+
+  @Param({"SLIDING_TIME_WINDOW", "HDR_HISTOGRAM"})
+  private ReservoirType reservoirType;
+
+  private Reservoir reservoir;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    reservoir = reservoirType.newReservoir();
+    for (int i = 0; i < 100000; i++) {
+      update();
+    }
+  }
+
+  @Benchmark
+  public void update() {
+    // durations between 1 us and 10 ms, in nanoseconds
+    reservoir.update(ThreadLocalRandom.current().nextLong(1000, 10000000));
+  }
+
+  @Benchmark
+  public long snapshotP99() {
+    return reservoir.getSnapshot().getValue(0.99);
+  }
+}
@@ -51,6 +51,20 @@ public class BlobStoreConfig extends MapConfig {
   // machine with new gid/uid or if gid/uid changes due to host migration
   public static final String COMPARE_FILE_OWNERS_ON_RESTORE = PREFIX + "compare.file.owners.on.restore";
   public static final boolean DEFAULT_COMPARE_FILE_OWNERS_ON_RESTORE = true;
+  // Whether to split non-SST files into content defined chunks on upload, so that only the changed chunks of
+  // modified files are uploaded again. SST files are immutable and are always uploaded whole.
+  public static final String CHUNKING_ENABLED = PREFIX + "chunking.enabled";
+  public static final boolean DEFAULT_CHUNKING_ENABLED = false;
+  // Expected average chunk size in bytes. Must be a power of two. Chunks are between 1/4x and 4x this size.
+  public static final String CHUNKING_AVG_CHUNK_SIZE_BYTES = PREFIX + "chunking.avg.chunk.size.bytes";
+  public static final int DEFAULT_CHUNKING_AVG_CHUNK_SIZE_BYTES = 1024 * 1024; // 1 MB
+  // Configs related to the local filesystem blob store, i.e. LocalBlobStoreManagerFactory
+  private static final String LOCAL_PREFIX = PREFIX + "local.";
+  // Root directory for the blobs. May be a shared (e.g. NFS) mount to restore state on other hosts.
+  public static final String LOCAL_ROOT_DIR = LOCAL_PREFIX + "root.dir";
+  // How long blobs are retained before their TTL is removed, and deleted blobs are retained before being compacted
+  public static final String LOCAL_TTL_MS = LOCAL_PREFIX + "ttl.ms";
+  public static final long DEFAULT_LOCAL_TTL_MS = 24 * 60 * 60 * 1000; // 1 day
 
   public BlobStoreConfig(Config config) {
     super(config);
@@ -75,6 +89,22 @@ public class BlobStoreConfig extends MapConfig {
     return retryPolicyConfig;
   }
 
+  public boolean isChunkingEnabled() {
+    return getBoolean(CHUNKING_ENABLED, DEFAULT_CHUNKING_ENABLED);
+  }
+
+  public int getChunkingAvgChunkSizeBytes() {
+    return getInt(CHUNKING_AVG_CHUNK_SIZE_BYTES, DEFAULT_CHUNKING_AVG_CHUNK_SIZE_BYTES);
+  }
+
+  public String getLocalRootDir() {
+    return get(LOCAL_ROOT_DIR);
+  }
+
+  public long getLocalTtlMs() {
+    return getLong(LOCAL_TTL_MS, DEFAULT_LOCAL_TTL_MS);
+  }
+
   public boolean shouldCompareFileOwnersOnRestore() {
     return getBoolean(COMPARE_FILE_OWNERS_ON_RESTORE, DEFAULT_COMPARE_FILE_OWNERS_ON_RESTORE);
   }
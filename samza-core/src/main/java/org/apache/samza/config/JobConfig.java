@@ -201,6 +201,16 @@ public class JobConfig extends MapConfig {
 
   public static final boolean DEFAULT_JOB_OPERATOR_FRAMEWORK_EXECUTOR_ENABLED = false;
 
+  // fuse chains of consecutive map, filter and flatMap operators into a single operator
+  public static final String JOB_OPERATOR_FUSION_ENABLED = "job.operator.fusion.enabled";
+
+  public static final boolean DEFAULT_JOB_OPERATOR_FUSION_ENABLED = false;
+
+  // number of open window panes per window operator whose state is cached in memory
+  public static final String JOB_OPERATOR_WINDOW_STATE_CACHE_SIZE = "job.operator.window.state.cache.size";
+
+  public static final int DEFAULT_JOB_OPERATOR_WINDOW_STATE_CACHE_SIZE = 10000;
+
   public JobConfig(Config config) {
     super(config);
   }
@@ -536,4 +546,12 @@ public class JobConfig extends MapConfig {
   public boolean getOperatorFrameworkExecutorEnabled() {
     return getBoolean(JOB_OPERATOR_FRAMEWORK_EXECUTOR_ENABLED, DEFAULT_JOB_OPERATOR_FRAMEWORK_EXECUTOR_ENABLED);
   }
+
+  public boolean getOperatorFusionEnabled() {
+    return getBoolean(JOB_OPERATOR_FUSION_ENABLED, DEFAULT_JOB_OPERATOR_FUSION_ENABLED);
+  }
+
+  public int getWindowStateCacheSize() {
+    return getInt(JOB_OPERATOR_WINDOW_STATE_CACHE_SIZE, DEFAULT_JOB_OPERATOR_WINDOW_STATE_CACHE_SIZE);
+  }
 }
\ No newline at end of file
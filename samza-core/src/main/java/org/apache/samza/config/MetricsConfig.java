@@ -18,11 +18,14 @@
  */
 package org.apache.samza.config;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.apache.samza.metrics.ReservoirType;
+import org.apache.samza.metrics.TimerSampler;
 
 
 /**
@@ -36,6 +39,13 @@ public class MetricsConfig extends MapConfig {
   public static final String METRICS_TIMER_ENABLED = "metrics.timer.enabled";
   // This flag enables more timer metrics, e.g. handle-message-ns in an operator, for debugging purpose
   public static final String METRICS_TIMER_DEBUG_ENABLED = "metrics.timer.debug.enabled";
+  // How the per-message timers are updated, one of {@link TimerSampler.Mode}. Overrides METRICS_TIMER_ENABLED if set.
+  public static final String METRICS_TIMER_MODE = "metrics.timer.mode";
+  // In the sampled timer mode, one in every this many messages is timed
+  public static final String METRICS_TIMER_SAMPLE_RATE = "metrics.timer.sample.rate";
+  static final int DEFAULT_METRICS_TIMER_SAMPLE_RATE = 100;
+  // The kind of reservoir backing timers and histograms, one of {@link ReservoirType}
+  public static final String METRICS_RESERVOIR_TYPE = "metrics.reservoir.type";
 
   // The following configs are applicable only to {@link MetricsSnapshotReporter}
   // added here only to maintain backwards compatibility of config
@@ -76,10 +86,41 @@ public class MetricsConfig extends MapConfig {
   }
 
   public boolean getMetricsTimerEnabled() {
-    return getBoolean(METRICS_TIMER_ENABLED, true);
+    return getMetricsTimerMode() != TimerSampler.Mode.OFF;
+  }
+
+  public TimerSampler.Mode getMetricsTimerMode() {
+    String mode = get(METRICS_TIMER_MODE);
+    if (mode == null) {
+      return getBoolean(METRICS_TIMER_ENABLED, true) ? TimerSampler.Mode.FULL : TimerSampler.Mode.OFF;
+    }
+    return getEnumValue(METRICS_TIMER_MODE, mode, TimerSampler.Mode.class);
+  }
+
+  public int getMetricsTimerSampleRate() {
+    return getInt(METRICS_TIMER_SAMPLE_RATE, DEFAULT_METRICS_TIMER_SAMPLE_RATE);
   }
 
   public boolean getMetricsTimerDebugEnabled() {
     return getBoolean(METRICS_TIMER_DEBUG_ENABLED, false);
   }
+
+  /**
+   * Parses the value of the config {@code key} as a constant of {@code enumType}, ignoring case.
+   *
+   * @throws ConfigException if the value is not the name of a constant of {@code enumType}
+   */
+  private static <E extends Enum<E>> E getEnumValue(String key, String value, Class<E> enumType) {
+    try {
+      return Enum.valueOf(enumType, value.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new ConfigException(String.format("Invalid value %s for %s. Allowed values are %s.", value, key,
+          Arrays.toString(enumType.getEnumConstants())), e);
+    }
+  }
+
+  public ReservoirType getMetricsReservoirType() {
+    return getEnumValue(METRICS_RESERVOIR_TYPE, get(METRICS_RESERVOIR_TYPE, ReservoirType.SLIDING_TIME_WINDOW.name()),
+        ReservoirType.class);
+  }
 }
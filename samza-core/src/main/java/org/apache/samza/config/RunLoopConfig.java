@@ -70,6 +70,14 @@ public class RunLoopConfig extends MapConfig {
     return taskConfig.getMaxIdleMs();
   }
 
+  public int getBatchSize() {
+    return taskConfig.getRunLoopBatchSize();
+  }
+
+  public boolean lockFreeSignalEnabled() {
+    return taskConfig.getRunLoopLockFreeSignalEnabled();
+  }
+
   public long getMaxThrottlingDelayMs() {
     return getLong(CONTAINER_DISK_QUOTA_DELAY_MAX_MS, TimeUnit.SECONDS.toMillis(1));
   }
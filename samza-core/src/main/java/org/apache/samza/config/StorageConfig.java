@@ -93,6 +93,12 @@ public class StorageConfig extends MapConfig {
 
   // Internal config to clean storeDirs of a store on container start. This is used to benchmark bootstrap performance.
   static final String CLEAN_LOGGED_STOREDIRS_ON_START = STORE_PREFIX + "%s.clean.on.container.start";
+  // number of changelog messages buffered between the fetch thread and the restoring thread, 0 to restore on one thread
+  static final String RESTORE_PIPELINE_BUFFER_SIZE = STORE_PREFIX + "%s.restore.pipeline.buffer.size";
+  static final int DEFAULT_RESTORE_PIPELINE_BUFFER_SIZE = 0;
+  // container-wide memory budget for the off-heap caches of the stores which enable it
+  public static final String OFF_HEAP_CACHE_SIZE_BYTES = STORE_PREFIX + "off.heap.cache.size.bytes";
+  public static final long DEFAULT_OFF_HEAP_CACHE_SIZE_BYTES = 256 * 1024 * 1024L;
 
   public StorageConfig(Config config) {
     super(config);
@@ -383,4 +389,21 @@ public class StorageConfig extends MapConfig {
   public boolean cleanLoggedStoreDirsOnStart(String storeName) {
     return getBoolean(String.format(CLEAN_LOGGED_STOREDIRS_ON_START, storeName), false);
   }
+
+  /**
+   * Helper method to get the number of changelog messages to buffer between fetching them and writing them to the
+   * store during restore. Returns 0 if the messages should be fetched and written on the same thread.
+   */
+  public int getRestorePipelineBufferSize(String storeName) {
+    int bufferSize = getInt(String.format(RESTORE_PIPELINE_BUFFER_SIZE, storeName), DEFAULT_RESTORE_PIPELINE_BUFFER_SIZE);
+    checkArgument(bufferSize >= 0, String.format(RESTORE_PIPELINE_BUFFER_SIZE, storeName) + " must not be negative.");
+    return bufferSize;
+  }
+
+  /**
+   * Helper method to get the number of bytes that the off-heap caches of all the stores in a container may use together.
+   */
+  public long getOffHeapCacheSizeBytes() {
+    return getLong(OFF_HEAP_CACHE_SIZE_BYTES, DEFAULT_OFF_HEAP_CACHE_SIZE_BYTES);
+  }
 }
@@ -104,6 +104,11 @@ public class TaskConfig extends MapConfig {
   // maximum time to wait for a task worker to complete when there are no new messages to handle
   public static final String MAX_IDLE_MS = "task.max.idle.ms";
   static final long DEFAULT_MAX_IDLE_MS = 10L;
+  // max number of envelopes per input SSP handed to the tasks in a single run loop iteration
+  public static final String RUN_LOOP_BATCH_SIZE = "task.run.loop.batch.size";
+  static final int DEFAULT_RUN_LOOP_BATCH_SIZE = 1;
+  // hand off task completions to the run loop thread with park/unpark instead of a shared monitor
+  public static final String RUN_LOOP_LOCK_FREE_SIGNAL_ENABLED = "task.run.loop.lock.free.signal.enabled";
   /**
    * Samza's container polls for more messages under two conditions. The first
    * condition arises when there are simply no remaining buffered messages to
@@ -249,6 +254,14 @@ public class TaskConfig extends MapConfig {
     return getLong(MAX_IDLE_MS, DEFAULT_MAX_IDLE_MS);
   }
 
+  public int getRunLoopBatchSize() {
+    return getInt(RUN_LOOP_BATCH_SIZE, DEFAULT_RUN_LOOP_BATCH_SIZE);
+  }
+
+  public boolean getRunLoopLockFreeSignalEnabled() {
+    return getBoolean(RUN_LOOP_LOCK_FREE_SIGNAL_ENABLED, false);
+  }
+
   /**
    * Create the checkpoint manager
    *
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.samza.system.IncomingMessageEnvelope;
+import org.apache.samza.system.MessageType;
+import org.apache.samza.system.SystemStreamPartition;
+
+
+/**
+ * Routes the envelopes chosen by the {@link RunLoop} to the workers of the tasks consuming them.
+ *
+ * When elasticity is enabled, the tasks consume a key bucket of an SSP, and end-of-stream, drain and watermark
+ * messages need to go to the workers of all the key buckets of the SSP. Since the SSPs and tasks assigned to the
+ * container do not change during the run loop life time, the workers are also indexed by the SSP without key bucket
+ * upfront, so routing a control message is a single lookup instead of a scan over all the SSPs.
+ *
+ * @param <W> type of the task workers
+ */
+class EnvelopeRouter<W> {
+  private final int elasticityFactor;
+  private final Map<SystemStreamPartition, List<W>> sspToWorkers;
+  private final Map<SystemStreamPartition, List<W>> sspWithoutKeyBucketToWorkers;
+
+  EnvelopeRouter(Map<SystemStreamPartition, List<W>> sspToWorkers, int elasticityFactor) {
+    this.elasticityFactor = elasticityFactor;
+    this.sspToWorkers = sspToWorkers;
+    this.sspWithoutKeyBucketToWorkers = elasticityFactor > 1
+        ? Collections.unmodifiableMap(indexBySspWithoutKeyBucket(sspToWorkers))
+        : Collections.emptyMap();
+  }
+
+  /**
+   * when elasticity is not enabled, fetch the workers from sspToWorkers using envelope.getSSP()
+   * when elasticity is enabled,
+   *       sspToWorkers has workers for a SSP which has keyBucket
+   *       hence need to use envelop.getSSP(elasticityFactor)
+   *       Additionally, when envelope is EndOfStream or Watermark or Drain, it needs to be sent to all works for the ssp
+   *       irrespective of keyBucket
+   * @param envelope envelope to route
+   * @return list of workers for the envelope, or null if the envelope is not consumed by any worker
+   */
+  List<W> getWorkers(IncomingMessageEnvelope envelope) {
+    if (elasticityFactor <= 1) {
+      return sspToWorkers.get(envelope.getSystemStreamPartition());
+    }
+
+    // if envelope is end of stream or watermark or drain, it needs to be routed to all tasks consuming the ssp irresp
+    // of keybucket
+    MessageType messageType = MessageType.of(envelope.getMessage());
+    if (envelope.isEndOfStream()
+        || envelope.isDrain()
+        || messageType == MessageType.END_OF_STREAM
+        || messageType == MessageType.DRAIN
+        || messageType == MessageType.WATERMARK) {
+      List<W> workers = sspWithoutKeyBucketToWorkers.get(withoutKeyBucket(envelope.getSystemStreamPartition()));
+      return workers != null ? workers : Collections.emptyList();
+    }
+
+    return sspToWorkers.get(envelope.getSystemStreamPartition(elasticityFactor));
+  }
+
+  private static <W> Map<SystemStreamPartition, List<W>> indexBySspWithoutKeyBucket(
+      Map<SystemStreamPartition, List<W>> sspToWorkers) {
+    Map<SystemStreamPartition, List<W>> index = new HashMap<>();
+    sspToWorkers.forEach((ssp, workers) ->
+        index.computeIfAbsent(withoutKeyBucket(ssp), k -> new ArrayList<>()).addAll(workers));
+    index.replaceAll((ssp, workers) -> Collections.unmodifiableList(workers));
+    return index;
+  }
+
+  private static SystemStreamPartition withoutKeyBucket(SystemStreamPartition ssp) {
+    return ssp.getKeyBucket() == -1 ? ssp : new SystemStreamPartition(ssp.getSystemStream(), ssp.getPartition());
+  }
+}
@@ -21,7 +21,6 @@ package org.apache.samza.container;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,12 +32,14 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 import org.apache.samza.SamzaException;
+import org.apache.samza.config.MetricsConfig;
 import org.apache.samza.config.RunLoopConfig;
+import org.apache.samza.metrics.TimerSampler;
 import org.apache.samza.system.DrainMessage;
 import org.apache.samza.system.IncomingMessageEnvelope;
-import org.apache.samza.system.MessageType;
 import org.apache.samza.system.SystemConsumers;
 import org.apache.samza.system.SystemStreamPartition;
 import org.apache.samza.task.CoordinatorRequests;
@@ -72,10 +73,13 @@ public class RunLoop implements Runnable, Throttleable {
   private final List<AsyncTaskWorker> taskWorkers;
   private final SystemConsumers consumerMultiplexer;
   private final Map<SystemStreamPartition, List<AsyncTaskWorker>> sspToTaskWorkerMapping;
+  private final EnvelopeRouter<AsyncTaskWorker> envelopeRouter;
   private final ExecutorService threadPool;
   private final CoordinatorRequests coordinatorRequests;
   private final Object latch;
   private final int maxConcurrency;
+  private final int batchSize;
+  private final Map<SystemStreamPartition, Integer> sspBatchSizes = new HashMap<>();
   private final long windowMs;
   private final long commitMs;
   private final long messageCallbackTimeoutMs;
@@ -90,8 +94,13 @@ public class RunLoop implements Runnable, Throttleable {
   private volatile boolean shutdownNow = false;
   private volatile Throwable throwable = null;
   private final HighResolutionClock clock;
+  private final TimerSampler runLoopTimerSampler;
+  private final TimerSampler processTimerSampler;
   private boolean isAsyncCommitEnabled;
   private volatile boolean runLoopResumedSinceLastChecked;
+  private final boolean isLockFreeSignalEnabled;
+  private volatile boolean runLoopWaiting = false;
+  private volatile Thread runLoopThread;
   private final int elasticityFactor;
   private final String runId;
   private final boolean isHighLevelApiJob;
@@ -135,7 +144,18 @@ public class RunLoop implements Runnable, Throttleable {
     this.maxIdleMs = config.getMaxIdleMs();
     log.info("Got max idle in milliseconds: {}.", maxIdleMs);
 
+    this.batchSize = Math.max(config.getBatchSize(), 1);
+    log.info("Got run loop batch size: {}.", batchSize);
+
+    this.isLockFreeSignalEnabled = config.lockFreeSignalEnabled();
+    log.info("Got lock free signal enabled={}.", isLockFreeSignalEnabled);
+
     this.clock = clock;
+    MetricsConfig metricsConfig = new MetricsConfig(config);
+    this.runLoopTimerSampler = new TimerSampler(metricsConfig);
+    this.processTimerSampler = new TimerSampler(metricsConfig);
+    log.info("Got timer mode: {}, sample rate: {}.", metricsConfig.getMetricsTimerMode(),
+        metricsConfig.getMetricsTimerSampleRate());
     // assign runId before creating workers. As the inner AsyncTaskWorker class is not static, it relies on
     // the outer class fields to be init first
     this.runId = config.getRunId();
@@ -167,6 +187,7 @@ public class RunLoop implements Runnable, Throttleable {
     }
     // Partions and tasks assigned to the container will not change during the run loop life time
     this.sspToTaskWorkerMapping = Collections.unmodifiableMap(getSspToAsyncTaskWorkerMap(runLoopTasks, workers));
+    this.envelopeRouter = new EnvelopeRouter<>(sspToTaskWorkerMapping, elasticityFactor);
     this.taskWorkers = Collections.unmodifiableList(new ArrayList<>(workers.values()));
   }
 
@@ -203,37 +224,58 @@ public class RunLoop implements Runnable, Throttleable {
    */
   @Override
   public void run() {
+    runLoopThread = Thread.currentThread();
     try {
       for (AsyncTaskWorker taskWorker : taskWorkers) {
         taskWorker.init();
       }
 
       long prevNs = clock.nanoTime();
+      boolean prevSampled = true;
 
       while (!shutdownNow && throwable == null) {
-        long startNs = clock.nanoTime();
-
-        IncomingMessageEnvelope envelope = chooseEnvelope();
+        // the clock is only read in the iterations that are timed
+        boolean sampled = runLoopTimerSampler.sample();
+        long startNs = sampled ? clock.nanoTime() : 0L;
+
+        IncomingMessageEnvelope envelope = null;
+        boolean hasNewWork;
+        if (batchSize > 1) {
+          hasNewWork = chooseAndInsertEnvelopes() > 0;
+        } else {
+          envelope = chooseEnvelope();
+          hasNewWork = envelope != null;
+        }
 
-        long chooseNs = clock.nanoTime();
-        containerMetrics.chooseNs().update(chooseNs - startNs);
+        long chooseNs = 0L;
+        if (sampled) {
+          chooseNs = clock.nanoTime();
+          containerMetrics.chooseNs().update(chooseNs - startNs);
+        }
 
-        blockIfBusyOrNoNewWork(envelope);
+        blockIfBusyOrNoNewWork(hasNewWork);
 
-        long blockNs = clock.nanoTime();
-        containerMetrics.blockNs().update(blockNs - chooseNs);
+        long blockNs = 0L;
+        if (sampled) {
+          blockNs = clock.nanoTime();
+          containerMetrics.blockNs().update(blockNs - chooseNs);
+        }
 
         runTasks(envelope);
 
-        long currentNs = clock.nanoTime();
-        long activeNs = currentNs - blockNs;
-        long totalNs = currentNs - prevNs;
-        prevNs = currentNs;
+        if (sampled) {
+          long currentNs = clock.nanoTime();
+          long activeNs = currentNs - blockNs;
+          // the previous iteration only ended at prevNs if it was timed as well
+          long totalNs = currentNs - (prevSampled ? prevNs : startNs);
+          prevNs = currentNs;
 
-        if (totalNs != 0) {
-          // totalNs is not 0 if timer metrics are enabled
-          containerMetrics.utilization().set(((double) activeNs) / totalNs);
+          if (totalNs != 0) {
+            // totalNs is not 0 if timer metrics are enabled
+            containerMetrics.utilization().set(((double) activeNs) / totalNs);
+          }
         }
+        prevSampled = sampled;
       }
 
       /*
@@ -290,82 +332,103 @@ public class RunLoop implements Runnable, Throttleable {
   }
 
   /**
-   * Insert the envelope into the task pending queues and run all the tasks
+   * Chooses envelopes from messageChooser in batch mode and inserts them into the task pending queues.
+   * Unlike {@link #chooseEnvelope()}, the chooser is updated for an SSP right after its envelope is chosen, as long as
+   * fewer than batchSize envelopes have been chosen for the SSP in this iteration. The last envelope chosen for an SSP
+   * is left to the task to update the chooser when it is fetched, so the SSP level flow control still holds, with at
+   * most batchSize pending envelopes per SSP instead of one. End-of-stream and drain envelopes are never updated
+   * eagerly since the tasks update the chooser for them on their own.
+   * Envelope metrics are updated once per batch.
+   * @return number of envelopes chosen
+   */
+  private int chooseAndInsertEnvelopes() {
+    int maxEnvelopes = batchSize * Math.max(sspToTaskWorkerMapping.size(), 1);
+    int numEnvelopes = 0;
+    int numSkippedEnvelopes = 0;
+    sspBatchSizes.clear();
+
+    while (numEnvelopes < maxEnvelopes && !shutdownNow) {
+      IncomingMessageEnvelope envelope = consumerMultiplexer.choose(false);
+      if (envelope == null) {
+        break;
+      }
+      log.trace("Choose envelope ssp {} offset {} for processing",
+          envelope.getSystemStreamPartition(elasticityFactor), envelope.getOffset());
+      numEnvelopes++;
+
+      PendingEnvelope pendingEnvelope = new PendingEnvelope(envelope);
+      if (!insertEnvelope(pendingEnvelope)) {
+        numSkippedEnvelopes++;
+      } else if (!envelope.isEndOfStream() && !envelope.isDrain()) {
+        SystemStreamPartition ssp = envelope.getSystemStreamPartition();
+        if (sspBatchSizes.merge(ssp, 1, Integer::sum) < batchSize && pendingEnvelope.markProcessed()) {
+          consumerMultiplexer.tryUpdate(ssp);
+        }
+      }
+    }
+
+    if (numEnvelopes > 0) {
+      containerMetrics.envelopes().inc(numEnvelopes - numSkippedEnvelopes);
+      containerMetrics.skippedEnvelopes().inc(numSkippedEnvelopes);
+      containerMetrics.envelopeBatches().inc();
+    } else {
+      log.trace("No envelope is available");
+      containerMetrics.nullEnvelopes().inc();
+    }
+    return numEnvelopes;
+  }
+
+  /**
+   * Insert the envelope into the task pending queues and run all the tasks.
+   * In batch mode, the envelopes are already inserted, and each task is run until it has processed up to
+   * batchSize envelopes or it is no longer able to process.
    */
   private void runTasks(IncomingMessageEnvelope envelope) {
     if (!shutdownNow) {
-      if (envelope != null) {
-        PendingEnvelope pendingEnvelope = new PendingEnvelope(envelope);
-        // when elasticity is enabled
-        // the tasks actually consume a keyBucket of the ssp.
-        // hence use the SSP with keybucket to find the worker(s) for the envelope
-        List<AsyncTaskWorker> listOfWorkersForEnvelope = getWorkersForEnvelope(envelope);
-        if (listOfWorkersForEnvelope != null) {
-          for (AsyncTaskWorker worker : listOfWorkersForEnvelope) {
-            worker.state.insertEnvelope(pendingEnvelope);
-          }
-        } else if (elasticityFactor > 1) {
-          // is listOfWorkersForEnvelope is null and elascity factor > 1 (aka enabled), then
-          // this condition happens when only a subset of keyBuckets of an SSP are being consumed at this container
-          // but not all keyBuckets of an SSP are consumed, therefore, we fake the consumption of the envelope,
-          // and decrement the metric, since this envelope's processing is skipped.
-          // if this update is not done for the SSP then the unprocessed envelopes from other keyBuckets
-          // will prevent the consumerMultiplexer from polling as it sees envelopes available for consumption.
-          consumerMultiplexer.tryUpdate(envelope.getSystemStreamPartition(elasticityFactor));
-          log.trace("updating the system consumers for ssp keyBucket {} not processed by this runloop",
-              envelope.getSystemStreamPartition(elasticityFactor));
-          // since this envelope is not processed by the container, need to decrement the # envelopes metric
-          // # envelopes metric was incremented when the envelope was returned by the SystemConsumers
-          containerMetrics.envelopes().dec();
-          containerMetrics.skippedEnvelopes().inc();
-        }
+      if (envelope != null && !insertEnvelope(new PendingEnvelope(envelope))) {
+        // since this envelope is not processed by the container, need to decrement the # envelopes metric
+        // # envelopes metric was incremented when the envelope was returned by the SystemConsumers
+        containerMetrics.envelopes().dec();
+        containerMetrics.skippedEnvelopes().inc();
       }
 
       for (AsyncTaskWorker worker: taskWorkers) {
-        worker.run();
+        int numProcessed = 0;
+        WorkerOp op;
+        do {
+          op = worker.run();
+        } while (op == WorkerOp.PROCESS && ++numProcessed < batchSize);
       }
     }
   }
 
   /**
-   * when elasticity is not enabled, fetch the workers from sspToTaskWorkerMapping using envelope.getSSP()
-   * when elasticity is enabled,
-   *       sspToTaskWorkerMapping has workers for a SSP which has keyBucket
-   *       hence need to use envelop.getSSP(elasticityFactor)
-   *       Additionally, when envelope is EndOfStream or Watermark or Drain, it needs to be sent to all works for the ssp
-   *       irrespective of keyBucket
-   * @param envelope
-   * @return list of workers for the envelope
+   * Insert the envelope into the pending queues of the tasks consuming it.
+   * @param pendingEnvelope envelope to insert
+   * @return false if the envelope is skipped since none of the tasks in this container consume it, true otherwise
    */
-  private List<AsyncTaskWorker> getWorkersForEnvelope(IncomingMessageEnvelope envelope) {
-    if (elasticityFactor <= 1) {
-      return sspToTaskWorkerMapping.get(envelope.getSystemStreamPartition());
-    }
-
-    final SystemStreamPartition sspOfEnvelope = envelope.getSystemStreamPartition(elasticityFactor);
-    List<AsyncTaskWorker> listOfWorkersForEnvelope = null;
-
-    // if envelope is end of stream or watermark or drain, it needs to be routed to all tasks consuming the ssp irresp
-    // of keybucket
-    MessageType messageType = MessageType.of(envelope.getMessage());
-    if (envelope.isEndOfStream()
-        || envelope.isDrain()
-        || messageType == MessageType.END_OF_STREAM
-        || messageType == MessageType.DRAIN
-        || messageType == MessageType.WATERMARK) {
-
-      //sspToTaskWorkerMapping has ssps with keybucket so extract and check only system, stream and partition and ignore the keybucket
-      listOfWorkersForEnvelope = sspToTaskWorkerMapping.entrySet()
-          .stream()
-          .filter(sspToTask -> sspToTask.getKey().getSystemStream().equals(sspOfEnvelope.getSystemStream())
-              && sspToTask.getKey().getPartition().equals(sspOfEnvelope.getPartition()))
-          .map(sspToWorker -> sspToWorker.getValue())
-          .flatMap(Collection::stream)
-          .collect(Collectors.toList());
-    } else {
-      listOfWorkersForEnvelope = sspToTaskWorkerMapping.get(sspOfEnvelope);
+  private boolean insertEnvelope(PendingEnvelope pendingEnvelope) {
+    IncomingMessageEnvelope envelope = pendingEnvelope.envelope;
+    // when elasticity is enabled
+    // the tasks actually consume a keyBucket of the ssp.
+    // hence use the SSP with keybucket to find the worker(s) for the envelope
+    List<AsyncTaskWorker> listOfWorkersForEnvelope = envelopeRouter.getWorkers(envelope);
+    if (listOfWorkersForEnvelope != null) {
+      for (AsyncTaskWorker worker : listOfWorkersForEnvelope) {
+        worker.state.insertEnvelope(pendingEnvelope);
+      }
+    } else if (elasticityFactor > 1) {
+      // is listOfWorkersForEnvelope is null and elascity factor > 1 (aka enabled), then
+      // this condition happens when only a subset of keyBuckets of an SSP are being consumed at this container
+      // but not all keyBuckets of an SSP are consumed, therefore, we fake the consumption of the envelope.
+      // if this update is not done for the SSP then the unprocessed envelopes from other keyBuckets
+      // will prevent the consumerMultiplexer from polling as it sees envelopes available for consumption.
+      consumerMultiplexer.tryUpdate(envelope.getSystemStreamPartition(elasticityFactor));
+      log.trace("updating the system consumers for ssp keyBucket {} not processed by this runloop",
+          envelope.getSystemStreamPartition(elasticityFactor));
+      return false;
     }
-    return listOfWorkersForEnvelope;
+    return true;
   }
 
   /**
@@ -378,20 +441,29 @@ public class RunLoop implements Runnable, Throttleable {
    * the RunLoop thread immediately. That event may allow a task worker to start processing a message that has already
    * been chosen.  In any event it should only delay for a short time.  It needs to periodically check for new messages.
    */
-  private void blockIfBusyOrNoNewWork(IncomingMessageEnvelope envelope) {
+  private void blockIfBusyOrNoNewWork(boolean hasNewWork) {
+    if (isLockFreeSignalEnabled) {
+      parkIfBusyOrNoNewWork(hasNewWork);
+      return;
+    }
+
     synchronized (latch) {
 
       // First check to see if we should delay the run loop for a short time.  The runLoopResumedSinceLastChecked boolean
       // is used to ensure we don't delay if there may already be a task ready to dequeue a previously chosen/pending
       // message. It is better to occasionally make one additional loop when there is no work to do then delay the
       // runloop when there is work that could be started immediately.
-      if ((envelope == null) && !runLoopResumedSinceLastChecked) {
+      if (!hasNewWork && !runLoopResumedSinceLastChecked) {
         try {
           log.trace("Start no work wait");
+          containerMetrics.runLoopBlocks().inc();
+          runLoopWaiting = true;
           latch.wait(maxIdleMs);
           log.trace("End no work wait");
         } catch (InterruptedException e) {
           throw new SamzaException("Run loop is interrupted", e);
+        } finally {
+          runLoopWaiting = false;
         }
       }
       runLoopResumedSinceLastChecked = false;
@@ -406,14 +478,97 @@ public class RunLoop implements Runnable, Throttleable {
 
         try {
           log.trace("Block loop thread");
+          containerMetrics.runLoopBlocks().inc();
+          runLoopWaiting = true;
           latch.wait();
         } catch (InterruptedException e) {
           throw new SamzaException("Run loop is interrupted", e);
+        } finally {
+          runLoopWaiting = false;
         }
       }
     }
   }
 
+  /**
+   * Lock free version of {@link #blockIfBusyOrNoNewWork(boolean)}, which parks the runloop thread instead of waiting
+   * on the latch.
+   *
+   * The runloop thread publishes {@code runLoopWaiting} before checking the wake up conditions, and
+   * {@link #signalRunLoop()} publishes {@code runLoopResumedSinceLastChecked} or the task state before checking
+   * {@code runLoopWaiting}. Since both are volatile, either the runloop thread sees the update or the signalling thread
+   * sees the runloop thread waiting and unparks it. An unpark issued before the park makes the park return immediately,
+   * so no wake up is lost, and the signalling threads never block each other.
+   */
+  private void parkIfBusyOrNoNewWork(boolean hasNewWork) {
+    if (!hasNewWork) {
+      runLoopWaiting = true;
+      try {
+        if (!runLoopResumedSinceLastChecked) {
+          log.trace("Start no work park");
+          containerMetrics.runLoopBlocks().inc();
+          LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(maxIdleMs));
+          log.trace("End no work park");
+          checkInterrupted();
+        }
+      } finally {
+        runLoopWaiting = false;
+      }
+    }
+    runLoopResumedSinceLastChecked = false;
+
+    while (!shutdownNow && throwable == null) {
+      runLoopWaiting = true;
+      try {
+        for (AsyncTaskWorker worker : taskWorkers) {
+          if (worker.state.isReady()) {
+            return;
+          }
+        }
+
+        if (shutdownNow || throwable != null) {
+          return;
+        }
+
+        log.trace("Park loop thread");
+        containerMetrics.runLoopBlocks().inc();
+        LockSupport.park(this);
+        checkInterrupted();
+      } finally {
+        runLoopWaiting = false;
+      }
+    }
+  }
+
+  private void checkInterrupted() {
+    if (Thread.interrupted()) {
+      throw new SamzaException("Run loop is interrupted", new InterruptedException());
+    }
+  }
+
+  /**
+   * Wake up the runloop thread if it is blocked, either by notifying the latch or by unparking the thread
+   * when lock free signalling is enabled.
+   */
+  private void signalRunLoop() {
+    if (isLockFreeSignalEnabled) {
+      runLoopResumedSinceLastChecked = true;
+      Thread thread = runLoopThread;
+      if (runLoopWaiting && thread != null) {
+        containerMetrics.runLoopWakeups().inc();
+        LockSupport.unpark(thread);
+      }
+    } else {
+      synchronized (latch) {
+        if (runLoopWaiting) {
+          containerMetrics.runLoopWakeups().inc();
+        }
+        latch.notifyAll();
+        runLoopResumedSinceLastChecked = true;
+      }
+    }
+  }
+
   /**
    * Resume the runloop thread. This API is triggered in the following scenarios:
    * A. A task becomes ready to process a message.
@@ -425,10 +580,7 @@ public class RunLoop implements Runnable, Throttleable {
     if (coordinatorRequests.shouldShutdownNow() && coordinatorRequests.commitRequests().isEmpty()) {
       shutdownNow = true;
     }
-    synchronized (latch) {
-      latch.notifyAll();
-      runLoopResumedSinceLastChecked = true;
-    }
+    signalRunLoop();
   }
 
   /**
@@ -439,10 +591,7 @@ public class RunLoop implements Runnable, Throttleable {
     if (coordinatorRequests.shouldShutdownNow()) {
       shutdownNow = true;
     }
-    synchronized (latch) {
-      latch.notifyAll();
-      runLoopResumedSinceLastChecked = true;
-    }
+    signalRunLoop();
   }
 
   /**
@@ -553,9 +702,11 @@ public class RunLoop implements Runnable, Throttleable {
 
     /**
      * Invoke next task operation based on its state
+     * @return the operation invoked
      */
-    private void run() {
-      switch (state.nextOp()) {
+    private WorkerOp run() {
+      WorkerOp op = state.nextOp();
+      switch (op) {
         case PROCESS:
           process();
           break;
@@ -578,6 +729,7 @@ public class RunLoop implements Runnable, Throttleable {
           //no op
           break;
       }
+      return op;
     }
 
     /**
@@ -794,6 +946,7 @@ public class RunLoop implements Runnable, Throttleable {
     @Override
     public void onComplete(final TaskCallback callback) {
       long workNanos = clock.nanoTime() - ((TaskCallbackImpl) callback).getTimeCreatedNs();
+      boolean sampled = processTimerSampler.sample();
       callbackExecutor.schedule(new Runnable() {
         @Override
         public void run() {
@@ -801,7 +954,9 @@ public class RunLoop implements Runnable, Throttleable {
             state.doneProcess();
             state.taskMetrics.asyncCallbackCompleted().inc();
             TaskCallbackImpl callbackImpl = (TaskCallbackImpl) callback;
-            containerMetrics.processNs().update(clock.nanoTime() - callbackImpl.getTimeCreatedNs());
+            if (sampled) {
+              containerMetrics.processNs().update(clock.nanoTime() - callbackImpl.getTimeCreatedNs());
+            }
             log.trace("Got callback complete for task {}, ssp {}",
                 callbackImpl.getTaskName(), callbackImpl.getSystemStreamPartition());
 
@@ -29,10 +29,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.samza.config.ApplicationConfig;
+import org.apache.samza.config.JobConfig;
+import org.apache.samza.operators.spec.InputOperatorSpec;
 import org.apache.samza.operators.spec.JoinOperatorSpec;
 import org.apache.samza.operators.spec.OperatorSpec;
 import org.apache.samza.operators.spec.OutputOperatorSpec;
@@ -82,6 +85,8 @@ import org.apache.samza.table.descriptors.TableDescriptor;
     List<StreamJson> outputStreams;
     @JsonProperty("operators")
     Map<String, Map<String, Object>> operators = new HashMap<>();
+    @JsonProperty("fusedOperators")
+    List<List<String>> fusedOperators = new ArrayList<>();
   }
 
   static final class StreamJson {
@@ -232,6 +237,18 @@ import org.apache.samza.table.descriptors.TableDescriptor;
       updateOperatorGraphJson(jobNode.getInputOperator(inputJson.streamId), opGraph);
     });
 
+    if (new JobConfig(jobNode.getConfig()).getOperatorFusionEnabled()) {
+      List<InputOperatorSpec> inputOpSpecs = jobNode.getInEdges().keySet().stream()
+          .map(jobNode::getInputOperator)
+          .filter(Objects::nonNull)
+          .collect(Collectors.toList());
+      OperatorFusionPlanner.getFusedChains(inputOpSpecs).forEach((fusedOpId, chain) -> {
+        List<String> fusedOpIds = chain.stream().map(OperatorSpec::getOpId).collect(Collectors.toList());
+        opGraph.fusedOperators.add(fusedOpIds);
+        fusedOpIds.forEach(opId -> opGraph.operators.get(opId).put("fusedInto", fusedOpId));
+      });
+    }
+
     opGraph.outputStreams = new ArrayList<>();
     jobNode.getOutEdges().values().forEach(outStream -> {
       StreamJson outputJson = new StreamJson();
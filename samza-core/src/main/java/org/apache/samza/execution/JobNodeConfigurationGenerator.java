@@ -209,6 +209,7 @@ import org.slf4j.LoggerFactory;
     List<Long> windowTimerIntervals =  reachableOperators.stream()
         .filter(spec -> spec.getOpCode() == OperatorSpec.OpCode.WINDOW)
         .map(spec -> ((WindowOperatorSpec) spec).getDefaultTriggerMs())
+        .filter(triggerMs -> triggerMs > 0)
         .collect(Collectors.toList());
 
     // Filter out the join operators, and obtain a list of their ttl values
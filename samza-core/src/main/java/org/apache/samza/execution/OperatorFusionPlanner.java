@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.execution;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.samza.operators.spec.InputOperatorSpec;
+import org.apache.samza.operators.spec.OperatorSpec;
+import org.apache.samza.operators.spec.StreamOperatorSpec;
+
+
+/**
+ * A planning pass over the {@link OperatorSpec} DAG that finds chains of consecutive stateless, single-input
+ * operators (map, filter and flatMap) which can be fused into a single operator at runtime.
+ *
+ * An {@link OperatorSpec} can only be fused with its next operator when it has exactly one next operator, and the
+ * next operator has exactly one previous operator. Operators with a watermark or scheduled function are never fused,
+ * since those callbacks are delivered per operator.
+ */
+public class OperatorFusionPlanner {
+
+  private OperatorFusionPlanner() { }
+
+  /**
+   * Returns the chains of fusable {@link OperatorSpec}s reachable from the {@code inputOpSpecs}, keyed by the opId
+   * of the first {@link OperatorSpec} in each chain. Only chains of two or more operators are returned, and
+   * chains are listed in the order they are first reached while traversing the DAG.
+   *
+   * @param inputOpSpecs the {@link InputOperatorSpec}s to traverse the DAG from
+   * @return a mapping from the opId of the first operator in a chain to the operators in the chain, in order
+   */
+  public static Map<String, List<OperatorSpec>> getFusedChains(Collection<InputOperatorSpec> inputOpSpecs) {
+    Set<OperatorSpec> visitedOpSpecs = new LinkedHashSet<>();
+    Multimap<OperatorSpec, OperatorSpec> prevOpSpecs = HashMultimap.create();
+    inputOpSpecs.forEach(inputOpSpec -> collectPrevOpSpecs(inputOpSpec, visitedOpSpecs, prevOpSpecs));
+
+    Map<String, List<OperatorSpec>> fusedChains = new LinkedHashMap<>();
+    for (OperatorSpec opSpec : visitedOpSpecs) {
+      if (!isFusable(opSpec) || isFusedWithPrev(opSpec, prevOpSpecs)) {
+        continue;
+      }
+
+      List<OperatorSpec> chain = new ArrayList<>();
+      chain.add(opSpec);
+      OperatorSpec next = getFusableNext(opSpec, prevOpSpecs);
+      while (next != null) {
+        chain.add(next);
+        next = getFusableNext(next, prevOpSpecs);
+      }
+
+      if (chain.size() > 1) {
+        fusedChains.put(opSpec.getOpId(), Collections.unmodifiableList(chain));
+      }
+    }
+    return fusedChains;
+  }
+
+  private static void collectPrevOpSpecs(OperatorSpec opSpec, Set<OperatorSpec> visitedOpSpecs,
+      Multimap<OperatorSpec, OperatorSpec> prevOpSpecs) {
+    if (!visitedOpSpecs.add(opSpec)) {
+      return;
+    }
+    Collection<OperatorSpec> nextOpSpecs = opSpec.getRegisteredOperatorSpecs();
+    for (OperatorSpec nextOpSpec : nextOpSpecs) {
+      prevOpSpecs.put(nextOpSpec, opSpec);
+      collectPrevOpSpecs(nextOpSpec, visitedOpSpecs, prevOpSpecs);
+    }
+  }
+
+  /**
+   * Returns the next {@link OperatorSpec} of {@code opSpec} if it can be fused with {@code opSpec}, or null.
+   */
+  private static OperatorSpec getFusableNext(OperatorSpec opSpec, Multimap<OperatorSpec, OperatorSpec> prevOpSpecs) {
+    Collection<OperatorSpec> nextOpSpecs = opSpec.getRegisteredOperatorSpecs();
+    if (nextOpSpecs.size() != 1) {
+      return null;
+    }
+    OperatorSpec next = nextOpSpecs.iterator().next();
+    return isFusable(next) && prevOpSpecs.get(next).size() == 1 ? next : null;
+  }
+
+  /**
+   * Returns true if {@code opSpec} is fused into the chain of its single previous {@link OperatorSpec}.
+   */
+  private static boolean isFusedWithPrev(OperatorSpec opSpec, Multimap<OperatorSpec, OperatorSpec> prevOpSpecs) {
+    Collection<OperatorSpec> prevs = prevOpSpecs.get(opSpec);
+    if (prevs.size() != 1) {
+      return false;
+    }
+    OperatorSpec prevOpSpec = Iterables.getOnlyElement(prevs);
+    return isFusable(prevOpSpec) && prevOpSpec.getRegisteredOperatorSpecs().size() == 1;
+  }
+
+  private static boolean isFusable(OperatorSpec opSpec) {
+    if (!(opSpec instanceof StreamOperatorSpec)) {
+      return false;
+    }
+    OperatorSpec.OpCode opCode = opSpec.getOpCode();
+    return (opCode == OperatorSpec.OpCode.MAP || opCode == OperatorSpec.OpCode.FILTER
+        || opCode == OperatorSpec.OpCode.FLAT_MAP)
+        && opSpec.getWatermarkFn() == null && opSpec.getScheduledFn() == null;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.metrics;
+
+import org.apache.samza.config.MetricsConfig;
+
+/**
+ * Decides which events on a hot path are timed into a {@link Timer}, so that the clock is only read for the events
+ * which are sampled. Timers updated through a sampler keep their latency distributions, but record only a fraction
+ * of the events.
+ * <p>
+ * Instances are not synchronized, so that sampling stays cheap. They may still be shared by threads, such as the
+ * callback threads that complete processing: a racing update can skew the sampling rate, or drive the countdown below
+ * zero, which the next event then treats as due for a sample.
+ */
+public class TimerSampler {
+
+  /**
+   * How the events on a hot path are timed.
+   */
+  public enum Mode {
+    /** No events are timed */
+    OFF,
+    /** One in every {@link MetricsConfig#METRICS_TIMER_SAMPLE_RATE} events is timed */
+    SAMPLED,
+    /** Every event is timed */
+    FULL
+  }
+
+  private final Mode mode;
+  private final int sampleRate;
+  private int untilNextSample;
+
+  public TimerSampler(MetricsConfig config) {
+    this(config.getMetricsTimerMode(), config.getMetricsTimerSampleRate());
+  }
+
+  public TimerSampler(Mode mode, int sampleRate) {
+    if (sampleRate < 1) {
+      throw new IllegalArgumentException("Timer sample rate must be positive, but was " + sampleRate);
+    }
+    this.mode = mode;
+    this.sampleRate = sampleRate;
+    this.untilNextSample = 0;
+  }
+
+  /**
+   * Returns whether the next event should be timed.
+   *
+   * @return true if the event should be timed
+   */
+  public boolean sample() {
+    switch (mode) {
+      case FULL:
+        return true;
+      case SAMPLED:
+        // <= rather than == since a racing update can skip zero
+        if (untilNextSample-- <= 0) {
+          untilNextSample = sampleRate - 1;
+          return true;
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+}
@@ -19,8 +19,6 @@
 
 package org.apache.samza.operators.impl;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import org.apache.samza.config.ApplicationConfig;
 import org.apache.samza.context.Context;
 import org.apache.samza.operators.spec.BroadcastOperatorSpec;
@@ -37,7 +35,7 @@ import org.apache.samza.task.TaskCoordinator;
 import java.util.Collection;
 import java.util.Collections;
 
-class BroadcastOperatorImpl<M> extends OperatorImpl<M, Void> {
+class BroadcastOperatorImpl<M> extends SyncOperatorImpl<M, Void> {
 
   private final BroadcastOperatorSpec<M> broadcastOpSpec;
   private final SystemStream systemStream;
@@ -56,10 +54,9 @@ class BroadcastOperatorImpl<M> extends OperatorImpl<M, Void> {
   }
 
   @Override
-  protected CompletionStage<Collection<Void>> handleMessageAsync(M message, MessageCollector collector,
-      TaskCoordinator coordinator) {
+  protected Collection<Void> handleMessageSync(M message, MessageCollector collector, TaskCoordinator coordinator) {
     collector.send(new OutgoingMessageEnvelope(systemStream, 0, null, message));
-    return CompletableFuture.completedFuture(Collections.emptyList());
+    return Collections.emptyList();
   }
 
   @Override
@@ -18,8 +18,6 @@
  */
 package org.apache.samza.operators.impl;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import org.apache.samza.context.Context;
 import org.apache.samza.operators.functions.FlatMapFunction;
 import org.apache.samza.operators.spec.OperatorSpec;
@@ -36,7 +34,7 @@ import java.util.Collection;
  * @param <M>  the type of input message
  * @param <RM>  the type of result
  */
-class FlatmapOperatorImpl<M, RM> extends OperatorImpl<M, RM> {
+class FlatmapOperatorImpl<M, RM> extends SyncOperatorImpl<M, RM> {
 
   private final StreamOperatorSpec<M, RM> streamOpSpec;
   private final FlatMapFunction<M, RM> transformFn;
@@ -52,9 +50,8 @@ class FlatmapOperatorImpl<M, RM> extends OperatorImpl<M, RM> {
   }
 
   @Override
-  protected CompletionStage<Collection<RM>> handleMessageAsync(M message, MessageCollector collector,
-      TaskCoordinator coordinator) {
-    return CompletableFuture.completedFuture(this.transformFn.apply(message));
+  protected Collection<RM> handleMessageSync(M message, MessageCollector collector, TaskCoordinator coordinator) {
+    return this.transformFn.apply(message);
   }
 
   @Override
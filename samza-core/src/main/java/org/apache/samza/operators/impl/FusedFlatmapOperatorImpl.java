@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.operators.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.samza.context.Context;
+import org.apache.samza.operators.functions.FlatMapFunction;
+import org.apache.samza.operators.spec.OperatorSpec;
+import org.apache.samza.operators.spec.StreamOperatorSpec;
+import org.apache.samza.task.MessageCollector;
+import org.apache.samza.task.TaskCoordinator;
+
+
+/**
+ * An operator that applies the transform functions of a chain of fused {@link StreamOperatorSpec}s to each incoming
+ * message in order, without handing the intermediate results to separate {@link OperatorImpl}s.
+ *
+ * The fused operator is identified by, and reports its metrics under, the first {@link StreamOperatorSpec} in the
+ * chain.
+ *
+ * @see org.apache.samza.execution.OperatorFusionPlanner
+ */
+class FusedFlatmapOperatorImpl extends SyncOperatorImpl<Object, Object> {
+
+  private final List<StreamOperatorSpec> streamOpSpecs;
+  private final FlatMapFunction<Object, Object>[] transformFns;
+
+  @SuppressWarnings("unchecked")
+  FusedFlatmapOperatorImpl(List<StreamOperatorSpec> streamOpSpecs) {
+    this.streamOpSpecs = streamOpSpecs;
+    this.transformFns = streamOpSpecs.stream()
+        .map(StreamOperatorSpec::getTransformFn)
+        .toArray(FlatMapFunction[]::new);
+  }
+
+  @Override
+  protected void handleInit(Context context) {
+    for (FlatMapFunction<Object, Object> transformFn : transformFns) {
+      transformFn.init(context);
+    }
+  }
+
+  @Override
+  protected Collection<Object> handleMessageSync(Object message, MessageCollector collector,
+      TaskCoordinator coordinator) {
+    Collection<Object> results = Collections.singletonList(message);
+    for (FlatMapFunction<Object, Object> transformFn : transformFns) {
+      if (results.isEmpty()) {
+        return results;
+      } else if (results.size() == 1) {
+        // fast path for map and filter, which produce at most one result per message
+        results = transformFn.apply(results.iterator().next());
+      } else {
+        Collection<Object> nextResults = new ArrayList<>();
+        for (Object result : results) {
+          nextResults.addAll(transformFn.apply(result));
+        }
+        results = nextResults;
+      }
+    }
+    return results;
+  }
+
+  @Override
+  protected void handleClose() {
+    for (FlatMapFunction<Object, Object> transformFn : transformFns) {
+      transformFn.close();
+    }
+  }
+
+  @Override
+  protected OperatorSpec<Object, Object> getOperatorSpec() {
+    return streamOpSpecs.get(0);
+  }
+
+  /**
+   * Returns the opIds of the fused {@link StreamOperatorSpec}s, in the order their functions are applied.
+   */
+  List<String> getFusedOpIds() {
+    return streamOpSpecs.stream().map(OperatorSpec::getOpId).collect(Collectors.toList());
+  }
+}
@@ -19,8 +19,6 @@
 package org.apache.samza.operators.impl;
 
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import org.apache.samza.context.Context;
 import org.apache.samza.operators.KV;
 import org.apache.samza.system.descriptors.InputTransformer;
@@ -37,7 +35,7 @@ import java.util.Collections;
 /**
  * An operator that builds the input message from the incoming message.
  */
-public final class InputOperatorImpl extends OperatorImpl<IncomingMessageEnvelope, Object> {
+public final class InputOperatorImpl extends SyncOperatorImpl<IncomingMessageEnvelope, Object> {
 
   private final InputOperatorSpec inputOpSpec;
 
@@ -50,7 +48,7 @@ public final class InputOperatorImpl extends OperatorImpl<IncomingMessageEnvelop
   }
 
   @Override
-  protected CompletionStage<Collection<Object>> handleMessageAsync(IncomingMessageEnvelope message,
+  protected Collection<Object> handleMessageSync(IncomingMessageEnvelope message,
       MessageCollector collector, TaskCoordinator coordinator) {
     Object result;
     InputTransformer transformer = inputOpSpec.getTransformer();
@@ -64,7 +62,7 @@ public final class InputOperatorImpl extends OperatorImpl<IncomingMessageEnvelop
         .map(Collections::singletonList)
         .orElse(Collections.emptyList());
 
-    return CompletableFuture.completedFuture(output);
+    return output;
   }
 
   @Override
@@ -37,6 +37,7 @@ import org.apache.samza.job.model.TaskModel;
 import org.apache.samza.metrics.Counter;
 import org.apache.samza.metrics.MetricsRegistry;
 import org.apache.samza.metrics.Timer;
+import org.apache.samza.metrics.TimerSampler;
 import org.apache.samza.operators.Scheduler;
 import org.apache.samza.operators.functions.ScheduledFunction;
 import org.apache.samza.operators.functions.WatermarkFunction;
@@ -49,6 +50,7 @@ import org.apache.samza.system.SystemStreamPartition;
 import org.apache.samza.system.WatermarkMessage;
 import org.apache.samza.task.MessageCollector;
 import org.apache.samza.task.TaskCoordinator;
+import org.apache.samza.util.FutureUtil;
 import org.apache.samza.util.HighResolutionClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,10 +69,12 @@ import java.util.Set;
  */
 public abstract class OperatorImpl<M, RM> {
   private static final Logger LOG = LoggerFactory.getLogger(OperatorImpl.class);
-  private static final String METRICS_GROUP = OperatorImpl.class.getName();
+  static final String METRICS_GROUP = OperatorImpl.class.getName();
+  private static final CompletableFuture<Void> COMPLETED_FUTURE = CompletableFuture.completedFuture(null);
   private boolean initialized;
   private boolean closed;
   private HighResolutionClock highResClock;
+  private TimerSampler handleMessageTimerSampler;
   private Counter numMessage;
   private Timer handleMessageNs;
   private Timer handleTimerNs;
@@ -98,6 +102,9 @@ public abstract class OperatorImpl<M, RM> {
   private int elasticityFactor;
   private ExecutorService operatorExecutor;
   private boolean operatorExecutorEnabled;
+  // whether this operator and all the operators downstream of it handle messages synchronously
+  private boolean synchronousChain = false;
+  private boolean synchronousChainResolved = false;
 
   /**
    * Initialize this {@link OperatorImpl} and its user-defined functions.
@@ -119,6 +126,7 @@ public abstract class OperatorImpl<M, RM> {
     }
 
     this.highResClock = createHighResClock(config);
+    this.handleMessageTimerSampler = createHandleMessageTimerSampler(config);
     registeredOperators = new LinkedHashSet<>();
     prevOperators = new LinkedHashSet<>();
     inputStreams = new LinkedHashSet<>();
@@ -180,26 +188,45 @@ public abstract class OperatorImpl<M, RM> {
         || taskModel.getSystemStreamPartitions().stream().anyMatch(ssp -> ssp.getSystemStream().equals(input));
   }
 
+  /**
+   * Handle an incoming message and propagate the results to the registered operators.
+   * <p>
+   * If this operator and all the operators downstream of it are synchronous (see {@link #resolveSynchronousChain()}),
+   * the message and its results are handled by direct calls, without composing a future for every operator.
+   *
+   * @param message  the input message
+   * @param collector  the {@link MessageCollector} in the context
+   * @param coordinator  the {@link TaskCoordinator} in the context
+   * @return a {@code CompletionStage} which completes when the message and its results have been handled
+   */
   public final CompletionStage<Void> onMessageAsync(M message, MessageCollector collector,
       TaskCoordinator coordinator) {
+    if (this.synchronousChain) {
+      Collection<RM> results = handleMessageAndUpdateMetrics(message, collector, coordinator);
+      try {
+        propagateResultsSynchronously(results, collector, coordinator);
+      } catch (Exception e) {
+        // failures of the downstream operators complete the future exceptionally, as they do on the async path
+        return FutureUtil.failedFuture(e);
+      }
+      return COMPLETED_FUTURE;
+    }
+
     this.numMessage.inc();
-    long startNs = this.highResClock.nanoTime();
+    boolean sampled = this.handleMessageTimerSampler.sample();
+    long startNs = sampled ? this.highResClock.nanoTime() : 0L;
     CompletionStage<Collection<RM>> completableResultsFuture;
     try {
       completableResultsFuture = handleMessageAsync(message, collector, coordinator);
     } catch (ClassCastException e) {
-      String actualType = e.getMessage().replaceFirst(" cannot be cast to .*", "");
-      String expectedType = e.getMessage().replaceFirst(".* cannot be cast to ", "");
-      throw new SamzaException(
-          String.format("Error applying operator %s (created at %s) to its input message. "
-                  + "Expected input message to be of type %s, but found it to be of type %s. "
-                  + "Are Serdes for the inputs to this operator configured correctly?",
-              getOpImplId(), getOperatorSpec().getSourceLocation(), expectedType, actualType), e);
+      throw toInputTypeException(e);
     }
 
     CompletionStage<Void> result = composeFutureWithExecutor(completableResultsFuture, results -> {
-      long endNs = this.highResClock.nanoTime();
-      this.handleMessageNs.update(endNs - startNs);
+      if (sampled) {
+        long endNs = this.highResClock.nanoTime();
+        this.handleMessageNs.update(endNs - startNs);
+      }
 
       return CompletableFuture.allOf(results.stream()
           .flatMap(r -> this.registeredOperators.stream().map(op -> op.onMessageAsync(r, collector, coordinator)))
@@ -216,6 +243,49 @@ public abstract class OperatorImpl<M, RM> {
     return result;
   }
 
+  private void onMessageSynchronously(M message, MessageCollector collector, TaskCoordinator coordinator) {
+    propagateResultsSynchronously(handleMessageAndUpdateMetrics(message, collector, coordinator), collector,
+        coordinator);
+  }
+
+  private Collection<RM> handleMessageAndUpdateMetrics(M message, MessageCollector collector,
+      TaskCoordinator coordinator) {
+    this.numMessage.inc();
+    boolean sampled = this.handleMessageTimerSampler.sample();
+    long startNs = sampled ? this.highResClock.nanoTime() : 0L;
+    Collection<RM> results;
+    try {
+      // only reached for synchronous chains, which are made of synchronous operators
+      results = ((SyncOperatorImpl<M, RM>) this).handleMessageSync(message, collector, coordinator);
+    } catch (ClassCastException e) {
+      throw toInputTypeException(e);
+    }
+    if (sampled) {
+      long endNs = this.highResClock.nanoTime();
+      this.handleMessageNs.update(endNs - startNs);
+    }
+    return results;
+  }
+
+  private void propagateResultsSynchronously(Collection<RM> results, MessageCollector collector,
+      TaskCoordinator coordinator) {
+    for (RM result : results) {
+      for (OperatorImpl<RM, ?> nextOperator : this.registeredOperators) {
+        nextOperator.onMessageSynchronously(result, collector, coordinator);
+      }
+    }
+  }
+
+  private SamzaException toInputTypeException(ClassCastException e) {
+    String actualType = e.getMessage().replaceFirst(" cannot be cast to .*", "");
+    String expectedType = e.getMessage().replaceFirst(".* cannot be cast to ", "");
+    return new SamzaException(
+        String.format("Error applying operator %s (created at %s) to its input message. "
+                + "Expected input message to be of type %s, but found it to be of type %s. "
+                + "Are Serdes for the inputs to this operator configured correctly?",
+            getOpImplId(), getOperatorSpec().getSourceLocation(), expectedType, actualType), e);
+  }
+
   /**
    * Handle the incoming {@code message} asynchronously and return a {@link CompletionStage} of the results to be propagated
    * to the registered operators.
@@ -229,6 +299,30 @@ public abstract class OperatorImpl<M, RM> {
   protected abstract CompletionStage<Collection<RM>> handleMessageAsync(M message, MessageCollector collector,
       TaskCoordinator coordinator);
 
+  /**
+   * Resolves whether messages to this operator can be handled by direct calls through it and all the operators
+   * downstream of it. This is the case if they are all {@link SyncOperatorImpl}s, none of them emits watermarks from
+   * its function, and the operator executor is disabled. Otherwise, e.g. downstream of an async flatmap or a table
+   * operator, the results are propagated by composing futures.
+   * <p>
+   * Must be called once the operator DAG has been built, as it depends on the registered operators.
+   *
+   * @return true if messages to this operator are handled by direct calls
+   */
+  final boolean resolveSynchronousChain() {
+    if (!this.synchronousChainResolved) {
+      boolean synchronous = this instanceof SyncOperatorImpl && !this.operatorExecutorEnabled
+          && getOperatorSpec().getWatermarkFn() == null;
+      for (OperatorImpl<RM, ?> nextOperator : this.registeredOperators) {
+        // resolve all the next operators, as they may also be reached from other operators
+        synchronous &= nextOperator.resolveSynchronousChain();
+      }
+      this.synchronousChain = synchronous;
+      this.synchronousChainResolved = true;
+    }
+    return this.synchronousChain;
+  }
+
   /**
    * Handle timer ticks for this {@link OperatorImpl} and propagate the results and timer tick to registered operators.
    * <p>
@@ -703,4 +797,12 @@ public abstract class OperatorImpl<M, RM> {
       return () -> 0;
     }
   }
+
+  private TimerSampler createHandleMessageTimerSampler(Config config) {
+    MetricsConfig metricsConfig = new MetricsConfig(config);
+    // Like the clock above, the per-message timer is only enabled for debugging, and then follows the timer mode
+    TimerSampler.Mode mode = metricsConfig.getMetricsTimerDebugEnabled()
+        ? metricsConfig.getMetricsTimerMode() : TimerSampler.Mode.OFF;
+    return new TimerSampler(mode, metricsConfig.getMetricsTimerSampleRate());
+  }
 }
@@ -22,9 +22,11 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import org.apache.samza.config.Config;
+import org.apache.samza.config.JobConfig;
 import org.apache.samza.config.StreamConfig;
 import org.apache.samza.context.Context;
 import org.apache.samza.context.InternalTaskContext;
+import org.apache.samza.execution.OperatorFusionPlanner;
 import org.apache.samza.job.model.JobModel;
 import org.apache.samza.operators.KV;
 import org.apache.samza.operators.OperatorSpecGraph;
@@ -86,6 +88,12 @@ public class OperatorImplGraph {
    */
   private final Map<String, KV<PartialJoinOperatorImpl, PartialJoinOperatorImpl>> joinOpImpls = new HashMap<>();
 
+  /**
+   * A mapping from the opId of the first {@link OperatorSpec} in a chain of fused {@link StreamOperatorSpec}s to all
+   * {@link OperatorSpec}s in the chain. Each chain is instantiated as a single {@link FusedFlatmapOperatorImpl}.
+   */
+  private final Map<String, List<OperatorSpec>> fusedChains;
+
   private final Clock clock;
 
   private InternalTaskContext internalTaskContext;
@@ -101,6 +109,11 @@ public class OperatorImplGraph {
   public OperatorImplGraph(OperatorSpecGraph specGraph, Context context, Clock clock) {
     this.clock = clock;
     StreamConfig streamConfig = new StreamConfig(context.getJobContext().getConfig());
+    this.fusedChains = new JobConfig(context.getJobContext().getConfig()).getOperatorFusionEnabled()
+        ? OperatorFusionPlanner.getFusedChains(specGraph.getInputOperators().values())
+        : Collections.emptyMap();
+    this.fusedChains.forEach((opId, chain) -> LOG.info("Fusing operators {} into operator {}.",
+        chain.stream().map(OperatorSpec::getOpId).collect(Collectors.toList()), opId));
     this.internalTaskContext = new InternalTaskContext(context);
     Map<SystemStream, Integer> producerTaskCounts =
         hasIntermediateStreams(specGraph)
@@ -131,6 +144,11 @@ public class OperatorImplGraph {
           (InputOperatorImpl) createAndRegisterOperatorImpl(null, inputOpSpec, systemStream, context);
       this.inputOperators.put(systemStream, inputOperatorImpl);
     });
+
+    // now that the DAG is built, find the chains of synchronous operators which can handle messages by direct calls
+    this.inputOperators.values().forEach(OperatorImpl::resolveSynchronousChain);
+    LOG.info("Operators handling messages by direct calls: {}", operatorImpls.values().stream()
+        .filter(OperatorImpl::resolveSynchronousChain).map(OperatorImpl::getOpImplId).collect(Collectors.toList()));
   }
 
   /**
@@ -187,10 +205,12 @@ public class OperatorImplGraph {
       // (a join cannot have a cycle).
       operatorImpls.put(operatorImpl.getOpImplId(), operatorImpl);
 
-      Collection<OperatorSpec> registeredSpecs = operatorSpec.getRegisteredOperatorSpecs();
+      // continue the traversal from the last operator in the chain if this operator is fused
+      OperatorSpec lastOperatorSpec = getLastFusedOperatorSpec(operatorSpec);
+      Collection<OperatorSpec> registeredSpecs = lastOperatorSpec.getRegisteredOperatorSpecs();
       registeredSpecs.forEach(registeredSpec -> {
         LOG.debug("Creating operator {} with opCode: {}", registeredSpec.getOpId(), registeredSpec.getOpCode());
-        OperatorImpl nextImpl = createAndRegisterOperatorImpl(operatorSpec, registeredSpec, inputStream, context);
+        OperatorImpl nextImpl = createAndRegisterOperatorImpl(lastOperatorSpec, registeredSpec, inputStream, context);
         operatorImpl.registerNextOperator(nextImpl);
       });
       return operatorImpl;
@@ -200,13 +220,23 @@ public class OperatorImplGraph {
       operatorImpl.registerInputStream(inputStream);
 
       // We still need to traverse the DAG further to register the input streams.
-      Collection<OperatorSpec> registeredSpecs = operatorSpec.getRegisteredOperatorSpecs();
+      OperatorSpec lastOperatorSpec = getLastFusedOperatorSpec(operatorSpec);
+      Collection<OperatorSpec> registeredSpecs = lastOperatorSpec.getRegisteredOperatorSpecs();
       registeredSpecs.forEach(
-        registeredSpec -> createAndRegisterOperatorImpl(operatorSpec, registeredSpec, inputStream, context));
+        registeredSpec -> createAndRegisterOperatorImpl(lastOperatorSpec, registeredSpec, inputStream, context));
       return operatorImpl;
     }
   }
 
+  /**
+   * Returns the last {@link OperatorSpec} in the chain of fused operators starting at {@code operatorSpec},
+   * or {@code operatorSpec} itself if it is not fused.
+   */
+  private OperatorSpec getLastFusedOperatorSpec(OperatorSpec operatorSpec) {
+    List<OperatorSpec> fusedChain = fusedChains.get(operatorSpec.getOpId());
+    return fusedChain == null ? operatorSpec : fusedChain.get(fusedChain.size() - 1);
+  }
+
   /**
    * Creates a new {@link OperatorImpl} instance for the provided {@link OperatorSpec}.
    *
@@ -220,6 +250,8 @@ public class OperatorImplGraph {
     StreamConfig streamConfig = new StreamConfig(config);
     if (operatorSpec instanceof InputOperatorSpec) {
       return new InputOperatorImpl((InputOperatorSpec) operatorSpec);
+    } else if (fusedChains.containsKey(operatorSpec.getOpId())) {
+      return new FusedFlatmapOperatorImpl((List) fusedChains.get(operatorSpec.getOpId()));
     } else if (operatorSpec instanceof StreamOperatorSpec) {
       return new FlatmapOperatorImpl((StreamOperatorSpec) operatorSpec);
     } else if (operatorSpec instanceof SinkOperatorSpec) {
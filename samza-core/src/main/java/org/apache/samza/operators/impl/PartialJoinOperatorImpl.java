@@ -18,8 +18,6 @@
  */
 package org.apache.samza.operators.impl;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import org.apache.samza.SamzaException;
 import org.apache.samza.context.Context;
 import org.apache.samza.operators.functions.PartialJoinFunction;
@@ -43,7 +41,7 @@ import java.util.Collections;
  * @param <OM> the type of input message on the other side of the join
  * @param <JM> the type of join result
  */
-class PartialJoinOperatorImpl<K, M, OM, JM> extends OperatorImpl<M, JM> {
+class PartialJoinOperatorImpl<K, M, OM, JM> extends SyncOperatorImpl<M, JM> {
 
   private final JoinOperatorSpec<K, M, OM, JM> joinOpSpec;
   private final boolean isLeftSide; // whether this operator impl is for the left side of the join
@@ -70,8 +68,7 @@ class PartialJoinOperatorImpl<K, M, OM, JM> extends OperatorImpl<M, JM> {
   }
 
   @Override
-  protected CompletionStage<Collection<JM>> handleMessageAsync(M message, MessageCollector collector,
-      TaskCoordinator coordinator) {
+  protected Collection<JM> handleMessageSync(M message, MessageCollector collector, TaskCoordinator coordinator) {
     Collection<JM> output = Collections.emptyList();
 
     try {
@@ -91,7 +88,7 @@ class PartialJoinOperatorImpl<K, M, OM, JM> extends OperatorImpl<M, JM> {
       throw new SamzaException("Error handling message in PartialJoinOperatorImpl " + getOpImplId(), e);
     }
 
-    return CompletableFuture.completedFuture(output);
+    return output;
   }
 
   @Override
@@ -18,8 +18,6 @@
  */
 package org.apache.samza.operators.impl;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import org.apache.samza.config.ApplicationConfig;
 import org.apache.samza.context.Context;
 import org.apache.samza.context.InternalTaskContext;
@@ -43,7 +41,7 @@ import java.util.Collections;
 /**
  * An operator that sends sends messages to an output {@link SystemStream} for repartitioning them.
  */
-class PartitionByOperatorImpl<M, K, V> extends OperatorImpl<M, Void> {
+class PartitionByOperatorImpl<M, K, V> extends SyncOperatorImpl<M, Void> {
 
   private final PartitionByOperatorSpec<M, K, V> partitionByOpSpec;
   private final SystemStream systemStream;
@@ -72,13 +70,12 @@ class PartitionByOperatorImpl<M, K, V> extends OperatorImpl<M, Void> {
   }
 
   @Override
-  protected CompletionStage<Collection<Void>> handleMessageAsync(M message, MessageCollector collector,
-      TaskCoordinator coordinator) {
+  protected Collection<Void> handleMessageSync(M message, MessageCollector collector, TaskCoordinator coordinator) {
     K key = keyFunction.apply(message);
     V value = valueFunction.apply(message);
     Long partitionKey = key == null ? 0L : null;
     collector.send(new OutgoingMessageEnvelope(systemStream, partitionKey, key, value));
-    return CompletableFuture.completedFuture(Collections.emptyList());
+    return Collections.emptyList();
   }
 
   @Override
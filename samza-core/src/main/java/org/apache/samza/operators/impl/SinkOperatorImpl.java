@@ -18,8 +18,6 @@
  */
 package org.apache.samza.operators.impl;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import org.apache.samza.context.Context;
 import org.apache.samza.operators.functions.SinkFunction;
 import org.apache.samza.operators.spec.OperatorSpec;
@@ -34,7 +32,7 @@ import java.util.Collections;
 /**
  * An operator that sends incoming messages to an arbitrary output system using the provided {@link SinkFunction}.
  */
-class SinkOperatorImpl<M> extends OperatorImpl<M, Void> {
+class SinkOperatorImpl<M> extends SyncOperatorImpl<M, Void> {
 
   private final SinkOperatorSpec<M> sinkOpSpec;
   private final SinkFunction<M> sinkFn;
@@ -50,11 +48,10 @@ class SinkOperatorImpl<M> extends OperatorImpl<M, Void> {
   }
 
   @Override
-  protected CompletionStage<Collection<Void>> handleMessageAsync(M message, MessageCollector collector,
-      TaskCoordinator coordinator) {
+  protected Collection<Void> handleMessageSync(M message, MessageCollector collector, TaskCoordinator coordinator) {
     this.sinkFn.apply(message, collector, coordinator);
     // there should be no further chained operators since this is a terminal operator.
-    return CompletableFuture.completedFuture(Collections.emptyList());
+    return Collections.emptyList();
   }
 
   @Override
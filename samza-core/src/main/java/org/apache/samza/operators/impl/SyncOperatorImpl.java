@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.operators.impl;
+
+import org.apache.samza.task.MessageCollector;
+import org.apache.samza.task.TaskCoordinator;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+
+/**
+ * Abstract base class for the operator implementations whose results are available as soon as they have handled a
+ * message. Chains of synchronous operators handle messages by direct calls rather than by composing a future for
+ * every operator (see {@link OperatorImpl#resolveSynchronousChain()}).
+ *
+ * @param <M> type of the input to this operator
+ * @param <RM> type of the results of applying this operator
+ */
+public abstract class SyncOperatorImpl<M, RM> extends OperatorImpl<M, RM> {
+
+  @Override
+  protected final CompletionStage<Collection<RM>> handleMessageAsync(M message, MessageCollector collector,
+      TaskCoordinator coordinator) {
+    return CompletableFuture.completedFuture(handleMessageSync(message, collector, coordinator));
+  }
+
+  /**
+   * Handle the incoming {@code message} synchronously and return the results to be propagated to the registered
+   * operators.
+   *
+   * @param message the input message
+   * @param collector the {@link MessageCollector} in the context
+   * @param coordinator the {@link TaskCoordinator} in the context
+   *
+   * @return the results of the transformation
+   */
+  protected abstract Collection<RM> handleMessageSync(M message, MessageCollector collector,
+      TaskCoordinator coordinator);
+}
@@ -21,10 +21,12 @@
 package org.apache.samza.operators.impl;
 
 import com.google.common.base.Preconditions;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.samza.config.JobConfig;
 import org.apache.samza.context.Context;
+import org.apache.samza.metrics.Counter;
+import org.apache.samza.operators.functions.CombineFunction;
 import org.apache.samza.operators.functions.FoldLeftFunction;
 import org.apache.samza.operators.functions.MapFunction;
 import org.apache.samza.operators.functions.SupplierFunction;
@@ -45,6 +47,7 @@ import org.apache.samza.operators.windows.WindowPane;
 import org.apache.samza.operators.windows.internal.WindowInternal;
 import org.apache.samza.operators.windows.internal.WindowType;
 import org.apache.samza.storage.kv.ClosableIterator;
+import org.apache.samza.storage.kv.KeyValueIterator;
 import org.apache.samza.storage.kv.KeyValueStore;
 import org.apache.samza.task.MessageCollector;
 import org.apache.samza.task.TaskCoordinator;
@@ -57,6 +60,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -82,11 +87,19 @@ import java.util.stream.Collectors;
  *
  * The {@link WindowOperatorImpl} checks if the trigger fired and returns the result of the firing.
  *
+ * <p> Event time windows have no default trigger. Instead, a window is closed when the input watermark of the
+ * operator passes its end. Late messages for a closed window are added to it and emitted right away if they are
+ * within the allowed lateness of the window, and dropped otherwise.
+ *
+ * <p> Sliding windows keep their state per slide-sized pane, so that each message is stored only once. A window is
+ * emitted when the processing time, or the watermark for event time windows, passes its end, by combining the state
+ * of its panes. The state of a pane is removed once the last window that contains it has been emitted.
+ *
  * @param <M> the type of the incoming message
  * @param <K> the type of the key in the incoming message
  *
  */
-public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Object>> {
+public class WindowOperatorImpl<M, K> extends SyncOperatorImpl<M, WindowPane<K, Object>> {
   // Object == Collection<M> || WV
   private static final Logger LOG = LoggerFactory.getLogger(WindowOperatorImpl.class);
 
@@ -96,11 +109,48 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
   private final FoldLeftFunction<M, Object> foldLeftFn;
   private final SupplierFunction<Object> initializer;
   private final MapFunction<M, K> keyFn;
+  private final MapFunction<M, Long> eventTimeFn;
+  private final CombineFunction<Object> combineFn;
+  private final boolean hasAggregatedState;
+  private final boolean isSliding;
+  private final long windowSizeMs;
+  private final long slideMs;
+  private final long allowedLatenessMs;
 
   private final TriggerScheduler<K> triggerScheduler;
   private final Map<TriggerKey<K>, TriggerImplHandler> triggers = new ConcurrentHashMap<>();
+  private KeyValueStore<TimeSeriesKey<K>, Object> store;
   private TimeSeriesStore<K, Object> timeSeriesStore;
 
+  /*
+   * In-memory read caches of the state of open windows, so that messages don't need a range scan of the store to look
+   * it up. They don't buffer writes: every update is still written through to the store, which keeps it the source of
+   * truth for commits and restores, and entries that are evicted or missing are read back from the store. The caches
+   * are synchronized since messages for a task may be processed concurrently, and a get changes their access order.
+   */
+  // the aggregated value of each open pane of an aggregating window, keyed by its window key and timestamp
+  private Map<TimeSeriesKey<K>, Object> paneAccumulators;
+  // the timestamp of the open session of each key of a session window
+  private Map<K, Long> sessionTimestamps;
+
+  /*
+   * The keys of the event time windows that are open, and of the closed windows whose state is retained for late
+   * messages, by window timestamp. A retained closed window is also marked as closed in the store, with an entry at
+   * the marker timestamp of the window, so that it is not emitted again by the first watermark after a restart.
+   */
+  private final ConcurrentSkipListMap<Long, Set<K>> openEventTimeWindows = new ConcurrentSkipListMap<>();
+  private final ConcurrentSkipListMap<Long, Set<K>> closedEventTimeWindows = new ConcurrentSkipListMap<>();
+  private Counter droppedLateMessages;
+
+  // the keys with state in each pane of a sliding window, by pane timestamp
+  private final ConcurrentSkipListMap<Long, Set<K>> slidingWindowPanes = new ConcurrentSkipListMap<>();
+  /*
+   * The end timestamp of the last emitted sliding window. It is also kept in the store, in an entry at the marker
+   * timestamp of the window end, so that windows that were emitted before a restart are not emitted again.
+   */
+  private volatile long lastSlidingWindowEnd = Long.MIN_VALUE;
+  private TimeSeriesKey<K> lastSlidingWindowEndKey;
+
   public WindowOperatorImpl(WindowOperatorSpec<M, K, Object> windowOpSpec, Clock clock) {
     this.windowOpSpec = windowOpSpec;
     this.clock = clock;
@@ -108,14 +158,24 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
     this.foldLeftFn = window.getFoldLeftFunction();
     this.initializer = window.getInitializer();
     this.keyFn = window.getKeyExtractor();
+    this.eventTimeFn = window.isEventTimeWindow() ? window.getEventTimeExtractor() : null;
+    this.combineFn = window.getCombineFunction();
+    this.hasAggregatedState = window.hasAggregatedState();
+    this.isSliding = window.getWindowType() == WindowType.SLIDING;
+    this.windowSizeMs = window.getSize() != null ? window.getSize().toMillis() : 0;
+    this.slideMs = isSliding ? window.getSlide().toMillis() : 0;
+    this.allowedLatenessMs = eventTimeFn != null ? window.getAllowedLateness().toMillis() : 0;
     this.triggerScheduler= new TriggerScheduler(clock);
   }
 
   @Override
   protected void handleInit(Context context) {
 
-    KeyValueStore<TimeSeriesKey<K>, Object> store =
-        (KeyValueStore<TimeSeriesKey<K>, Object>) context.getTaskContext().getStore(windowOpSpec.getOpId());
+    store = (KeyValueStore<TimeSeriesKey<K>, Object>) context.getTaskContext().getStore(windowOpSpec.getOpId());
+
+    int cacheSize = new JobConfig(context.getJobContext().getConfig()).getWindowStateCacheSize();
+    paneAccumulators = createCache(cacheSize);
+    sessionTimestamps = createCache(cacheSize);
 
     if (initializer != null) {
       initializer.init(context);
@@ -125,10 +185,69 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
       keyFn.init(context);
     }
 
-    // For aggregating windows, we use the store in over-write mode since we only retain the aggregated
-    // value. Else, we use the store in append-mode.
+    if (combineFn != null) {
+      combineFn.init(context);
+    }
+
+    if (eventTimeFn != null) {
+      eventTimeFn.init(context);
+      droppedLateMessages = context.getContainerContext().getContainerMetricsRegistry()
+          .newCounter(METRICS_GROUP, windowOpSpec.getOpId() + "-dropped-late-messages");
+    }
+
+    if (eventTimeFn != null || isSliding) {
+      // the windows, or sliding window panes, with state in the store were open before a restart, except for the
+      // event time windows that are marked as closed
+      List<TimeSeriesKey<K>> slidingWindowEndKeys = new ArrayList<>();
+      KeyValueIterator<TimeSeriesKey<K>, Object> iterator = store.all();
+      try {
+        while (iterator.hasNext()) {
+          TimeSeriesKey<K> storeKey = iterator.next().getKey();
+          long timestamp = storeKey.getTimestamp();
+          if (isSliding && timestamp < 0) {
+            slidingWindowEndKeys.add(storeKey);
+          } else if (isSliding) {
+            addWindow(slidingWindowPanes, timestamp, storeKey.getKey());
+          } else if (timestamp < 0) {
+            addWindow(closedEventTimeWindows, toMarkerTimestamp(timestamp), storeKey.getKey());
+          } else {
+            addWindow(openEventTimeWindows, timestamp, storeKey.getKey());
+          }
+        }
+      } finally {
+        iterator.close();
+      }
+      // there is more than one window end only if a restart interrupted its update, and then the latest one holds
+      for (TimeSeriesKey<K> windowEndKey : slidingWindowEndKeys) {
+        long windowEnd = toMarkerTimestamp(windowEndKey.getTimestamp());
+        if (windowEnd > lastSlidingWindowEnd) {
+          if (lastSlidingWindowEndKey != null) {
+            store.delete(lastSlidingWindowEndKey);
+          }
+          lastSlidingWindowEnd = windowEnd;
+          lastSlidingWindowEndKey = windowEndKey;
+        } else {
+          store.delete(windowEndKey);
+        }
+      }
+      for (Map.Entry<Long, Set<K>> closedWindows : closedEventTimeWindows.entrySet()) {
+        Set<K> openKeys = openEventTimeWindows.get(closedWindows.getKey());
+        if (openKeys != null) {
+          openKeys.removeAll(closedWindows.getValue());
+          if (openKeys.isEmpty()) {
+            openEventTimeWindows.remove(closedWindows.getKey());
+          }
+        }
+      }
+    }
+
     if (foldLeftFn != null) {
       foldLeftFn.init(context);
+    }
+
+    // For aggregating windows, we use the store in over-write mode since we only retain the aggregated
+    // value. Else, we use the store in append-mode.
+    if (hasAggregatedState) {
       timeSeriesStore = new TimeSeriesStoreImpl(store, false);
     } else {
       timeSeriesStore = new TimeSeriesStoreImpl(store, true);
@@ -136,33 +255,63 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
   }
 
   @Override
-  protected CompletionStage<Collection<WindowPane<K, Object>>> handleMessageAsync(M message, MessageCollector collector,
+  protected Collection<WindowPane<K, Object>> handleMessageSync(M message, MessageCollector collector,
       TaskCoordinator coordinator) {
     LOG.trace("Processing message envelope: {}", message);
     List<WindowPane<K, Object>> results = new ArrayList<>();
 
     K key = (keyFn != null) ? keyFn.apply(message) : null;
-    long timestamp = getWindowTimestamp(message);
+    long timestamp;
+    boolean isLate = false;
+    if (eventTimeFn != null) {
+      long eventTime = eventTimeFn.apply(message);
+      timestamp = eventTime - Math.floorMod(eventTime, isSliding ? slideMs : windowSizeMs);
+      // the end of the last window that contains the message
+      long windowEnd = timestamp + windowSizeMs;
+      long watermark = getInputWatermark();
+      if (windowEnd + allowedLatenessMs <= watermark) {
+        LOG.trace("Dropping message with event time {} for window {} closed by watermark {}",
+            new Object[] {eventTime, timestamp, watermark});
+        droppedLateMessages.inc();
+        return results;
+      }
+      // a window can be closed after a restart before the watermark is known again
+      isLate = windowEnd <= watermark || isClosedEventTimeWindow(key, timestamp);
+    } else {
+      timestamp = getWindowTimestamp(key);
+    }
 
     // For aggregating windows, we only store the aggregated window value.
     // For non-aggregating windows, we store all messages in the window.
-    if (foldLeftFn == null) {
+    if (!hasAggregatedState) {
       timeSeriesStore.put(key, message, timestamp); // store is in append mode
     } else {
-      List<Object> existingState = getValues(key, timestamp);
-
-      Preconditions.checkState(existingState.size() <= 1, String.format("WindowState for aggregating windows " +
-          "must not contain more than one entry per window. Current size: %s", existingState.size()));
-
-      if (existingState.size() == 0) {
+      Object oldVal = getAggregatedValue(key, timestamp);
+      if (oldVal == null) {
         LOG.trace("No existing state found for key {} Invoking initializer.", key);
+        oldVal = initializer.get();
       }
-      Object oldVal = existingState.size() == 0 ? initializer.get() : existingState.get(0);
       Object aggregatedValue = foldLeftFn.apply(message, oldVal);
 
+      paneAccumulators.put(new TimeSeriesKey<>(key, timestamp, 0), aggregatedValue);
       timeSeriesStore.put(key, aggregatedValue, timestamp); // store is in over-write mode
     }
 
+    if (isSliding) {
+      // sliding windows are emitted by the timer or the watermark, and don't support early triggers
+      addWindow(slidingWindowPanes, timestamp, key);
+      return results;
+    }
+
+    if (eventTimeFn != null) {
+      if (isLate) {
+        // the window is already closed, so emit the update for the late message right away
+        closeEventTimeWindow(key, timestamp, FiringType.LATE).ifPresent(results::add);
+        return results;
+      }
+      addWindow(openEventTimeWindows, timestamp, key);
+    }
+
     if (window.getEarlyTrigger() != null) {
       TriggerKey<K> triggerKey = new TriggerKey<>(FiringType.EARLY, key, timestamp);
       TriggerImplHandler triggerImplHandler = getOrCreateTriggerImplHandler(triggerKey, window.getEarlyTrigger());
@@ -179,12 +328,15 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
       maybeTriggeredPane.ifPresent(results::add);
     }
 
-    return CompletableFuture.completedFuture(results);
+    return results;
   }
 
   @Override
   public Collection<WindowPane<K, Object>> handleTimer(MessageCollector collector, TaskCoordinator coordinator) {
     LOG.trace("Processing time triggers");
+    if (isSliding) {
+      return eventTimeFn == null ? emitSlidingWindows(clock.currentTimeMillis()) : Collections.emptyList();
+    }
     List<WindowPane<K, Object>> results = new ArrayList<>();
     List<TriggerKey<K>> keys = triggerScheduler.runPendingCallbacks();
 
@@ -199,6 +351,15 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
     return results;
   }
 
+  @Override
+  protected Collection<WindowPane<K, Object>> handleWatermark(long inputWatermark, MessageCollector collector,
+      TaskCoordinator coordinator) {
+    if (eventTimeFn == null) {
+      return Collections.emptyList();
+    }
+    return isSliding ? emitSlidingWindows(inputWatermark) : closeEventTimeWindows(inputWatermark);
+  }
+
   @Override
   protected OperatorSpec<M, WindowPane<K, Object>> getOperatorSpec() {
     return windowOpSpec;
@@ -206,6 +367,14 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
 
   @Override
   protected Collection<WindowPane<K, Object>> handleEndOfStream(MessageCollector collector, TaskCoordinator coordinator) {
+    if (isSliding) {
+      // no more messages will arrive, so emit all sliding windows with state
+      return emitSlidingWindows(Long.MAX_VALUE);
+    }
+    if (eventTimeFn != null) {
+      // no more messages will arrive, so close all event time windows
+      return closeEventTimeWindows(Long.MAX_VALUE);
+    }
     List<WindowPane<K, Object>> results = new ArrayList<>();
     Set<TriggerKey<K>> triggerKeys = new HashSet<>(triggers.keySet());
     for(TriggerKey<K> triggerKey : triggerKeys) {
@@ -229,6 +398,12 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
     if (keyFn != null) {
       keyFn.close();
     }
+    if (eventTimeFn != null) {
+      eventTimeFn.close();
+    }
+    if (combineFn != null) {
+      combineFn.close();
+    }
   }
 
   private TriggerImplHandler getOrCreateTriggerImplHandler(TriggerKey<K> triggerKey, Trigger<M> trigger) {
@@ -257,21 +432,19 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
     TriggerImplHandler wrapper = triggers.get(triggerKey);
     long timestamp = triggerKey.getTimestamp();
     K key = triggerKey.getKey();
-    List<Object> existingState = getValues(key, timestamp);
+    Object windowVal = getWindowValue(key, timestamp);
 
-    if (existingState == null || existingState.size() == 0) {
+    if (windowVal == null) {
       LOG.trace("No state found for triggerKey: {}", triggerKey);
       return Optional.empty();
     }
 
-    Object windowVal = window.getFoldLeftFunction() == null ? existingState : existingState.get(0);
-
     WindowPane<K, Object> paneOutput = computePaneOutput(triggerKey, windowVal);
 
     // Handle different accumulation modes.
     if (window.getAccumulationMode() == AccumulationMode.DISCARDING) {
       LOG.trace("Clearing state for trigger key: {}", triggerKey);
-      timeSeriesStore.remove(key, timestamp);
+      removeState(key, timestamp);
     }
 
     // Cancel all early triggers too when the default trigger fires. Also, clean all state for the key.
@@ -282,7 +455,7 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
 
       cancelTrigger(triggerKey, true);
       cancelTrigger(new TriggerKey(FiringType.EARLY, triggerKey.getKey(), triggerKey.getTimestamp()), true);
-      timeSeriesStore.remove(key, timestamp);
+      removeState(key, timestamp);
     }
 
     // Cancel non-repeating early triggers. All early triggers should be removed from the "triggers" map only after the
@@ -297,6 +470,205 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
     return Optional.of(paneOutput);
   }
 
+  /**
+   * Closes all event time windows that end at or before the {@code watermark}, and discards the state of closed
+   * windows once the watermark has also passed their allowed lateness.
+   *
+   * @param watermark the input watermark of this operator
+   * @return the panes of the closed windows
+   */
+  private List<WindowPane<K, Object>> closeEventTimeWindows(long watermark) {
+    List<WindowPane<K, Object>> results = new ArrayList<>();
+    while (!openEventTimeWindows.isEmpty() && openEventTimeWindows.firstKey() + windowSizeMs <= watermark) {
+      Map.Entry<Long, Set<K>> windows = openEventTimeWindows.pollFirstEntry();
+      for (K key : windows.getValue()) {
+        closeEventTimeWindow(key, windows.getKey(), FiringType.DEFAULT).ifPresent(results::add);
+      }
+    }
+
+    while (!closedEventTimeWindows.isEmpty()
+        && closedEventTimeWindows.firstKey() + windowSizeMs + allowedLatenessMs <= watermark) {
+      Map.Entry<Long, Set<K>> windows = closedEventTimeWindows.pollFirstEntry();
+      for (K key : windows.getValue()) {
+        removeState(key, windows.getKey());
+        store.delete(new TimeSeriesKey<>(key, toMarkerTimestamp(windows.getKey()), 0));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Emits the pane of an event time window that was closed by the watermark, or updated by a late message.
+   * In accumulating mode the state of the window is retained for late messages for the allowed lateness.
+   */
+  private Optional<WindowPane<K, Object>> closeEventTimeWindow(K key, long timestamp, FiringType firingType) {
+    TriggerKey<K> triggerKey = new TriggerKey<>(firingType, key, timestamp);
+    // early triggers don't fire after the window is closed
+    cancelTrigger(new TriggerKey<>(FiringType.EARLY, key, timestamp), true);
+
+    Object windowVal = getWindowValue(key, timestamp);
+    if (windowVal == null) {
+      LOG.trace("No state found for triggerKey: {}", triggerKey);
+      return Optional.empty();
+    }
+    WindowPane<K, Object> paneOutput = computePaneOutput(triggerKey, windowVal);
+
+    if (window.getAccumulationMode() != AccumulationMode.DISCARDING && allowedLatenessMs > 0) {
+      if (addWindow(closedEventTimeWindows, timestamp, key)) {
+        // the marker needs a value that the store can serialize, so it reuses a value of the window
+        Object markerVal = hasAggregatedState ? windowVal : ((List<Object>) windowVal).get(0);
+        store.put(new TimeSeriesKey<>(key, toMarkerTimestamp(timestamp), 0), markerVal);
+      }
+    } else {
+      removeState(key, timestamp);
+    }
+    return Optional.of(paneOutput);
+  }
+
+  /**
+   * Returns whether the event time window for the provided key and timestamp is closed, and retained for late messages.
+   */
+  private boolean isClosedEventTimeWindow(K key, long timestamp) {
+    Set<K> keys = closedEventTimeWindows.get(timestamp);
+    return keys != null && keys.contains(key);
+  }
+
+  /**
+   * Adds the window for the provided key and timestamp to {@code windows}. The sets of keys are synchronized rather
+   * than concurrent, since the key of a window without a key function is null.
+   *
+   * @return true if the window was not in {@code windows} yet
+   */
+  private static <WK> boolean addWindow(Map<Long, Set<WK>> windows, long timestamp, WK key) {
+    return windows.computeIfAbsent(timestamp, ts -> Collections.synchronizedSet(new HashSet<>())).add(key);
+  }
+
+  /**
+   * Maps a window timestamp to the timestamp of the entry that marks the window in the store, and back. Marker
+   * timestamps are negative, so marker entries are never part of the timestamp ranges read by the time-series store.
+   */
+  private static long toMarkerTimestamp(long timestamp) {
+    return -1 - timestamp;
+  }
+
+  /**
+   * Emits the sliding windows with state that end at or before {@code time}, and discards the state of the panes
+   * that are not in any later window.
+   *
+   * @param time the processing time, or the input watermark for event time windows
+   * @return the panes of the emitted windows
+   */
+  private List<WindowPane<K, Object>> emitSlidingWindows(long time) {
+    List<WindowPane<K, Object>> results = new ArrayList<>();
+    // a key and stored value of the last emitted window, for the entry that keeps its end in the store
+    K windowEndKey = null;
+    Object windowEndVal = null;
+    while (!slidingWindowPanes.isEmpty()) {
+      // the next window after the last emitted one that contains the earliest pane with state
+      long windowEnd = Math.max(lastSlidingWindowEnd, slidingWindowPanes.firstKey()) + slideMs;
+      if (windowEnd > time) {
+        break;
+      }
+      long windowStart = windowEnd - windowSizeMs;
+      Map<Long, Set<K>> panes = slidingWindowPanes.subMap(windowStart, windowEnd);
+
+      Set<K> keys = new LinkedHashSet<>();
+      panes.values().forEach(keys::addAll);
+      for (K key : keys) {
+        Object windowVal = getSlidingWindowValue(key, panes);
+        if (windowVal != null) {
+          results.add(computePaneOutput(new TriggerKey<>(FiringType.DEFAULT, key, windowStart), windowVal));
+        }
+      }
+      lastSlidingWindowEnd = windowEnd;
+
+      // the first key of the window has state in its first pane
+      K firstKey = keys.iterator().next();
+      Object storedVal = getStoredValue(firstKey, slidingWindowPanes.ceilingKey(windowStart));
+      if (storedVal != null) {
+        windowEndKey = firstKey;
+        windowEndVal = storedVal;
+      }
+
+      // the first pane of this window is not in any later window
+      while (!slidingWindowPanes.isEmpty() && slidingWindowPanes.firstKey() <= windowStart) {
+        Map.Entry<Long, Set<K>> pane = slidingWindowPanes.pollFirstEntry();
+        for (K key : pane.getValue()) {
+          removeState(key, pane.getKey());
+        }
+      }
+    }
+
+    if (windowEndVal != null) {
+      TimeSeriesKey<K> storeKey = new TimeSeriesKey<>(windowEndKey, toMarkerTimestamp(lastSlidingWindowEnd), 0);
+      store.put(storeKey, windowEndVal);
+      if (lastSlidingWindowEndKey != null && !lastSlidingWindowEndKey.equals(storeKey)) {
+        store.delete(lastSlidingWindowEndKey);
+      }
+      lastSlidingWindowEndKey = storeKey;
+    }
+    return results;
+  }
+
+  /**
+   * Returns a value in the store for the provided key and timestamp, or null if there is none. Entries that mark
+   * windows in the store reuse such a value, since the store can serialize it.
+   */
+  private Object getStoredValue(K key, long timestamp) {
+    if (hasAggregatedState) {
+      return getAggregatedValue(key, timestamp);
+    }
+    List<Object> values = getValues(key, timestamp);
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  /**
+   * Returns the value of a sliding window for the provided key by combining the state of its panes in order, or null
+   * if there is no state for the key in any of them.
+   */
+  private Object getSlidingWindowValue(K key, Map<Long, Set<K>> panes) {
+    Object windowVal = null;
+    List<Object> messages = new ArrayList<>();
+    for (Map.Entry<Long, Set<K>> pane : panes.entrySet()) {
+      if (!pane.getValue().contains(key)) {
+        continue;
+      }
+      if (hasAggregatedState) {
+        Object paneVal = getAggregatedValue(key, pane.getKey());
+        if (paneVal != null) {
+          windowVal = windowVal == null ? paneVal : combineFn.apply(windowVal, paneVal);
+        }
+      } else {
+        messages.addAll(getValues(key, pane.getKey()));
+      }
+    }
+
+    if (hasAggregatedState || messages.isEmpty()) {
+      return windowVal;
+    }
+    if (foldLeftFn == null) {
+      return messages;
+    }
+    // aggregate the messages of the window, since the partial aggregates of the panes can't be combined
+    windowVal = initializer.get();
+    for (Object message : messages) {
+      windowVal = foldLeftFn.apply((M) message, windowVal);
+    }
+    return windowVal;
+  }
+
+  /**
+   * Returns the value of the window for the provided key and timestamp, i.e. the aggregated value for aggregating
+   * windows or the list of messages otherwise, or null if there is no state for the window.
+   */
+  private Object getWindowValue(K key, long timestamp) {
+    if (!hasAggregatedState) {
+      List<Object> existingState = getValues(key, timestamp);
+      return existingState.isEmpty() ? null : existingState;
+    }
+    return getAggregatedValue(key, timestamp);
+  }
+
   /**
    * Computes the pane output corresponding to a {@link TriggerKey} that fired.
    */
@@ -328,22 +700,32 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
    * interval. For instance, if the tumbling interval is 10 seconds, all messages that arrive between [1000, 1010]
    * are assigned to the window with timestamp "1000"
    *
+   * In the case of sliding windows, timestamp of a window is defined as the start timestamp of the slide-sized pane
+   * the message is stored in.
+   *
    * In the case of session windows, timestamp is defined as the timestamp of the earliest message in the window.
    * For instance, if the session gap is 10 seconds, and the first message in the window arrives at "1002" seconds,
    * all messages (that arrive within 10 seconds of their previous message) are assigned a timestamp "1002".
    *
-   * @param message the input message
+   * @param key the key of the input message
    * @return the timestamp of the window this message should belong to
    */
-  private long getWindowTimestamp(M message) {
+  private long getWindowTimestamp(K key) {
     if (window.getWindowType() == WindowType.TUMBLING) {
       long triggerDurationMs = ((TimeTrigger<M>) window.getDefaultTrigger()).getDuration().toMillis();
       final long now = clock.currentTimeMillis();
       // assign timestamp to be the start timestamp of the window boundary
       long timestamp = now - now % triggerDurationMs;
       return timestamp;
+    } else if (window.getWindowType() == WindowType.SLIDING) {
+      final long now = clock.currentTimeMillis();
+      return now - now % slideMs;
     } else {
-      K key = keyFn.apply(message);
+      Long cachedTimestamp = sessionTimestamps.get(key);
+      if (cachedTimestamp != null) {
+        return cachedTimestamp;
+      }
+
       // get the value with the earliest timestamp for the provided key.
       ClosableIterator<TimestampedValue<Object>> iterator = timeSeriesStore.get(key, 0, Long.MAX_VALUE, 1);
       List<TimestampedValue<Object>> timestampedValues = toList(iterator);
@@ -352,10 +734,58 @@ public class WindowOperatorImpl<M, K> extends OperatorImpl<M, WindowPane<K, Obje
       // timestamp of the earliest message.
       long timestamp = (timestampedValues.isEmpty())? clock.currentTimeMillis() : timestampedValues.get(0).getTimestamp();
 
+      // the message is added to the session at this timestamp, so it stays the earliest until the session is removed
+      sessionTimestamps.put(key, timestamp);
       return timestamp;
     }
   }
 
+  /**
+   * Returns the aggregated value of an aggregating window for the provided key and timestamp, or null if there is no
+   * state for the window yet. The value is read from the store only if it is not in the in-memory cache.
+   *
+   * @param key the key of the window
+   * @param timestamp the timestamp of the window
+   * @return the aggregated value of the window, or null
+   */
+  private Object getAggregatedValue(K key, long timestamp) {
+    TimeSeriesKey<K> paneKey = new TimeSeriesKey<>(key, timestamp, 0);
+    Object aggregatedValue = paneAccumulators.get(paneKey);
+    if (aggregatedValue == null) {
+      List<Object> existingState = getValues(key, timestamp);
+
+      Preconditions.checkState(existingState.size() <= 1, String.format("WindowState for aggregating windows " +
+          "must not contain more than one entry per window. Current size: %s", existingState.size()));
+
+      if (!existingState.isEmpty()) {
+        aggregatedValue = existingState.get(0);
+        paneAccumulators.put(paneKey, aggregatedValue);
+      }
+    }
+    return aggregatedValue;
+  }
+
+  /**
+   * Removes the state for the provided key and timestamp from the store and the in-memory caches.
+   */
+  private void removeState(K key, long timestamp) {
+    timeSeriesStore.remove(key, timestamp);
+    paneAccumulators.remove(new TimeSeriesKey<>(key, timestamp, 0));
+    sessionTimestamps.remove(key);
+  }
+
+  /**
+   * Creates a synchronized map that retains up to {@code maxSize} of its most recently accessed entries.
+   */
+  private static <CK, CV> Map<CK, CV> createCache(int maxSize) {
+    return Collections.synchronizedMap(new LinkedHashMap<CK, CV>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CK, CV> eldest) {
+        return size() > maxSize;
+      }
+    });
+  }
+
   /**
    * Return a list of values in the store for the provided key and timestamp
    *
@@ -22,7 +22,7 @@ package org.apache.samza.operators.impl.store;
 import org.apache.samza.SamzaException;
 import org.apache.samza.serializers.Serde;
 
-import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * A {@link Serde} for {@link TimeSeriesKey}s.
@@ -51,6 +51,10 @@ public class TimeSeriesKeySerde<K> implements Serde<TimeSeriesKey<K>> {
     this.keySerde = keySerde;
   }
 
+  /**
+   * Serializes the key into a single array of the exact size, writing the timestamp and sequence number in place, so
+   * that the only allocations are the ones of the wrapped key serde and of the returned array.
+   */
   @Override
   public byte[] toBytes(TimeSeriesKey<K> timeSeriesKey) {
     K key = timeSeriesKey.getKey();
@@ -64,31 +68,28 @@ public class TimeSeriesKeySerde<K> implements Serde<TimeSeriesKey<K>> {
     int keySize = serializedKey == null ? 0 : serializedKey.length;
 
     // append the timestamp and sequence number to the serialized key bytes
-    ByteBuffer buf = ByteBuffer.allocate(keySize + TIMESTAMP_SIZE + SEQNUM_SIZE);
+    byte[] bytes = new byte[keySize + TIMESTAMP_SIZE + SEQNUM_SIZE];
     if (serializedKey != null) {
-      buf.put(serializedKey);
+      System.arraycopy(serializedKey, 0, bytes, 0, keySize);
     }
-    buf.putLong(timestamp);
-    buf.putLong(seqNum & SEQUENCE_NUM_MASK);
+    putLong(bytes, keySize, timestamp);
+    putLong(bytes, keySize + TIMESTAMP_SIZE, seqNum & SEQUENCE_NUM_MASK);
 
-    return buf.array();
+    return bytes;
   }
 
   @Override
   public TimeSeriesKey<K> fromBytes(byte[] timeSeriesKeyBytes) {
     // First obtain the key bytes, and deserialize them. Later de-serialize the timestamp and sequence number
-    ByteBuffer buf = ByteBuffer.wrap(timeSeriesKeyBytes);
     int keySize =  timeSeriesKeyBytes.length - TIMESTAMP_SIZE - SEQNUM_SIZE;
     K key = null;
 
     if (keySize != 0) {
-      byte[] keyBytes = new byte[keySize];
-      buf.get(keyBytes);
-      key = keySerde.fromBytes(keyBytes);
+      key = keySerde.fromBytes(Arrays.copyOf(timeSeriesKeyBytes, keySize));
     }
 
-    long timeStamp = buf.getLong();
-    long seqNum = buf.getLong();
+    long timeStamp = getLong(timeSeriesKeyBytes, keySize);
+    long seqNum = getLong(timeSeriesKeyBytes, keySize + TIMESTAMP_SIZE);
     long version = seqNum & ~SEQUENCE_NUM_MASK;
 
     if (version != TimeSeriesKey.VERSION) {
@@ -97,4 +98,25 @@ public class TimeSeriesKeySerde<K> implements Serde<TimeSeriesKey<K>> {
     }
     return new TimeSeriesKey(key, timeStamp, seqNum);
   }
+
+  /**
+   * Writes the value in big-endian order, like {@link java.nio.ByteBuffer#putLong(long)}.
+   */
+  private static void putLong(byte[] bytes, int offset, long value) {
+    for (int i = 7; i >= 0; i--) {
+      bytes[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+
+  /**
+   * Reads a value written in big-endian order, like {@link java.nio.ByteBuffer#getLong()}.
+   */
+  private static long getLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (bytes[offset + i] & 0xffL);
+    }
+    return value;
+  }
 }
@@ -27,8 +27,6 @@ import org.apache.samza.util.TimestampedValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -151,17 +149,8 @@ public class TimeSeriesStoreImpl<K, V> implements TimeSeriesStore<K, V> {
     TimeSeriesKey<K> fromKey = new TimeSeriesKey(key, startTimestamp, 0);
     TimeSeriesKey<K> toKey = new TimeSeriesKey(key, endTimeStamp, 0);
 
-    List<TimeSeriesKey<K>> keysToDelete = new LinkedList<>();
-
-    KeyValueIterator<TimeSeriesKey<K>, V> range = kvStore.range(fromKey, toKey);
-    try {
-      while (range.hasNext()) {
-        keysToDelete.add(range.next().getKey());
-      }
-    } finally {
-      range.close();
-    }
-    kvStore.deleteAll(keysToDelete);
+    LOG.trace("Removing entries in the store for {} from {} to {}", new Object[] {key, startTimestamp, endTimeStamp});
+    kvStore.deleteRange(fromKey, toKey);
   }
 
   @Override
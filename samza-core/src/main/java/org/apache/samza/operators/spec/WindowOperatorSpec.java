@@ -72,6 +72,9 @@ public class WindowOperatorSpec<M, WK, WV> extends OperatorSpec<M, WindowPane<WK
     checkArgument(window.getEventTimeExtractor() == null ||
         !(window.getEventTimeExtractor() instanceof ScheduledFunction || window.getEventTimeExtractor() instanceof WatermarkFunction),
         "A window does not accepts a user-defined ScheduledFunction or WatermarkFunction as the eventTimeExtractor.");
+    checkArgument(window.getCombineFunction() == null ||
+        !(window.getCombineFunction() instanceof ScheduledFunction || window.getCombineFunction() instanceof WatermarkFunction),
+        "A window does not accepts a user-defined ScheduledFunction or WatermarkFunction as the combineFunction.");
     this.window = window;
   }
 
@@ -83,9 +86,10 @@ public class WindowOperatorSpec<M, WK, WV> extends OperatorSpec<M, WindowPane<WK
    * Get the default triggering interval for this {@link WindowOperatorSpec}
    *
    * This is defined as the GCD of all triggering intervals across all {@link TimeBasedTrigger}s configured for
-   * this {@link WindowOperatorSpec}.
+   * this {@link WindowOperatorSpec}, or -1 if there are none, e.g. for event time windows without
+   * time-based early triggers.
    *
-   * @return the default triggering interval
+   * @return the default triggering interval, or -1
    */
   public long getDefaultTriggerMs() {
     List<TimeBasedTrigger> timeBasedTriggers = new ArrayList<>();
@@ -101,6 +105,9 @@ public class WindowOperatorSpec<M, WK, WV> extends OperatorSpec<M, WindowPane<WK
     }
 
     LOG.info("Got {} time-based triggers", timeBasedTriggers.size());
+    if (timeBasedTriggers.isEmpty()) {
+      return -1;
+    }
 
     List<Long> candidateDurations = timeBasedTriggers.stream()
         .map(timeBasedTrigger -> timeBasedTrigger.getDuration().toMillis())
@@ -146,7 +153,7 @@ public class WindowOperatorSpec<M, WK, WV> extends OperatorSpec<M, WindowPane<WK
     String storeFactory = "org.apache.samza.storage.kv.RocksDbKeyValueStorageEngineFactory";
 
     Serde storeKeySerde = new TimeSeriesKeySerde<>(window.getKeySerde());
-    Serde storeValSerde = window.getFoldLeftFunction() == null ? window.getMsgSerde() : window.getWindowValSerde();
+    Serde storeValSerde = window.hasAggregatedState() ? window.getWindowValSerde() : window.getMsgSerde();
 
     StoreDescriptor descriptor = new StoreDescriptor(storeName, storeFactory, storeKeySerde, storeValSerde, storeName,
         Collections.emptyMap());
@@ -97,6 +97,11 @@ public class InternalInMemoryStore<K, V> implements KeyValueStore<K, V> {
     throw new RuntimeException("not implemented.");
   }
 
+  @Override
+  public KeyValueIterator<K, V> prefixScan(K prefix) {
+    throw new RuntimeException("not implemented.");
+  }
+
   @Override
   public KeyValueSnapshot<K, V> snapshot(K from, K to) {
     throw new UnsupportedOperationException("snapshot() is not supported in " + InternalInMemoryStore.class.getName());
@@ -35,6 +35,7 @@ import org.apache.samza.annotation.InterfaceStability;
 import org.apache.samza.config.Config;
 import org.apache.samza.config.JobConfig;
 import org.apache.samza.config.JobCoordinatorConfig;
+import org.apache.samza.config.MetricsConfig;
 import org.apache.samza.config.TaskConfig;
 import org.apache.samza.container.SamzaContainer;
 import org.apache.samza.container.SamzaContainerListener;
@@ -401,7 +402,8 @@ public class StreamProcessor {
      * with the reporters. Therefore, don't reuse the StreamProcessor.metricsRegistry, because SamzaContainer also
      * registers the registry, and that will result in unnecessary duplicate metrics.
      */
-    MetricsRegistryMap metricsRegistryMap = new MetricsRegistryMap();
+    MetricsRegistryMap metricsRegistryMap =
+        new MetricsRegistryMap(new MetricsConfig(config).getMetricsReservoirType());
 
     DrainMonitor drainMonitor = null;
     JobConfig jobConfig = new JobConfig(config);
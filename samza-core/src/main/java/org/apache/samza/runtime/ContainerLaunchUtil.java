@@ -28,6 +28,7 @@ import org.apache.samza.application.descriptors.ApplicationDescriptor;
 import org.apache.samza.application.descriptors.ApplicationDescriptorImpl;
 import org.apache.samza.config.Config;
 import org.apache.samza.config.JobConfig;
+import org.apache.samza.config.MetricsConfig;
 import org.apache.samza.config.ShellCommandConfig;
 import org.apache.samza.container.ContainerHeartbeatMonitor;
 import org.apache.samza.container.ExecutionContainerIdManager;
@@ -140,7 +141,8 @@ public class ContainerLaunchUtil {
       Optional<DiagnosticsManager> diagnosticsManager =
           DiagnosticsUtil.buildDiagnosticsManager(jobName, jobId, jobModel, containerId, executionEnvContainerId,
               samzaEpochId, config);
-      MetricsRegistryMap metricsRegistryMap = new MetricsRegistryMap();
+      MetricsRegistryMap metricsRegistryMap =
+          new MetricsRegistryMap(new MetricsConfig(config).getMetricsReservoirType());
 
       DrainMonitor drainMonitor = null;
       JobConfig jobConfig = new JobConfig(config);
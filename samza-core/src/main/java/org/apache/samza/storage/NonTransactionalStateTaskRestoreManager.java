@@ -23,6 +23,7 @@ import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -354,28 +355,41 @@ class NonTransactionalStateTaskRestoreManager implements TaskRestoreManager {
   }
 
   /**
-   * Restore each store in taskStoresToRestore sequentially
+   * Restore each store in taskStoresToRestore in parallel, with a restore future per store on the restore executor.
+   * The number of stores restored concurrently across the container is bounded by the size of the restore executor.
    */
   @Override
   public CompletableFuture<Void> restore() {
-    return CompletableFuture.runAsync(() -> {
-      for (String storeName : taskStoresToRestore) {
-        LOG.info("Restoring store: {} for task: {}", storeName, taskModel.getTaskName());
-        SystemConsumer systemConsumer = storeConsumers.get(storeName);
-        SystemStream systemStream = storeChangelogs.get(storeName);
-        SystemAdmin systemAdmin = systemAdmins.getSystemAdmin(systemStream.getSystem());
-        ChangelogSSPIterator changelogSSPIterator = new ChangelogSSPIterator(systemConsumer,
-            new SystemStreamPartition(systemStream, taskModel.getChangelogPartition()), null, systemAdmin, false);
-
-        try {
-          taskStores.get(storeName).restore(changelogSSPIterator);
-        } catch (InterruptedException e) {
-          String msg = String.format("Interrupted while restoring store: %s for task: %s",
-              storeName, taskModel.getTaskName().getTaskName());
-          throw new SamzaException(msg, e); // wrap in unchecked exception to throw from lambda
-        }
+    StorageConfig storageConfig = new StorageConfig(config);
+    List<CompletableFuture<Void>> storeRestoreFutures = taskStoresToRestore.stream()
+        .map(storeName -> CompletableFuture.runAsync(() -> restoreStore(storeName, storageConfig), restoreExecutor))
+        .collect(Collectors.toList());
+    return CompletableFuture.allOf(storeRestoreFutures.toArray(new CompletableFuture[0]));
+  }
+
+  private void restoreStore(String storeName, StorageConfig storageConfig) {
+    LOG.info("Restoring store: {} for task: {}", storeName, taskModel.getTaskName());
+    SystemConsumer systemConsumer = storeConsumers.get(storeName);
+    SystemStream systemStream = storeChangelogs.get(storeName);
+    SystemAdmin systemAdmin = systemAdmins.getSystemAdmin(systemStream.getSystem());
+    SystemStreamPartition changelogSSP = new SystemStreamPartition(systemStream, taskModel.getChangelogPartition());
+    int restoreBufferSize = storageConfig.getRestorePipelineBufferSize(storeName);
+    ChangelogSSPIterator changelogSSPIterator = restoreBufferSize > 0
+        ? new PipelinedChangelogSSPIterator(systemConsumer, changelogSSP, null, systemAdmin, false, null,
+            restoreBufferSize)
+        : new ChangelogSSPIterator(systemConsumer, changelogSSP, null, systemAdmin, false);
+
+    try {
+      taskStores.get(storeName).restore(changelogSSPIterator);
+    } catch (InterruptedException e) {
+      String msg = String.format("Interrupted while restoring store: %s for task: %s",
+          storeName, taskModel.getTaskName().getTaskName());
+      throw new SamzaException(msg, e); // wrap in unchecked exception to throw from lambda
+    } finally {
+      if (changelogSSPIterator instanceof PipelinedChangelogSSPIterator) {
+        ((PipelinedChangelogSSPIterator) changelogSSPIterator).close();
       }
-    }, restoreExecutor);
+    }
   }
 
   /**
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.apache.samza.SamzaException;
+import org.apache.samza.system.ChangelogSSPIterator;
+import org.apache.samza.system.IncomingMessageEnvelope;
+import org.apache.samza.system.SystemAdmin;
+import org.apache.samza.system.SystemConsumer;
+import org.apache.samza.system.SystemStreamPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A {@link ChangelogSSPIterator} that fetches the changelog messages on a separate thread, so that polling the
+ * {@link SystemConsumer} overlaps with writing the messages to the store on the restoring thread.
+ *
+ * The fetch thread hands off the messages, along with the iterator {@link Mode} for each, through a bounded buffer.
+ * It blocks when the buffer is full, which bounds the memory used by the messages that have been fetched but not
+ * yet written. The fetch thread is started on the first call to {@link #hasNext()} or {@link #next()}, and must be
+ * stopped with {@link #close()} once the restore completes or fails.
+ *
+ * {@link #hasNext()}, {@link #next()} and {@link #getMode()} must be called from a single thread.
+ */
+public class PipelinedChangelogSSPIterator extends ChangelogSSPIterator {
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinedChangelogSSPIterator.class);
+
+  private final SystemStreamPartition changelogSSP;
+  private final int bufferSize;
+  private final BlockingQueue<Element> buffer;
+  /** the elements drained from the buffer, to avoid contending on it for every message */
+  private final ArrayDeque<Element> drained;
+
+  private Thread fetchThread;
+  private Mode mode;
+  private boolean done = false;
+
+  public PipelinedChangelogSSPIterator(SystemConsumer systemConsumer, SystemStreamPartition changelogSSP,
+      String restoreOffset, SystemAdmin admin, boolean trimEnabled, String endOffset, int bufferSize) {
+    super(systemConsumer, changelogSSP, restoreOffset, admin, trimEnabled, endOffset);
+    Preconditions.checkArgument(bufferSize > 0, "Restore buffer size must be positive.");
+    this.changelogSSP = changelogSSP;
+    this.bufferSize = bufferSize;
+    this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    this.drained = new ArrayDeque<>(bufferSize);
+    this.mode = super.getMode();
+  }
+
+  /**
+   * Blocks until the next message has been fetched or the changelog has been fully consumed. Returns false if the
+   * calling thread is interrupted while waiting, with its interrupt status set.
+   */
+  @Override
+  public boolean hasNext() {
+    if (done) {
+      return false;
+    }
+    if (drained.isEmpty()) {
+      startFetchThread();
+      try {
+        drained.add(buffer.take());
+        buffer.drainTo(drained, bufferSize);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    Element next = drained.peek();
+    if (next.error != null) {
+      throw new SamzaException("Error fetching changelog messages from: " + changelogSSP, next.error);
+    }
+    if (next.envelope == null) {
+      done = true;
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public IncomingMessageEnvelope next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Element next = drained.poll();
+    mode = next.mode;
+    return next.envelope;
+  }
+
+  /**
+   * Returns the mode of the last message returned by {@link #next()}.
+   */
+  @Override
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Stops the fetch thread if it is still running. Messages fetched but not yet returned are discarded.
+   */
+  public void close() {
+    if (fetchThread != null && fetchThread.isAlive()) {
+      LOG.info("Stopping the changelog fetch thread for: {}", changelogSSP);
+      fetchThread.interrupt();
+    }
+  }
+
+  private void startFetchThread() {
+    if (fetchThread == null) {
+      fetchThread = new Thread(this::fetch, "Samza Restore Fetch Thread-" + changelogSSP);
+      fetchThread.setDaemon(true);
+      fetchThread.start();
+    }
+  }
+
+  private void fetch() {
+    try {
+      while (super.hasNext()) {
+        IncomingMessageEnvelope envelope = super.next();
+        buffer.put(new Element(envelope, super.getMode(), null));
+      }
+      buffer.put(new Element(null, null, null));
+    } catch (InterruptedException e) {
+      LOG.info("Interrupted while fetching changelog messages from: {}", changelogSSP);
+    } catch (Throwable t) {
+      if (Thread.currentThread().isInterrupted()) {
+        LOG.info("Interrupted while fetching changelog messages from: {}", changelogSSP);
+        return;
+      }
+      LOG.error("Error fetching changelog messages from: {}", changelogSSP, t);
+      try {
+        buffer.put(new Element(null, null, t));
+      } catch (InterruptedException e) {
+        LOG.info("Interrupted while handing off the fetch error for: {}", changelogSSP);
+      }
+    }
+  }
+
+  private static class Element {
+    private final IncomingMessageEnvelope envelope;
+    private final Mode mode;
+    private final Throwable error;
+
+    Element(IncomingMessageEnvelope envelope, Mode mode, Throwable error) {
+      this.envelope = envelope;
+      this.mode = mode;
+      this.error = error;
+    }
+  }
+}
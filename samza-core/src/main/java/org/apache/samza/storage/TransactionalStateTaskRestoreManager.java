@@ -33,6 +33,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.samza.Partition;
 import org.apache.samza.SamzaException;
@@ -141,34 +142,47 @@ public class TransactionalStateTaskRestoreManager implements TaskRestoreManager
         currentChangelogOffsets);
   }
 
+  /**
+   * Restores the stores in parallel, with a restore future per store on the restore executor. The number of stores
+   * restored concurrently across the container is bounded by the size of the restore executor.
+   */
   @Override
   public CompletableFuture<Void> restore() {
-    return CompletableFuture.runAsync(() -> {
-      Map<String, RestoreOffsets> storesToRestore = storeActions.storesToRestore;
-
-      for (Map.Entry<String, RestoreOffsets> entry : storesToRestore.entrySet()) {
-        String storeName = entry.getKey();
-        String endOffset = entry.getValue().endingOffset;
-        SystemStream systemStream = storeChangelogs.get(storeName);
-        SystemAdmin systemAdmin = systemAdmins.getSystemAdmin(systemStream.getSystem());
-        SystemConsumer systemConsumer = storeConsumers.get(storeName);
-        SystemStreamPartition changelogSSP = new SystemStreamPartition(systemStream, taskModel.getChangelogPartition());
-
-        ChangelogSSPIterator changelogSSPIterator =
-            new ChangelogSSPIterator(systemConsumer, changelogSSP, endOffset, systemAdmin, true,
-                currentChangelogOffsets.get(changelogSSP).getNewestOffset());
-        StorageEngine taskStore = storeEngines.get(storeName);
-
-        LOG.info("Restoring store: {} for task: {}", storeName, taskModel.getTaskName());
-        try {
-          taskStore.restore(changelogSSPIterator);
-        } catch (InterruptedException e) {
-          String msg = String.format("Interrupted while restoring store: %s for task: %s",
-              storeName, taskModel.getTaskName().getTaskName());
-          throw new SamzaException(msg, e); // wrap in unchecked exception to throw from lambda
-        }
+    StorageConfig storageConfig = new StorageConfig(config);
+    List<CompletableFuture<Void>> storeRestoreFutures = storeActions.storesToRestore.entrySet().stream()
+        .map(entry -> CompletableFuture.runAsync(
+            () -> restoreStore(entry.getKey(), entry.getValue(), storageConfig), restoreExecutor))
+        .collect(Collectors.toList());
+    return CompletableFuture.allOf(storeRestoreFutures.toArray(new CompletableFuture[0]));
+  }
+
+  private void restoreStore(String storeName, RestoreOffsets restoreOffsets, StorageConfig storageConfig) {
+    String endOffset = restoreOffsets.endingOffset;
+    SystemStream systemStream = storeChangelogs.get(storeName);
+    SystemAdmin systemAdmin = systemAdmins.getSystemAdmin(systemStream.getSystem());
+    SystemConsumer systemConsumer = storeConsumers.get(storeName);
+    SystemStreamPartition changelogSSP = new SystemStreamPartition(systemStream, taskModel.getChangelogPartition());
+
+    String newestOffset = currentChangelogOffsets.get(changelogSSP).getNewestOffset();
+    int restoreBufferSize = storageConfig.getRestorePipelineBufferSize(storeName);
+    ChangelogSSPIterator changelogSSPIterator = restoreBufferSize > 0
+        ? new PipelinedChangelogSSPIterator(systemConsumer, changelogSSP, endOffset, systemAdmin, true,
+            newestOffset, restoreBufferSize)
+        : new ChangelogSSPIterator(systemConsumer, changelogSSP, endOffset, systemAdmin, true, newestOffset);
+    StorageEngine taskStore = storeEngines.get(storeName);
+
+    LOG.info("Restoring store: {} for task: {}", storeName, taskModel.getTaskName());
+    try {
+      taskStore.restore(changelogSSPIterator);
+    } catch (InterruptedException e) {
+      String msg = String.format("Interrupted while restoring store: %s for task: %s",
+          storeName, taskModel.getTaskName().getTaskName());
+      throw new SamzaException(msg, e); // wrap in unchecked exception to throw from lambda
+    } finally {
+      if (changelogSSPIterator instanceof PipelinedChangelogSSPIterator) {
+        ((PipelinedChangelogSSPIterator) changelogSSPIterator).close();
       }
-    }, restoreExecutor);
+    }
   }
 
   /**
@@ -168,6 +168,7 @@ public class BlobStoreBackupManager implements TaskBackupManager {
     metrics.bytesRemaining.getValue().set(0L);
     metrics.filesToRetain.getValue().set(0L);
     metrics.bytesToRetain.getValue().set(0L);
+    metrics.bytesReused.getValue().set(0L);
 
     // This map is used to atomically replace the prevStoreSnapshotIndexesFuture map at the end of the task commit
     Map<String, CompletableFuture<Pair<String, SnapshotIndex>>>
@@ -207,7 +208,8 @@ public class BlobStoreBackupManager implements TaskBackupManager {
 
         long dirDiffStartTime = System.nanoTime();
         // get the diff between previous and current store directories
-        DirDiff dirDiff = DirDiffUtil.getDirDiff(checkpointDir, prevDirIndex, DirDiffUtil.areSameFile(false, true));
+        DirDiff dirDiff = DirDiffUtil.getDirDiff(checkpointDir, prevDirIndex,
+            DirDiffUtil.areSameFile(false, true, metrics.checksumRate));
         metrics.storeDirDiffNs.get(storeName).update(System.nanoTime() - dirDiffStartTime);
 
         DirDiff.Stats stats = DirDiff.getStats(dirDiff);
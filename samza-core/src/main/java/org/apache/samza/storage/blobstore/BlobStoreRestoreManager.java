@@ -108,7 +108,7 @@ public class BlobStoreRestoreManager implements TaskRestoreManager {
     this.storageManagerUtil = storageManagerUtil;
     this.blobStoreManager = blobStoreManager;
     this.blobStoreUtil = createBlobStoreUtil(blobStoreManager, executor, blobStoreConfig, metrics);
-    this.dirDiffUtil = new DirDiffUtil();
+    this.dirDiffUtil = new DirDiffUtil(metrics.checksumRate);
     this.prevStoreSnapshotIndexes = new HashMap<>();
     this.loggedBaseDir = loggedBaseDir;
     this.nonLoggedBaseDir = nonLoggedBaseDir;
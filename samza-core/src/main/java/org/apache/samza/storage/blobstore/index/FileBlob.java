@@ -36,12 +36,22 @@ public class FileBlob {
    * multiple blobs associated with it. Each blob then has its own ID and an offset in the file.
    */
   private final int offset;
+  /**
+   * Hex encoded SHA-256 hash of the contents of this blob, if the file was split into content defined chunks.
+   * Used to reuse blobs for unchanged chunks in later versions of the file. Null for other blobs.
+   */
+  private final String hash;
 
   public FileBlob(String blobId, int offset) {
+    this(blobId, offset, null);
+  }
+
+  public FileBlob(String blobId, int offset, String hash) {
     Preconditions.checkState(StringUtils.isNotBlank(blobId));
     Preconditions.checkState(offset >= 0);
     this.blobId = blobId;
     this.offset = offset;
+    this.hash = hash;
   }
 
   public String getBlobId() {
@@ -52,6 +62,10 @@ public class FileBlob {
     return offset;
   }
 
+  public String getHash() {
+    return hash;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -67,6 +81,7 @@ public class FileBlob {
     return new EqualsBuilder()
         .append(blobId, fileBlob.blobId)
         .append(offset, fileBlob.offset)
+        .append(hash, fileBlob.hash)
         .isEquals();
   }
 
@@ -75,11 +90,12 @@ public class FileBlob {
     return new HashCodeBuilder(17, 37)
         .append(blobId)
         .append(offset)
+        .append(hash)
         .toHashCode();
   }
 
   @Override
   public String toString() {
-    return "FileBlob{" + "blobId='" + blobId + '\'' + ", offset=" + offset + '}';
+    return "FileBlob{" + "blobId='" + blobId + '\'' + ", offset=" + offset + ", hash='" + hash + '\'' + '}';
   }
 }
@@ -21,6 +21,7 @@ package org.apache.samza.storage.blobstore.index.serde;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 
@@ -30,7 +31,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public abstract class JsonFileBlobMixin {
   @JsonCreator
-  public JsonFileBlobMixin(@JsonProperty("blob-id") String blobId, @JsonProperty("offset") int offset) {
+  public JsonFileBlobMixin(@JsonProperty("blob-id") String blobId, @JsonProperty("offset") int offset,
+      @JsonProperty("hash") String hash) {
   }
 
   @JsonProperty("blob-id")
@@ -38,4 +40,9 @@ public abstract class JsonFileBlobMixin {
 
   @JsonProperty("offset")
   abstract int getOffset();
+
+  // only present for content defined chunks. omitted otherwise to keep indexes compatible and compact.
+  @JsonProperty("hash")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  abstract String getHash();
 }
@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.blobstore.local;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import org.apache.samza.SamzaException;
+import org.apache.samza.config.BlobStoreConfig;
+import org.apache.samza.config.Config;
+import org.apache.samza.config.ConfigException;
+import org.apache.samza.storage.blobstore.BlobStoreManager;
+import org.apache.samza.storage.blobstore.Metadata;
+import org.apache.samza.storage.blobstore.exceptions.DeletedException;
+import org.apache.samza.storage.blobstore.exceptions.RetriableException;
+import org.apache.samza.util.Clock;
+import org.apache.samza.util.SystemClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A {@link BlobStoreManager} that stores blobs as files in a local, or shared (e.g. NFS), directory configured with
+ * {@link BlobStoreConfig#LOCAL_ROOT_DIR}.
+ *
+ * <p> Blobs are stored at {@code <root dir>/<job name>/<job id>/<task name>/<store name>/<uuid>}, and the path of a
+ * blob relative to the root dir is its blob ID. A blob is first written and synced to a temporary file, and then
+ * atomically renamed, so that partially written blobs are never visible. Blobs are copied with
+ * {@link FileChannel#transferFrom} and {@link FileChannel#transferTo}, which avoid copying data through user space
+ * where the platform supports it. All requests run on the provided executor, so files are transferred in parallel.
+ *
+ * <p> A new blob has a TTL, recorded by an empty marker file next to it, until its TTL is removed. Deleted blobs are
+ * renamed to tombstones, so that they can still be read with {@code getDeletedBlob} until they are compacted.
+ * Blobs whose TTL expired, tombstones and abandoned temporary files older than {@link BlobStoreConfig#LOCAL_TTL_MS}
+ * are removed by a cleanup of each store directory when this manager first uses it, and again on each use once
+ * the TTL has elapsed since its last cleanup.
+ */
+public class LocalBlobStoreManager implements BlobStoreManager {
+  private static final Logger LOG = LoggerFactory.getLogger(LocalBlobStoreManager.class);
+  static final String TTL_SUFFIX = ".ttl";
+  static final String DELETED_SUFFIX = ".deleted";
+  static final String TMP_SUFFIX = ".tmp";
+  private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+  private final Path rootDir;
+  private final long ttlMs;
+  private final ExecutorService executor;
+  private final Clock clock;
+  // the time of the last cleanup of each store directory by this manager
+  private final ConcurrentHashMap<Path, Long> lastCleanUpTimes = new ConcurrentHashMap<>();
+
+  public LocalBlobStoreManager(Config config, ExecutorService executor) {
+    this(config, executor, SystemClock.instance());
+  }
+
+  @VisibleForTesting
+  LocalBlobStoreManager(Config config, ExecutorService executor, Clock clock) {
+    BlobStoreConfig blobStoreConfig = new BlobStoreConfig(config);
+    String rootDir = blobStoreConfig.getLocalRootDir();
+    if (rootDir == null || rootDir.isEmpty()) {
+      throw new ConfigException("Missing config: " + BlobStoreConfig.LOCAL_ROOT_DIR);
+    }
+    this.rootDir = Paths.get(rootDir).toAbsolutePath().normalize();
+    this.ttlMs = blobStoreConfig.getLocalTtlMs();
+    this.executor = executor;
+    this.clock = clock;
+  }
+
+  @Override
+  public void init() {
+    try {
+      Files.createDirectories(rootDir);
+    } catch (IOException e) {
+      throw new SamzaException("Error creating blob store root dir: " + rootDir, e);
+    }
+  }
+
+  @Override
+  public CompletionStage<String> put(InputStream inputStream, Metadata metadata) {
+    return CompletableFuture.supplyAsync(() -> {
+      Path storeDir = resolve(rootDir.resolve(metadata.getJobName()).resolve(metadata.getJobId())
+          .resolve(metadata.getTaskName()).resolve(metadata.getStoreName()).toString());
+      cleanUpIfDue(storeDir);
+
+      Path blobPath = storeDir.resolve(UUID.randomUUID().toString());
+      Path ttlMarkerPath = withSuffix(blobPath, TTL_SUFFIX);
+      Path tmpPath = withSuffix(blobPath, TMP_SUFFIX);
+      try {
+        Files.createDirectories(storeDir);
+        // the marker is created first, so that the blob is cleaned up if it is never made permanent
+        Files.createFile(ttlMarkerPath);
+        long size;
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+          size = transferFrom(inputStream, channel);
+          channel.force(true);
+        }
+        if (metadata.getPayloadSize() >= 0 && size != metadata.getPayloadSize()) {
+          throw new IOException(String.format("Read %s bytes instead of the expected %s", size, metadata.getPayloadSize()));
+        }
+        Files.move(tmpPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        deleteQuietly(tmpPath);
+        deleteQuietly(ttlMarkerPath);
+        throw new RetriableException(String.format("Error putting blob: %s for %s", blobPath, metadata), e);
+      }
+
+      String blobId = rootDir.relativize(blobPath).toString();
+      LOG.debug("Put blob: {} for {}", blobId, metadata);
+      return blobId;
+    }, executor);
+  }
+
+  @Override
+  public CompletionStage<Void> get(String id, OutputStream outputStream, Metadata metadata, boolean getDeletedBlob) {
+    return CompletableFuture.runAsync(() -> {
+      Path blobPath = resolve(id);
+      Path sourcePath = blobPath;
+      if (!Files.exists(blobPath)) {
+        Path tombstonePath = withSuffix(blobPath, DELETED_SUFFIX);
+        if (!Files.exists(tombstonePath)) {
+          throw new SamzaException(String.format("Blob: %s was not found for %s", id, metadata));
+        }
+        if (!getDeletedBlob) {
+          throw new DeletedException(String.format("Blob: %s is deleted. Get deleted was set to false", id));
+        }
+        LOG.info("Blob: {} is deleted. Get deleted was set to true", id);
+        sourcePath = tombstonePath;
+      }
+
+      try (FileChannel channel = FileChannel.open(sourcePath, StandardOpenOption.READ)) {
+        transferTo(channel, outputStream);
+        outputStream.flush();
+      } catch (NoSuchFileException e) {
+        // the blob was deleted concurrently
+        if (!getDeletedBlob) {
+          throw new DeletedException(String.format("Blob: %s is deleted. Get deleted was set to false", id), e);
+        }
+        throw new RetriableException(String.format("Blob: %s was deleted while getting it", id), e);
+      } catch (IOException e) {
+        throw new RetriableException(String.format("Error getting blob: %s for %s", id, metadata), e);
+      }
+    }, executor);
+  }
+
+  @Override
+  public CompletionStage<Void> delete(String id, Metadata metadata) {
+    return CompletableFuture.runAsync(() -> {
+      Path blobPath = resolve(id);
+      cleanUpIfDue(blobPath.getParent());
+
+      Path tombstonePath = withSuffix(blobPath, DELETED_SUFFIX);
+      try {
+        Files.move(blobPath, tombstonePath, StandardCopyOption.ATOMIC_MOVE);
+        // the tombstone is retained for the TTL from the time the blob is deleted
+        Files.setLastModifiedTime(tombstonePath, FileTime.fromMillis(clock.currentTimeMillis()));
+        Files.deleteIfExists(withSuffix(blobPath, TTL_SUFFIX));
+      } catch (NoSuchFileException e) {
+        throw new DeletedException(String.format("Blob: %s is already deleted", id), e);
+      } catch (IOException e) {
+        throw new RetriableException(String.format("Error deleting blob: %s for %s", id, metadata), e);
+      }
+      LOG.debug("Deleted blob: {}", id);
+    }, executor);
+  }
+
+  @Override
+  public CompletionStage<Void> removeTTL(String blobId, Metadata metadata) {
+    return CompletableFuture.runAsync(() -> {
+      Path blobPath = resolve(blobId);
+      cleanUpIfDue(blobPath.getParent());
+
+      try {
+        Files.deleteIfExists(withSuffix(blobPath, TTL_SUFFIX));
+      } catch (IOException e) {
+        throw new RetriableException(String.format("Error removing TTL for blob: %s for %s", blobId, metadata), e);
+      }
+      // checked after removing the marker, since the blob may have been cleaned up if its TTL expired
+      if (!Files.exists(blobPath)) {
+        throw new DeletedException(String.format("Blob: %s is deleted", blobId));
+      }
+    }, executor);
+  }
+
+  @Override
+  public void close() {
+  }
+
+  /**
+   * Removes the blobs whose TTL expired, the tombstones and the temporary files older than the TTL in the directory,
+   * if it has not been cleaned up by this manager within the TTL. Cleanup is best effort, and errors are only logged.
+   */
+  private void cleanUpIfDue(Path storeDir) {
+    long now = clock.currentTimeMillis();
+    Long lastCleanUpTime = lastCleanUpTimes.get(storeDir);
+    if (lastCleanUpTime != null && now - lastCleanUpTime < ttlMs) {
+      return;
+    }
+    // only one of the concurrent requests which find the cleanup due runs it
+    boolean claimed = lastCleanUpTime == null
+        ? lastCleanUpTimes.putIfAbsent(storeDir, now) == null
+        : lastCleanUpTimes.replace(storeDir, lastCleanUpTime, now);
+    if (!claimed || !Files.isDirectory(storeDir)) {
+      return;
+    }
+
+    long expiryTime = now - ttlMs;
+    int removedCount = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(storeDir)) {
+      for (Path file : files) {
+        String fileName = file.getFileName().toString();
+        try {
+          if (!fileName.endsWith(TTL_SUFFIX) && !fileName.endsWith(DELETED_SUFFIX) && !fileName.endsWith(TMP_SUFFIX)
+              || Files.getLastModifiedTime(file).toMillis() > expiryTime) {
+            continue;
+          }
+          if (fileName.endsWith(TTL_SUFFIX)) {
+            Files.deleteIfExists(storeDir.resolve(fileName.substring(0, fileName.length() - TTL_SUFFIX.length())));
+          }
+          Files.deleteIfExists(file);
+          removedCount++;
+        } catch (NoSuchFileException e) {
+          // removed concurrently, e.g. by the cleanup of another manager
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Error cleaning up blob store dir: " + storeDir, e);
+    }
+    LOG.info("Removed {} expired blobs, tombstones and temporary files in blob store dir: {}", removedCount, storeDir);
+  }
+
+  /**
+   * Returns the absolute path for the provided path relative to the root dir, e.g. a blob ID.
+   */
+  private Path resolve(String relativePath) {
+    Path path = rootDir.resolve(relativePath).normalize();
+    if (!path.startsWith(rootDir) || path.equals(rootDir)) {
+      throw new IllegalArgumentException(String.format("Path: %s is not in the blob store root dir: %s", relativePath, rootDir));
+    }
+    return path;
+  }
+
+  private static Path withSuffix(Path path, String suffix) {
+    return path.resolveSibling(path.getFileName() + suffix);
+  }
+
+  private static void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOG.warn("Error deleting file: " + path, e);
+    }
+  }
+
+  /**
+   * Copies the input stream to the channel, and returns the number of bytes copied.
+   */
+  private static long transferFrom(InputStream inputStream, FileChannel channel) throws IOException {
+    // the input stream is not closed here, since it is owned by the caller
+    ReadableByteChannel source = Channels.newChannel(inputStream);
+    long position = 0;
+    long transferred;
+    while ((transferred = channel.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+      position += transferred;
+    }
+    return position;
+  }
+
+  /**
+   * Copies the channel to the output stream. Copies directly between file channels if the output stream is a file.
+   */
+  private static void transferTo(FileChannel channel, OutputStream outputStream) throws IOException {
+    // the output stream is not closed here, since it is owned by the caller
+    WritableByteChannel target = outputStream instanceof FileOutputStream
+        ? ((FileOutputStream) outputStream).getChannel()
+        : Channels.newChannel(outputStream);
+    long size = channel.size();
+    long position = 0;
+    while (position < size) {
+      position += channel.transferTo(position, size - position, target);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.blobstore.local;
+
+import java.util.concurrent.ExecutorService;
+import org.apache.samza.config.Config;
+import org.apache.samza.storage.blobstore.BlobStoreManager;
+import org.apache.samza.storage.blobstore.BlobStoreManagerFactory;
+
+
+/**
+ * Creates {@link LocalBlobStoreManager}s, which store blobs in a local or shared directory.
+ */
+public class LocalBlobStoreManagerFactory implements BlobStoreManagerFactory {
+  @Override
+  public BlobStoreManager getBackupBlobStoreManager(Config config, ExecutorService backupExecutor) {
+    return new LocalBlobStoreManager(config, backupExecutor);
+  }
+
+  @Override
+  public BlobStoreManager getRestoreBlobStoreManager(Config config, ExecutorService restoreExecutor) {
+    return new LocalBlobStoreManager(config, restoreExecutor);
+  }
+}
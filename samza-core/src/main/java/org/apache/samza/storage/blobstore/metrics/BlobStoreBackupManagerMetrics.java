@@ -47,7 +47,11 @@ public class BlobStoreBackupManagerMetrics {
   public final Gauge<AtomicLong> bytesRemaining;
   public final Gauge<AtomicLong> filesToRetain;
   public final Gauge<AtomicLong> bytesToRetain;
+  // bytes of unchanged chunks of modified files that were reused from their previous versions instead of uploaded
+  public final Gauge<AtomicLong> bytesReused;
   public final Counter uploadRate;
+  // bytes of local files checksummed when comparing them to the previous remote snapshot
+  public final Counter checksumRate;
 
   // per store breakdowns
   public final Map<String, Timer> storeDirDiffNs;
@@ -84,6 +88,7 @@ public class BlobStoreBackupManagerMetrics {
     this.bytesRemaining = metricsRegistry.newGauge(GROUP, "bytes-remaining", new AtomicLong(0L));
     this.filesToRetain = metricsRegistry.newGauge(GROUP, "files-to-retain", new AtomicLong(0L));
     this.bytesToRetain = metricsRegistry.newGauge(GROUP, "bytes-to-retain", new AtomicLong(0L));
+    this.bytesReused = metricsRegistry.newGauge(GROUP, "bytes-reused", new AtomicLong(0L));
 
     this.storeDirDiffNs = new ConcurrentHashMap<>();
     this.storeUploadNs = new ConcurrentHashMap<>();
@@ -99,6 +104,7 @@ public class BlobStoreBackupManagerMetrics {
     this.storeBytesToRemove = new ConcurrentHashMap<>();
 
     this.uploadRate = metricsRegistry.newCounter(GROUP, "upload-rate");
+    this.checksumRate = metricsRegistry.newCounter(GROUP, "checksum-rate");
 
     this.cleanupNs = metricsRegistry.newTimer(GROUP, "cleanup-ns");
 
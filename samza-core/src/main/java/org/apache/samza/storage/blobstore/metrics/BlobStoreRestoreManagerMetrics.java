@@ -48,6 +48,8 @@ public class BlobStoreRestoreManagerMetrics {
   public final Gauge<AtomicLong> bytesRemaining;
 
   public final Counter restoreRate;
+  // bytes of local files checksummed when comparing local store and checkpoint dirs to the remote snapshot
+  public final Counter checksumRate;
 
   // per store breakdowns
   public final Map<String, Gauge<Long>> storePreRestoreNs;
@@ -73,6 +75,7 @@ public class BlobStoreRestoreManagerMetrics {
 
 
     this.restoreRate = metricsRegistry.newCounter(GROUP, "restore-rate");
+    this.checksumRate = metricsRegistry.newCounter(GROUP, "checksum-rate");
 
     this.storePreRestoreNs = new ConcurrentHashMap<>();
     this.storeRestoreNs = new ConcurrentHashMap<>();
@@ -22,6 +22,7 @@ package org.apache.samza.storage.blobstore.util;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -29,12 +30,18 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -70,6 +77,7 @@ import org.apache.samza.storage.blobstore.index.serde.SnapshotIndexSerde;
 import org.apache.samza.storage.blobstore.metrics.BlobStoreBackupManagerMetrics;
 import org.apache.samza.storage.blobstore.metrics.BlobStoreRestoreManagerMetrics;
 import org.apache.samza.util.FutureUtil;
+import org.apache.samza.storage.blobstore.util.ContentDefinedChunker.Chunk;
 import org.apache.samza.util.RetryPolicyConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +97,8 @@ public class BlobStoreUtil {
   private final BlobStoreRestoreManagerMetrics restoreMetrics;
   private final SnapshotIndexSerde snapshotIndexSerde;
   private final RetryPolicyConfig retryPolicyConfig;
+  // null if chunking is disabled
+  private final ContentDefinedChunker chunker;
 
   public BlobStoreUtil(BlobStoreManager blobStoreManager, ExecutorService executor, BlobStoreConfig blobStoreConfig,
       BlobStoreBackupManagerMetrics backupMetrics, BlobStoreRestoreManagerMetrics restoreMetrics) {
@@ -99,6 +109,8 @@ public class BlobStoreUtil {
     this.restoreMetrics = restoreMetrics;
     this.snapshotIndexSerde = new SnapshotIndexSerde();
     this.retryPolicyConfig = this.blobStoreConfig.getRetryPolicyConfig();
+    this.chunker = this.blobStoreConfig.isChunkingEnabled()
+        ? new ContentDefinedChunker(this.blobStoreConfig.getChunkingAvgChunkSizeBytes()) : null;
   }
 
   /**
@@ -317,10 +329,14 @@ public class BlobStoreUtil {
    * @return A future with the {@link DirIndex} if the upload completed successfully.
    */
   public CompletionStage<DirIndex> putDir(DirDiff dirDiff, SnapshotMetadata snapshotMetadata) {
+    // Previous versions of modified files, if any. Unchanged chunks of these are reused instead of uploaded again.
+    Map<String, FileIndex> previousFileIndexes = new HashMap<>();
+    dirDiff.getFilesRemoved().forEach(fileIndex -> previousFileIndexes.put(fileIndex.getFileName(), fileIndex));
+
     // Upload all new files in the dir
     List<File> filesToUpload = dirDiff.getFilesAdded();
     List<CompletionStage<FileIndex>> fileFutures = filesToUpload.stream()
-        .map(file -> putFile(file, snapshotMetadata))
+        .map(file -> putFile(file, snapshotMetadata, previousFileIndexes.get(file.getName())))
         .collect(Collectors.toList());
 
     CompletableFuture<Void> allFilesFuture =
@@ -342,10 +358,11 @@ public class BlobStoreUtil {
         .thenApplyAsync(f -> {
           LOG.trace("All file and dir uploads complete for task: {} store: {}",
               snapshotMetadata.getTaskName(), snapshotMetadata.getStoreName());
-          List<FileIndex> filesPresent = fileFutures.stream()
+          List<FileIndex> filesUploaded = fileFutures.stream()
               .map(blob -> blob.toCompletableFuture().join())
               .collect(Collectors.toList());
 
+          List<FileIndex> filesPresent = new ArrayList<>(filesUploaded);
           filesPresent.addAll(dirDiff.getFilesRetained());
 
           List<DirIndex> subDirsPresent = subDirFutures.stream()
@@ -359,12 +376,42 @@ public class BlobStoreUtil {
               snapshotMetadata.getTaskName(), snapshotMetadata.getStoreName());
           return new DirIndex(dirDiff.getDirName(),
               filesPresent,
-              dirDiff.getFilesRemoved(),
+              excludeReusedBlobs(dirDiff.getFilesRemoved(), filesUploaded),
               subDirsPresent,
               dirDiff.getSubDirsRemoved());
         }, executor);
   }
 
+  /**
+   * Removes blobs that were reused by the new version of a modified file from the {@link FileIndex} of its
+   * previous version, so that they are not deleted when the previous version is cleaned up.
+   * @param filesRemoved previous versions of modified files, and deleted files
+   * @param filesUploaded new versions of modified files, and added files
+   * @return filesRemoved, with reused blobs excluded
+   */
+  private static List<FileIndex> excludeReusedBlobs(List<FileIndex> filesRemoved, List<FileIndex> filesUploaded) {
+    Map<String, Set<String>> uploadedBlobIds = new HashMap<>();
+    for (FileIndex fileUploaded : filesUploaded) {
+      uploadedBlobIds.put(fileUploaded.getFileName(),
+          fileUploaded.getBlobs().stream().map(FileBlob::getBlobId).collect(Collectors.toSet()));
+    }
+
+    List<FileIndex> result = new ArrayList<>(filesRemoved.size());
+    for (FileIndex fileRemoved : filesRemoved) {
+      Set<String> reusedBlobIds = uploadedBlobIds.getOrDefault(fileRemoved.getFileName(), Collections.emptySet());
+      if (fileRemoved.getBlobs().stream().noneMatch(blob -> reusedBlobIds.contains(blob.getBlobId()))) {
+        result.add(fileRemoved);
+      } else {
+        List<FileBlob> blobsToRemove = fileRemoved.getBlobs().stream()
+            .filter(blob -> !reusedBlobIds.contains(blob.getBlobId()))
+            .collect(Collectors.toList());
+        result.add(new FileIndex(fileRemoved.getFileName(), blobsToRemove, fileRemoved.getFileMetadata(),
+            fileRemoved.getChecksum()));
+      }
+    }
+    return result;
+  }
+
   /**
    * WARNING: Recursively delete **ALL** the associated files and subdirs within the provided {@link DirIndex}.
    * @param dirIndex {@link DirIndex} whose entire contents are to be deleted.
@@ -442,6 +489,10 @@ public class BlobStoreUtil {
    */
   @VisibleForTesting
   CompletableFuture<Void> getFile(List<FileBlob> fileBlobs, File fileToRestore, Metadata requestMetadata, boolean getDeleted) {
+    if (fileBlobs.size() > 1 && fileBlobs.stream().allMatch(fileBlob -> fileBlob.getHash() != null)) {
+      return getFileChunks(fileBlobs, fileToRestore, requestMetadata, getDeleted);
+    }
+
     FileOutputStream outputStream = null;
     try {
       long restoreFileStartTime = System.nanoTime();
@@ -480,18 +531,7 @@ public class BlobStoreUtil {
         }
       }, executor);
 
-      resultFuture.whenComplete((res, ex) -> {
-        if (restoreMetrics != null) {
-          restoreMetrics.avgFileRestoreNs.update(System.nanoTime() - restoreFileStartTime);
-
-          long fileSize = requestMetadata.getPayloadSize();
-          restoreMetrics.restoreRate.inc(fileSize);
-          restoreMetrics.filesRestored.getValue().addAndGet(1);
-          restoreMetrics.bytesRestored.getValue().addAndGet(fileSize);
-          restoreMetrics.filesRemaining.getValue().addAndGet(-1);
-          restoreMetrics.bytesRemaining.getValue().addAndGet(-1 * fileSize);
-        }
-      });
+      resultFuture.whenComplete((res, ex) -> updateFileRestoreMetrics(restoreFileStartTime, requestMetadata));
       return resultFuture;
     } catch (Exception exception) {
       try {
@@ -507,6 +547,73 @@ public class BlobStoreUtil {
     }
   }
 
+  /**
+   * Gets a file split into content defined chunks from the blob store. Chunks are fetched concurrently, and each
+   * is written directly at its offset in the file.
+   */
+  private CompletableFuture<Void> getFileChunks(List<FileBlob> fileBlobs, File fileToRestore, Metadata requestMetadata,
+      boolean getDeleted) {
+    FileChannel channel = null;
+    try {
+      long restoreFileStartTime = System.nanoTime();
+      // delete the file if it already exists, e.g. from a previous retry.
+      Files.deleteIfExists(fileToRestore.toPath());
+      channel = FileChannel.open(fileToRestore.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      final FileChannel finalChannel = channel;
+
+      List<CompletableFuture<Void>> chunkFutures = new ArrayList<>();
+      for (FileBlob fileBlob : fileBlobs) {
+        LOG.debug("Starting restore for file: {} with blob id: {} at offset: {} with getDeleted set to: {}",
+            fileToRestore, fileBlob.getBlobId(), fileBlob.getOffset(), getDeleted);
+        OutputStream chunkOutputStream = new FileChannelRegionOutputStream(finalChannel, fileBlob.getOffset());
+        chunkFutures.add(
+            blobStoreManager.get(fileBlob.getBlobId(), chunkOutputStream, requestMetadata, getDeleted).toCompletableFuture());
+      }
+
+      CompletableFuture<Void> resultFuture = FutureUtil.allOf(chunkFutures)
+          .whenCompleteAsync((res, ex) -> {
+            LOG.debug("Finished restore for file: {}. Closing file channel.", fileToRestore);
+            try {
+              if (ex == null) {
+                // flush the file contents to disk
+                finalChannel.force(true);
+              }
+              finalChannel.close();
+            } catch (Exception e) {
+              throw new SamzaException(String.format("Error closing file channel for file: %s",
+                  fileToRestore.getAbsolutePath()), e);
+            }
+          }, executor);
+
+      resultFuture.whenComplete((res, ex) -> updateFileRestoreMetrics(restoreFileStartTime, requestMetadata));
+      return resultFuture;
+    } catch (Exception exception) {
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+      } catch (Exception err) {
+        LOG.error("Error closing file channel for file: {}", fileToRestore.getAbsolutePath(), err);
+      }
+
+      throw new SamzaException(String.format("Error restoring file: %s in path: %s",
+          fileToRestore.getName(), requestMetadata.getPayloadPath()), exception);
+    }
+  }
+
+  private void updateFileRestoreMetrics(long restoreFileStartTime, Metadata requestMetadata) {
+    if (restoreMetrics != null) {
+      restoreMetrics.avgFileRestoreNs.update(System.nanoTime() - restoreFileStartTime);
+
+      long fileSize = requestMetadata.getPayloadSize();
+      restoreMetrics.restoreRate.inc(fileSize);
+      restoreMetrics.filesRestored.getValue().addAndGet(1);
+      restoreMetrics.bytesRestored.getValue().addAndGet(fileSize);
+      restoreMetrics.filesRemaining.getValue().addAndGet(-1);
+      restoreMetrics.bytesRemaining.getValue().addAndGet(-1 * fileSize);
+    }
+  }
+
   /**
    * Upload a File to blob store.
    * @param file File to upload to blob store.
@@ -514,6 +621,18 @@ public class BlobStoreUtil {
    */
   @VisibleForTesting
   public CompletableFuture<FileIndex> putFile(File file, SnapshotMetadata snapshotMetadata) {
+    return putFile(file, snapshotMetadata, null);
+  }
+
+  /**
+   * Upload a File to blob store. If chunking is enabled and the file is not an SST file, it is split into content
+   * defined chunks, and only the chunks that are not present in the previous version of the file are uploaded.
+   * @param file File to upload to blob store.
+   * @param previousFileIndex {@link FileIndex} of the previous version of the file in the remote snapshot, or null.
+   * @return A future containing the {@link FileIndex} for the uploaded file.
+   */
+  @VisibleForTesting
+  CompletableFuture<FileIndex> putFile(File file, SnapshotMetadata snapshotMetadata, FileIndex previousFileIndex) {
     if (file == null || !file.isFile()) {
       String message = file != null ? "Dir or Symbolic link" : "null";
       throw new SamzaException(String.format("Required a non-null parameter of type file, provided: %s", message));
@@ -526,7 +645,8 @@ public class BlobStoreUtil {
       CompletableFuture<FileIndex> fileBlobFuture;
       CheckedInputStream inputStream = null;
       try {
-        // TODO HIGH shesharm maybe use the more efficient CRC32C / PureJavaCRC32 impl
+        // CRC32 is hardware accelerated (CLMUL intrinsic) since Java 8, and is what existing remote snapshots use.
+        // The checksum is computed as the blob store reads the file, so it does not need a separate pass over the file.
         inputStream = new CheckedInputStream(new FileInputStream(file), new CRC32());
         CheckedInputStream finalInputStream = inputStream;
         FileMetadata fileMetadata = FileMetadata.fromFile(file);
@@ -569,7 +689,10 @@ public class BlobStoreUtil {
       return fileBlobFuture;
     };
 
-    return FutureUtil.executeAsyncWithRetries(opName, fileUploadAction, isCauseNonRetriable(), executor, retryPolicyConfig)
+    CompletableFuture<FileIndex> fileIndexFuture = shouldChunk(file)
+        ? putFileChunks(file, snapshotMetadata, previousFileIndex)
+        : FutureUtil.executeAsyncWithRetries(opName, fileUploadAction, isCauseNonRetriable(), executor, retryPolicyConfig);
+    return fileIndexFuture
         .whenComplete((res, ex) -> {
           if (backupMetrics != null) {
             backupMetrics.avgFileUploadNs.update(System.nanoTime() - putFileStartTime);
@@ -584,6 +707,96 @@ public class BlobStoreUtil {
         });
   }
 
+  private boolean shouldChunk(File file) {
+    // SST files are never modified once written, so there is nothing to deduplicate across versions.
+    // Offsets of FileBlobs are ints, so larger files are uploaded whole.
+    return chunker != null && !file.getName().endsWith(".sst") && file.length() <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Splits the file into content defined chunks and uploads the chunks that are not present in the previous version
+   * of the file. Blobs of chunks that are present are reused in the returned {@link FileIndex}.
+   */
+  private CompletableFuture<FileIndex> putFileChunks(File file, SnapshotMetadata snapshotMetadata,
+      FileIndex previousFileIndex) {
+    Map<String, FileBlob> previousBlobs = new HashMap<>(); // blobs of the previous version of the file, by hash
+    if (previousFileIndex != null) {
+      previousFileIndex.getBlobs().stream()
+          .filter(fileBlob -> fileBlob.getHash() != null)
+          .forEach(fileBlob -> previousBlobs.putIfAbsent(fileBlob.getHash(), fileBlob));
+    }
+
+    return CompletableFuture.supplyAsync(() -> {
+      LOG.debug("Putting chunks of file: {} to blob store.", file.getPath());
+      CRC32 checksum = new CRC32();
+      FileMetadata fileMetadata;
+      List<Chunk> chunks;
+      try {
+        fileMetadata = FileMetadata.fromFile(file);
+        chunks = chunker.chunk(file, checksum);
+      } catch (IOException e) {
+        LOG.error("Error chunking file: {}", file.getName(), e);
+        throw new SamzaException(String.format("Error chunking file %s", file.getAbsolutePath()), e);
+      }
+      if (backupMetrics != null) {
+        backupMetrics.avgFileSizeBytes.update(fileMetadata.getSize());
+      }
+
+      List<CompletableFuture<FileBlob>> blobFutures = new ArrayList<>();
+      long bytesReused = 0;
+      for (Chunk chunk : chunks) {
+        FileBlob previousBlob = previousBlobs.get(chunk.getHash());
+        if (previousBlob != null) {
+          bytesReused += chunk.getLength();
+          blobFutures.add(CompletableFuture.completedFuture(
+              new FileBlob(previousBlob.getBlobId(), (int) chunk.getOffset(), chunk.getHash())));
+        } else {
+          blobFutures.add(putChunk(file, chunk, snapshotMetadata));
+        }
+      }
+      LOG.debug("Reusing {} of {} bytes of file: {} from its previous version.",
+          bytesReused, fileMetadata.getSize(), file.getPath());
+      if (backupMetrics != null) {
+        backupMetrics.bytesReused.getValue().addAndGet(bytesReused);
+      }
+
+      return FutureUtil.allOf(blobFutures).thenApply(v -> {
+        List<FileBlob> fileBlobs = blobFutures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        LOG.trace("Returning new FileIndex for file: {}.", file.getPath());
+        return new FileIndex(file.getName(), fileBlobs, fileMetadata, checksum.getValue());
+      });
+    }, executor).thenCompose(fileIndexFuture -> fileIndexFuture);
+  }
+
+  private CompletableFuture<FileBlob> putChunk(File file, Chunk chunk, SnapshotMetadata snapshotMetadata) {
+    String opName = "putChunk: " + file.getAbsolutePath() + " offset: " + chunk.getOffset();
+    Metadata metadata =
+        new Metadata(file.getAbsolutePath(), Optional.of(chunk.getLength()), snapshotMetadata.getJobName(),
+            snapshotMetadata.getJobId(), snapshotMetadata.getTaskName(), snapshotMetadata.getStoreName());
+    Supplier<CompletionStage<FileBlob>> chunkUploadAction = () -> {
+      InputStream inputStream;
+      try {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        channel.position(chunk.getOffset());
+        inputStream = ByteStreams.limit(Channels.newInputStream(channel), chunk.getLength());
+      } catch (IOException e) {
+        LOG.error("Error putting chunk at offset: {} of file: {}", chunk.getOffset(), file.getName(), e);
+        throw new SamzaException(String.format("Error putting chunk of file %s", file.getAbsolutePath()), e);
+      }
+
+      return blobStoreManager.put(inputStream, metadata)
+          .whenComplete((id, ex) -> {
+            try {
+              inputStream.close();
+            } catch (IOException e) {
+              LOG.error("Error closing input stream for file: {}", file.getName(), e);
+            }
+          })
+          .thenApply(id -> new FileBlob(id, (int) chunk.getOffset(), chunk.getHash()));
+    };
+    return FutureUtil.executeAsyncWithRetries(opName, chunkUploadAction, isCauseNonRetriable(), executor, retryPolicyConfig);
+  }
+
   /**
    * Delete a {@link FileIndex} from the remote store by deleting all {@link FileBlob}s associated with it.
    * @param fileIndex FileIndex of the file to delete from the remote store.
@@ -592,12 +805,15 @@ public class BlobStoreUtil {
    */
   private CompletionStage<Void> deleteFile(FileIndex fileIndex, Metadata metadata) {
     List<CompletionStage<Void>> deleteFutures = new ArrayList<>();
-    List<FileBlob> fileBlobs = fileIndex.getBlobs();
-    for (FileBlob fileBlob : fileBlobs) {
-      LOG.debug("Deleting file: {} blobId: {} from blob store.", fileIndex.getFileName(), fileBlob.getBlobId());
-      String opName = "deleteFile: " + fileIndex.getFileName() + " blobId: " + fileBlob.getBlobId();
+    // a blob may be shared by identical chunks of a file, so delete each blob only once.
+    Set<String> blobIds = fileIndex.getBlobs().stream()
+        .map(FileBlob::getBlobId)
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+    for (String blobId : blobIds) {
+      LOG.debug("Deleting file: {} blobId: {} from blob store.", fileIndex.getFileName(), blobId);
+      String opName = "deleteFile: " + fileIndex.getFileName() + " blobId: " + blobId;
       Supplier<CompletionStage<Void>> fileDeletionAction = () ->
-          blobStoreManager.delete(fileBlob.getBlobId(), metadata).toCompletableFuture();
+          blobStoreManager.delete(blobId, metadata).toCompletableFuture();
       CompletableFuture<Void> fileDeletionFuture =
           FutureUtil.executeAsyncWithRetries(opName, fileDeletionAction, isCauseNonRetriable(), executor, retryPolicyConfig);
       deleteFutures.add(fileDeletionFuture);
@@ -682,6 +898,33 @@ public class BlobStoreUtil {
     return CompletableFuture.allOf(updateTTLsFuture.toArray(new CompletableFuture[0]));
   }
 
+  /**
+   * An {@link OutputStream} that writes to a region of a {@link FileChannel} starting at a fixed position. Uses
+   * positional writes, so that multiple streams can write to different regions of the same file concurrently.
+   */
+  private static class FileChannelRegionOutputStream extends OutputStream {
+    private final FileChannel channel;
+    private long position;
+
+    FileChannelRegionOutputStream(FileChannel channel, long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+    }
+  }
+
   private static Predicate<Throwable> isCauseNonRetriable() {
     return throwable -> {
       Throwable unwrapped = FutureUtil.unwrapExceptions(CompletionException.class, throwable);
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.blobstore.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+
+/**
+ * Splits a file into variable sized chunks whose boundaries are determined by the file contents (using a Gear
+ * rolling hash), rather than by fixed offsets. An insertion or deletion in a file only changes the chunks around it,
+ * so the rest of the chunks (and their hashes) stay the same across versions of the file, and do not need to be
+ * uploaded again.
+ *
+ * Chunks are at least avgChunkSize / 4 and at most avgChunkSize * 4 bytes long, except for the last chunk, which
+ * may be smaller.
+ */
+public class ContentDefinedChunker {
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  private static final String HASH_ALGORITHM = "SHA-256";
+  private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+  // Random values for each byte. Seed is fixed so that boundaries are stable across JVMs and releases.
+  private static final long[] GEAR = new long[256];
+  static {
+    Random random = new Random(0x5A4D5AL);
+    for (int i = 0; i < GEAR.length; i++) {
+      GEAR[i] = random.nextLong();
+    }
+  }
+
+  private final int minChunkSize;
+  private final int maxChunkSize;
+  private final long boundaryMask;
+
+  /**
+   * @param avgChunkSize expected average chunk size in bytes. Must be a power of two, and at least 64 bytes.
+   */
+  public ContentDefinedChunker(int avgChunkSize) {
+    Preconditions.checkArgument(avgChunkSize >= 64 && Integer.bitCount(avgChunkSize) == 1,
+        "Average chunk size must be a power of two and at least 64 bytes, was: " + avgChunkSize);
+    Preconditions.checkArgument(avgChunkSize <= Integer.MAX_VALUE / 4,
+        "Average chunk size is too large: " + avgChunkSize);
+    this.minChunkSize = avgChunkSize / 4;
+    this.maxChunkSize = avgChunkSize * 4;
+    // use the high bits of the hash for the boundary check, since they depend on the most recent 64 bytes,
+    // while the low bits only depend on the last few bytes.
+    int bits = Integer.numberOfTrailingZeros(avgChunkSize);
+    this.boundaryMask = ((1L << bits) - 1) << (Long.SIZE - bits);
+  }
+
+  /**
+   * Reads the file once and returns its chunks in order of offset.
+   * @param file file to chunk
+   * @param fileChecksum checksum updated with the entire contents of the file
+   * @return chunks of the file. Empty if the file is empty.
+   * @throws IOException if the file could not be read
+   */
+  public List<Chunk> chunk(File file, Checksum fileChecksum) throws IOException {
+    List<Chunk> chunks = new ArrayList<>();
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    long chunkOffset = 0;
+    long chunkLength = 0;
+    long hash = 0;
+
+    try (InputStream inputStream = new FileInputStream(file)) {
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) != -1) {
+        fileChecksum.update(buffer, 0, bytesRead);
+        int start = 0; // start of the current chunk's bytes in buffer
+        for (int i = 0; i < bytesRead; i++) {
+          hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+          chunkLength++;
+          if (chunkLength >= maxChunkSize || (chunkLength >= minChunkSize && (hash & boundaryMask) == 0)) {
+            digest.update(buffer, start, i + 1 - start);
+            chunks.add(new Chunk(chunkOffset, chunkLength, HEX.encode(digest.digest())));
+            chunkOffset += chunkLength;
+            chunkLength = 0;
+            hash = 0;
+            start = i + 1;
+          }
+        }
+        digest.update(buffer, start, bytesRead - start);
+      }
+    }
+
+    if (chunkLength > 0) {
+      chunks.add(new Chunk(chunkOffset, chunkLength, HEX.encode(digest.digest())));
+    }
+    return chunks;
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(HASH_ALGORITHM + " is not supported", e);
+    }
+  }
+
+  /**
+   * A contiguous range of a file, and the hex encoded SHA-256 hash of its contents.
+   */
+  public static class Chunk {
+    private final long offset;
+    private final long length;
+    private final String hash;
+
+    public Chunk(long offset, long length, String hash) {
+      this.offset = offset;
+      this.length = length;
+      this.hash = hash;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Chunk{" + "offset=" + offset + ", length=" + length + ", hash='" + hash + '\'' + '}';
+    }
+  }
+}
@@ -18,15 +18,18 @@
  */
 
 package org.apache.samza.storage.blobstore.util;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
@@ -40,13 +43,15 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.zip.CRC32;
-import java.util.zip.CheckedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.samza.SamzaException;
+import org.apache.samza.metrics.Counter;
 import org.apache.samza.storage.blobstore.diff.DirDiff;
 import org.apache.samza.storage.blobstore.index.DirIndex;
 import org.apache.samza.storage.blobstore.index.FileIndex;
@@ -61,6 +66,25 @@ import org.slf4j.LoggerFactory;
 public class DirDiffUtil {
   private static final Logger LOG = LoggerFactory.getLogger(DirDiffUtil.class);
   public static final int CACHE_SIZE = 10;
+  private static final int CHECKSUM_BUFFER_SIZE = 1024 * 1024; // 1 MB
+  // CRC32 uses the hardware accelerated (CLMUL) intrinsic for direct buffers, without copying file contents to the heap.
+  private static final ThreadLocal<ByteBuffer> CHECKSUM_BUFFER =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHECKSUM_BUFFER_SIZE));
+  // Compares files present both locally and remotely, which may require reading and checksumming entire files.
+  // Shared by all tasks and stores in the container so that the total parallelism is bounded. Workers are daemon threads.
+  private static final ForkJoinPool FILE_COMPARISON_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+  // bytes of local files checksummed when comparing them to remote files. null if not tracked.
+  private final Counter checksumRate;
+
+  public DirDiffUtil() {
+    this(null);
+  }
+
+  public DirDiffUtil(Counter checksumRate) {
+    this.checksumRate = checksumRate;
+  }
+
   /**
    * Checks if a local directory and a remote directory are identical. Local and remote directories are identical iff:
    * 1. The local directory has exactly the same set of files as the remote directory, and the files are themselves
@@ -80,7 +104,8 @@ public class DirDiffUtil {
       String remoteDirName = remoteDir.getDirName().equals(DirIndex.ROOT_DIR_NAME) ? "root" : remoteDir.getDirName();
       LOG.debug("Creating diff between local dir: {} and remote dir: {} for comparison.",
           localDir.getAbsolutePath(), remoteDirName);
-      DirDiff dirDiff = DirDiffUtil.getDirDiff(localDir, remoteDir, DirDiffUtil.areSameFile(compareLargeFileChecksums, compareFileOwners));
+      DirDiff dirDiff = DirDiffUtil.getDirDiff(localDir, remoteDir,
+          DirDiffUtil.areSameFile(compareLargeFileChecksums, compareFileOwners, checksumRate));
 
       boolean areSameDir = true;
       List<String> filesRemoved = dirDiff.getFilesRemoved().stream()
@@ -154,6 +179,15 @@ public class DirDiffUtil {
    * @return BiPredicate to test similarity of local and remote files
    */
   public static BiPredicate<File, FileIndex> areSameFile(boolean compareLargeFileChecksums, boolean compareFileOwners) {
+    return areSameFile(compareLargeFileChecksums, compareFileOwners, null);
+  }
+
+  /**
+   * Same as {@link #areSameFile(boolean, boolean)}, but also tracks the bytes checksummed in {@code checksumRate}.
+   * @param checksumRate counter to increment with the size of each local file checksummed. May be null.
+   */
+  public static BiPredicate<File, FileIndex> areSameFile(boolean compareLargeFileChecksums, boolean compareFileOwners,
+      Counter checksumRate) {
 
     // Cache owner/group names to reduce calls to sun.nio.fs.UnixFileAttributes.group
     Cache<String, String> groupCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
@@ -225,12 +259,10 @@ public class DirDiffUtil {
           return true;
         } else {
           try {
-            FileInputStream fis = new FileInputStream(localFile);
-            CheckedInputStream cis = new CheckedInputStream(fis, new CRC32());
-            byte[] buffer = new byte[8 * 1024]; // 8 KB
-            while (cis.read(buffer, 0, buffer.length) >= 0) { }
-            long localFileChecksum = cis.getChecksum().getValue();
-            cis.close();
+            long localFileChecksum = getChecksum(localFile);
+            if (checksumRate != null) {
+              checksumRate.inc(localFileAttrs.size());
+            }
 
             boolean areSameChecksum = localFileChecksum == remoteFile.getChecksum();
             if (!areSameChecksum) {
@@ -252,6 +284,24 @@ public class DirDiffUtil {
     };
   }
 
+  /**
+   * Computes the CRC32 checksum of the contents of the file, using direct buffer reads.
+   */
+  @VisibleForTesting
+  static long getChecksum(File file) throws IOException {
+    CRC32 checksum = new CRC32();
+    ByteBuffer buffer = CHECKSUM_BUFFER.get();
+    buffer.clear();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        checksum.update(buffer);
+        buffer.clear();
+      }
+    }
+    return checksum.getValue();
+  }
+
   /**
    * Compare the local snapshot directory and the remote snapshot directory and return the recursive diff of the two as
    * a {@link DirDiff}.
@@ -300,10 +350,17 @@ public class DirDiffUtil {
     Map<String, File> localFiles = localSnapshotFiles.stream()
         .collect(Collectors.toMap(File::getName, Function.identity()));
 
+    // compare files present both locally and remotely in parallel
+    Map<String, ForkJoinTask<Boolean>> fileComparisons = new HashMap<>();
+    for (String file : Sets.intersection(localFiles.keySet(), remoteFiles.keySet())) {
+      fileComparisons.put(file,
+          FILE_COMPARISON_POOL.submit(() -> areSameFile.test(localFiles.get(file), remoteFiles.get(file))));
+    }
+
     for (String file : Sets.union(remoteFiles.keySet(), localFiles.keySet())) {
       if (localFiles.containsKey(file)) {
         if (remoteFiles.containsKey(file)) {
-          if (areSameFile.test(localFiles.get(file), remoteFiles.get(file))) {
+          if (fileComparisons.get(file).join()) {
             // Files are the same locally and remotely, Retain
             filesToRetain.add(remoteFiles.get(file));
           } else {
@@ -19,19 +19,29 @@
 
 package org.apache.samza.table.caching;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.samza.SamzaException;
 import org.apache.samza.context.Context;
+import org.apache.samza.metrics.Counter;
 import org.apache.samza.storage.kv.Entry;
 import org.apache.samza.table.BaseReadWriteUpdateTable;
 import org.apache.samza.table.ReadWriteUpdateTable;
+import org.apache.samza.table.coalescing.InFlightReads;
 import org.apache.samza.table.utils.TableMetricsUtil;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
@@ -59,6 +69,16 @@ import static org.apache.samza.table.utils.TableMetricsUtil.updateTimer;
  * for the data in table and cache to be temporarily out-of-sync. Moreover, unsynchronized
  * operations in {@link CachingTable} also deliver higher performance when there is contention.
  *
+ * Optionally, concurrent cache misses for the same key can be coalesced, such that they share a single read
+ * of the actual table instead of each issuing its own.
+ *
+ * Optionally, cached values can be refreshed ahead of their expiry: a value read from the cache more than
+ * the refresh interval after it was cached is still served, while it is read again from the actual table in
+ * the background (stale-while-revalidate). This keeps hot keys from expiring and paying the latency of the
+ * actual table every TTL period. If the background refresh fails, the value is evicted from the cache so
+ * the next read surfaces the failure, unless serving stale values on errors is enabled, in which case the
+ * cached value is served until it expires and the refresh is retried on the next read.
+ *
  * @param <K> type of the table key
  * @param <V> type of the table value
  */
@@ -68,16 +88,64 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
   private final ReadWriteUpdateTable<K, V, U> table;
   private final ReadWriteUpdateTable<K, V, U> cache;
   private final boolean isWriteAround;
+  // null if reads are not coalesced
+  private final InFlightReads<K, V> inFlightReads;
+  // keys cached or refreshed within the refresh interval, null if values are not refreshed ahead of expiry.
+  // The value is a token which is replaced whenever the key is written, so that a refresh issued before the write
+  // does not overwrite the written value when it completes.
+  private final Cache<K, Object> freshKeys;
+  // incremented by the writes whose keys are unknown, which invalidate all the refreshes in flight
+  private final AtomicLong refreshEpoch = new AtomicLong();
+  private final boolean isServeStaleOnError;
+
+  private Counter numRefreshes;
+  private Counter numFailedRefreshes;
 
   // Common caching stats
   private AtomicLong hitCount = new AtomicLong();
   private AtomicLong missCount = new AtomicLong();
 
   public CachingTable(String tableId, ReadWriteUpdateTable<K, V, U> table, ReadWriteUpdateTable<K, V, U> cache, boolean isWriteAround) {
+    this(tableId, table, cache, isWriteAround, false);
+  }
+
+  public CachingTable(String tableId, ReadWriteUpdateTable<K, V, U> table, ReadWriteUpdateTable<K, V, U> cache,
+      boolean isWriteAround, boolean isReadCoalescing) {
+    this(tableId, table, cache, isWriteAround, isReadCoalescing, null, false);
+  }
+
+  /**
+   * @param tableId Id of the table
+   * @param table actual table
+   * @param cache cache table
+   * @param isWriteAround whether writes bypass the cache
+   * @param isReadCoalescing whether concurrent cache misses for the same key share a single read
+   * @param refreshAfter interval after which cached values are refreshed in the background when read,
+   *                     null if values are not refreshed ahead of expiry
+   * @param isServeStaleOnError whether cached values are still served when their refresh fails
+   */
+  public CachingTable(String tableId, ReadWriteUpdateTable<K, V, U> table, ReadWriteUpdateTable<K, V, U> cache,
+      boolean isWriteAround, boolean isReadCoalescing, Duration refreshAfter, boolean isServeStaleOnError) {
+    this(tableId, table, cache, isWriteAround, isReadCoalescing, refreshAfter, isServeStaleOnError,
+        Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  CachingTable(String tableId, ReadWriteUpdateTable<K, V, U> table, ReadWriteUpdateTable<K, V, U> cache,
+      boolean isWriteAround, boolean isReadCoalescing, Duration refreshAfter, boolean isServeStaleOnError,
+      Ticker ticker) {
     super(tableId);
+    Preconditions.checkArgument(refreshAfter == null || !refreshAfter.isNegative() && !refreshAfter.isZero(),
+        "refreshAfter must be positive: " + refreshAfter);
     this.table = table;
     this.cache = cache;
     this.isWriteAround = isWriteAround;
+    this.inFlightReads = isReadCoalescing ? new InFlightReads<>() : null;
+    this.freshKeys = refreshAfter != null
+        ? CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(refreshAfter.toNanos(), TimeUnit.NANOSECONDS)
+            .build()
+        : null;
+    this.isServeStaleOnError = isServeStaleOnError;
   }
 
   @Override
@@ -87,6 +155,13 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
     tableMetricsUtil.newGauge("hit-rate", () -> hitRate());
     tableMetricsUtil.newGauge("miss-rate", () -> missRate());
     tableMetricsUtil.newGauge("req-count", () -> requestCount());
+    if (inFlightReads != null) {
+      inFlightReads.setCounterMetric(tableMetricsUtil.newCounter("num-coalesced-gets"));
+    }
+    if (freshKeys != null) {
+      numRefreshes = tableMetricsUtil.newCounter("num-refreshes");
+      numFailedRefreshes = tableMetricsUtil.newCounter("num-failed-refreshes");
+    }
   }
 
   /**
@@ -121,25 +196,38 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
     V value = cache.get(key, args);
     if (value != null) {
       hitCount.incrementAndGet();
+      if (args.length == 0) {
+        refreshIfStale(Collections.singletonList(key));
+      }
       return CompletableFuture.completedFuture(value);
     }
 
     long startNs = clock.nanoTime();
     missCount.incrementAndGet();
 
-    return table.getAsync(key, args).handle((result, e) -> {
+    CompletableFuture<V> readFuture = inFlightReads != null && args.length == 0
+        ? inFlightReads.get(key, k -> readAndCache(k))
+        : readAndCache(key, args);
+    return readFuture.handle((result, e) -> {
       if (e != null) {
         throw new SamzaException("Failed to get the record for " + key, e);
       } else {
-        if (result != null) {
-          cache.put(key, result, args);
-        }
         updateTimer(metrics.getNs, clock.nanoTime() - startNs);
         return result;
       }
     });
   }
 
+  private CompletableFuture<V> readAndCache(K key, Object ... args) {
+    return table.getAsync(key, args).thenApply(result -> {
+      if (result != null) {
+        cache.put(key, result, args);
+        markFresh(Collections.singletonList(key));
+      }
+      return result;
+    });
+  }
+
   @Override
   public Map<K, V> getAll(List<K> keys, Object ... args) {
     try {
@@ -155,20 +243,23 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
     // Make a copy of entries which might be immutable
     Map<K, V> getAllResult = new HashMap<>();
     List<K> missingKeys = lookupCache(keys, getAllResult);
+    if (args.length == 0) {
+      refreshIfStale(getAllResult.keySet());
+    }
 
     if (missingKeys.isEmpty()) {
       return CompletableFuture.completedFuture(getAllResult);
     }
 
     long startNs = clock.nanoTime();
-    return table.getAllAsync(missingKeys, args).handle((records, e) -> {
+    CompletableFuture<Map<K, V>> readFuture = inFlightReads != null && args.length == 0
+        ? inFlightReads.getAll(missingKeys, ks -> readAllAndCache(ks))
+        : readAllAndCache(missingKeys, args);
+    return readFuture.handle((records, e) -> {
       if (e != null) {
         throw new SamzaException("Failed to get records for " + keys, e);
       } else {
         if (records != null) {
-          cache.putAll(records.entrySet().stream()
-              .map(r -> new Entry<>(r.getKey(), r.getValue()))
-              .collect(Collectors.toList()), args);
           getAllResult.putAll(records);
         }
         updateTimer(metrics.getAllNs, clock.nanoTime() - startNs);
@@ -177,6 +268,18 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
     });
   }
 
+  private CompletableFuture<Map<K, V>> readAllAndCache(List<K> keys, Object ... args) {
+    return table.getAllAsync(keys, args).thenApply(records -> {
+      if (records != null) {
+        cache.putAll(records.entrySet().stream()
+            .map(r -> new Entry<>(r.getKey(), r.getValue()))
+            .collect(Collectors.toList()), args);
+        markFresh(records.keySet());
+      }
+      return records;
+    });
+  }
+
   @Override
   public void put(K key, V value, Object ... args) {
     try {
@@ -189,6 +292,8 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
   @Override
   public CompletableFuture<Void> putAsync(K key, V value, Object ... args) {
     incCounter(metrics.numPuts);
+    invalidateInFlightReads(Collections.singletonList(key));
+    invalidateRefreshes(Collections.singletonList(key));
     Preconditions.checkNotNull(table, "Cannot write to a read-only table: " + table);
 
     long startNs = clock.nanoTime();
@@ -200,6 +305,7 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
           cache.delete(key, args);
         } else {
           cache.put(key, value, args);
+          markFresh(Collections.singletonList(key));
         }
       }
       updateTimer(metrics.putNs, clock.nanoTime() - startNs);
@@ -219,6 +325,9 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
   @Override
   public CompletableFuture<Void> putAllAsync(List<Entry<K, V>> records, Object ... args) {
     incCounter(metrics.numPutAlls);
+    List<K> keys = records.stream().map(Entry::getKey).collect(Collectors.toList());
+    invalidateInFlightReads(keys);
+    invalidateRefreshes(keys);
     long startNs = clock.nanoTime();
     Preconditions.checkNotNull(table, "Cannot write to a read-only table: " + table);
     return table.putAllAsync(records, args).handle((result, e) -> {
@@ -226,6 +335,7 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
         throw new SamzaException("Failed to put records " + records, e);
       } else if (!isWriteAround) {
         cache.putAll(records, args);
+        markFresh(keys);
       }
 
       updateTimer(metrics.putAllNs, clock.nanoTime() - startNs);
@@ -265,6 +375,8 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
   @Override
   public CompletableFuture<Void> deleteAsync(K key, Object ... args) {
     incCounter(metrics.numDeletes);
+    invalidateInFlightReads(Collections.singletonList(key));
+    invalidateRefreshes(Collections.singletonList(key));
     long startNs = clock.nanoTime();
     Preconditions.checkNotNull(table, "Cannot delete from a read-only table: " + table);
     return table.deleteAsync(key, args).handle((result, e) -> {
@@ -290,6 +402,8 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
   @Override
   public CompletableFuture<Void> deleteAllAsync(List<K> keys, Object ... args) {
     incCounter(metrics.numDeleteAlls);
+    invalidateInFlightReads(keys);
+    invalidateRefreshes(keys);
     long startNs = clock.nanoTime();
     Preconditions.checkNotNull(table, "Cannot delete from a read-only table: " + table);
     return table.deleteAllAsync(keys, args).handle((result, e) -> {
@@ -319,6 +433,11 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
   @Override
   public <T> CompletableFuture<T> writeAsync(int opId, Object... args) {
     incCounter(metrics.numWrites);
+    if (inFlightReads != null) {
+      // the keys written by the operation are unknown
+      inFlightReads.invalidateAll();
+    }
+    refreshEpoch.incrementAndGet();
     long startNs = clock.nanoTime();
     return table.writeAsync(opId, args).handle((result, e) -> {
       if (e != null) {
@@ -344,6 +463,106 @@ public class CachingTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
     table.close();
   }
 
+  /**
+   * Refreshes the cached values of the keys that were not cached or refreshed within the refresh interval in the
+   * background. Keys are marked fresh with a new token when their refresh is issued, such that there is a single
+   * refresh in flight per key. The result of the refresh is only applied to the keys whose token is unchanged when
+   * it completes, i.e. which were not written or read again from the table in the meantime, and only if no write of
+   * unknown keys was issued in the meantime either.
+   */
+  private void refreshIfStale(Collection<K> keys) {
+    if (freshKeys == null) {
+      return;
+    }
+    Map<K, Object> staleKeyTokens = new HashMap<>();
+    keys.forEach(k -> {
+      Object token = new Object();
+      if (freshKeys.asMap().putIfAbsent(k, token) == null) {
+        staleKeyTokens.put(k, token);
+      }
+    });
+    if (staleKeyTokens.isEmpty()) {
+      return;
+    }
+
+    incCounter(numRefreshes);
+    long epoch = refreshEpoch.get();
+    List<K> staleKeys = new ArrayList<>(staleKeyTokens.keySet());
+    // a failure to issue the refresh fails the refresh rather than the read being served
+    CompletableFuture<Map<K, V>> refreshFuture = CompletableFuture.completedFuture(staleKeys)
+        .thenCompose(ks -> table.getAllAsync(ks));
+    refreshFuture.whenComplete((records, e) -> {
+      List<K> unchangedKeys = staleKeys.stream()
+          .filter(k -> refreshEpoch.get() == epoch && isRefreshCurrent(k, staleKeyTokens.get(k)))
+          .collect(Collectors.toList());
+      if (e != null) {
+        incCounter(numFailedRefreshes);
+        // allow the next read to retry the refresh
+        unchangedKeys.forEach(k -> freshKeys.asMap().remove(k, staleKeyTokens.get(k)));
+        if (isServeStaleOnError) {
+          logger.warn("Failed to refresh the records for " + staleKeys + ", serving cached records", e);
+        } else {
+          logger.warn("Failed to refresh the records for " + staleKeys + ", evicting cached records", e);
+          if (!unchangedKeys.isEmpty()) {
+            cache.deleteAll(unchangedKeys);
+          }
+        }
+        return;
+      }
+      List<Entry<K, V>> refreshedRecords = new ArrayList<>();
+      List<K> deletedKeys = new ArrayList<>();
+      unchangedKeys.forEach(k -> {
+        V value = records != null ? records.get(k) : null;
+        if (value != null) {
+          refreshedRecords.add(new Entry<>(k, value));
+        } else {
+          deletedKeys.add(k);
+        }
+      });
+      if (!refreshedRecords.isEmpty()) {
+        cache.putAll(refreshedRecords);
+      }
+      if (!deletedKeys.isEmpty()) {
+        cache.deleteAll(deletedKeys);
+      }
+    });
+  }
+
+  /**
+   * @return whether the refresh of the key issued with the token is still the latest update of its cached value,
+   * which is only the case if its token is unchanged. An expired token may have been replaced by a write since, so
+   * the result of a refresh which outlives the refresh interval is discarded, and the next read refreshes again.
+   */
+  private boolean isRefreshCurrent(K key, Object token) {
+    return freshKeys.getIfPresent(key) == token;
+  }
+
+  /**
+   * Restarts the refresh interval of the keys whose values were just cached.
+   */
+  private void markFresh(Collection<K> keys) {
+    if (freshKeys != null) {
+      keys.forEach(k -> freshKeys.put(k, new Object()));
+    }
+  }
+
+  /**
+   * Replaces the tokens of the keys being written, so that the refreshes in flight for them are not applied.
+   */
+  private void invalidateRefreshes(Collection<K> keys) {
+    markFresh(keys);
+  }
+
+  /**
+   * Stops coalescing reads of the keys with the reads in flight, so reads issued after a write do not share a read
+   * issued before it.
+   */
+  private void invalidateInFlightReads(Collection<K> keys) {
+    if (inFlightReads != null) {
+      inFlightReads.invalidateAll(keys);
+    }
+  }
+
   double hitRate() {
     long reqs = requestCount();
     return reqs == 0 ? 1.0 : (double) hitCount.get() / reqs;
@@ -19,6 +19,7 @@
 
 package org.apache.samza.table.caching;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -63,7 +64,14 @@ public class CachingTableProvider extends BaseTableProvider {
     }
 
     boolean isWriteAround = Boolean.parseBoolean(tableConfig.getForTable(tableId, CachingTableDescriptor.WRITE_AROUND));
-    CachingTable cachingTable = new CachingTable(tableId, table, cache, isWriteAround);
+    boolean isReadCoalescing = Boolean.parseBoolean(
+        tableConfig.getForTable(tableId, CachingTableDescriptor.READ_COALESCING, "false"));
+    long refreshAfterMs = Long.parseLong(
+        tableConfig.getForTable(tableId, CachingTableDescriptor.REFRESH_AFTER_MS, "-1"));
+    boolean isServeStaleOnError = Boolean.parseBoolean(
+        tableConfig.getForTable(tableId, CachingTableDescriptor.SERVE_STALE_ON_ERROR, "false"));
+    CachingTable cachingTable = new CachingTable(tableId, table, cache, isWriteAround, isReadCoalescing,
+        refreshAfterMs != -1 ? Duration.ofMillis(refreshAfterMs) : null, isServeStaleOnError);
     cachingTable.init(this.context);
     return cachingTable;
   }
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.table.coalescing;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.apache.samza.context.Context;
+import org.apache.samza.storage.kv.Entry;
+import org.apache.samza.table.AsyncReadWriteUpdateTable;
+import org.apache.samza.table.utils.TableMetricsUtil;
+
+
+/**
+ * A composable asynchronous table implementation that coalesces concurrent reads of the same key, such that
+ * they share a single read of the underlying table instead of each issuing its own. This reduces the load on
+ * the underlying table for hot keys, e.g. when a task processes several messages for the same key concurrently.
+ *
+ * Only reads without additional arguments are coalesced, since the arguments may change the result of a read.
+ * Writes stop sharing the reads in flight for the keys they write, so reads issued after a write are never
+ * served by a read issued before it.
+ *
+ * @param <K> the type of the key in this table
+ * @param <V> the type of the value in this table
+ * @param <U> the type of the update applied to records in this table
+ */
+public class AsyncCoalescingTable<K, V, U> implements AsyncReadWriteUpdateTable<K, V, U> {
+
+  private final String tableId;
+  private final AsyncReadWriteUpdateTable<K, V, U> table;
+  private final InFlightReads<K, V> inFlightReads = new InFlightReads<>();
+
+  public AsyncCoalescingTable(String tableId, AsyncReadWriteUpdateTable<K, V, U> table) {
+    Preconditions.checkNotNull(tableId, "null tableId");
+    Preconditions.checkNotNull(table, "null table");
+    this.tableId = tableId;
+    this.table = table;
+  }
+
+  @Override
+  public CompletableFuture<V> getAsync(K key, Object ... args) {
+    return args.length == 0
+        ? inFlightReads.get(key, k -> table.getAsync(k))
+        : table.getAsync(key, args);
+  }
+
+  @Override
+  public CompletableFuture<Map<K, V>> getAllAsync(List<K> keys, Object ... args) {
+    return args.length == 0
+        ? inFlightReads.getAll(keys, ks -> table.getAllAsync(ks))
+        : table.getAllAsync(keys, args);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> readAsync(int opId, Object ... args) {
+    return table.readAsync(opId, args);
+  }
+
+  @Override
+  public CompletableFuture<Void> putAsync(K key, V value, Object ... args) {
+    inFlightReads.invalidate(key);
+    return table.putAsync(key, value, args);
+  }
+
+  @Override
+  public CompletableFuture<Void> putAllAsync(List<Entry<K, V>> entries, Object ... args) {
+    inFlightReads.invalidateAll(entries.stream().map(Entry::getKey).collect(Collectors.toList()));
+    return table.putAllAsync(entries, args);
+  }
+
+  @Override
+  public CompletableFuture<Void> updateAsync(K key, U update) {
+    inFlightReads.invalidate(key);
+    return table.updateAsync(key, update);
+  }
+
+  @Override
+  public CompletableFuture<Void> updateAllAsync(List<Entry<K, U>> updates) {
+    inFlightReads.invalidateAll(updates.stream().map(Entry::getKey).collect(Collectors.toList()));
+    return table.updateAllAsync(updates);
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteAsync(K key, Object ... args) {
+    inFlightReads.invalidate(key);
+    return table.deleteAsync(key, args);
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteAllAsync(List<K> keys, Object ... args) {
+    inFlightReads.invalidateAll(keys);
+    return table.deleteAllAsync(keys, args);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> writeAsync(int opId, Object ... args) {
+    // the keys written by the operation are unknown
+    inFlightReads.invalidateAll();
+    return table.writeAsync(opId, args);
+  }
+
+  @Override
+  public void init(Context context) {
+    table.init(context);
+    TableMetricsUtil tableMetricsUtil = new TableMetricsUtil(context, this, tableId);
+    inFlightReads.setCounterMetric(tableMetricsUtil.newCounter("num-coalesced-gets"));
+  }
+
+  @Override
+  public void flush() {
+    table.flush();
+  }
+
+  @Override
+  public void close() {
+    table.close();
+  }
+
+  @VisibleForTesting
+  InFlightReads<K, V> getInFlightReads() {
+    return inFlightReads;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.table.coalescing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.apache.samza.metrics.Counter;
+
+import static org.apache.samza.table.utils.TableMetricsUtil.incCounter;
+
+
+/**
+ * Tracks the reads in flight by key, so that concurrent reads of the same key share a single outstanding
+ * request instead of each issuing its own (single-flight).
+ *
+ * A key is tracked until its read completes, so reads issued after the completion always issue a new request.
+ * Writes must {@link #invalidate} the keys they write before they are issued, so that reads issued after a write
+ * do not share a read issued before it.
+ *
+ * This class is thread safe.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the value
+ */
+public class InFlightReads<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  private Counter coalescedReadsCounter;
+
+  /**
+   * Set the counter of the reads of a key served by sharing a read already in flight.
+   * @param counter the counter
+   */
+  public void setCounterMetric(Counter counter) {
+    this.coalescedReadsCounter = counter;
+  }
+
+  /**
+   * Reads the value of the key, sharing the read in flight for the key if there is one.
+   * @param key the key to read
+   * @param readFn issues the read of a key
+   * @return a future of the value, completed when the shared read completes
+   */
+  public CompletableFuture<V> get(K key, Function<K, CompletableFuture<V>> readFn) {
+    CompletableFuture<V> read = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, read);
+    if (existing != null) {
+      incCounter(coalescedReadsCounter);
+      return copyOf(existing);
+    }
+
+    CompletableFuture<V> readFuture;
+    try {
+      readFuture = readFn.apply(key);
+    } catch (Exception e) {
+      readFuture = new CompletableFuture<>();
+      readFuture.completeExceptionally(e);
+    }
+    readFuture.whenComplete((value, e) -> {
+      // stop sharing the read before completing it, so that callbacks reading the key again issue a new read
+      inFlight.remove(key, read);
+      if (e != null) {
+        read.completeExceptionally(e);
+      } else {
+        read.complete(value);
+      }
+    });
+    return copyOf(read);
+  }
+
+  /**
+   * Reads the values of the keys, sharing the reads in flight for any of the keys, and reading the remaining keys
+   * with a single request. Keys that are not found are absent from the returned map.
+   * @param keys the keys to read
+   * @param readAllFn issues the read of a list of keys
+   * @return a future of the values, completed when all the reads of the keys complete
+   */
+  public CompletableFuture<Map<K, V>> getAll(List<K> keys, Function<List<K>, CompletableFuture<Map<K, V>>> readAllFn) {
+    Map<K, CompletableFuture<V>> reads = new LinkedHashMap<>();
+    Map<K, CompletableFuture<V>> issuedReads = new LinkedHashMap<>();
+    for (K key : keys) {
+      if (reads.containsKey(key)) {
+        continue;
+      }
+      CompletableFuture<V> read = new CompletableFuture<>();
+      CompletableFuture<V> existing = inFlight.putIfAbsent(key, read);
+      if (existing != null) {
+        incCounter(coalescedReadsCounter);
+        reads.put(key, existing);
+      } else {
+        reads.put(key, read);
+        issuedReads.put(key, read);
+      }
+    }
+
+    if (!issuedReads.isEmpty()) {
+      CompletableFuture<Map<K, V>> readAllFuture;
+      try {
+        readAllFuture = readAllFn.apply(new ArrayList<>(issuedReads.keySet()));
+      } catch (Exception e) {
+        readAllFuture = new CompletableFuture<>();
+        readAllFuture.completeExceptionally(e);
+      }
+      readAllFuture.whenComplete((values, e) -> issuedReads.forEach((key, read) -> {
+        inFlight.remove(key, read);
+        if (e != null) {
+          read.completeExceptionally(e);
+        } else {
+          read.complete(values != null ? values.get(key) : null);
+        }
+      }));
+    }
+
+    CompletableFuture<Map<K, V>> result = new CompletableFuture<>();
+    CompletableFuture.allOf(reads.values().toArray(new CompletableFuture[0])).whenComplete((v, e) -> {
+      if (e != null) {
+        // complete with the failure of the read, as the underlying read would have, rather than its wrapper
+        result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        return;
+      }
+      Map<K, V> values = new HashMap<>();
+      reads.forEach((key, read) -> {
+        V value = read.join();
+        if (value != null) {
+          values.put(key, value);
+        }
+      });
+      result.complete(values);
+    });
+    return result;
+  }
+
+  /**
+   * Stops sharing the read in flight for the key, if any. The read still completes the futures returned for it.
+   * @param key the key
+   */
+  public void invalidate(K key) {
+    inFlight.remove(key);
+  }
+
+  /**
+   * Stops sharing the reads in flight for the keys, if any.
+   * @param keys the keys
+   */
+  public void invalidateAll(Collection<K> keys) {
+    keys.forEach(inFlight::remove);
+  }
+
+  /**
+   * Stops sharing all the reads in flight.
+   */
+  public void invalidateAll() {
+    inFlight.clear();
+  }
+
+  /**
+   * Returns a future completed with the outcome of the given one, so that callers completing or cancelling the future
+   * they are returned do not affect the other callers sharing the read.
+   */
+  private static <T> CompletableFuture<T> copyOf(CompletableFuture<T> future) {
+    CompletableFuture<T> copy = new CompletableFuture<>();
+    future.whenComplete((value, e) -> {
+      if (e != null) {
+        copy.completeExceptionally(e);
+      } else {
+        copy.complete(value);
+      }
+    });
+    return copy;
+  }
+}
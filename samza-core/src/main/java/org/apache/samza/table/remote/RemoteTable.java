@@ -37,6 +37,7 @@ import org.apache.samza.table.ReadWriteUpdateTable;
 import org.apache.samza.table.RecordNotFoundException;
 import org.apache.samza.table.batching.BatchProvider;
 import org.apache.samza.table.batching.AsyncBatchingTable;
+import org.apache.samza.table.coalescing.AsyncCoalescingTable;
 import org.apache.samza.table.ratelimit.AsyncRateLimitedTable;
 import org.apache.samza.table.retry.AsyncRetriableTable;
 import org.apache.samza.table.retry.TableRetryPolicy;
@@ -132,6 +133,41 @@ public final class RemoteTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U
       BatchProvider<K, V, U> batchProvider,
       ScheduledExecutorService batchExecutor,
       ExecutorService callbackExecutor) {
+    this(tableId, readFn, writeFn, readRateLimiter, writeRateLimiter, updateRateLimiter, rateLimitingExecutor,
+        readRetryPolicy, writeRetryPolicy, retryExecutor, batchProvider, batchExecutor, callbackExecutor, false);
+  }
+
+  /**
+   * Construct a RemoteTable instance
+   * @param tableId table id
+   * @param readFn {@link TableReadFunction} for read operations
+   * @param writeFn {@link TableWriteFunction} for read operations
+   * @param readRateLimiter helper for read rate limiting
+   * @param writeRateLimiter helper for write rate limiting
+   * @param rateLimitingExecutor executor for executing rate limiting
+   * @param readRetryPolicy read retry policy
+   * @param writeRetryPolicy write retry policy
+   * @param retryExecutor executor for invoking retries
+   * @param batchProvider batch provider to create a batch instance
+   * @param batchExecutor scheduled executor for batch
+   * @param callbackExecutor executor for invoking async callbacks
+   * @param isReadCoalescing whether concurrent reads of the same key share a single read
+   */
+  public RemoteTable(
+      String tableId,
+      TableReadFunction<K, V> readFn,
+      TableWriteFunction<K, V, U> writeFn,
+      TableRateLimiter<K, V> readRateLimiter,
+      TableRateLimiter<K, V> writeRateLimiter,
+      TableRateLimiter<K, U> updateRateLimiter,
+      ExecutorService rateLimitingExecutor,
+      TableRetryPolicy readRetryPolicy,
+      TableRetryPolicy writeRetryPolicy,
+      ScheduledExecutorService retryExecutor,
+      BatchProvider<K, V, U> batchProvider,
+      ScheduledExecutorService batchExecutor,
+      ExecutorService callbackExecutor,
+      boolean isReadCoalescing) {
 
     super(tableId);
     Preconditions.checkArgument(writeFn != null || readFn != null,
@@ -161,6 +197,10 @@ public final class RemoteTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U
     if (batchProvider != null) {
       table = new AsyncBatchingTable(tableId, table, batchProvider, batchExecutor);
     }
+    if (isReadCoalescing) {
+      // coalesce above the other layers, so that coalesced reads are neither rate limited, retried nor batched
+      table = new AsyncCoalescingTable(tableId, table);
+    }
 
     asyncTable = table;
   }
@@ -130,11 +130,14 @@ public class RemoteTableProvider extends BaseTableProvider {
           }));
     }
 
+    boolean isReadCoalescing = Boolean.parseBoolean(
+        tableConfig.getForTable(tableId, RemoteTableDescriptor.READ_COALESCING, "false"));
+
     RemoteTable table = new RemoteTable(tableId,
         readFn, writeFn,
         readRateLimiter, writeRateLimiter, writeRateLimiter, rateLimitingExecutors.get(tableId),
         readRetryPolicy, writeRetryPolicy, retryExecutor, batchProvider, batchExecutors.get(tableId),
-        callbackExecutors.get(tableId));
+        callbackExecutors.get(tableId), isReadCoalescing);
     table.init(this.context);
     tables.add(table);
     return table;
@@ -158,11 +158,14 @@ object SamzaContainer extends Logging {
     info("Using configuration: %s" format config)
     info("Using container model: %s" format containerModel)
 
+    val metricsConfig = new MetricsConfig(config)
+    // the task registries use the reservoir type of the container registry, which is created from the metrics config
+    info("Using %s reservoirs for timers and histograms." format registry.getReservoirType)
+
     val samzaContainerMetrics = new SamzaContainerMetrics(containerName, registry)
     val systemProducersMetrics = new SystemProducersMetrics(registry)
     val systemConsumersMetrics = new SystemConsumersMetrics(registry)
     val offsetManagerMetrics = new OffsetManagerMetrics(registry)
-    val metricsConfig = new MetricsConfig(config)
     val clock = if (metricsConfig.getMetricsTimerEnabled) {
       new HighResolutionClock {
         override def nanoTime(): Long = System.nanoTime()
@@ -492,7 +495,8 @@ object SamzaContainer extends Logging {
     val timerExecutor = Executors.newSingleThreadScheduledExecutor
 
     val taskInstanceMetrics: Map[TaskName, TaskInstanceMetrics] = taskModels.map(taskModel => {
-      (taskModel.getTaskName, new TaskInstanceMetrics("TaskName-%s" format taskModel.getTaskName))
+      (taskModel.getTaskName, new TaskInstanceMetrics("TaskName-%s" format taskModel.getTaskName,
+        new MetricsRegistryMap(registry.getReservoirType)))
     }).toMap
 
     val taskCollectors : Map[TaskName, TaskInstanceCollector] = taskModels.map(taskModel => {
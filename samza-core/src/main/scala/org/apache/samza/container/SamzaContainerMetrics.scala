@@ -36,12 +36,15 @@ class SamzaContainerMetrics(
   val envelopes = newCounter("process-envelopes")
   val nullEnvelopes = newCounter("process-null-envelopes")
   val skippedEnvelopes = newCounter("skipped-envelopes")
+  val envelopeBatches = newCounter("process-envelope-batches")
   val chooseNs = newTimer("choose-ns")
   val windowNs = newTimer("window-ns")
   val timerNs = newTimer("timer-ns")
   val processNs = newTimer("process-ns")
   val commitNs = newTimer("commit-ns")
   val blockNs = newTimer("block-ns")
+  val runLoopBlocks = newCounter("run-loop-blocks")
+  val runLoopWakeups = newCounter("run-loop-wakeups")
   val containerStartupTime = newGauge("container-startup-time", 0L)
   val utilization = newGauge("event-loop-utilization", 0.0F)
   val diskUsageBytes = newGauge("disk-usage-bytes", 0L)
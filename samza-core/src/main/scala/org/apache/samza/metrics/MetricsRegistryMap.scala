@@ -24,9 +24,12 @@ import java.util.concurrent.ConcurrentHashMap
 
 /**
  * A class that holds all metrics registered with it. It can be registered
- * with one or more MetricReporters to flush metrics.
+ * with one or more MetricReporters to flush metrics. The timers it creates
+ * are backed by reservoirs of the given type.
  */
-class MetricsRegistryMap extends ReadableMetricsRegistry with Logging {
+class MetricsRegistryMap(reservoirType: ReservoirType) extends ReadableMetricsRegistry with Logging {
+  def this() = this(ReservoirType.SLIDING_TIME_WINDOW)
+
   var listeners = Set[ReadableMetricsRegistryListener]()
 
   /*
@@ -72,9 +75,11 @@ class MetricsRegistryMap extends ReadableMetricsRegistry with Logging {
 
   def newTimer(group: String, name: String) = {
     debug("Creating new timer %s %s." format (group, name))
-    newTimer(group, new Timer(name))
+    newTimer(group, new Timer(name, reservoirType.newReservoir()))
   }
 
+  override def getReservoirType = reservoirType
+
   private def putAndGetGroup(group: String) = {
     metrics.putIfAbsent(group, new ConcurrentHashMap[String, Metric])
     metrics.get(group)
@@ -195,17 +195,25 @@ public class ContainerStorageManager {
     this.storeConsumers = ContainerStorageManagerUtil.createStoreChangelogConsumers(
         activeTaskChangelogSystemStreams, systemFactories, samzaContainerMetrics.registry(), config);
 
-    JobConfig jobConfig = new JobConfig(config);
-    int restoreThreadPoolSize =
-        Math.min(
-            Math.max(containerModel.getTasks().size() * restoreStateBackendFactories.size() * 2,
-                jobConfig.getRestoreThreadPoolSize()),
-            jobConfig.getRestoreThreadPoolMaxSize()
-        );
+    int restoreThreadPoolSize = getRestoreThreadPoolSize(containerModel.getTasks().size(),
+        restoreStateBackendFactories.size(), activeTaskChangelogSystemStreams.size(), new JobConfig(config));
     this.restoreExecutor = Executors.newFixedThreadPool(restoreThreadPoolSize,
         new ThreadFactoryBuilder().setDaemon(true).setNameFormat(RESTORE_THREAD_NAME).build());
   }
 
+  /**
+   * Stores are restored in parallel within each task, so the restore pool is sized for a thread per task store, up to
+   * the max pool size, which bounds the number of stores restored concurrently in the container.
+   */
+  @VisibleForTesting
+  static int getRestoreThreadPoolSize(int numTasks, int numRestoreStateBackendFactories, int numChangelogStores,
+      JobConfig jobConfig) {
+    return Math.min(
+        Math.max(numTasks * Math.max(numRestoreStateBackendFactories * 2, numChangelogStores),
+            jobConfig.getRestoreThreadPoolSize()),
+        jobConfig.getRestoreThreadPoolMaxSize());
+  }
+
   /**
    * Starts all the task stores.
    * Returns the latest checkpoint for each task. This checkpoint may be different from the lastCheckpoint returned by
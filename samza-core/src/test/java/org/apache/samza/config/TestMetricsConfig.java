@@ -22,6 +22,8 @@ import java.util.Collections;
 import java.util.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import org.apache.samza.metrics.ReservoirType;
+import org.apache.samza.metrics.TimerSampler;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -113,4 +115,53 @@ public class TestMetricsConfig {
 
     assertFalse(new MetricsConfig(new MapConfig()).getMetricsTimerDebugEnabled());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testGetMetricsReservoirType() {
+    Config config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_RESERVOIR_TYPE, "hdr_histogram"));
+    assertEquals(ReservoirType.HDR_HISTOGRAM, new MetricsConfig(config).getMetricsReservoirType());
+
+    assertEquals(ReservoirType.SLIDING_TIME_WINDOW, new MetricsConfig(new MapConfig()).getMetricsReservoirType());
+  }
+
+  @Test(expected = ConfigException.class)
+  public void testGetMetricsReservoirTypeInvalid() {
+    Config config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_RESERVOIR_TYPE, "hdr"));
+    new MetricsConfig(config).getMetricsReservoirType();
+  }
+
+  @Test
+  public void testGetMetricsTimerMode() {
+    Config config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_TIMER_MODE, "sampled"));
+    assertEquals(TimerSampler.Mode.SAMPLED, new MetricsConfig(config).getMetricsTimerMode());
+    assertTrue(new MetricsConfig(config).getMetricsTimerEnabled());
+
+    config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_TIMER_MODE, "off"));
+    assertFalse(new MetricsConfig(config).getMetricsTimerEnabled());
+
+    // the mode takes precedence over the flag
+    config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_TIMER_ENABLED, "false",
+        MetricsConfig.METRICS_TIMER_MODE, "full"));
+    assertEquals(TimerSampler.Mode.FULL, new MetricsConfig(config).getMetricsTimerMode());
+
+    config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_TIMER_ENABLED, "false"));
+    assertEquals(TimerSampler.Mode.OFF, new MetricsConfig(config).getMetricsTimerMode());
+
+    assertEquals(TimerSampler.Mode.FULL, new MetricsConfig(new MapConfig()).getMetricsTimerMode());
+  }
+
+  @Test(expected = ConfigException.class)
+  public void testGetMetricsTimerModeInvalid() {
+    Config config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_TIMER_MODE, "sample"));
+    new MetricsConfig(config).getMetricsTimerMode();
+  }
+
+  @Test
+  public void testGetMetricsTimerSampleRate() {
+    Config config = new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_TIMER_SAMPLE_RATE, "10"));
+    assertEquals(10, new MetricsConfig(config).getMetricsTimerSampleRate());
+
+    assertEquals(MetricsConfig.DEFAULT_METRICS_TIMER_SAMPLE_RATE,
+        new MetricsConfig(new MapConfig()).getMetricsTimerSampleRate());
+  }
+}
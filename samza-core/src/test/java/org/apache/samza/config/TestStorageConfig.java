@@ -429,6 +429,24 @@ public class TestStorageConfig {
     assertEquals(true, storageConfig.getDropLargeMessages(STORE_NAME0));
   }
 
+  @Test
+  public void testGetRestorePipelineBufferSize() {
+    // empty config, return default size
+    assertEquals(StorageConfig.DEFAULT_RESTORE_PIPELINE_BUFFER_SIZE,
+        new StorageConfig(new MapConfig()).getRestorePipelineBufferSize(STORE_NAME0));
+
+    StorageConfig storageConfig = new StorageConfig(
+        new MapConfig(ImmutableMap.of(String.format(StorageConfig.RESTORE_PIPELINE_BUFFER_SIZE, STORE_NAME0), "1000")));
+    assertEquals(1000, storageConfig.getRestorePipelineBufferSize(STORE_NAME0));
+    assertEquals(StorageConfig.DEFAULT_RESTORE_PIPELINE_BUFFER_SIZE, storageConfig.getRestorePipelineBufferSize(STORE_NAME1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetRestorePipelineBufferSizeNegative() {
+    new StorageConfig(new MapConfig(ImmutableMap.of(String.format(StorageConfig.RESTORE_PIPELINE_BUFFER_SIZE, STORE_NAME0),
+        "-1"))).getRestorePipelineBufferSize(STORE_NAME0);
+  }
+
   @Test
   public void testGetChangelogMinCompactionLagMs() {
     // empty config, return default lag ms
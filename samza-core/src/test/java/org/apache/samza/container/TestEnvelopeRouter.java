@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.container;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.samza.Partition;
+import org.apache.samza.system.IncomingMessageEnvelope;
+import org.apache.samza.system.SystemStreamPartition;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestEnvelopeRouter {
+  private final SystemStreamPartition sspA0 = new SystemStreamPartition("testSystem", "testStreamA", new Partition(0));
+  private final SystemStreamPartition sspA1 = new SystemStreamPartition("testSystem", "testStreamA", new Partition(1));
+  private final SystemStreamPartition sspA0KeyBucket0 = new SystemStreamPartition(sspA0, 0);
+  private final SystemStreamPartition sspA0KeyBucket1 = new SystemStreamPartition(sspA0, 1);
+
+  @Test
+  public void testGetWorkersElasticityDisabled() {
+    Map<SystemStreamPartition, List<String>> sspToWorkers = ImmutableMap.of(
+        sspA0, ImmutableList.of("worker0"),
+        sspA1, ImmutableList.of("worker1"));
+    EnvelopeRouter<String> router = new EnvelopeRouter<>(sspToWorkers, 1);
+
+    assertEquals(ImmutableList.of("worker0"), router.getWorkers(new IncomingMessageEnvelope(sspA0, "0", "key", "value")));
+    assertEquals(ImmutableList.of("worker1"), router.getWorkers(IncomingMessageEnvelope.buildWatermarkEnvelope(sspA1, 1L)));
+    assertNull(router.getWorkers(new IncomingMessageEnvelope(
+        new SystemStreamPartition("testSystem", "testStreamB", new Partition(0)), "0", "key", "value")));
+  }
+
+  @Test
+  public void testGetWorkersElasticityEnabled() {
+    Map<SystemStreamPartition, List<String>> sspToWorkers = ImmutableMap.of(
+        sspA0KeyBucket0, ImmutableList.of("worker0"),
+        sspA0KeyBucket1, ImmutableList.of("worker1"));
+    EnvelopeRouter<String> router = new EnvelopeRouter<>(sspToWorkers, 2);
+
+    IncomingMessageEnvelope envelope = new IncomingMessageEnvelope(sspA0, "0", "key", "value");
+    String expectedWorker = envelope.getSystemStreamPartition(2).equals(sspA0KeyBucket0) ? "worker0" : "worker1";
+    assertEquals(ImmutableList.of(expectedWorker), router.getWorkers(envelope));
+
+    // control messages go to the workers of all the key buckets of the ssp
+    assertEquals(ImmutableList.of("worker0", "worker1"),
+        router.getWorkers(IncomingMessageEnvelope.buildWatermarkEnvelope(sspA0, 1L)));
+    assertEquals(ImmutableList.of("worker0", "worker1"),
+        router.getWorkers(IncomingMessageEnvelope.buildEndOfStreamEnvelope(sspA0)));
+    assertEquals(ImmutableList.of("worker0", "worker1"),
+        router.getWorkers(IncomingMessageEnvelope.buildDrainMessage(sspA0, "runId")));
+  }
+
+  @Test
+  public void testGetWorkersElasticityEnabledForUnknownSsp() {
+    Map<SystemStreamPartition, List<String>> sspToWorkers = ImmutableMap.of(
+        sspA0KeyBucket0, ImmutableList.of("worker0"));
+    EnvelopeRouter<String> router = new EnvelopeRouter<>(sspToWorkers, 2);
+
+    assertTrue(router.getWorkers(IncomingMessageEnvelope.buildWatermarkEnvelope(sspA1, 1L)).isEmpty());
+    assertNull(router.getWorkers(new IncomingMessageEnvelope(sspA1, "0", "key", "value")));
+  }
+}
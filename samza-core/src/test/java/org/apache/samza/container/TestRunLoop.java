@@ -153,6 +153,54 @@ public class TestRunLoop {
     inOrder.verify(task0).process(eq(envelopeA01), any(), any());
   }
 
+  @Test
+  public void testProcessInBatchMode() {
+    SystemConsumers consumerMultiplexer = mock(SystemConsumers.class);
+    when(consumerMultiplexer.choose(false)).thenReturn(envelopeA00).thenReturn(envelopeA01).thenReturn(envelopeA11)
+        .thenReturn(sspA0EndOfStream).thenReturn(sspA1EndOfStream).thenReturn(null);
+    when(mockRunLoopConfig.getBatchSize()).thenReturn(4);
+
+    RunLoopTask task0 = getMockRunLoopTask(taskName0, sspA0);
+    RunLoopTask task1 = getMockRunLoopTask(taskName1, sspA1);
+
+    Map<TaskName, RunLoopTask> tasks = ImmutableMap.of(taskName0, task0, taskName1, task1);
+    RunLoop runLoop = new RunLoop(tasks, executor, consumerMultiplexer, containerMetrics, () -> 0L, mockRunLoopConfig);
+    runLoop.run();
+
+    InOrder inOrder = inOrder(task0);
+    inOrder.verify(task0).process(eq(envelopeA00), any(), any());
+    inOrder.verify(task0).process(eq(envelopeA01), any(), any());
+    verify(task1).process(eq(envelopeA11), any(), any());
+
+    // the chooser is updated as soon as an envelope is chosen, not when the task fetches it
+    verify(consumerMultiplexer, times(2)).tryUpdate(sspA0);
+    verify(consumerMultiplexer, times(1)).tryUpdate(sspA1);
+
+    assertEquals(5L, containerMetrics.envelopes().getCount());
+    assertEquals(1L, containerMetrics.envelopeBatches().getCount());
+  }
+
+  @Test
+  public void testProcessInBatchModeLimitsPendingEnvelopesPerSsp() {
+    SystemConsumers consumerMultiplexer = mock(SystemConsumers.class);
+    when(consumerMultiplexer.choose(false)).thenReturn(envelopeA00).thenReturn(envelopeA01).thenReturn(sspA0EndOfStream)
+        .thenReturn(null);
+    when(mockRunLoopConfig.getBatchSize()).thenReturn(2);
+
+    RunLoopTask task0 = getMockRunLoopTask(taskName0, sspA0);
+
+    Map<TaskName, RunLoopTask> tasks = ImmutableMap.of(taskName0, task0);
+    RunLoop runLoop = new RunLoop(tasks, executor, consumerMultiplexer, containerMetrics, () -> 0L, mockRunLoopConfig);
+    runLoop.run();
+
+    // the last envelope of the batch updates the chooser only when the task fetches it
+    InOrder inOrder = inOrder(consumerMultiplexer, task0);
+    inOrder.verify(consumerMultiplexer).tryUpdate(sspA0);
+    inOrder.verify(task0).process(eq(envelopeA00), any(), any());
+    inOrder.verify(consumerMultiplexer).tryUpdate(sspA0);
+    inOrder.verify(task0).process(eq(envelopeA01), any(), any());
+  }
+
   @Test
   public void testProcessCallbacksCompletedOutOfOrder() {
     int maxMessagesInFlight = 2;
@@ -207,6 +255,49 @@ public class TestRunLoop {
     assertEquals(1L, containerMetrics.containerRunning().getValue());
   }
 
+  @Test
+  public void testProcessAsyncCallbacksWithLockFreeSignal() {
+    int numMessages = 3;
+    ExecutorService taskExecutor = Executors.newFixedThreadPool(2);
+    SystemConsumers consumerMultiplexer = mock(SystemConsumers.class);
+    when(mockRunLoopConfig.lockFreeSignalEnabled()).thenReturn(true);
+
+    RunLoopTask task0 = getMockRunLoopTask(taskName0, sspA0);
+    AtomicInteger processed = new AtomicInteger();
+    doAnswer(invocation -> {
+      ReadableCoordinator coordinator = invocation.getArgumentAt(1, ReadableCoordinator.class);
+      TaskCallbackFactory callbackFactory = invocation.getArgumentAt(2, TaskCallbackFactory.class);
+      TaskCallback callback = callbackFactory.createCallback();
+      taskExecutor.submit(() -> {
+        // complete the callback later so the run loop thread has to park until it is woken up
+        Thread.sleep(10);
+        if (processed.incrementAndGet() == numMessages) {
+          coordinator.shutdown(TaskCoordinator.RequestScope.CURRENT_TASK);
+        }
+        callback.complete();
+        return null;
+      });
+      return null;
+    }).when(task0).process(any(), any(), any());
+
+    Map<TaskName, RunLoopTask> tasks = ImmutableMap.of(taskName0, task0);
+    RunLoop runLoop = new RunLoop(tasks, executor, consumerMultiplexer, containerMetrics, () -> 0L, mockRunLoopConfig);
+    IncomingMessageEnvelope envelopeA02 = new IncomingMessageEnvelope(sspA0, "2", "key0", "value0");
+    when(consumerMultiplexer.choose(false)).thenReturn(envelopeA00).thenReturn(envelopeA01).thenReturn(envelopeA02)
+        .thenReturn(null);
+    runLoop.run();
+
+    InOrder inOrder = inOrder(task0);
+    inOrder.verify(task0).process(eq(envelopeA00), any(), any());
+    inOrder.verify(task0).process(eq(envelopeA01), any(), any());
+    inOrder.verify(task0).process(eq(envelopeA02), any(), any());
+
+    assertEquals(numMessages, processed.get());
+    assertTrue(containerMetrics.runLoopBlocks().getCount() > 0);
+    assertTrue(containerMetrics.runLoopWakeups().getCount() > 0);
+    taskExecutor.shutdownNow();
+  }
+
   @Test
   public void testProcessElasticityEnabled() {
 
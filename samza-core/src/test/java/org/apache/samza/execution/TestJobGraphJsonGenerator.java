@@ -23,6 +23,7 @@ import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -296,6 +297,77 @@ public class TestJobGraphJsonGenerator {
         "PageViewCount");
   }
 
+  @Test
+  public void testFusedOperatorsStreamApplication() throws Exception {
+    Map<String, String> configMap = new HashMap<>();
+    configMap.put(JobConfig.JOB_NAME, "test-app");
+    configMap.put(JobConfig.JOB_DEFAULT_SYSTEM, "test-system");
+    configMap.put(JobConfig.JOB_OPERATOR_FUSION_ENABLED, "true");
+    StreamTestUtils.addStreamConfigs(configMap, "PageView", "hdfs", "hdfs:/user/dummy/PageViewEvent");
+    StreamTestUtils.addStreamConfigs(configMap, "PageViewCount", "kafka", "PageViewCount");
+    Config config = new MapConfig(configMap);
+
+    // set up external partition count
+    Map<String, Integer> system1Map = new HashMap<>();
+    system1Map.put("hdfs:/user/dummy/PageViewEvent", 512);
+    Map<String, Integer> system2Map = new HashMap<>();
+    system2Map.put("PageViewCount", 16);
+
+    SystemAdmin systemAdmin1 = createSystemAdmin(system1Map);
+    SystemAdmin systemAdmin2 = createSystemAdmin(system2Map);
+    SystemAdmins systemAdmins = mock(SystemAdmins.class);
+    when(systemAdmins.getSystemAdmin("hdfs")).thenReturn(systemAdmin1);
+    when(systemAdmins.getSystemAdmin("kafka")).thenReturn(systemAdmin2);
+    StreamManager streamManager = new StreamManager(systemAdmins);
+
+    /**
+     * PageView -> map [1] -> filter [2] -> map [3] -> sendTo(PageViewCount) [4]
+     *                      |
+     *                      -> sink [5]
+     *
+     * map [1] has two next operators, so only filter [2] and map [3] are fused.
+     */
+    StreamApplicationDescriptorImpl graphSpec = new StreamApplicationDescriptorImpl(appDesc -> {
+      KVSerde<String, PageViewEvent> pvSerde = KVSerde.of(new StringSerde(), new JsonSerdeV2<>(PageViewEvent.class));
+      GenericSystemDescriptor isd = new GenericSystemDescriptor("hdfs", "mockSystemFactoryClass");
+      GenericInputDescriptor<KV<String, PageViewEvent>> pageView = isd.getInputDescriptor("PageView", pvSerde);
+
+      KVSerde<String, Long> pvcSerde = KVSerde.of(new StringSerde(), new LongSerde());
+      GenericSystemDescriptor osd = new GenericSystemDescriptor("kafka", "mockSystemFactoryClass");
+      GenericOutputDescriptor<KV<String, Long>> pageViewCount = osd.getOutputDescriptor("PageViewCount", pvcSerde);
+
+      MessageStream<KV<String, PageViewEvent>> pageViews = appDesc.getInputStream(pageView).map(kv -> kv);
+      pageViews
+          .filter(kv -> kv.getValue() != null)
+          .map(kv -> KV.of(kv.getKey(), 1L))
+          .sendTo(appDesc.getOutputStream(pageViewCount));
+      pageViews.sink((message, collector, coordinator) -> { });
+    }, config);
+
+    ExecutionPlanner planner = new ExecutionPlanner(config, streamManager);
+    ExecutionPlan plan = planner.plan(graphSpec);
+    String json = plan.getPlanAsJson();
+
+    // deserialize
+    ObjectMapper mapper = new ObjectMapper();
+    JobGraphJsonGenerator.JobGraphJson nodes = mapper.readValue(json, JobGraphJsonGenerator.JobGraphJson.class);
+    JobGraphJsonGenerator.OperatorGraphJson operatorGraphJson = nodes.jobs.get(0).operatorGraph;
+    assertEquals(5, operatorGraphJson.operators.size());
+    assertEquals(1, operatorGraphJson.fusedOperators.size());
+
+    List<String> fusedOpIds = operatorGraphJson.fusedOperators.get(0);
+    assertEquals(2, fusedOpIds.size());
+    assertEquals("filter", operatorGraphJson.operators.get(fusedOpIds.get(0)).get("opCode").toString().toLowerCase());
+    assertEquals("map", operatorGraphJson.operators.get(fusedOpIds.get(1)).get("opCode").toString().toLowerCase());
+    for (String opId : fusedOpIds) {
+      assertEquals(fusedOpIds.get(0), operatorGraphJson.operators.get(opId).get("fusedInto"));
+    }
+    long unfusedOps = operatorGraphJson.operators.values().stream()
+        .filter(op -> !op.containsKey("fusedInto"))
+        .count();
+    assertEquals(3, unfusedOps);
+  }
+
   @Test
   public void testTaskApplication() throws Exception {
     JobGraphJsonGenerator jsonGenerator = new JobGraphJsonGenerator();
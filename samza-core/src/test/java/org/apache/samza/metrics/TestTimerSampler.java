@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.samza.config.MapConfig;
+import org.apache.samza.config.MetricsConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class TestTimerSampler {
+
+  @Test
+  public void testFullSamplesEveryEvent() {
+    TimerSampler sampler = new TimerSampler(TimerSampler.Mode.FULL, 10);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(sampler.sample());
+    }
+  }
+
+  @Test
+  public void testOffSamplesNoEvent() {
+    TimerSampler sampler = new TimerSampler(TimerSampler.Mode.OFF, 10);
+    for (int i = 0; i < 100; i++) {
+      assertFalse(sampler.sample());
+    }
+  }
+
+  @Test
+  public void testSampledSamplesOneInN() {
+    TimerSampler sampler = new TimerSampler(TimerSampler.Mode.SAMPLED, 10);
+    // the first event is sampled, then one in every 10
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i % 10 == 0, sampler.sample());
+    }
+  }
+
+  @Test
+  public void testSampledKeepsSamplingAfterConcurrentUse() throws Exception {
+    TimerSampler sampler = new TimerSampler(TimerSampler.Mode.SAMPLED, 10);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 4; i++) {
+      executor.submit(() -> {
+        for (int j = 0; j < 100000; j++) {
+          sampler.sample();
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    // whatever state the races left the countdown in, the next sample is at most 10 events away
+    boolean sampled = false;
+    for (int i = 0; i < 10; i++) {
+      sampled |= sampler.sample();
+    }
+    assertTrue(sampled);
+  }
+
+  @Test
+  public void testFromConfig() {
+    MetricsConfig config = new MetricsConfig(new MapConfig(ImmutableMap.of(
+        MetricsConfig.METRICS_TIMER_MODE, "sampled",
+        MetricsConfig.METRICS_TIMER_SAMPLE_RATE, "2")));
+    TimerSampler sampler = new TimerSampler(config);
+    assertEquals(TimerSampler.Mode.SAMPLED, sampler.getMode());
+    assertTrue(sampler.sample());
+    assertFalse(sampler.sample());
+    assertTrue(sampler.sample());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSampleRate() {
+    new TimerSampler(TimerSampler.Mode.SAMPLED, 0);
+  }
+}
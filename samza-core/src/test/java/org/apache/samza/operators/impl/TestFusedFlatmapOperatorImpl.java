@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.operators.impl;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import org.apache.samza.operators.functions.FlatMapFunction;
+import org.apache.samza.operators.spec.OperatorSpecs;
+import org.apache.samza.operators.spec.StreamOperatorSpec;
+import org.apache.samza.task.MessageCollector;
+import org.apache.samza.task.TaskCoordinator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+public class TestFusedFlatmapOperatorImpl {
+
+  @Test
+  public void testFusedOperatorAppliesFunctionsInOrder() {
+    FlatMapFunction<Object, Object> splitFn = m -> Arrays.asList(m + "-a", m + "-b");
+    FlatMapFunction<Object, Object> mapFn = m -> Collections.singletonList(m + "-mapped");
+    FlatMapFunction<Object, Object> filterFn = m -> ((String) m).startsWith("1-a")
+        ? Collections.singletonList(m) : Collections.emptyList();
+    FusedFlatmapOperatorImpl opImpl = new FusedFlatmapOperatorImpl(
+        ImmutableList.of(createStreamOpSpec("split", splitFn), createStreamOpSpec("map", mapFn),
+            createStreamOpSpec("filter", filterFn)));
+
+    Collection<Object> results =
+        opImpl.handleMessageSync("1", mock(MessageCollector.class), mock(TaskCoordinator.class));
+    assertEquals(Collections.singletonList("1-a-mapped"), results);
+    assertEquals(ImmutableList.of("split", "map", "filter"), opImpl.getFusedOpIds());
+    assertEquals("split", opImpl.getOperatorSpec().getOpId());
+    assertTrue(opImpl instanceof SyncOperatorImpl);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFusedOperatorStopsOnEmptyResults() {
+    FlatMapFunction<Object, Object> filterFn = m -> Collections.emptyList();
+    FlatMapFunction<Object, Object> mapFn = mock(FlatMapFunction.class);
+    FusedFlatmapOperatorImpl opImpl = new FusedFlatmapOperatorImpl(
+        ImmutableList.of(createStreamOpSpec("filter", filterFn), createStreamOpSpec("map", mapFn)));
+
+    Collection<Object> results =
+        opImpl.handleMessageSync("1", mock(MessageCollector.class), mock(TaskCoordinator.class));
+    assertTrue(results.isEmpty());
+    verify(mapFn, never()).apply(any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFusedOperatorClose() {
+    FlatMapFunction<Object, Object> fn1 = mock(FlatMapFunction.class);
+    FlatMapFunction<Object, Object> fn2 = mock(FlatMapFunction.class);
+    FusedFlatmapOperatorImpl opImpl = new FusedFlatmapOperatorImpl(
+        ImmutableList.of(createStreamOpSpec("1", fn1), createStreamOpSpec("2", fn2)));
+
+    opImpl.handleClose();
+    verify(fn1, times(1)).close();
+    verify(fn2, times(1)).close();
+  }
+
+  private static StreamOperatorSpec createStreamOpSpec(String opId, FlatMapFunction<Object, Object> transformFn) {
+    return OperatorSpecs.createFlatMapOperatorSpec(transformFn, opId);
+  }
+}
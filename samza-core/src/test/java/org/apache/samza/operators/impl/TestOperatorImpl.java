@@ -19,11 +19,14 @@
 package org.apache.samza.operators.impl;
 
 import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,6 +34,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import org.apache.samza.config.Config;
 import org.apache.samza.config.MapConfig;
+import org.apache.samza.config.MetricsConfig;
 import org.apache.samza.context.ContainerContext;
 import org.apache.samza.context.Context;
 import org.apache.samza.context.InternalTaskContext;
@@ -226,8 +230,82 @@ public class TestOperatorImpl {
     verify(mockNextOpImpl2, times(1)).handleMessageAsync(mockTestOpImplOutput, mockCollector, mockCoordinator);
   }
 
+  @Test
+  public void testOnMessagePropagatesResultsSynchronously() {
+    Config config = new MapConfig(ImmutableMap.of("job.operator.framework.executor.enabled", "false"));
+    when(this.jobContext.getConfig()).thenReturn(config);
+    TestSyncOpImpl opImpl = new TestSyncOpImpl(null);
+    opImpl.init(this.internalTaskContext);
+    TestSyncOpImpl nextOpImpl1 = new TestSyncOpImpl(null);
+    nextOpImpl1.init(this.internalTaskContext);
+    opImpl.registerNextOperator(nextOpImpl1);
+    TestSyncOpImpl nextOpImpl2 = new TestSyncOpImpl(null);
+    nextOpImpl2.init(this.internalTaskContext);
+    opImpl.registerNextOperator(nextOpImpl2);
+    assertTrue(opImpl.resolveSynchronousChain());
+
+    Object message = mock(Object.class);
+    CompletionStage<Void> future =
+        opImpl.onMessageAsync(message, mock(MessageCollector.class), mock(TaskCoordinator.class));
+
+    // the results are propagated before the call returns
+    assertTrue(future.toCompletableFuture().isDone());
+    assertEquals(Collections.singletonList(message), opImpl.received);
+    assertEquals(Collections.singletonList(message), nextOpImpl1.received);
+    assertEquals(Collections.singletonList(message), nextOpImpl2.received);
+  }
+
+  @Test
+  public void testOnMessageSynchronousChainFailure() {
+    Config config = new MapConfig(ImmutableMap.of("job.operator.framework.executor.enabled", "false"));
+    when(this.jobContext.getConfig()).thenReturn(config);
+    TestSyncOpImpl opImpl = new TestSyncOpImpl(null);
+    opImpl.init(this.internalTaskContext);
+    RuntimeException failure = new RuntimeException("failure");
+    TestSyncOpImpl nextOpImpl = new TestSyncOpImpl(failure);
+    nextOpImpl.init(this.internalTaskContext);
+    opImpl.registerNextOperator(nextOpImpl);
+    assertTrue(opImpl.resolveSynchronousChain());
+
+    // failures downstream complete the future exceptionally, as on the async path
+    CompletableFuture<Void> future = opImpl.onMessageAsync(mock(Object.class), mock(MessageCollector.class),
+        mock(TaskCoordinator.class)).toCompletableFuture();
+    assertTrue(future.isCompletedExceptionally());
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      assertEquals(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void testSynchronousChainBrokenByAsyncOperatorOrExecutor() {
+    Config config = new MapConfig(ImmutableMap.of("job.operator.framework.executor.enabled", "false"));
+    when(this.jobContext.getConfig()).thenReturn(config);
+    TestSyncOpImpl opImpl = new TestSyncOpImpl(null);
+    opImpl.init(this.internalTaskContext);
+    OperatorImpl<Object, Object> asyncOpImpl = new TestOpImpl(mock(Object.class));
+    asyncOpImpl.init(this.internalTaskContext);
+    opImpl.registerNextOperator(asyncOpImpl);
+    TestSyncOpImpl nextOpImpl = new TestSyncOpImpl(null);
+    nextOpImpl.init(this.internalTaskContext);
+    asyncOpImpl.registerNextOperator(nextOpImpl);
+
+    assertFalse(opImpl.resolveSynchronousChain());
+    assertFalse(asyncOpImpl.resolveSynchronousChain());
+    assertTrue(nextOpImpl.resolveSynchronousChain());
+
+    config = new MapConfig(ImmutableMap.of("job.operator.framework.executor.enabled", "true"));
+    when(this.jobContext.getConfig()).thenReturn(config);
+    TestSyncOpImpl executorOpImpl = new TestSyncOpImpl(null);
+    executorOpImpl.init(this.internalTaskContext);
+    assertFalse(executorOpImpl.resolveSynchronousChain());
+  }
+
   @Test
   public void testOnMessageUpdatesMetrics() {
+    when(this.jobContext.getConfig()).thenReturn(
+        new MapConfig(ImmutableMap.of(MetricsConfig.METRICS_TIMER_DEBUG_ENABLED, "true")));
     ReadableMetricsRegistry mockMetricsRegistry = mock(ReadableMetricsRegistry.class);
     when(this.context.getContainerContext().getContainerMetricsRegistry()).thenReturn(mockMetricsRegistry);
     Counter mockCounter = mock(Counter.class);
@@ -249,6 +327,33 @@ public class TestOperatorImpl {
     verify(mockTimer, times(1)).update(anyLong());
   }
 
+  @Test
+  public void testOnMessageSamplesTimerMetrics() {
+    when(this.jobContext.getConfig()).thenReturn(new MapConfig(ImmutableMap.of(
+        MetricsConfig.METRICS_TIMER_DEBUG_ENABLED, "true",
+        MetricsConfig.METRICS_TIMER_MODE, "sampled",
+        MetricsConfig.METRICS_TIMER_SAMPLE_RATE, "4")));
+    ReadableMetricsRegistry mockMetricsRegistry = mock(ReadableMetricsRegistry.class);
+    when(this.context.getContainerContext().getContainerMetricsRegistry()).thenReturn(mockMetricsRegistry);
+    Counter mockCounter = mock(Counter.class);
+    Timer mockTimer = mock(Timer.class);
+    when(mockMetricsRegistry.newCounter(anyString(), anyString())).thenReturn(mockCounter);
+    when(mockMetricsRegistry.newTimer(anyString(), anyString())).thenReturn(mockTimer);
+
+    OperatorImpl<Object, Object> opImpl = new TestOpImpl(mock(Object.class));
+    opImpl.init(this.internalTaskContext);
+
+    MessageCollector mockCollector = mock(MessageCollector.class);
+    TaskCoordinator mockCoordinator = mock(TaskCoordinator.class);
+    for (int i = 0; i < 8; i++) {
+      opImpl.onMessage(mock(Object.class), mockCollector, mockCoordinator);
+    }
+
+    // every message is counted, but only one in every 4 is timed
+    verify(mockCounter, times(8)).inc();
+    verify(mockTimer, times(2)).update(anyLong());
+  }
+
   @Test
   public void testOnTimerPropagatesResultsAndTimer() {
     Object mockTestOpImplOutput = mock(Object.class);
@@ -339,6 +444,44 @@ public class TestOperatorImpl {
     }
   }
 
+  /**
+   * A synchronous operator which records the messages it handles, or fails to handle them.
+   */
+  private static class TestSyncOpImpl extends SyncOperatorImpl<Object, Object> {
+    private final List<Object> received = new ArrayList<>();
+    private final RuntimeException failure;
+    private final TestOpSpec testOpSpec = new TestOpSpec();
+
+    TestSyncOpImpl(RuntimeException failure) {
+      this.failure = failure;
+    }
+
+    @Override
+    protected void handleInit(Context context) {}
+
+    @Override
+    protected Collection<Object> handleMessageSync(Object message, MessageCollector collector,
+        TaskCoordinator coordinator) {
+      if (failure != null) {
+        throw failure;
+      }
+      received.add(message);
+      return Collections.singletonList(message);
+    }
+
+    @Override
+    public Collection<Object> handleTimer(MessageCollector collector, TaskCoordinator coordinator) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    protected void handleClose() {}
+
+    protected OperatorSpec<Object, Object> getOperatorSpec() {
+      return testOpSpec;
+    }
+  }
+
   private static class TestOpSpec extends OperatorSpec<Object, Object> {
     TestOpSpec() {
      super(OpCode.INPUT, "1");
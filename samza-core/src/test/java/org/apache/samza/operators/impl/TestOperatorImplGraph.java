@@ -44,6 +44,7 @@ import org.apache.samza.operators.MessageStream;
 import org.apache.samza.operators.OutputStream;
 import org.apache.samza.operators.functions.ClosableFunction;
 import org.apache.samza.operators.functions.FilterFunction;
+import org.apache.samza.operators.functions.FlatMapFunction;
 import org.apache.samza.operators.functions.InitableFunction;
 import org.apache.samza.operators.functions.JoinFunction;
 import org.apache.samza.operators.functions.MapFunction;
@@ -163,6 +164,59 @@ public class TestOperatorImplGraph {
     OperatorImpl sendToOpImpl = (OutputOperatorImpl) mapOpImpl.registeredOperators.iterator().next();
     assertEquals(0, sendToOpImpl.registeredOperators.size());
     assertEquals(OpCode.SEND_TO, sendToOpImpl.getOperatorSpec().getOpCode());
+
+    // the whole chain is synchronous, so messages are handled by direct calls
+    assertTrue(inputOpImpl.resolveSynchronousChain());
+  }
+
+  @Test
+  public void testFusedLinearChain() {
+    String inputStreamId = "input";
+    String inputSystem = "input-system";
+    String inputPhysicalName = "input-stream";
+    String outputStreamId = "output";
+    String outputSystem = "output-system";
+    String outputPhysicalName = "output-stream";
+
+    HashMap<String, String> configs = new HashMap<>();
+    configs.put(JobConfig.JOB_NAME, "jobName");
+    configs.put(JobConfig.JOB_ID, "jobId");
+    configs.put(JobConfig.JOB_OPERATOR_FUSION_ENABLED, "true");
+    StreamTestUtils.addStreamConfigs(configs, inputStreamId, inputSystem, inputPhysicalName);
+    StreamTestUtils.addStreamConfigs(configs, outputStreamId, outputSystem, outputPhysicalName);
+    Config config = new MapConfig(configs);
+    when(this.context.getJobContext().getConfig()).thenReturn(config);
+
+    StreamApplicationDescriptorImpl graphSpec = new StreamApplicationDescriptorImpl(appDesc -> {
+      GenericSystemDescriptor sd = new GenericSystemDescriptor(inputSystem, "mockFactoryClass");
+      GenericInputDescriptor inputDescriptor = sd.getInputDescriptor(inputStreamId, mock(Serde.class));
+      GenericOutputDescriptor outputDescriptor = sd.getOutputDescriptor(outputStreamId, mock(Serde.class));
+      MessageStream<Object> inputStream = appDesc.getInputStream(inputDescriptor);
+      OutputStream<Object> outputStream = appDesc.getOutputStream(outputDescriptor);
+
+      inputStream
+          .filter(mock(FilterFunction.class))
+          .map(mock(MapFunction.class))
+          .flatMap(mock(FlatMapFunction.class))
+          .sendTo(outputStream);
+    }, config);
+
+    OperatorImplGraph opImplGraph =
+        new OperatorImplGraph(graphSpec.getOperatorSpecGraph(), this.context, mock(Clock.class));
+
+    InputOperatorImpl inputOpImpl = opImplGraph.getInputOperator(new SystemStream(inputSystem, inputPhysicalName));
+    assertEquals(1, inputOpImpl.registeredOperators.size());
+
+    // filter, map and flatMap are fused into a single operator identified by the filter
+    FusedFlatmapOperatorImpl fusedOpImpl = (FusedFlatmapOperatorImpl) inputOpImpl.registeredOperators.iterator().next();
+    assertEquals(3, fusedOpImpl.getFusedOpIds().size());
+    assertEquals(OpCode.FILTER, fusedOpImpl.getOperatorSpec().getOpCode());
+    assertEquals(1, fusedOpImpl.registeredOperators.size());
+
+    OperatorImpl sendToOpImpl = (OutputOperatorImpl) fusedOpImpl.registeredOperators.iterator().next();
+    assertEquals(0, sendToOpImpl.registeredOperators.size());
+    assertEquals(OpCode.SEND_TO, sendToOpImpl.getOperatorSpec().getOpCode());
+    assertTrue(inputOpImpl.resolveSynchronousChain());
   }
 
   @Test
@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import org.apache.samza.Partition;
 import org.apache.samza.application.StreamApplication;
 import org.apache.samza.application.descriptors.StreamApplicationDescriptorImpl;
@@ -47,16 +48,20 @@ import org.apache.samza.operators.MessageStream;
 import org.apache.samza.operators.OperatorSpecGraph;
 import org.apache.samza.operators.functions.MapFunction;
 import org.apache.samza.operators.impl.store.TestInMemoryStore;
+import org.apache.samza.operators.impl.store.TimeSeriesKey;
 import org.apache.samza.operators.impl.store.TimeSeriesKeySerde;
 import org.apache.samza.operators.triggers.FiringType;
 import org.apache.samza.operators.triggers.Trigger;
 import org.apache.samza.operators.triggers.Triggers;
 import org.apache.samza.operators.windows.AccumulationMode;
 import org.apache.samza.operators.windows.WindowPane;
+import org.apache.samza.operators.windows.Window;
 import org.apache.samza.operators.windows.Windows;
 import org.apache.samza.serializers.IntegerSerde;
 import org.apache.samza.serializers.KVSerde;
 import org.apache.samza.serializers.Serde;
+import org.apache.samza.storage.kv.KeyValueIterator;
+import org.apache.samza.storage.kv.KeyValueStore;
 import org.apache.samza.system.IncomingMessageEnvelope;
 import org.apache.samza.system.OutgoingMessageEnvelope;
 import org.apache.samza.system.SystemStream;
@@ -191,6 +196,60 @@ public class TestWindowOperator {
     Assert.assertEquals(windowPanes.get(4).getMessage(), new Integer(1));
   }
 
+  @Test
+  public void testTumblingAggregatingWindowsReadStateFromStoreOncePerPane() throws Exception {
+    TestInMemoryStore<TimeSeriesKey<Integer>, Integer> store =
+        spy(new TestInMemoryStore<>(new TimeSeriesKeySerde<>(new IntegerSerde()), new IntegerSerde()));
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1")).thenReturn((KeyValueStore) store);
+
+    OperatorSpecGraph sgb = this.getAggregateTumblingWindowStreamGraph(AccumulationMode.DISCARDING,
+        Duration.ofSeconds(1), Triggers.repeat(Triggers.count(1000))).getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    TestClock testClock = new TestClock();
+    StreamOperatorTask task = new StreamOperatorTask(sgb, testClock);
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+    integers.forEach(n -> processSync(task,  new IntegerEnvelope(n), messageCollector, taskCoordinator, taskCallback));
+
+    // the aggregated value of the open pane is cached after the first message, and written through to the store
+    verify(store, times(1)).range(any(), any());
+    verify(store, times(integers.size())).put(any(), any());
+    Assert.assertEquals(new Integer(integers.size()), store.get(new TimeSeriesKey<>(null, 0, 0)));
+
+    testClock.advanceTime(Duration.ofSeconds(1));
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(1, windowPanes.size());
+    Assert.assertEquals(new Integer(integers.size()), windowPanes.get(0).getMessage());
+  }
+
+  @Test
+  public void testTumblingAggregatingWindowsResumeFromStoredState() throws Exception {
+    TestInMemoryStore<TimeSeriesKey<Integer>, Integer> store =
+        new TestInMemoryStore<>(new TimeSeriesKeySerde<>(new IntegerSerde()), new IntegerSerde());
+    // state of the open pane restored from the changelog
+    store.put(new TimeSeriesKey<>(null, 0, 0), 5);
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1")).thenReturn((KeyValueStore) store);
+
+    OperatorSpecGraph sgb = this.getAggregateTumblingWindowStreamGraph(AccumulationMode.DISCARDING,
+        Duration.ofSeconds(1), Triggers.repeat(Triggers.count(1000))).getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    TestClock testClock = new TestClock();
+    StreamOperatorTask task = new StreamOperatorTask(sgb, testClock);
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+    processSync(task,  new IntegerEnvelope(1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task,  new IntegerEnvelope(2), messageCollector, taskCoordinator, taskCallback);
+
+    testClock.advanceTime(Duration.ofSeconds(1));
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(1, windowPanes.size());
+    Assert.assertEquals(new Integer(7), windowPanes.get(0).getMessage());
+    // the state of the fired pane is removed from the store
+    Assert.assertNull(store.get(new TimeSeriesKey<>(null, 0, 0)));
+  }
+
   @Test
   public void testTumblingWindowsAccumulatingMode() throws Exception {
     OperatorSpecGraph sgb = this.getKeyedTumblingWindowStreamGraph(AccumulationMode.ACCUMULATING,
@@ -530,6 +589,322 @@ public class TestWindowOperator {
     verify(taskCoordinator, times(1)).shutdown(TaskCoordinator.RequestScope.CURRENT_TASK);
   }
 
+  @Test
+  public void testEventTimeTumblingWindowsClosedByWatermark() throws Exception {
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1"))
+        .thenReturn(new TestInMemoryStore<>(new TimeSeriesKeySerde(new IntegerSerde()), new IntegerSerde()));
+
+    OperatorSpecGraph sgb = this.getKeyedEventTimeTumblingWindowStreamGraph(AccumulationMode.DISCARDING,
+        Duration.ofMillis(10), Duration.ZERO).getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    StreamOperatorTask task = new StreamOperatorTask(sgb, new TestClock());
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    // the event time of each message is its value
+    processSync(task, new EventTimeEnvelope(1, 1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(1, 5), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(2, 8), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(1, 12), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(0, windowPanes.size());
+
+    // windows are closed by the watermark regardless of processing time
+    processSync(task, buildWatermarkEnvelope(10), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(2, windowPanes.size());
+    windowPanes.sort((pane1, pane2) -> pane1.getKey().getKey().compareTo(pane2.getKey().getKey()));
+    Assert.assertEquals(new Integer(1), windowPanes.get(0).getKey().getKey());
+    Assert.assertEquals("0", windowPanes.get(0).getKey().getPaneId());
+    Assert.assertEquals(new Integer(2), windowPanes.get(0).getMessage());
+    Assert.assertEquals(FiringType.DEFAULT, windowPanes.get(0).getFiringType());
+    Assert.assertEquals(new Integer(2), windowPanes.get(1).getKey().getKey());
+    Assert.assertEquals(new Integer(1), windowPanes.get(1).getMessage());
+
+    // late messages for closed windows are dropped
+    processSync(task, new EventTimeEnvelope(1, 3), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(2, windowPanes.size());
+
+    processSync(task, buildWatermarkEnvelope(20), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(3, windowPanes.size());
+    Assert.assertEquals("10", windowPanes.get(2).getKey().getPaneId());
+    Assert.assertEquals(new Integer(1), windowPanes.get(2).getMessage());
+  }
+
+  @Test
+  public void testEventTimeTumblingWindowsWithAllowedLateness() throws Exception {
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1"))
+        .thenReturn(new TestInMemoryStore<>(new TimeSeriesKeySerde(new IntegerSerde()), new IntegerSerde()));
+
+    OperatorSpecGraph sgb = this.getKeyedEventTimeTumblingWindowStreamGraph(AccumulationMode.ACCUMULATING,
+        Duration.ofMillis(10), Duration.ofMillis(10)).getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    StreamOperatorTask task = new StreamOperatorTask(sgb, new TestClock());
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    processSync(task, new EventTimeEnvelope(1, 1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, buildWatermarkEnvelope(10), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(1, windowPanes.size());
+    Assert.assertEquals(new Integer(1), windowPanes.get(0).getMessage());
+
+    // a late message within the allowed lateness updates the accumulated window and is emitted right away
+    processSync(task, new EventTimeEnvelope(1, 2), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(2, windowPanes.size());
+    Assert.assertEquals(new Integer(2), windowPanes.get(1).getMessage());
+    Assert.assertEquals(FiringType.LATE, windowPanes.get(1).getFiringType());
+
+    // once the watermark passes the allowed lateness the window state is discarded, and late messages are dropped
+    processSync(task, buildWatermarkEnvelope(20), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(1, 3), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(2, windowPanes.size());
+  }
+
+  @Test
+  public void testEventTimeTumblingWindowsClosedBeforeRestartAreNotEmittedAgain() throws Exception {
+    TestInMemoryStore<TimeSeriesKey<Integer>, Integer> store =
+        new TestInMemoryStore<>(new TimeSeriesKeySerde<>(new IntegerSerde()), new IntegerSerde());
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1")).thenReturn((KeyValueStore) store);
+
+    OperatorSpecGraph sgb = this.getKeyedEventTimeTumblingWindowStreamGraph(AccumulationMode.ACCUMULATING,
+        Duration.ofMillis(10), Duration.ofMillis(10)).getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    StreamOperatorTask task = new StreamOperatorTask(sgb, new TestClock());
+    task.init(this.context);
+    processSync(task, new EventTimeEnvelope(1, 1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(2, 12), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, buildWatermarkEnvelope(10), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(ImmutableList.of("0:1=1"), toStrings(windowPanes));
+
+    // restart on the same store, which retains the state of the closed window for late messages
+    task = new StreamOperatorTask(sgb, new TestClock());
+    task.init(this.context);
+    // a late message for the closed window updates it, even before a watermark is received again
+    processSync(task, new EventTimeEnvelope(1, 2), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(ImmutableList.of("0:1=1", "0:1=2"), toStrings(windowPanes));
+    Assert.assertEquals(FiringType.LATE, windowPanes.get(1).getFiringType());
+
+    // the closed window is not emitted again by the watermark
+    processSync(task, buildWatermarkEnvelope(15), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(ImmutableList.of("0:1=1", "0:1=2"), toStrings(windowPanes));
+
+    // the window that was open before the restart is closed by the watermark, and all the state is discarded
+    processSync(task, buildWatermarkEnvelope(30), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(ImmutableList.of("0:1=1", "0:1=2", "10:2=1"), toStrings(windowPanes));
+    Assert.assertFalse(store.all().hasNext());
+  }
+
+  @Test
+  public void testEventTimeTumblingWindowsClosedAtEndOfStream() throws Exception {
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1"))
+        .thenReturn(new TestInMemoryStore<>(new TimeSeriesKeySerde(new IntegerSerde()), new IntegerSerde()));
+
+    OperatorSpecGraph sgb = this.getKeyedEventTimeTumblingWindowStreamGraph(AccumulationMode.DISCARDING,
+        Duration.ofMillis(10), Duration.ZERO).getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    StreamOperatorTask task = new StreamOperatorTask(sgb, new TestClock());
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    processSync(task, new EventTimeEnvelope(1, 1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(1, 15), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, IncomingMessageEnvelope.buildEndOfStreamEnvelope(
+        new SystemStreamPartition("kafka", "integers", new Partition(0))), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(2, windowPanes.size());
+    Assert.assertEquals("0", windowPanes.get(0).getKey().getPaneId());
+    Assert.assertEquals("10", windowPanes.get(1).getKey().getPaneId());
+  }
+
+  @Test
+  public void testSlidingAggregatingWindowsCombinePanes() throws Exception {
+    TestInMemoryStore<TimeSeriesKey<Integer>, Integer> store =
+        spy(new TestInMemoryStore<>(new TimeSeriesKeySerde<>(new IntegerSerde()), new IntegerSerde()));
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1")).thenReturn((KeyValueStore) store);
+
+    OperatorSpecGraph sgb = this.getKeyedSlidingWindowStreamGraph(Duration.ofSeconds(3), Duration.ofSeconds(1), true)
+        .getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    TestClock testClock = new TestClock();
+    testClock.advanceTime(Duration.ofSeconds(10));
+    StreamOperatorTask task = new StreamOperatorTask(sgb, testClock);
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    processSync(task, new IntegerEnvelope(1), messageCollector, taskCoordinator, taskCallback);
+    testClock.advanceTime(Duration.ofSeconds(1));
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(ImmutableList.of("8000:1=1"), toStrings(windowPanes));
+
+    processSync(task, new IntegerEnvelope(1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new IntegerEnvelope(2), messageCollector, taskCoordinator, taskCallback);
+    testClock.advanceTime(Duration.ofSeconds(1));
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(ImmutableList.of("8000:1=1", "9000:1=2", "9000:2=1"), toStrings(windowPanes));
+
+    // each window is emitted once, until the last window that contains a pane with state
+    testClock.advanceTime(Duration.ofSeconds(5));
+    task.window(messageCollector, taskCoordinator);
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(ImmutableList.of("8000:1=1", "9000:1=2", "9000:2=1", "10000:1=2", "10000:2=1", "11000:1=1",
+        "11000:2=1"), toStrings(windowPanes));
+
+    // each message is written to the store once, into its pane, and the end of the last emitted window is written
+    // once per emission. The panes are removed after their last window.
+    verify(store, times(6)).put(any(), any());
+    KeyValueIterator<TimeSeriesKey<Integer>, Integer> iterator = store.all();
+    Assert.assertEquals(new TimeSeriesKey<>(1, -1 - 14000L, 0), iterator.next().getKey());
+    Assert.assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void testSlidingWindowsEmittedBeforeRestartAreNotEmittedAgain() throws Exception {
+    TestInMemoryStore<TimeSeriesKey<Integer>, Integer> store =
+        new TestInMemoryStore<>(new TimeSeriesKeySerde<>(new IntegerSerde()), new IntegerSerde());
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1")).thenReturn((KeyValueStore) store);
+
+    OperatorSpecGraph sgb = this.getKeyedSlidingWindowStreamGraph(Duration.ofSeconds(3), Duration.ofSeconds(1), true)
+        .getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    TestClock testClock = new TestClock();
+    testClock.advanceTime(Duration.ofSeconds(10));
+    StreamOperatorTask task = new StreamOperatorTask(sgb, testClock);
+    task.init(this.context);
+    processSync(task, new IntegerEnvelope(1), messageCollector, taskCoordinator, taskCallback);
+    testClock.advanceTime(Duration.ofSeconds(1));
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(ImmutableList.of("8000:1=1"), toStrings(windowPanes));
+
+    // restart on the same store, which retains the pane for the later windows that contain it
+    task = new StreamOperatorTask(sgb, testClock);
+    task.init(this.context);
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(ImmutableList.of("8000:1=1"), toStrings(windowPanes));
+
+    testClock.advanceTime(Duration.ofSeconds(1));
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(ImmutableList.of("8000:1=1", "9000:1=1"), toStrings(windowPanes));
+  }
+
+  @Test
+  public void testSlidingAggregatingWindowsWithoutCombineFunction() throws Exception {
+    OperatorSpecGraph sgb = this.getKeyedSlidingWindowStreamGraph(Duration.ofSeconds(2), Duration.ofSeconds(1), false)
+        .getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    TestClock testClock = new TestClock();
+    StreamOperatorTask task = new StreamOperatorTask(sgb, testClock);
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    // the messages of the panes of a window are aggregated when the window is emitted
+    processSync(task, new IntegerEnvelope(1), messageCollector, taskCoordinator, taskCallback);
+    testClock.advanceTime(Duration.ofSeconds(1));
+    processSync(task, new IntegerEnvelope(1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new IntegerEnvelope(1), messageCollector, taskCoordinator, taskCallback);
+    testClock.advanceTime(Duration.ofSeconds(1));
+    task.window(messageCollector, taskCoordinator);
+    Assert.assertEquals(ImmutableList.of("-1000:1=1", "0:1=3"), toStrings(windowPanes));
+  }
+
+  @Test
+  public void testEventTimeSlidingWindowsClosedByWatermark() throws Exception {
+    when(this.context.getTaskContext().getStore("jobName-jobId-window-w1"))
+        .thenReturn(new TestInMemoryStore<>(new TimeSeriesKeySerde(new IntegerSerde()), new IntegerSerde()));
+
+    StreamApplication userApp = appDesc -> {
+      KVSerde<Integer, Integer> kvSerde = KVSerde.of(new IntegerSerde(), new IntegerSerde());
+      GenericSystemDescriptor sd = new GenericSystemDescriptor("kafka", "mockFactoryClass");
+      GenericInputDescriptor<KV<Integer, Integer>> inputDescriptor = sd.getInputDescriptor("integers", kvSerde);
+      appDesc.getInputStream(inputDescriptor)
+          .window(Windows.<KV<Integer, Integer>, Integer, Integer>keyedEventTimeSlidingWindow(KV::getKey,
+              kv -> (long) kv.getValue(), Duration.ofMillis(10), Duration.ofMillis(5), () -> 0, (m, c) -> c + 1,
+              Integer::sum, new IntegerSerde(), new IntegerSerde()), "w1")
+          .sink((message, messageCollector, taskCoordinator) -> {
+            SystemStream outputSystemStream = new SystemStream("outputSystem", "outputStream");
+            messageCollector.send(new OutgoingMessageEnvelope(outputSystemStream, message));
+          });
+    };
+    OperatorSpecGraph sgb = new StreamApplicationDescriptorImpl(userApp, config).getOperatorSpecGraph();
+    List<WindowPane<Integer, Integer>> windowPanes = new ArrayList<>();
+
+    StreamOperatorTask task = new StreamOperatorTask(sgb, new TestClock());
+    task.init(this.context);
+    MessageCollector messageCollector = envelope -> windowPanes.add((WindowPane<Integer, Integer>) envelope.getMessage());
+
+    // the event time of each message is its value
+    processSync(task, new EventTimeEnvelope(1, 1), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(1, 6), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, new EventTimeEnvelope(2, 12), messageCollector, taskCoordinator, taskCallback);
+    processSync(task, buildWatermarkEnvelope(10), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(ImmutableList.of("-5:1=1", "0:1=2"), toStrings(windowPanes));
+
+    // a message for a pane that is still in a window that was not emitted is added to it
+    processSync(task, new EventTimeEnvelope(1, 7), messageCollector, taskCoordinator, taskCallback);
+    // a message for a pane that is not in any window that was not emitted is dropped
+    processSync(task, new EventTimeEnvelope(1, 2), messageCollector, taskCoordinator, taskCallback);
+
+    processSync(task, buildWatermarkEnvelope(20), messageCollector, taskCoordinator, taskCallback);
+    Assert.assertEquals(ImmutableList.of("-5:1=1", "0:1=2", "5:1=2", "5:2=1", "10:2=1"), toStrings(windowPanes));
+  }
+
+  private static List<String> toStrings(List<WindowPane<Integer, Integer>> windowPanes) {
+    return windowPanes.stream()
+        .map(pane -> pane.getKey().getPaneId() + ":" + pane.getKey().getKey() + "=" + pane.getMessage())
+        .collect(Collectors.toList());
+  }
+
+  private StreamApplicationDescriptorImpl getKeyedSlidingWindowStreamGraph(Duration size, Duration slide,
+      boolean withCombineFunction) throws IOException {
+    StreamApplication userApp = appDesc -> {
+      KVSerde<Integer, Integer> kvSerde = KVSerde.of(new IntegerSerde(), new IntegerSerde());
+      GenericSystemDescriptor sd = new GenericSystemDescriptor("kafka", "mockFactoryClass");
+      GenericInputDescriptor<KV<Integer, Integer>> inputDescriptor = sd.getInputDescriptor("integers", kvSerde);
+      Window<KV<Integer, Integer>, Integer, Integer> window = withCombineFunction
+          ? Windows.keyedSlidingWindow(KV::getKey, size, slide, () -> 0, (m, c) -> c + 1, Integer::sum,
+              new IntegerSerde(), new IntegerSerde())
+          : Windows.keyedSlidingWindow(KV::getKey, size, slide, () -> 0, (m, c) -> c + 1, new IntegerSerde(), kvSerde);
+      appDesc.getInputStream(inputDescriptor)
+          .window(window, "w1")
+          .sink((message, messageCollector, taskCoordinator) -> {
+            SystemStream outputSystemStream = new SystemStream("outputSystem", "outputStream");
+            messageCollector.send(new OutgoingMessageEnvelope(outputSystemStream, message));
+          });
+    };
+
+    return new StreamApplicationDescriptorImpl(userApp, config);
+  }
+
+  private StreamApplicationDescriptorImpl getKeyedEventTimeTumblingWindowStreamGraph(AccumulationMode mode,
+      Duration duration, Duration allowedLateness) throws IOException {
+    StreamApplication userApp = appDesc -> {
+      KVSerde<Integer, Integer> kvSerde = KVSerde.of(new IntegerSerde(), new IntegerSerde());
+      GenericSystemDescriptor sd = new GenericSystemDescriptor("kafka", "mockFactoryClass");
+      GenericInputDescriptor<KV<Integer, Integer>> inputDescriptor = sd.getInputDescriptor("integers", kvSerde);
+      appDesc.getInputStream(inputDescriptor)
+          .window(Windows.<KV<Integer, Integer>, Integer, Integer>keyedEventTimeTumblingWindow(KV::getKey,
+              kv -> (long) kv.getValue(), duration, () -> 0, (m, c) -> c + 1, new IntegerSerde(), new IntegerSerde())
+              .setAllowedLateness(allowedLateness)
+              .setAccumulationMode(mode), "w1")
+          .sink((message, messageCollector, taskCoordinator) -> {
+            SystemStream outputSystemStream = new SystemStream("outputSystem", "outputStream");
+            messageCollector.send(new OutgoingMessageEnvelope(outputSystemStream, message));
+          });
+    };
+
+    return new StreamApplicationDescriptorImpl(userApp, config);
+  }
+
+  private static IncomingMessageEnvelope buildWatermarkEnvelope(long watermark) {
+    return IncomingMessageEnvelope.buildWatermarkEnvelope(
+        new SystemStreamPartition("kafka", "integers", new Partition(0)), watermark);
+  }
+
   private StreamApplicationDescriptorImpl getKeyedTumblingWindowStreamGraph(AccumulationMode mode,
       Duration duration, Trigger<KV<Integer, Integer>> earlyTrigger) throws IOException {
 
@@ -613,6 +988,13 @@ public class TestWindowOperator {
     }
   }
 
+  private static class EventTimeEnvelope extends IncomingMessageEnvelope {
+
+    EventTimeEnvelope(Integer key, Integer eventTime) {
+      super(new SystemStreamPartition("kafka", "integers", new Partition(0)), null, key, eventTime);
+    }
+  }
+
   private static class KVMapFunction implements MapFunction<KV<Integer, Integer>, IntegerEnvelope> {
 
     @Override
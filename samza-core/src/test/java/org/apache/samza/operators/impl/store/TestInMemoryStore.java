@@ -28,6 +28,7 @@ import org.apache.samza.storage.kv.KeyValueIterator;
 import org.apache.samza.storage.kv.KeyValueStore;
 
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -97,12 +98,27 @@ public class TestInMemoryStore<K, V> implements KeyValueStore<K, V> {
     }
   }
 
+  @Override
+  public void deleteRange(K from, K to) {
+    map.subMap(keySerde.toBytes(from), keySerde.toBytes(to)).clear();
+  }
+
   @Override
   public KeyValueIterator<K, V> range(K from, K to) {
     ConcurrentNavigableMap<byte[], byte[]> values = map.subMap(keySerde.toBytes(from), keySerde.toBytes(to));
     return new InMemoryIterator(values.entrySet().iterator(), keySerde, valSerde);
   }
 
+  @Override
+  public KeyValueIterator<K, V> prefixScan(K prefix) {
+    byte[] prefixBytes = keySerde.toBytes(prefix);
+    Iterator<Map.Entry<byte[], byte[]>> values = map.tailMap(prefixBytes).entrySet().stream()
+        .filter(entry -> entry.getKey().length >= prefixBytes.length
+            && Arrays.equals(Arrays.copyOf(entry.getKey(), prefixBytes.length), prefixBytes))
+        .iterator();
+    return new InMemoryIterator<>(values, keySerde, valSerde);
+  }
+
   @Override
   public KeyValueSnapshot<K, V> snapshot(K from, K to) {
     final ConcurrentNavigableMap<byte[], byte[]> values = map.subMap(keySerde.toBytes(from), keySerde.toBytes(to));
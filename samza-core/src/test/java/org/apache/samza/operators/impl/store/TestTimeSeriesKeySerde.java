@@ -23,7 +23,11 @@ import org.apache.samza.serializers.LongSerde;
 import org.apache.samza.serializers.StringSerde;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 public class TestTimeSeriesKeySerde {
 
@@ -68,4 +72,18 @@ public class TestTimeSeriesKeySerde {
 
     assertEquals(storeKey, deserializedTimeSeriesKey);
   }
+
+  @Test
+  public void testSerializedFormat() {
+    TimeSeriesKey<String> storeKey = new TimeSeriesKey<>("test", 0x0102030405060708L, 0x7fL);
+    TimeSeriesKeySerde<String> serde = new TimeSeriesKeySerde<>(new StringSerde("UTF-8"));
+
+    ByteBuffer expected = ByteBuffer.allocate(4 + 8 + 8);
+    expected.put("test".getBytes());
+    expected.putLong(0x0102030405060708L);
+    expected.putLong(0x7fL);
+
+    assertTrue(Arrays.equals(expected.array(), serde.toBytes(storeKey)));
+    assertEquals(storeKey, serde.fromBytes(expected.array()));
+  }
 }
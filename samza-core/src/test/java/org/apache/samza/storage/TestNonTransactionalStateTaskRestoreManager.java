@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.samza.Partition;
+import org.apache.samza.config.Config;
+import org.apache.samza.config.JobConfig;
+import org.apache.samza.config.MapConfig;
+import org.apache.samza.container.TaskName;
+import org.apache.samza.job.model.TaskModel;
+import org.apache.samza.system.SystemAdmins;
+import org.apache.samza.system.SystemConsumer;
+import org.apache.samza.system.SystemStream;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestNonTransactionalStateTaskRestoreManager {
+  private ExecutorService restoreExecutor;
+
+  @After
+  public void teardown() {
+    if (restoreExecutor != null) {
+      restoreExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRestoresStoresConcurrently() throws Exception {
+    int numStores = 3;
+    restoreExecutor = Executors.newFixedThreadPool(numStores);
+    CountDownLatch allStarted = new CountDownLatch(numStores);
+    CountDownLatch finish = new CountDownLatch(1);
+    Map<String, StorageEngine> stores = new HashMap<>();
+    for (int i = 0; i < numStores; i++) {
+      stores.put("store" + i, mockLoggedStore(() -> {
+        allStarted.countDown();
+        await(finish);
+      }));
+    }
+
+    CompletableFuture<Void> restoreFuture = createRestoreManager(stores, new MapConfig()).restore();
+
+    // every store restore is running at the same time
+    assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+    assertFalse(restoreFuture.isDone());
+    finish.countDown();
+    restoreFuture.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testRestoreFailsIfAStoreFails() throws Exception {
+    restoreExecutor = Executors.newFixedThreadPool(2);
+    RuntimeException failure = new RuntimeException("restore failed");
+    AtomicInteger restoredCount = new AtomicInteger();
+    Map<String, StorageEngine> stores = ImmutableMap.of(
+        "store0", mockLoggedStore(restoredCount::incrementAndGet),
+        "store1", mockLoggedStore(() -> {
+          throw failure;
+        }),
+        "store2", mockLoggedStore(restoredCount::incrementAndGet));
+
+    CompletableFuture<Void> restoreFuture = createRestoreManager(stores, new MapConfig()).restore();
+
+    try {
+      restoreFuture.join();
+      fail("Expected the restore to fail");
+    } catch (CompletionException e) {
+      assertEquals(failure, e.getCause());
+    }
+    // the other stores are still restored
+    assertEquals(2, restoredCount.get());
+  }
+
+  @Test
+  public void testRestoreConcurrencyBoundedByMaxPoolSize() throws Exception {
+    int numStores = 6;
+    int maxPoolSize = 2;
+    Config config =
+        new MapConfig(ImmutableMap.of(JobConfig.RESTORE_THREAD_POOL_MAX_SIZE, String.valueOf(maxPoolSize)));
+    restoreExecutor = Executors.newFixedThreadPool(
+        ContainerStorageManager.getRestoreThreadPoolSize(1, 1, numStores, new JobConfig(config)));
+    AtomicInteger concurrentRestores = new AtomicInteger();
+    AtomicInteger maxConcurrentRestores = new AtomicInteger();
+    AtomicInteger restoredCount = new AtomicInteger();
+    Map<String, StorageEngine> stores = new HashMap<>();
+    for (int i = 0; i < numStores; i++) {
+      stores.put("store" + i, mockLoggedStore(() -> {
+        maxConcurrentRestores.accumulateAndGet(concurrentRestores.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        concurrentRestores.decrementAndGet();
+        restoredCount.incrementAndGet();
+      }));
+    }
+
+    createRestoreManager(stores, config).restore().get(10, TimeUnit.SECONDS);
+
+    assertEquals(numStores, restoredCount.get());
+    assertTrue(maxConcurrentRestores.get() <= maxPoolSize);
+  }
+
+  private NonTransactionalStateTaskRestoreManager createRestoreManager(Map<String, StorageEngine> stores,
+      Config config) {
+    TaskModel taskModel = mock(TaskModel.class);
+    when(taskModel.getTaskName()).thenReturn(new TaskName("Partition 0"));
+    when(taskModel.getChangelogPartition()).thenReturn(new Partition(0));
+    Map<String, SystemStream> storeChangelogs = new HashMap<>();
+    Map<String, SystemConsumer> storeConsumers = new HashMap<>();
+    stores.keySet().forEach(storeName -> {
+      storeChangelogs.put(storeName, new SystemStream("system", storeName + "-changelog"));
+      storeConsumers.put(storeName, mock(SystemConsumer.class));
+    });
+
+    // the stores are passed as in memory stores, so that none are created
+    return new NonTransactionalStateTaskRestoreManager(stores.keySet(), null, null, taskModel, restoreExecutor,
+        storeChangelogs, stores, Collections.emptyMap(), Collections.emptyMap(), mock(SystemAdmins.class), null,
+        storeConsumers, null, null, 1, null, null, config, null);
+  }
+
+  private static StorageEngine mockLoggedStore(Runnable restore) throws InterruptedException {
+    StorageEngine store = mock(StorageEngine.class);
+    StoreProperties storeProperties = mock(StoreProperties.class);
+    when(storeProperties.isLoggedStore()).thenReturn(true);
+    when(store.getStoreProperties()).thenReturn(storeProperties);
+    doAnswer(invocation -> {
+      restore.run();
+      return null;
+    }).when(store).restore(any());
+    return store;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
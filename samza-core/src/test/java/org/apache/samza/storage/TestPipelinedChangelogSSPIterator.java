@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.apache.samza.Partition;
+import org.apache.samza.SamzaException;
+import org.apache.samza.system.ChangelogSSPIterator.Mode;
+import org.apache.samza.system.IncomingMessageEnvelope;
+import org.apache.samza.system.SystemAdmin;
+import org.apache.samza.system.SystemConsumer;
+import org.apache.samza.system.SystemStreamPartition;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.stubbing.OngoingStubbing;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class TestPipelinedChangelogSSPIterator {
+  private static final SystemStreamPartition SSP = new SystemStreamPartition("test", "test", new Partition(0));
+
+  @Test
+  public void testReturnsAllMessagesWithTheirModes() throws InterruptedException {
+    SystemConsumer mockConsumer = mock(SystemConsumer.class);
+    int numMessages = 10;
+    stubMessages(mockConsumer, numMessages);
+
+    // restore up to offset 5 and trim the rest, with a buffer smaller than the number of messages
+    PipelinedChangelogSSPIterator iter =
+        new PipelinedChangelogSSPIterator(mockConsumer, SSP, "5", buildMockSystemAdmin(), true, null, 2);
+
+    Assert.assertEquals(Mode.RESTORE, iter.getMode());
+    List<String> offsets = new ArrayList<>();
+    List<Mode> modes = new ArrayList<>();
+    while (iter.hasNext()) {
+      offsets.add(iter.next().getOffset());
+      modes.add(iter.getMode());
+    }
+    iter.close();
+
+    Assert.assertEquals(numMessages, offsets.size());
+    for (int i = 0; i < numMessages; i++) {
+      Assert.assertEquals(String.valueOf(i), offsets.get(i));
+      Assert.assertEquals(i <= 5 ? Mode.RESTORE : Mode.TRIM, modes.get(i));
+    }
+    Assert.assertFalse(iter.hasNext());
+    try {
+      iter.next();
+      Assert.fail("Iterator next call should have failed after consuming all messages");
+    } catch (NoSuchElementException e) {
+    }
+  }
+
+  @Test
+  public void testFetchErrorIsRethrownAfterFetchedMessages() throws InterruptedException {
+    SystemConsumer mockConsumer = mock(SystemConsumer.class);
+    IncomingMessageEnvelope ime = new IncomingMessageEnvelope(SSP, "0", null, 0);
+    when(mockConsumer.poll(any(), anyLong()))
+        .thenReturn(ImmutableMap.of(SSP, ImmutableList.of(ime)))
+        .thenThrow(new RuntimeException("fetch failed"));
+
+    PipelinedChangelogSSPIterator iter =
+        new PipelinedChangelogSSPIterator(mockConsumer, SSP, null, buildMockSystemAdmin(), false, null, 10);
+
+    Assert.assertTrue(iter.hasNext());
+    Assert.assertEquals("0", iter.next().getOffset());
+    try {
+      iter.hasNext();
+      Assert.fail("Iterator hasNext call should have failed due to the fetch error");
+    } catch (SamzaException e) {
+      Assert.assertEquals("fetch failed", e.getCause().getMessage());
+    } finally {
+      iter.close();
+    }
+  }
+
+  @Test
+  public void testCloseStopsFetchingWhenBufferIsFull() throws InterruptedException {
+    SystemConsumer mockConsumer = mock(SystemConsumer.class);
+    int numMessages = 100;
+    stubMessages(mockConsumer, numMessages);
+
+    PipelinedChangelogSSPIterator iter =
+        new PipelinedChangelogSSPIterator(mockConsumer, SSP, null, buildMockSystemAdmin(), false, null, 1);
+    Assert.assertTrue(iter.hasNext());
+    iter.close();
+
+    // the fetch thread blocks on the full buffer until it is interrupted, so it stops well before the end
+    Thread.sleep(100);
+    verify(mockConsumer, atMost(4)).poll(any(), anyLong());
+  }
+
+  private void stubMessages(SystemConsumer mockConsumer, int numMessages) throws InterruptedException {
+    OngoingStubbing<Map<SystemStreamPartition, List<IncomingMessageEnvelope>>> stubbing =
+        when(mockConsumer.poll(any(), anyLong()));
+    for (int i = 0; i < numMessages; i++) {
+      IncomingMessageEnvelope ime = new IncomingMessageEnvelope(SSP, String.valueOf(i), null, i);
+      stubbing = stubbing.thenReturn(ImmutableMap.of(SSP, ImmutableList.of(ime)));
+    }
+    stubbing.thenReturn(ImmutableMap.of(SSP, ImmutableList.of()));
+  }
+
+  private SystemAdmin buildMockSystemAdmin() {
+    SystemAdmin mockAdmin = mock(SystemAdmin.class);
+    when(mockAdmin.offsetComparator(any(), any())).thenAnswer(invocation -> {
+      String offset1 = invocation.getArgumentAt(0, String.class);
+      String offset2 = invocation.getArgumentAt(1, String.class);
+
+      if (offset1 == null || offset2 == null) {
+        return -1;
+      }
+
+      return Long.valueOf(offset1).compareTo(Long.valueOf(offset2));
+    });
+    return mockAdmin;
+  }
+}
@@ -31,10 +31,18 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.samza.Partition;
 import org.apache.samza.checkpoint.CheckpointId;
 import org.apache.samza.checkpoint.kafka.KafkaStateCheckpointMarker;
 import org.apache.samza.config.Config;
+import org.apache.samza.config.JobConfig;
 import org.apache.samza.config.MapConfig;
 import org.apache.samza.config.TaskConfig;
 import org.apache.samza.container.TaskName;
@@ -51,11 +59,13 @@ import org.apache.samza.system.SystemStreamMetadata.SystemStreamPartitionMetadat
 import org.apache.samza.system.SystemStreamPartition;
 import org.apache.samza.util.Clock;
 import org.apache.samza.util.FileUtil;
+import org.junit.After;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -63,6 +73,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -71,6 +82,15 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 public class TestTransactionalStateTaskRestoreManager {
+  private ExecutorService restoreExecutor;
+
+  @After
+  public void teardown() {
+    if (restoreExecutor != null) {
+      restoreExecutor.shutdownNow();
+    }
+  }
+
   @Test
   public void testGetCurrentChangelogOffsets() {
     // test gets metadata for all and only task store changelog SSPs
@@ -2001,4 +2021,138 @@ public class TestTransactionalStateTaskRestoreManager {
 
     fail("Should have thrown an exception since starting offset > ending offset");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testRestoresStoresConcurrently() throws Exception {
+    int numStores = 3;
+    restoreExecutor = Executors.newFixedThreadPool(numStores);
+    CountDownLatch allStarted = new CountDownLatch(numStores);
+    CountDownLatch finish = new CountDownLatch(1);
+    Map<String, StorageEngine> stores = new HashMap<>();
+    for (int i = 0; i < numStores; i++) {
+      stores.put("store" + i, mockLoggedInMemoryStore(() -> {
+        allStarted.countDown();
+        await(finish);
+      }));
+    }
+
+    CompletableFuture<Void> restoreFuture = createInitializedRestoreManager(stores, new MapConfig()).restore();
+
+    // every store restore is running at the same time
+    assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+    assertFalse(restoreFuture.isDone());
+    finish.countDown();
+    restoreFuture.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testRestoreFailsIfAStoreFails() throws Exception {
+    restoreExecutor = Executors.newFixedThreadPool(2);
+    RuntimeException failure = new RuntimeException("restore failed");
+    AtomicInteger restoredCount = new AtomicInteger();
+    Map<String, StorageEngine> stores = ImmutableMap.of(
+        "store0", mockLoggedInMemoryStore(restoredCount::incrementAndGet),
+        "store1", mockLoggedInMemoryStore(() -> {
+          throw failure;
+        }),
+        "store2", mockLoggedInMemoryStore(restoredCount::incrementAndGet));
+
+    CompletableFuture<Void> restoreFuture = createInitializedRestoreManager(stores, new MapConfig()).restore();
+
+    try {
+      restoreFuture.join();
+      fail("Expected the restore to fail");
+    } catch (CompletionException e) {
+      assertEquals(failure, e.getCause());
+    }
+    // the other stores are still restored
+    assertEquals(2, restoredCount.get());
+  }
+
+  @Test
+  public void testRestoreConcurrencyBoundedByMaxPoolSize() throws Exception {
+    int numStores = 6;
+    int maxPoolSize = 2;
+    Config config =
+        new MapConfig(ImmutableMap.of(JobConfig.RESTORE_THREAD_POOL_MAX_SIZE, String.valueOf(maxPoolSize)));
+    restoreExecutor = Executors.newFixedThreadPool(
+        ContainerStorageManager.getRestoreThreadPoolSize(1, 1, numStores, new JobConfig(config)));
+    AtomicInteger concurrentRestores = new AtomicInteger();
+    AtomicInteger maxConcurrentRestores = new AtomicInteger();
+    AtomicInteger restoredCount = new AtomicInteger();
+    Map<String, StorageEngine> stores = new HashMap<>();
+    for (int i = 0; i < numStores; i++) {
+      stores.put("store" + i, mockLoggedInMemoryStore(() -> {
+        maxConcurrentRestores.accumulateAndGet(concurrentRestores.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        concurrentRestores.decrementAndGet();
+        restoredCount.incrementAndGet();
+      }));
+    }
+
+    createInitializedRestoreManager(stores, config).restore().get(10, TimeUnit.SECONDS);
+
+    assertEquals(numStores, restoredCount.get());
+    assertTrue(maxConcurrentRestores.get() <= maxPoolSize);
+  }
+
+  /**
+   * Creates a restore manager for the in memory stores, without a checkpoint, so that each store is fully restored.
+   */
+  private TransactionalStateTaskRestoreManager createInitializedRestoreManager(Map<String, StorageEngine> stores,
+      Config config) {
+    TaskModel mockTaskModel = mock(TaskModel.class);
+    when(mockTaskModel.getTaskName()).thenReturn(new TaskName("Partition 0"));
+    when(mockTaskModel.getChangelogPartition()).thenReturn(new Partition(0));
+    SystemAdmins mockSystemAdmins = mock(SystemAdmins.class);
+    SystemAdmin mockSystemAdmin = mock(SystemAdmin.class);
+    when(mockSystemAdmins.getSystemAdmin("system")).thenReturn(mockSystemAdmin);
+    when(mockSystemAdmin.offsetComparator(anyString(), anyString()))
+        .thenAnswer((Answer<Integer>) invocation -> {
+          String offset1 = (String) invocation.getArguments()[0];
+          String offset2 = (String) invocation.getArguments()[1];
+          return Long.valueOf(offset1).compareTo(Long.valueOf(offset2));
+        });
+    SSPMetadataCache mockSSPMetadataCache = mock(SSPMetadataCache.class);
+    when(mockSSPMetadataCache.getMetadata(any(SystemStreamPartition.class)))
+        .thenReturn(new SystemStreamPartitionMetadata("0", "10", "11"));
+    Map<String, SystemStream> storeChangelogs = new HashMap<>();
+    Map<String, SystemConsumer> storeConsumers = new HashMap<>();
+    stores.keySet().forEach(storeName -> {
+      storeChangelogs.put(storeName, new SystemStream("system", storeName + "-changelog"));
+      storeConsumers.put(storeName, mock(SystemConsumer.class));
+    });
+
+    TransactionalStateTaskRestoreManager restoreManager = new TransactionalStateTaskRestoreManager(stores.keySet(),
+        null, null, mockTaskModel, restoreExecutor, storeChangelogs, stores, Collections.emptyMap(),
+        Collections.emptyMap(), mockSystemAdmins, storeConsumers, null, null, mockSSPMetadataCache, null, null, config,
+        mock(Clock.class));
+    restoreManager.init(null);
+    return restoreManager;
+  }
+
+  private static StorageEngine mockLoggedInMemoryStore(Runnable restore) throws InterruptedException {
+    StorageEngine store = mock(StorageEngine.class);
+    StoreProperties storeProperties = mock(StoreProperties.class);
+    when(storeProperties.isLoggedStore()).thenReturn(true);
+    when(storeProperties.isPersistedToDisk()).thenReturn(false);
+    when(store.getStoreProperties()).thenReturn(storeProperties);
+    doAnswer(invocation -> {
+      restore.run();
+      return null;
+    }).when(store).restore(any());
+    return store;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.blobstore.local;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.apache.samza.config.BlobStoreConfig;
+import org.apache.samza.config.MapConfig;
+import org.apache.samza.storage.blobstore.Metadata;
+import org.apache.samza.storage.blobstore.exceptions.DeletedException;
+import org.apache.samza.storage.blobstore.exceptions.RetriableException;
+import org.apache.samza.util.Clock;
+import org.apache.samza.util.SystemClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestLocalBlobStoreManager {
+  private static final byte[] PAYLOAD = "blob store payload".getBytes(StandardCharsets.UTF_8);
+  private static final Metadata METADATA =
+      new Metadata("/path/to/file", Optional.of((long) PAYLOAD.length), "jobName", "jobId", "taskName", "storeName");
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private Path rootDir;
+  private LocalBlobStoreManager blobStoreManager;
+
+  @Before
+  public void setup() throws Exception {
+    rootDir = Files.createTempDirectory("samza-local-blob-store-test");
+    blobStoreManager = createBlobStoreManager();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    blobStoreManager.close();
+    executor.shutdownNow();
+    FileUtils.deleteDirectory(rootDir.toFile());
+  }
+
+  @Test
+  public void testPutAndGet() throws Exception {
+    String blobId = put(PAYLOAD);
+    Path blobPath = rootDir.resolve(blobId);
+    assertEquals(rootDir.resolve("jobName/jobId/taskName/storeName"), blobPath.getParent());
+    // only the blob and its TTL marker remain
+    assertEquals(2, listStoreDir().size());
+    assertTrue(Files.exists(rootDir.resolve(blobId + LocalBlobStoreManager.TTL_SUFFIX)));
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    blobStoreManager.get(blobId, outputStream, METADATA, false).toCompletableFuture().join();
+    assertArrayEquals(PAYLOAD, outputStream.toByteArray());
+
+    File restoredFile = rootDir.resolve("restored").toFile();
+    try (FileOutputStream fileOutputStream = new FileOutputStream(restoredFile)) {
+      blobStoreManager.get(blobId, fileOutputStream, METADATA, false).toCompletableFuture().join();
+    }
+    assertArrayEquals(PAYLOAD, Files.readAllBytes(restoredFile.toPath()));
+  }
+
+  @Test
+  public void testPutFailsOnPayloadSizeMismatch() {
+    Metadata metadata = new Metadata("/path/to/file", Optional.of(PAYLOAD.length + 1L), "jobName", "jobId",
+        "taskName", "storeName");
+    try {
+      blobStoreManager.put(new ByteArrayInputStream(PAYLOAD), metadata).toCompletableFuture().join();
+      fail("Expected put to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof RetriableException);
+    }
+    // the partially written blob is discarded
+    assertTrue(listStoreDir().isEmpty());
+  }
+
+  @Test
+  public void testDeleteAndGetDeletedBlob() throws Exception {
+    String blobId = put(PAYLOAD);
+    blobStoreManager.removeTTL(blobId, METADATA).toCompletableFuture().join();
+    assertFalse(Files.exists(rootDir.resolve(blobId + LocalBlobStoreManager.TTL_SUFFIX)));
+
+    blobStoreManager.delete(blobId, METADATA).toCompletableFuture().join();
+    assertFalse(Files.exists(rootDir.resolve(blobId)));
+
+    try {
+      blobStoreManager.get(blobId, new ByteArrayOutputStream(), METADATA, false).toCompletableFuture().join();
+      fail("Expected get to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof DeletedException);
+    }
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    blobStoreManager.get(blobId, outputStream, METADATA, true).toCompletableFuture().join();
+    assertArrayEquals(PAYLOAD, outputStream.toByteArray());
+
+    try {
+      blobStoreManager.delete(blobId, METADATA).toCompletableFuture().join();
+      fail("Expected delete to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof DeletedException);
+    }
+    try {
+      blobStoreManager.removeTTL(blobId, METADATA).toCompletableFuture().join();
+      fail("Expected removeTTL to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof DeletedException);
+    }
+  }
+
+  @Test
+  public void testCleanUpOfExpiredBlobs() throws Exception {
+    String permanentBlobId = put(PAYLOAD);
+    blobStoreManager.removeTTL(permanentBlobId, METADATA).toCompletableFuture().join();
+    String expiredBlobId = put(PAYLOAD);
+    String deletedBlobId = put(PAYLOAD);
+    blobStoreManager.delete(deletedBlobId, METADATA).toCompletableFuture().join();
+    Path tmpPath = rootDir.resolve("jobName/jobId/taskName/storeName/abandoned" + LocalBlobStoreManager.TMP_SUFFIX);
+    Files.createFile(tmpPath);
+
+    // expire all files
+    FileTime expiredTime = FileTime.fromMillis(System.currentTimeMillis() - 2 * 60 * 1000);
+    for (Path file : listStoreDir()) {
+      Files.setLastModifiedTime(file, expiredTime);
+    }
+
+    // the store directory is cleaned up when a new manager uses it
+    String newBlobId = createBlobStoreManager().put(new ByteArrayInputStream(PAYLOAD), METADATA)
+        .toCompletableFuture().join();
+    assertTrue(Files.exists(rootDir.resolve(permanentBlobId)));
+    assertTrue(Files.exists(rootDir.resolve(newBlobId)));
+    assertFalse(Files.exists(rootDir.resolve(expiredBlobId)));
+    assertFalse(Files.exists(rootDir.resolve(expiredBlobId + LocalBlobStoreManager.TTL_SUFFIX)));
+    assertFalse(Files.exists(rootDir.resolve(deletedBlobId + LocalBlobStoreManager.DELETED_SUFFIX)));
+    assertFalse(Files.exists(tmpPath));
+    assertEquals(3, listStoreDir().size());
+  }
+
+  @Test
+  public void testCleanUpRunsAgainAfterTtl() throws Exception {
+    AtomicLong time = new AtomicLong(System.currentTimeMillis());
+    LocalBlobStoreManager manager = createBlobStoreManager(time::get);
+    String expiredBlobId = manager.put(new ByteArrayInputStream(PAYLOAD), METADATA).toCompletableFuture().join();
+    Files.setLastModifiedTime(rootDir.resolve(expiredBlobId + LocalBlobStoreManager.TTL_SUFFIX),
+        FileTime.fromMillis(time.get() - 2 * 60 * 1000));
+
+    // the store directory was cleaned up by the first put, so it is not cleaned up again within the TTL
+    String blobId = manager.put(new ByteArrayInputStream(PAYLOAD), METADATA).toCompletableFuture().join();
+    assertTrue(Files.exists(rootDir.resolve(expiredBlobId)));
+
+    time.addAndGet(30 * 1000);
+    manager.removeTTL(blobId, METADATA).toCompletableFuture().join();
+    assertTrue(Files.exists(rootDir.resolve(expiredBlobId)));
+
+    // but is cleaned up again by the first request once the TTL has elapsed
+    time.addAndGet(31 * 1000);
+    manager.delete(blobId, METADATA).toCompletableFuture().join();
+    assertFalse(Files.exists(rootDir.resolve(expiredBlobId)));
+    assertFalse(Files.exists(rootDir.resolve(expiredBlobId + LocalBlobStoreManager.TTL_SUFFIX)));
+    assertTrue(Files.exists(rootDir.resolve(blobId + LocalBlobStoreManager.DELETED_SUFFIX)));
+    manager.close();
+  }
+
+  @Test
+  public void testBlobIdOutsideOfRootDirIsRejected() {
+    try {
+      blobStoreManager.get("../outside", new ByteArrayOutputStream(), METADATA, true).toCompletableFuture().join();
+      fail("Expected get to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  private LocalBlobStoreManager createBlobStoreManager() {
+    return createBlobStoreManager(SystemClock.instance());
+  }
+
+  private LocalBlobStoreManager createBlobStoreManager(Clock clock) {
+    LocalBlobStoreManager manager = new LocalBlobStoreManager(new MapConfig(ImmutableMap.of(
+        BlobStoreConfig.LOCAL_ROOT_DIR, rootDir.toString(),
+        BlobStoreConfig.LOCAL_TTL_MS, String.valueOf(60 * 1000))), executor, clock);
+    manager.init();
+    return manager;
+  }
+
+  private String put(byte[] payload) {
+    return blobStoreManager.put(new ByteArrayInputStream(payload), METADATA).toCompletableFuture().join();
+  }
+
+  private List<Path> listStoreDir() {
+    Path storeDir = rootDir.resolve("jobName/jobId/taskName/storeName");
+    if (!Files.exists(storeDir)) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> files = Files.list(storeDir)) {
+      return files.collect(Collectors.toList());
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
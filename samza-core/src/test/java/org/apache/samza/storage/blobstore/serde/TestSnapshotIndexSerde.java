@@ -19,13 +19,19 @@
 
 package org.apache.samza.storage.blobstore.serde;
 
+import com.google.common.collect.ImmutableList;
 import org.apache.samza.storage.blobstore.index.DirIndex;
+import org.apache.samza.storage.blobstore.index.FileBlob;
+import org.apache.samza.storage.blobstore.index.FileIndex;
+import org.apache.samza.storage.blobstore.index.FileMetadata;
 import org.apache.samza.storage.blobstore.index.SnapshotIndex;
 import org.apache.samza.storage.blobstore.index.SnapshotMetadata;
 import org.apache.samza.storage.blobstore.index.serde.SnapshotIndexSerde;
 import org.apache.samza.storage.blobstore.util.BlobStoreTestUtil;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Optional;
 import org.apache.samza.checkpoint.CheckpointId;
 import org.junit.Assert;
@@ -53,4 +59,28 @@ public class TestSnapshotIndexSerde {
     Assert.assertNotNull(deserialized);
     Assert.assertEquals(deserialized, testRemoteSnapshot);
   }
+
+  @Test
+  public void testSnapshotIndexSerdeWithChunkedFiles() {
+    FileMetadata fileMetadata = new FileMetadata(1234L, 1243L, 30, "owner", "group", "rwxrw-r--");
+    FileIndex chunkedFile = new FileIndex("MANIFEST-000001",
+        ImmutableList.of(new FileBlob("blob1", 0, "hash1"), new FileBlob("blob2", 10, "hash2")), fileMetadata, 1L);
+    FileIndex wholeFile = new FileIndex("000001.sst",
+        Collections.singletonList(new FileBlob("blob3", 0)), fileMetadata, 2L);
+    DirIndex dirIndex = new DirIndex(DirIndex.ROOT_DIR_NAME, ImmutableList.of(chunkedFile, wholeFile),
+        Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    SnapshotMetadata snapshotMetadata =
+        new SnapshotMetadata(CheckpointId.create(), "job", "123", "task", "store");
+    SnapshotIndex testRemoteSnapshot =
+        new SnapshotIndex(System.currentTimeMillis(), snapshotMetadata, dirIndex, Optional.empty());
+
+    SnapshotIndexSerde snapshotIndexSerde = new SnapshotIndexSerde();
+    byte[] serialized = snapshotIndexSerde.toBytes(testRemoteSnapshot);
+    SnapshotIndex deserialized = snapshotIndexSerde.fromBytes(serialized);
+
+    Assert.assertEquals(testRemoteSnapshot, deserialized);
+    // hash is only serialized for blobs that are chunks
+    String json = new String(serialized, StandardCharsets.UTF_8);
+    Assert.assertEquals(2, json.split("\"hash\"", -1).length - 1);
+  }
 }
@@ -31,6 +31,7 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermissions;
@@ -629,6 +630,68 @@ public class TestBlobStoreUtil {
         new DirDiffUtil().areSameDir(Collections.emptySet(), false, true).test(restoreDirBasePath.toFile(), mockDirIndex));
   }
 
+  @Test
+  public void testPutDirReusesUnchangedChunksOfModifiedFiles() throws IOException {
+    BlobStoreConfig chunkingConfig = new BlobStoreConfig(new MapConfig(ImmutableMap.of(
+        BlobStoreConfig.CHUNKING_ENABLED, "true",
+        BlobStoreConfig.CHUNKING_AVG_CHUNK_SIZE_BYTES, "1024")));
+    Map<String, byte[]> blobs = new HashMap<>();
+    BlobStoreManager blobStoreManager = mock(BlobStoreManager.class);
+    when(blobStoreManager.put(any(InputStream.class), any(Metadata.class)))
+        .thenAnswer((Answer<CompletableFuture<String>>) invocation -> {
+          InputStream inputStream = invocation.getArgumentAt(0, InputStream.class);
+          String blobId = "blob-" + blobs.size();
+          blobs.put(blobId, IOUtils.toByteArray(inputStream));
+          return CompletableFuture.completedFuture(blobId);
+        });
+    when(blobStoreManager.get(anyString(), any(OutputStream.class), any(Metadata.class), any(Boolean.class)))
+        .thenAnswer((Answer<CompletionStage<Void>>) invocation -> {
+          String blobId = invocation.getArgumentAt(0, String.class);
+          OutputStream outputStream = invocation.getArgumentAt(1, OutputStream.class);
+          outputStream.write(blobs.get(blobId));
+          return CompletableFuture.completedFuture(null);
+        });
+    BlobStoreUtil blobStoreUtil = new BlobStoreUtil(blobStoreManager, EXECUTOR, chunkingConfig, null, null);
+    SnapshotMetadata snapshotMetadata = new SnapshotMetadata(checkpointId, jobName, jobId, taskName, storeName);
+
+    // upload the first version of the file
+    Path localSnapshotDir = Files.createTempDirectory(BlobStoreTestUtil.TEMP_DIR_PREFIX);
+    File file = Paths.get(localSnapshotDir.toString(), "MANIFEST-000001").toFile();
+    byte[] contents = new byte[64 * 1024];
+    new Random(0).nextBytes(contents);
+    Files.write(file.toPath(), contents);
+    DirIndex emptyDirIndex = new DirIndex(DirIndex.ROOT_DIR_NAME, Collections.emptyList(), Collections.emptyList(),
+        Collections.emptyList(), Collections.emptyList());
+    DirDiff dirDiff = DirDiffUtil.getDirDiff(localSnapshotDir.toFile(), emptyDirIndex, (localFile, remoteFile) -> false);
+    DirIndex dirIndex = blobStoreUtil.putDir(dirDiff, snapshotMetadata).toCompletableFuture().join();
+    FileIndex fileIndex = dirIndex.getFilesPresent().get(0);
+    assertTrue(fileIndex.getBlobs().size() > 1);
+
+    // append to the file and upload it again
+    byte[] appended = new byte[100];
+    new Random(1).nextBytes(appended);
+    Files.write(file.toPath(), appended, StandardOpenOption.APPEND);
+    int numBlobs = blobs.size();
+    dirDiff = DirDiffUtil.getDirDiff(localSnapshotDir.toFile(), dirIndex, (localFile, remoteFile) -> false);
+    DirIndex newDirIndex = blobStoreUtil.putDir(dirDiff, snapshotMetadata).toCompletableFuture().join();
+
+    // only the last chunk is uploaded again
+    assertEquals(1, blobs.size() - numBlobs);
+    FileIndex newFileIndex = newDirIndex.getFilesPresent().get(0);
+    Set<String> newBlobIds = new HashSet<>();
+    newFileIndex.getBlobs().forEach(fileBlob -> newBlobIds.add(fileBlob.getBlobId()));
+    // only the blob of the previous last chunk is removed during clean up
+    FileIndex removedFileIndex = newDirIndex.getFilesRemoved().get(0);
+    assertEquals(1, removedFileIndex.getBlobs().size());
+    assertFalse(newBlobIds.contains(removedFileIndex.getBlobs().get(0).getBlobId()));
+
+    // chunks are restored to their offsets in the file
+    Path restoreDirBasePath = Files.createTempDirectory(BlobStoreTestUtil.TEMP_DIR_PREFIX);
+    blobStoreUtil.restoreDir(restoreDirBasePath.toFile(), newDirIndex, metadata, false).join();
+    assertArrayEquals(Files.readAllBytes(file.toPath()),
+        Files.readAllBytes(Paths.get(restoreDirBasePath.toString(), "MANIFEST-000001")));
+  }
+
   @Test
   public void testRestoreDirRetriesFileRestoreOnRetriableExceptions() throws IOException {
     Path restoreDirBasePath = Files.createTempDirectory(BlobStoreTestUtil.TEMP_DIR_PREFIX);
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.blobstore.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import org.apache.samza.storage.blobstore.util.ContentDefinedChunker.Chunk;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestContentDefinedChunker {
+  private static final int AVG_CHUNK_SIZE = 1024;
+
+  @Test
+  public void testChunksCoverFileAndRespectSizeBounds() throws IOException {
+    byte[] contents = randomBytes(64 * 1024, 1);
+    File file = writeTempFile(contents);
+
+    CRC32 checksum = new CRC32();
+    List<Chunk> chunks = new ContentDefinedChunker(AVG_CHUNK_SIZE).chunk(file, checksum);
+
+    long expectedOffset = 0;
+    for (int i = 0; i < chunks.size(); i++) {
+      Chunk chunk = chunks.get(i);
+      assertEquals(expectedOffset, chunk.getOffset());
+      assertTrue(chunk.getLength() <= AVG_CHUNK_SIZE * 4);
+      if (i < chunks.size() - 1) {
+        assertTrue(chunk.getLength() >= AVG_CHUNK_SIZE / 4);
+      }
+      expectedOffset += chunk.getLength();
+    }
+    assertEquals(contents.length, expectedOffset);
+    assertTrue(chunks.size() > 1);
+
+    CRC32 expectedChecksum = new CRC32();
+    expectedChecksum.update(contents);
+    assertEquals(expectedChecksum.getValue(), checksum.getValue());
+  }
+
+  @Test
+  public void testInsertOnlyChangesNearbyChunks() throws IOException {
+    byte[] contents = randomBytes(64 * 1024, 2);
+    byte[] inserted = randomBytes(100, 3);
+    byte[] modifiedContents = new byte[contents.length + inserted.length];
+    int insertAt = contents.length / 2;
+    System.arraycopy(contents, 0, modifiedContents, 0, insertAt);
+    System.arraycopy(inserted, 0, modifiedContents, insertAt, inserted.length);
+    System.arraycopy(contents, insertAt, modifiedContents, insertAt + inserted.length, contents.length - insertAt);
+
+    ContentDefinedChunker chunker = new ContentDefinedChunker(AVG_CHUNK_SIZE);
+    List<Chunk> chunks = chunker.chunk(writeTempFile(contents), new CRC32());
+    List<Chunk> modifiedChunks = chunker.chunk(writeTempFile(modifiedContents), new CRC32());
+
+    Set<String> hashes = chunks.stream().map(Chunk::getHash).collect(Collectors.toCollection(HashSet::new));
+    long changedBytes = modifiedChunks.stream()
+        .filter(chunk -> !hashes.contains(chunk.getHash()))
+        .mapToLong(Chunk::getLength)
+        .sum();
+    // only the chunks around the insertion are different
+    assertTrue("Changed bytes: " + changedBytes, changedBytes <= 2 * AVG_CHUNK_SIZE * 4 + inserted.length);
+  }
+
+  @Test
+  public void testEmptyFileHasNoChunks() throws IOException {
+    assertTrue(new ContentDefinedChunker(AVG_CHUNK_SIZE).chunk(writeTempFile(new byte[0]), new CRC32()).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAvgChunkSizeMustBePowerOfTwo() {
+    new ContentDefinedChunker(1000);
+  }
+
+  private static byte[] randomBytes(int size, long seed) {
+    byte[] bytes = new byte[size];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static File writeTempFile(byte[] contents) throws IOException {
+    File file = Files.createTempFile(BlobStoreTestUtil.TEMP_DIR_PREFIX, null).toFile();
+    file.deleteOnExit();
+    Files.write(file.toPath(), contents);
+    return file;
+  }
+}
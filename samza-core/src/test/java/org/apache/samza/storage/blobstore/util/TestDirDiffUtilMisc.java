@@ -22,10 +22,15 @@ package org.apache.samza.storage.blobstore.util;
 import org.apache.samza.storage.blobstore.diff.DirDiff;
 import org.apache.samza.storage.blobstore.index.DirIndex;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Random;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.zip.CRC32;
+import org.apache.samza.metrics.Counter;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -68,4 +73,41 @@ public class TestDirDiffUtilMisc {
     assertEquals(expectedRetainedFiles, allRetained);
     assertEquals(expectedRemovedFiles, allRemoved);
   }
+
+  @Test
+  public void testGetChecksum() throws IOException {
+    // larger than the checksum buffer, and not a multiple of its size
+    byte[] contents = new byte[3 * 1024 * 1024 + 17];
+    new Random(0).nextBytes(contents);
+    File file = Files.createTempFile(BlobStoreTestUtil.TEMP_DIR_PREFIX, null).toFile();
+    file.deleteOnExit();
+    Files.write(file.toPath(), contents);
+
+    CRC32 expected = new CRC32();
+    expected.update(contents);
+    assertEquals(expected.getValue(), DirDiffUtil.getChecksum(file));
+
+    Files.write(file.toPath(), new byte[0]);
+    assertEquals(new CRC32().getValue(), DirDiffUtil.getChecksum(file));
+  }
+
+  @Test
+  public void testGetDirDiffTracksBytesChecksummed() throws IOException {
+    String local = "[a, b, c, d/1, d/2]";
+    Path localSnapshotDir = BlobStoreTestUtil.createLocalDir(local);
+    DirIndex remoteSnapshotDir = BlobStoreTestUtil.createDirIndex(local);
+    Counter checksumRate = new Counter("checksum-rate");
+
+    DirDiff dirDiff = DirDiffUtil.getDirDiff(localSnapshotDir.toFile(), remoteSnapshotDir,
+        DirDiffUtil.areSameFile(true, false, checksumRate));
+
+    SortedSet<String> allRetained = new TreeSet<>();
+    BlobStoreTestUtil.getAllRetainedInDiff("", dirDiff, allRetained);
+    assertEquals(BlobStoreTestUtil.getExpected(local), allRetained);
+    long expectedBytes = 0;
+    for (String file : BlobStoreTestUtil.getExpected(local)) {
+      expectedBytes += localSnapshotDir.resolve(file).toFile().length();
+    }
+    assertEquals(expectedBytes, checksumRate.getCount());
+  }
 }
@@ -19,8 +19,10 @@
 
 package org.apache.samza.table.caching;
 
+import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.samza.config.JavaTableConfig;
 import org.apache.samza.config.MapConfig;
@@ -56,6 +58,8 @@ import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -94,6 +98,9 @@ public class TestCachingTable {
     }
 
     desc.withWriteAround();
+    desc.withReadCoalescing();
+    desc.withRefreshAfter(Duration.ofMinutes(1));
+    desc.withServeStaleOnError();
 
     Map<String, String> tableConfig = desc.toConfig(new MapConfig());
 
@@ -107,6 +114,26 @@ public class TestCachingTable {
     }
 
     assertEquals("true", CachingTableDescriptor.WRITE_AROUND, "1", tableConfig);
+    assertEquals("true", CachingTableDescriptor.READ_COALESCING, "1", tableConfig);
+    assertEquals("60000", CachingTableDescriptor.REFRESH_AFTER_MS, "1", tableConfig);
+    assertEquals("true", CachingTableDescriptor.SERVE_STALE_ON_ERROR, "1", tableConfig);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSerializeRefreshAfterNotShorterThanWriteTtl() {
+    new CachingTableDescriptor("1", createDummyTableDescriptor("2"))
+        .withReadTtl(Duration.ofMinutes(3))
+        .withWriteTtl(Duration.ofMinutes(4))
+        .withRefreshAfter(Duration.ofMinutes(4))
+        .toConfig(new MapConfig());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSerializeServeStaleOnErrorWithoutRefreshAfter() {
+    new CachingTableDescriptor("1", createDummyTableDescriptor("2"))
+        .withReadTtl(Duration.ofMinutes(3))
+        .withServeStaleOnError()
+        .toConfig(new MapConfig());
   }
 
   private static Pair<ReadWriteUpdateTable<String, String, String>, Map<String, String>> getMockCache() {
@@ -129,11 +156,30 @@ public class TestCachingTable {
       return cacheStore.get(key);
     }).when(cacheTable).get(any());
 
+    doAnswer(invocation -> {
+      List<String> keys = invocation.getArgumentAt(0, List.class);
+      Map<String, String> records = new HashMap<>();
+      keys.stream().filter(cacheStore::containsKey).forEach(k -> records.put(k, cacheStore.get(k)));
+      return records;
+    }).when(cacheTable).getAll(any());
+
     doAnswer(invocation -> {
       String key = invocation.getArgumentAt(0, String.class);
       return cacheStore.remove(key);
     }).when(cacheTable).delete(any());
 
+    doAnswer(invocation -> {
+      List<Entry<String, String>> entries = invocation.getArgumentAt(0, List.class);
+      entries.forEach(e -> cacheStore.put(e.getKey(), e.getValue()));
+      return null;
+    }).when(cacheTable).putAll(any());
+
+    doAnswer(invocation -> {
+      List<String> keys = invocation.getArgumentAt(0, List.class);
+      keys.forEach(cacheStore::remove);
+      return null;
+    }).when(cacheTable).deleteAll(any());
+
     return Pair.of(cacheTable, cacheStore);
   }
 
@@ -252,6 +298,184 @@ public class TestCachingTable {
     verify(cache, times(0)).put(any(), any());
   }
 
+  @Test
+  public void testReadCoalescing() throws Exception {
+    ReadWriteUpdateTable<String, String, String> table = mock(ReadWriteUpdateTable.class);
+    CompletableFuture<String> read = new CompletableFuture<>();
+    doReturn(read).when(table).getAsync(any());
+    doReturn(CompletableFuture.completedFuture(null)).when(table).putAsync(any(), any());
+    ReadWriteUpdateTable<String, String, String> cache = getMockCache().getLeft();
+    CachingTable<String, String, String> cachingTable = new CachingTable<>("myTable", table, cache, true, true);
+    initTables(cachingTable);
+
+    // concurrent misses of the same key share a single read, which is cached once
+    CompletableFuture<String> get1 = cachingTable.getAsync("abc");
+    CompletableFuture<String> get2 = cachingTable.getAsync("abc");
+    verify(table, times(1)).getAsync(any());
+    read.complete("xyz");
+    Assert.assertEquals("xyz", get1.get());
+    Assert.assertEquals("xyz", get2.get());
+    verify(cache, times(1)).put(any(), any());
+
+    // a write stops sharing the read in flight for its key
+    cache.delete("abc");
+    doReturn(new CompletableFuture<>()).when(table).getAsync(any());
+    cachingTable.getAsync("abc");
+    cachingTable.put("abc", "xyz2");
+    cachingTable.getAsync("abc");
+    verify(table, times(3)).getAsync(any());
+  }
+
+  @Test
+  public void testRefreshAhead() throws Exception {
+    ReadWriteUpdateTable<String, String, String> table = mock(ReadWriteUpdateTable.class);
+    doReturn(CompletableFuture.completedFuture("xyz")).when(table).getAsync(any());
+    Pair<ReadWriteUpdateTable<String, String, String>, Map<String, String>> mockCache = getMockCache();
+    AtomicLong nanos = new AtomicLong();
+    CachingTable<String, String, String> cachingTable = new CachingTable<>("myTable", table, mockCache.getLeft(),
+        false, false, Duration.ofMillis(100), false, fakeTicker(nanos));
+    initTables(cachingTable);
+
+    // values are not refreshed within the refresh interval
+    Assert.assertEquals("xyz", cachingTable.get("abc"));
+    Assert.assertEquals("xyz", cachingTable.get("abc"));
+    verify(table, never()).getAllAsync(any());
+
+    // stale values are served while they are refreshed in the background, with a single refresh in flight
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    CompletableFuture<Map<String, String>> refresh = new CompletableFuture<>();
+    doReturn(refresh).when(table).getAllAsync(any());
+    Assert.assertEquals("xyz", cachingTable.get("abc"));
+    Assert.assertEquals("xyz", cachingTable.getAll(Collections.singletonList("abc")).get("abc"));
+    verify(table, times(1)).getAllAsync(Collections.singletonList("abc"));
+
+    refresh.complete(Collections.singletonMap("abc", "xyz2"));
+    Assert.assertEquals("xyz2", mockCache.getRight().get("abc"));
+    Assert.assertEquals("xyz2", cachingTable.get("abc"));
+    verify(table, times(1)).getAllAsync(any());
+    verify(table, times(1)).getAsync(any());
+  }
+
+  @Test
+  public void testRefreshAheadDoesNotOverwriteWrites() throws Exception {
+    ReadWriteUpdateTable<String, String, String> table = mock(ReadWriteUpdateTable.class);
+    doReturn(CompletableFuture.completedFuture(null)).when(table).putAsync(any(), any());
+    doReturn(CompletableFuture.completedFuture(null)).when(table).deleteAsync(any());
+    Pair<ReadWriteUpdateTable<String, String, String>, Map<String, String>> mockCache = getMockCache();
+    AtomicLong nanos = new AtomicLong();
+    CachingTable<String, String, String> cachingTable = new CachingTable<>("myTable", table, mockCache.getLeft(),
+        false, false, Duration.ofMillis(100), false, fakeTicker(nanos));
+    initTables(cachingTable);
+
+    cachingTable.put("abc", "xyz");
+    cachingTable.put("def", "xyz");
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    CompletableFuture<Map<String, String>> refresh = new CompletableFuture<>();
+    doReturn(refresh).when(table).getAllAsync(any());
+    Assert.assertEquals(2, cachingTable.getAll(Arrays.asList("abc", "def")).size());
+    verify(table, times(1)).getAllAsync(any());
+
+    // the refresh issued before the writes completes after them, and must not replace the written values
+    cachingTable.put("abc", "xyz2");
+    cachingTable.delete("def");
+    refresh.complete(ImmutableMap.of("abc", "xyz", "def", "xyz"));
+    Assert.assertEquals("xyz2", mockCache.getRight().get("abc"));
+    Assert.assertNull(mockCache.getRight().get("def"));
+  }
+
+  @Test
+  public void testRefreshAheadSlowerThanRefreshIntervalDoesNotOverwriteWrites() throws Exception {
+    ReadWriteUpdateTable<String, String, String> table = mock(ReadWriteUpdateTable.class);
+    doReturn(CompletableFuture.completedFuture(null)).when(table).putAsync(any(), any());
+    Pair<ReadWriteUpdateTable<String, String, String>, Map<String, String>> mockCache = getMockCache();
+    AtomicLong nanos = new AtomicLong();
+    CachingTable<String, String, String> cachingTable = new CachingTable<>("myTable", table, mockCache.getLeft(),
+        false, false, Duration.ofMillis(100), false, fakeTicker(nanos));
+    initTables(cachingTable);
+
+    cachingTable.put("abc", "xyz");
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    CompletableFuture<Map<String, String>> refresh = new CompletableFuture<>();
+    doReturn(refresh).when(table).getAllAsync(any());
+    Assert.assertEquals("xyz", cachingTable.get("abc"));
+    verify(table, times(1)).getAllAsync(any());
+
+    // the token of the write expires before the refresh issued ahead of it completes
+    cachingTable.put("abc", "xyz2");
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    refresh.complete(Collections.singletonMap("abc", "xyz"));
+    Assert.assertEquals("xyz2", mockCache.getRight().get("abc"));
+  }
+
+  @Test
+  public void testRefreshAheadDoesNotOverwriteWritesOfUnknownKeys() throws Exception {
+    ReadWriteUpdateTable<String, String, String> table = mock(ReadWriteUpdateTable.class);
+    doReturn(CompletableFuture.completedFuture(null)).when(table).putAsync(any(), any());
+    doReturn(CompletableFuture.completedFuture(null)).when(table).writeAsync(anyInt(), any());
+    Pair<ReadWriteUpdateTable<String, String, String>, Map<String, String>> mockCache = getMockCache();
+    AtomicLong nanos = new AtomicLong();
+    CachingTable<String, String, String> cachingTable = new CachingTable<>("myTable", table, mockCache.getLeft(),
+        false, false, Duration.ofMillis(100), false, fakeTicker(nanos));
+    initTables(cachingTable);
+
+    cachingTable.put("abc", "xyz");
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    CompletableFuture<Map<String, String>> refresh = new CompletableFuture<>();
+    doReturn(refresh).when(table).getAllAsync(any());
+    Assert.assertEquals("xyz", cachingTable.get("abc"));
+
+    // the refresh may have read the value from before the write, so it is discarded
+    cachingTable.writeAsync(1).get();
+    refresh.complete(Collections.singletonMap("abc", "xyz2"));
+    Assert.assertEquals("xyz", mockCache.getRight().get("abc"));
+  }
+
+  @Test
+  public void testRefreshAheadEvictsOnError() throws Exception {
+    doTestRefreshAheadOnError(false);
+  }
+
+  @Test
+  public void testRefreshAheadServesStaleOnError() throws Exception {
+    doTestRefreshAheadOnError(true);
+  }
+
+  private void doTestRefreshAheadOnError(boolean isServeStaleOnError) throws Exception {
+    ReadWriteUpdateTable<String, String, String> table = mock(ReadWriteUpdateTable.class);
+    CompletableFuture<Map<String, String>> failedRefresh = new CompletableFuture<>();
+    failedRefresh.completeExceptionally(new IllegalStateException("refresh failed"));
+    doReturn(failedRefresh).when(table).getAllAsync(any());
+    doReturn(CompletableFuture.completedFuture(null)).when(table).putAsync(any(), any());
+    Pair<ReadWriteUpdateTable<String, String, String>, Map<String, String>> mockCache = getMockCache();
+    AtomicLong nanos = new AtomicLong();
+    CachingTable<String, String, String> cachingTable = new CachingTable<>("myTable", table, mockCache.getLeft(),
+        false, false, Duration.ofMillis(100), isServeStaleOnError, fakeTicker(nanos));
+    initTables(cachingTable);
+
+    cachingTable.put("abc", "xyz");
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    Assert.assertEquals("xyz", cachingTable.get("abc"));
+    verify(table, times(1)).getAllAsync(any());
+
+    if (isServeStaleOnError) {
+      // the stale value is still served and the refresh is retried
+      Assert.assertEquals("xyz", mockCache.getRight().get("abc"));
+      Assert.assertEquals("xyz", cachingTable.get("abc"));
+      verify(table, times(2)).getAllAsync(any());
+    } else {
+      Assert.assertNull(mockCache.getRight().get("abc"));
+    }
+  }
+
+  private static Ticker fakeTicker(AtomicLong nanos) {
+    return new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    };
+  }
+
   @Test
   public void testKeyEviction() {
     ReadWriteUpdateTable<String, String, Void> table = mock(ReadWriteUpdateTable.class);
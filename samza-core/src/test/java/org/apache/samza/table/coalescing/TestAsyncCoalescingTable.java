@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.table.coalescing;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.samza.table.AsyncReadWriteUpdateTable;
+import org.apache.samza.table.remote.TestRemoteTable;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+
+public class TestAsyncCoalescingTable {
+
+  private AsyncReadWriteUpdateTable<String, String, String> delegate;
+  private AsyncCoalescingTable<String, String, String> table;
+
+  @Before
+  public void prepare() {
+    delegate = mock(AsyncReadWriteUpdateTable.class);
+    table = new AsyncCoalescingTable<>("t1", delegate);
+    table.init(TestRemoteTable.getMockContext());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNotNullTableId() {
+    new AsyncCoalescingTable(null, mock(AsyncReadWriteUpdateTable.class));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNotNullTable() {
+    new AsyncCoalescingTable("t1", null);
+  }
+
+  @Test
+  public void testConcurrentGetsShareOneRead() throws Exception {
+    CompletableFuture<String> read = new CompletableFuture<>();
+    doReturn(read).when(delegate).getAsync("foo");
+
+    CompletableFuture<String> get1 = table.getAsync("foo");
+    CompletableFuture<String> get2 = table.getAsync("foo");
+    verify(delegate, times(1)).getAsync("foo");
+    Assert.assertFalse(get1.isDone());
+
+    read.complete("bar");
+    Assert.assertEquals("bar", get1.get());
+    Assert.assertEquals("bar", get2.get());
+
+    // a get after the read completed issues a new read
+    doReturn(CompletableFuture.completedFuture("baz")).when(delegate).getAsync("foo");
+    Assert.assertEquals("baz", table.getAsync("foo").get());
+    verify(delegate, times(2)).getAsync("foo");
+  }
+
+  @Test
+  public void testConcurrentGetsShareFailure() throws Exception {
+    CompletableFuture<String> read = new CompletableFuture<>();
+    doReturn(read).when(delegate).getAsync("foo");
+
+    CompletableFuture<String> get1 = table.getAsync("foo");
+    CompletableFuture<String> get2 = table.getAsync("foo");
+    IllegalStateException failure = new IllegalStateException("read failed");
+    read.completeExceptionally(failure);
+
+    for (CompletableFuture<String> get : Arrays.asList(get1, get2)) {
+      try {
+        get.get();
+        Assert.fail("Get should have failed with the read");
+      } catch (ExecutionException e) {
+        Assert.assertSame(failure, e.getCause());
+      }
+    }
+    verify(delegate, times(1)).getAsync("foo");
+  }
+
+  @Test
+  public void testGetsWithArgsAreNotCoalesced() {
+    doReturn(new CompletableFuture<>()).when(delegate).getAsync(any(), any());
+    table.getAsync("foo", 1);
+    table.getAsync("foo", 1);
+    verify(delegate, times(2)).getAsync(any(), any());
+  }
+
+  @Test
+  public void testGetAllSharesReadsInFlight() throws Exception {
+    CompletableFuture<String> read = new CompletableFuture<>();
+    doReturn(read).when(delegate).getAsync("foo");
+    doReturn(CompletableFuture.completedFuture(ImmutableMap.of("foo2", "bar2")))
+        .when(delegate).getAllAsync(Arrays.asList("foo2", "foo3"));
+
+    CompletableFuture<String> get = table.getAsync("foo");
+    CompletableFuture<Map<String, String>> getAll = table.getAllAsync(Arrays.asList("foo", "foo2", "foo3"));
+    // only the keys without a read in flight are read
+    verify(delegate, never()).getAllAsync(Arrays.asList("foo", "foo2", "foo3"));
+    Assert.assertFalse(getAll.isDone());
+
+    read.complete("bar");
+    Assert.assertEquals("bar", get.get());
+    Assert.assertEquals(ImmutableMap.of("foo", "bar", "foo2", "bar2"), getAll.get());
+  }
+
+  @Test
+  public void testWritesStopSharingReadsInFlight() throws Exception {
+    CompletableFuture<String> staleRead = new CompletableFuture<>();
+    doReturn(staleRead).when(delegate).getAsync("foo");
+    doReturn(CompletableFuture.completedFuture(null)).when(delegate).putAsync(any(), any());
+
+    CompletableFuture<String> get1 = table.getAsync("foo");
+    table.putAsync("foo", "baz").get();
+
+    CompletableFuture<String> read = new CompletableFuture<>();
+    doReturn(read).when(delegate).getAsync("foo");
+    CompletableFuture<String> get2 = table.getAsync("foo");
+    verify(delegate, times(2)).getAsync("foo");
+
+    // the read issued before the write no longer affects reads issued after it
+    staleRead.complete("bar");
+    Assert.assertEquals("bar", get1.get());
+    Assert.assertFalse(get2.isDone());
+    CompletableFuture<String> get3 = table.getAsync("foo");
+    verify(delegate, times(2)).getAsync("foo");
+    read.complete("baz");
+    Assert.assertEquals("baz", get2.get());
+    Assert.assertEquals("baz", get3.get());
+  }
+}
@@ -33,6 +33,7 @@ import org.apache.samza.storage.kv.KeyValueIterator;
 import org.apache.samza.storage.kv.KeyValueSnapshot;
 import org.apache.samza.storage.kv.KeyValueStore;
 import org.apache.samza.storage.kv.KeyValueStoreMetrics;
+import org.apache.samza.storage.kv.PrefixUtil;
 
 
 /**
@@ -90,6 +91,14 @@ public class InMemoryKeyValueStore implements KeyValueStore<byte[], byte[]> {
     put(key, null);
   }
 
+  @Override
+  public void deleteRange(byte[] from, byte[] to) {
+    this.metrics.deleteRanges().inc();
+    Preconditions.checkArgument(from != null, "Null argument 'from' not allowed");
+    Preconditions.checkArgument(to != null, "Null argument 'to' not allowed");
+    this.underlying.subMap(from, to).clear();
+  }
+
   @Override
   public KeyValueIterator<byte[], byte[]> range(byte[] from, byte[] to) {
     this.metrics.ranges().inc();
@@ -98,6 +107,16 @@ public class InMemoryKeyValueStore implements KeyValueStore<byte[], byte[]> {
     return new InMemoryIterator(this.underlying.subMap(from, to).entrySet().iterator(), this.metrics);
   }
 
+  @Override
+  public KeyValueIterator<byte[], byte[]> prefixScan(byte[] prefix) {
+    this.metrics.prefixScans().inc();
+    Preconditions.checkArgument(prefix != null, "Null argument 'prefix' not allowed");
+    byte[] upperBound = PrefixUtil.getUpperBound(prefix);
+    Map<byte[], byte[]> entries =
+        upperBound == null ? this.underlying.tailMap(prefix) : this.underlying.subMap(prefix, upperBound);
+    return new InMemoryIterator(entries.entrySet().iterator(), this.metrics);
+  }
+
   @Override
   public KeyValueSnapshot<byte[], byte[]> snapshot(byte[] from, byte[] to) {
     // TODO: Bug: SAMZA-2564: does not satisfy immutability constraint, since entrySet is backed by the underlying map.
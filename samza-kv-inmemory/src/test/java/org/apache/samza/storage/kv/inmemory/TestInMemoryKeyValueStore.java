@@ -273,6 +273,24 @@ public class TestInMemoryKeyValueStore {
     verify(this.bytesReadCounter, times(5)).inc(DEFAULT_VALUE_LENGTH);
   }
 
+  @Test
+  public void testPrefixScan() {
+    Counter prefixScansCounter = mock(Counter.class);
+    when(this.keyValueStoreMetrics.prefixScans()).thenReturn(prefixScansCounter);
+
+    for (int i = 0; i < 10; i++) {
+      this.inMemoryKeyValueStore.put(key(OTHER_KEY_PREFIX, i), value(OTHER_VALUE_PREFIX, i));
+      this.inMemoryKeyValueStore.put(key(i), value(i));
+    }
+    KeyValueIterator<byte[], byte[]> prefixScan = this.inMemoryKeyValueStore.prefixScan(DEFAULT_KEY_PREFIX.getBytes());
+
+    for (int i = 0; i < 10; i++) {
+      assertEntryEquals(key(i), value(i), prefixScan.next());
+    }
+    assertFalse(prefixScan.hasNext());
+    verify(prefixScansCounter).inc();
+  }
+
   @Test
   public void testRangeWithUpdate() {
     Counter rangesCounter = mock(Counter.class);
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage.kv;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.samza.SamzaException;
+import org.apache.samza.config.Config;
+import org.apache.samza.metrics.MetricsRegistry;
+import org.apache.samza.table.caching.SupplierGauge;
+import org.rocksdb.Cache;
+import org.rocksdb.ClockCache;
+import org.rocksdb.LRUCache;
+import org.rocksdb.RocksDB;
+import org.rocksdb.WriteBufferManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The block cache and write buffer manager shared by all the RocksDB stores of a container, so that hot stores can
+ * use the memory left unused by idle ones, while the native memory of the container stays bounded. The memtables are
+ * charged to the block cache, so the cache capacity bounds both.
+ *
+ * There is one instance per container, which is shared by reference counting: each store acquires it with
+ * {@link #acquire(String, Config, MetricsRegistry)} when it is created and releases it with {@link #release()} once its
+ * database is closed. The cache is closed when the last store releases it.
+ *
+ * This class is thread safe.
+ */
+public class RocksDbContainerMemory {
+  private static final Logger LOG = LoggerFactory.getLogger(RocksDbContainerMemory.class);
+
+  public static final String SHARED_CACHE_ENABLED = "stores.rocksdb.shared.cache.enabled";
+  public static final String SHARED_CACHE_SIZE_BYTES = "stores.rocksdb.shared.cache.size.bytes";
+  public static final String SHARED_CACHE_TYPE = "stores.rocksdb.shared.cache.type";
+  public static final String SHARED_WRITE_BUFFER_SIZE_BYTES = "stores.rocksdb.shared.write.buffer.size.bytes";
+
+  static final long DEFAULT_SHARED_CACHE_SIZE_BYTES = 256 * 1024 * 1024L;
+  static final long DEFAULT_SHARED_WRITE_BUFFER_SIZE_BYTES = 64 * 1024 * 1024L;
+  static final String CACHE_TYPE_LRU = "lru";
+  static final String CACHE_TYPE_CLOCK = "clock";
+
+  private static final String METRICS_GROUP = RocksDbContainerMemory.class.getName();
+
+  /** the instances of the containers in this JVM, guarded by the class lock */
+  private static final Map<String, RocksDbContainerMemory> INSTANCES = new HashMap<>();
+
+  private final String containerId;
+  private final long capacityBytes;
+  private final Cache blockCache;
+  private final WriteBufferManager writeBufferManager;
+  /** the number of stores using this instance, guarded by the class lock */
+  private int refCount = 0;
+  private volatile boolean closed = false;
+
+  @VisibleForTesting
+  RocksDbContainerMemory(String containerId, long capacityBytes, String cacheType, long writeBufferSizeBytes) {
+    if (writeBufferSizeBytes > capacityBytes) {
+      throw new SamzaException(String.format("%s (%d) cannot be larger than %s (%d), since memtables are charged to "
+          + "the shared cache.", SHARED_WRITE_BUFFER_SIZE_BYTES, writeBufferSizeBytes, SHARED_CACHE_SIZE_BYTES,
+          capacityBytes));
+    }
+    this.containerId = containerId;
+    this.capacityBytes = capacityBytes;
+    // the cache may be created before any other RocksDB object loads the native library
+    RocksDB.loadLibrary();
+    switch (cacheType) {
+      case CACHE_TYPE_LRU:
+        this.blockCache = new LRUCache(capacityBytes);
+        break;
+      case CACHE_TYPE_CLOCK:
+        this.blockCache = new ClockCache(capacityBytes);
+        break;
+      default:
+        throw new SamzaException(String.format("Unknown %s %s. Supported types are %s and %s.", SHARED_CACHE_TYPE,
+            cacheType, CACHE_TYPE_LRU, CACHE_TYPE_CLOCK));
+    }
+    this.writeBufferManager = new WriteBufferManager(writeBufferSizeBytes, blockCache);
+  }
+
+  /**
+   * @param config the job config
+   * @return whether the RocksDB stores share a container wide block cache and write buffer manager
+   */
+  public static boolean isEnabled(Config config) {
+    return config.getBoolean(SHARED_CACHE_ENABLED, false);
+  }
+
+  /**
+   * Returns the instance of the container, creating it from {@code config} if this is the first store of the container
+   * to acquire it. Every call must be matched with a call to {@link #release()}.
+   *
+   * @param containerId the id of the container
+   * @param config the job config
+   * @param containerRegistry the registry for the container wide cache metrics, or null
+   * @return the instance of the container
+   */
+  public static synchronized RocksDbContainerMemory acquire(String containerId, Config config,
+      MetricsRegistry containerRegistry) {
+    RocksDbContainerMemory instance = INSTANCES.computeIfAbsent(containerId, id -> {
+      long capacityBytes = config.getLong(SHARED_CACHE_SIZE_BYTES, DEFAULT_SHARED_CACHE_SIZE_BYTES);
+      long writeBufferSizeBytes = config.getLong(SHARED_WRITE_BUFFER_SIZE_BYTES, DEFAULT_SHARED_WRITE_BUFFER_SIZE_BYTES);
+      String cacheType = config.get(SHARED_CACHE_TYPE, CACHE_TYPE_LRU);
+      LOG.info("Creating shared RocksDB {} cache for container {} with a capacity of {} bytes, of which {} bytes "
+          + "for memtables.", cacheType, id, capacityBytes, writeBufferSizeBytes);
+      RocksDbContainerMemory memory = new RocksDbContainerMemory(id, capacityBytes, cacheType, writeBufferSizeBytes);
+      if (containerRegistry != null) {
+        memory.registerGauges(containerRegistry);
+      }
+      return memory;
+    });
+    instance.refCount++;
+    return instance;
+  }
+
+  /**
+   * Releases a reference to this instance acquired with {@link #acquire(String, Config, MetricsRegistry)}. The caller
+   * must have closed the database using it before.
+   */
+  public void release() {
+    synchronized (RocksDbContainerMemory.class) {
+      if (--refCount == 0) {
+        LOG.info("Closing shared RocksDB cache for container {}.", containerId);
+        INSTANCES.remove(containerId, this);
+        closed = true;
+        writeBufferManager.close();
+        blockCache.close();
+      }
+    }
+  }
+
+  public Cache getBlockCache() {
+    return blockCache;
+  }
+
+  public WriteBufferManager getWriteBufferManager() {
+    return writeBufferManager;
+  }
+
+  public long getCapacityBytes() {
+    return capacityBytes;
+  }
+
+  /**
+   * @return the number of bytes used in the cache by blocks and memtables of all the stores
+   */
+  public long getUsage() {
+    synchronized (RocksDbContainerMemory.class) {
+      return closed ? 0 : blockCache.getUsage();
+    }
+  }
+
+  /**
+   * @return the number of bytes used in the cache by entries which are in use and cannot be evicted
+   */
+  public long getPinnedUsage() {
+    synchronized (RocksDbContainerMemory.class) {
+      return closed ? 0 : blockCache.getPinnedUsage();
+    }
+  }
+
+  private void registerGauges(MetricsRegistry registry) {
+    registry.newGauge(METRICS_GROUP, new SupplierGauge<>("rocksdb-shared-cache-capacity", this::getCapacityBytes));
+    registry.newGauge(METRICS_GROUP, new SupplierGauge<>("rocksdb-shared-cache-usage", this::getUsage));
+    registry.newGauge(METRICS_GROUP, new SupplierGauge<>("rocksdb-shared-cache-pinned-usage", this::getPinnedUsage));
+  }
+}
@@ -25,6 +25,7 @@ import org.apache.samza.config.Config;
 import org.apache.samza.storage.StorageEngineFactory;
 import org.apache.samza.storage.StorageManagerUtil;
 import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
 import org.rocksdb.CompactionOptionsUniversal;
 import org.rocksdb.CompactionStopStyle;
 import org.rocksdb.CompactionStyle;
@@ -42,6 +43,8 @@ public class RocksDbOptionsHelper {
 
   // TODO HIGH pmaheshw Add these to RockdDBTableDescriptor
   public static final String ROCKSDB_WAL_ENABLED = "rocksdb.wal.enabled";
+  public static final String ROCKSDB_PREFIX_EXTRACTOR_LENGTH = "rocksdb.prefix.extractor.length";
+  public static final String ROCKSDB_SHARED_INSTANCE_ENABLED = "rocksdb.shared.instance.enabled";
   private static final String ROCKSDB_COMPRESSION = "rocksdb.compression";
   private static final String ROCKSDB_BLOCK_SIZE_BYTES = "rocksdb.block.size.bytes";
 
@@ -88,6 +91,15 @@ public class RocksDbOptionsHelper {
 
 
   public static Options options(Config storeConfig, int numTasksForContainer, File storeDir, StorageEngineFactory.StoreMode storeMode) {
+    return options(storeConfig, numTasksForContainer, storeDir, storeMode, null);
+  }
+
+  /**
+   * @param containerMemory the container wide block cache and write buffer manager to use, or null to give the store
+   *                        its own block cache of {@link #getBlockCacheSize(Config, int)} bytes
+   */
+  public static Options options(Config storeConfig, int numTasksForContainer, File storeDir,
+      StorageEngineFactory.StoreMode storeMode, RocksDbContainerMemory containerMemory) {
     Options options = new Options();
 
     if (storeConfig.getBoolean(ROCKSDB_WAL_ENABLED, false)) {
@@ -126,10 +138,26 @@ public class RocksDbOptionsHelper {
     }
     options.setCompressionType(compressionType);
 
-    long blockCacheSize = getBlockCacheSize(storeConfig, numTasksForContainer);
     int blockSize = storeConfig.getInt(ROCKSDB_BLOCK_SIZE_BYTES, 4096);
     BlockBasedTableConfig tableOptions = new BlockBasedTableConfig();
-    tableOptions.setBlockCacheSize(blockCacheSize).setBlockSize(blockSize);
+    tableOptions.setBlockSize(blockSize);
+    if (containerMemory != null) {
+      // index and filter blocks are also charged to the shared cache, so that it bounds the memory of the container
+      tableOptions.setBlockCache(containerMemory.getBlockCache())
+          .setCacheIndexAndFilterBlocks(true)
+          .setPinL0FilterAndIndexBlocksInCache(true);
+      options.setWriteBufferManager(containerMemory.getWriteBufferManager());
+    } else {
+      tableOptions.setBlockCacheSize(getBlockCacheSize(storeConfig, numTasksForContainer));
+    }
+
+    // a fixed length prefix extractor lets prefix scans skip the files and memtables without the prefix
+    int prefixExtractorLength = storeConfig.getInt(ROCKSDB_PREFIX_EXTRACTOR_LENGTH, 0);
+    if (prefixExtractorLength > 0) {
+      options.useFixedLengthPrefixExtractor(prefixExtractorLength);
+      options.setMemtablePrefixBloomSizeRatio(0.1);
+      tableOptions.setFilterPolicy(new BloomFilter(10, false));
+    }
     options.setTableFormatConfig(tableOptions);
 
     setCompactionOptions(storeConfig, options);
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage.kv;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.samza.SamzaException;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.TableFormatConfig;
+import org.rocksdb.WriteBufferManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A RocksDB instance which hosts several stores of a task, each one in its own column family. The stores share the
+ * memtable budget, block cache, WAL and background threads of the instance, instead of each opening a database.
+ *
+ * Stores register with the instance of their task when they are created. The instance is opened lazily, on the
+ * first access to one of its stores, with a column family for each registered store, and is closed once all the
+ * stores registered with it are closed.
+ *
+ * The data of a store lives in the instance directory, but the store directory is still created and used for the
+ * OFFSET files. A column family is cleared when it is opened and its store directory does not exist, so that
+ * deleting a store directory (e.g. when its offsets are stale) deletes its data as it does for a standalone store.
+ */
+public class RocksDbSharedInstance {
+  private static final Logger LOG = LoggerFactory.getLogger(RocksDbSharedInstance.class);
+
+  /**
+   * Name of the directory, next to the store directories of the store base directory, which holds the instances.
+   */
+  public static final String SHARED_INSTANCE_DIR_NAME = "__rocksdb-shared";
+
+  /**
+   * Guards the instances and all their state. Instances are only opened and closed with their stores, so a single
+   * lock is simpler than per-instance locks and does not contend on the read and write path.
+   */
+  private static final Map<File, RocksDbSharedInstance> INSTANCES = new HashMap<>();
+
+  private final File dir;
+  private final Map<String, StoreRegistration> registrations = new HashMap<>();
+  private final Map<String, ColumnFamilyHandle> columnFamilies = new HashMap<>();
+  private final Set<String> unregisteredColumnFamilies = new HashSet<>();
+  private final List<ColumnFamilyOptions> columnFamilyOptions = new ArrayList<>();
+  private RocksDB db;
+  private DBOptions dbOptions;
+  private RocksDbContainerMemory containerMemory;
+  private Cache blockCache;
+  private WriteBufferManager writeBufferManager;
+
+  private RocksDbSharedInstance(File dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Registers a store with the shared instance of its task, creating the instance if required.
+   *
+   * @param storeName name of the store, used as the name of its column family
+   * @param storeDir directory of the store
+   * @param options options of the store. The column family options are derived from them, and the database options
+   *                are derived from the options of the first store opening the instance.
+   * @param blockCacheSize block cache size required by the store
+   * @param writeBufferSize memtable memory required by the store
+   * @param containerMemory the container wide block cache and write buffer manager to use instead of the ones of the
+   *                        instance sized by {@code blockCacheSize} and {@code writeBufferSize}, or null
+   * @return the shared instance the store is registered with
+   */
+  public static RocksDbSharedInstance register(String storeName, File storeDir, Options options, long blockCacheSize,
+      long writeBufferSize, RocksDbContainerMemory containerMemory) {
+    synchronized (INSTANCES) {
+      RocksDbSharedInstance instance = INSTANCES.computeIfAbsent(getInstanceDir(storeDir), RocksDbSharedInstance::new);
+      instance.containerMemory = containerMemory;
+      Preconditions.checkState(!instance.registrations.containsKey(storeName),
+          "Store %s is already registered with the shared RocksDB instance in %s", storeName, instance.dir);
+      StoreRegistration registration = new StoreRegistration(storeDir, options, blockCacheSize, writeBufferSize);
+      instance.registrations.put(storeName, registration);
+      if (instance.db != null) {
+        // the instance is already serving other stores, so the column family is opened right away
+        instance.openColumnFamily(storeName, registration);
+      }
+      return instance;
+    }
+  }
+
+  /**
+   * @param storeDir directory of a store
+   * @return the directory of the shared instance of the task of the store
+   */
+  public static File getInstanceDir(File storeDir) {
+    return new File(storeDir.getParentFile().getParentFile(),
+        SHARED_INSTANCE_DIR_NAME + File.separator + storeDir.getName());
+  }
+
+  /**
+   * Returns the database of the instance, opening it if required.
+   */
+  public RocksDB getDb() {
+    synchronized (INSTANCES) {
+      ensureOpen();
+      return db;
+    }
+  }
+
+  /**
+   * Returns the column family of a registered store, opening the database if required.
+   */
+  public ColumnFamilyHandle getColumnFamily(String storeName) {
+    synchronized (INSTANCES) {
+      Preconditions.checkState(registrations.containsKey(storeName),
+          "Store %s is not registered with the shared RocksDB instance in %s", storeName, dir);
+      ensureOpen();
+      return columnFamilies.get(storeName);
+    }
+  }
+
+  /**
+   * Unregisters a closed store. The instance is closed when the last store is unregistered.
+   */
+  public void unregister(String storeName) {
+    synchronized (INSTANCES) {
+      if (registrations.remove(storeName) == null) {
+        return;
+      }
+      if (registrations.isEmpty()) {
+        close();
+        INSTANCES.remove(dir);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static boolean isRegistered(File storeDir) {
+    synchronized (INSTANCES) {
+      return INSTANCES.containsKey(getInstanceDir(storeDir));
+    }
+  }
+
+  private void ensureOpen() {
+    if (db != null) {
+      return;
+    }
+    Preconditions.checkState(!registrations.isEmpty(), "No store registered with the shared RocksDB instance in %s", dir);
+
+    long blockCacheSize = 0;
+    long writeBufferSize = 0;
+    for (StoreRegistration registration : registrations.values()) {
+      blockCacheSize = Math.max(blockCacheSize, registration.blockCacheSize);
+      writeBufferSize = Math.max(writeBufferSize, registration.writeBufferSize);
+    }
+    Options firstOptions = registrations.values().iterator().next().options;
+
+    try {
+      Files.createDirectories(dir.toPath());
+      if (containerMemory != null) {
+        blockCache = containerMemory.getBlockCache();
+        writeBufferManager = containerMemory.getWriteBufferManager();
+      } else {
+        blockCache = new LRUCache(blockCacheSize);
+        // memtables are charged to the block cache, so that the instance stays within a single memory budget
+        writeBufferManager = new WriteBufferManager(writeBufferSize, blockCache);
+      }
+      dbOptions = new DBOptions(firstOptions)
+          .setCreateIfMissing(true)
+          .setCreateMissingColumnFamilies(true)
+          .setWriteBufferManager(writeBufferManager);
+
+      List<String> names = new ArrayList<>();
+      List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+      names.add(new String(RocksDB.DEFAULT_COLUMN_FAMILY, StandardCharsets.UTF_8));
+      descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, newColumnFamilyOptions(null)));
+      for (Map.Entry<String, StoreRegistration> entry : registrations.entrySet()) {
+        names.add(entry.getKey());
+        descriptors.add(new ColumnFamilyDescriptor(toBytes(entry.getKey()), newColumnFamilyOptions(entry.getValue())));
+      }
+      // all the column families of a database have to be opened, including the ones of stores which are not used
+      if (new File(dir, "CURRENT").exists()) {
+        for (byte[] existing : RocksDB.listColumnFamilies(firstOptions, dir.getAbsolutePath())) {
+          String name = new String(existing, StandardCharsets.UTF_8);
+          if (!names.contains(name)) {
+            names.add(name);
+            descriptors.add(new ColumnFamilyDescriptor(existing, newColumnFamilyOptions(null)));
+            unregisteredColumnFamilies.add(name);
+          }
+        }
+      }
+
+      List<ColumnFamilyHandle> handles = new ArrayList<>();
+      LOG.info("Opening shared RocksDB instance in {} for stores {}", dir, registrations.keySet());
+      db = RocksDB.open(dbOptions, dir.getAbsolutePath(), descriptors, handles);
+      for (int i = 0; i < names.size(); i++) {
+        columnFamilies.put(names.get(i), handles.get(i));
+      }
+
+      for (Map.Entry<String, StoreRegistration> entry : registrations.entrySet()) {
+        clearIfStoreDirMissing(entry.getKey(), entry.getValue());
+      }
+    } catch (IOException | RocksDBException e) {
+      close();
+      throw new SamzaException("Error opening shared RocksDB instance in " + dir, e);
+    }
+  }
+
+  private void openColumnFamily(String storeName, StoreRegistration registration) {
+    try {
+      if (!columnFamilies.containsKey(storeName)) {
+        columnFamilies.put(storeName, db.createColumnFamily(
+            new ColumnFamilyDescriptor(toBytes(storeName), newColumnFamilyOptions(registration))));
+      } else if (unregisteredColumnFamilies.remove(storeName)) {
+        // the column family was opened with the instance, before the store was registered
+        LOG.warn("Store {} registered with the already open shared RocksDB instance in {}. "
+            + "Its options apply after the instance is reopened.", storeName, dir);
+      }
+      clearIfStoreDirMissing(storeName, registration);
+    } catch (IOException | RocksDBException e) {
+      throw new SamzaException("Error opening column family for store " + storeName + " in " + dir, e);
+    }
+  }
+
+  private void clearIfStoreDirMissing(String storeName, StoreRegistration registration)
+      throws IOException, RocksDBException {
+    if (!registration.storeDir.exists()) {
+      LOG.info("Clearing the column family of store {} in {} since its store directory {} does not exist.",
+          storeName, dir, registration.storeDir);
+      ColumnFamilyHandle handle = columnFamilies.remove(storeName);
+      db.dropColumnFamily(handle);
+      handle.close();
+      columnFamilies.put(storeName, db.createColumnFamily(
+          new ColumnFamilyDescriptor(toBytes(storeName), newColumnFamilyOptions(registration))));
+      Files.createDirectories(registration.storeDir.toPath());
+    }
+  }
+
+  /**
+   * Derives the column family options from the options of a store, with the shared block cache.
+   *
+   * @param registration registration of the store, or null for column families without a store
+   */
+  private ColumnFamilyOptions newColumnFamilyOptions(StoreRegistration registration) {
+    ColumnFamilyOptions options;
+    BlockBasedTableConfig tableConfig = null;
+    if (registration != null) {
+      options = new ColumnFamilyOptions(registration.options);
+      TableFormatConfig storeTableConfig = registration.options.tableFormatConfig();
+      if (storeTableConfig instanceof BlockBasedTableConfig) {
+        tableConfig = (BlockBasedTableConfig) storeTableConfig;
+      }
+    } else {
+      options = new ColumnFamilyOptions();
+    }
+    if (tableConfig == null) {
+      tableConfig = new BlockBasedTableConfig();
+    }
+    options.setTableFormatConfig(tableConfig.setBlockCache(blockCache));
+    columnFamilyOptions.add(options);
+    return options;
+  }
+
+  private void close() {
+    LOG.info("Closing shared RocksDB instance in {}", dir);
+    columnFamilies.values().forEach(ColumnFamilyHandle::close);
+    columnFamilies.clear();
+    unregisteredColumnFamilies.clear();
+    if (db != null) {
+      db.close();
+      db = null;
+    }
+    columnFamilyOptions.forEach(ColumnFamilyOptions::close);
+    columnFamilyOptions.clear();
+    // the container wide cache is closed by its last user instead
+    List<AutoCloseable> resources = containerMemory != null
+        ? Collections.singletonList(dbOptions) : Arrays.asList(dbOptions, writeBufferManager, blockCache);
+    for (AutoCloseable resource : resources) {
+      if (resource != null) {
+        try {
+          resource.close();
+        } catch (Exception e) {
+          LOG.warn("Error closing resource of shared RocksDB instance in " + dir, e);
+        }
+      }
+    }
+    dbOptions = null;
+    writeBufferManager = null;
+    blockCache = null;
+  }
+
+  private static byte[] toBytes(String storeName) {
+    return storeName.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static class StoreRegistration {
+    private final File storeDir;
+    private final Options options;
+    private final long blockCacheSize;
+    private final long writeBufferSize;
+
+    StoreRegistration(File storeDir, Options options, long blockCacheSize, long writeBufferSize) {
+      this.storeDir = storeDir;
+      this.options = options;
+      this.blockCacheSize = blockCacheSize;
+      this.writeBufferSize = writeBufferSize;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage.kv
+
+import java.io.File
+import java.nio.file.Path
+import java.util.Optional
+
+import org.apache.samza.checkpoint.CheckpointId
+import org.apache.samza.config.Config
+import org.rocksdb.{ColumnFamilyHandle, FlushOptions, Options, RocksDB, WriteOptions}
+
+/**
+  * A RocksDB store kept in a column family of a [[RocksDbSharedInstance]], which it shares with other stores of the
+  * same task. The store must be registered with the instance before it is created, and is unregistered when closed.
+  */
+class RocksDbColumnFamilyKeyValueStore(
+  val sharedInstance: RocksDbSharedInstance,
+  dir: File,
+  options: Options,
+  storeConfig: Config,
+  isLoggedStore: Boolean,
+  storeName: String,
+  writeOptions: WriteOptions,
+  flushOptions: FlushOptions,
+  metrics: KeyValueStoreMetrics)
+  extends RocksDbKeyValueStore(dir, options, storeConfig, isLoggedStore, storeName, writeOptions, flushOptions, metrics) {
+
+  /**
+    * Whether the column family of the store is open. The gauges must not open the shared instance, since the store
+    * directories may not exist yet.
+    */
+  @volatile private var open = false
+
+  RocksDbKeyValueStore.registerPropertyGauges(storeConfig, metrics, property =>
+    if (open) db.getProperty(columnFamily, property) else "0")
+
+  override lazy val db: RocksDB = sharedInstance.getDb
+
+  override protected lazy val columnFamily: ColumnFamilyHandle = {
+    val handle = sharedInstance.getColumnFamily(storeName)
+    open = true
+    handle
+  }
+
+  /**
+    * A checkpoint of the store would hold the whole shared instance, and it could not be restored into the store
+    * directory, so the store is restored from its changelog instead, like in-memory stores.
+    */
+  override def checkpoint(id: CheckpointId): Optional[Path] = Optional.empty()
+
+  override protected def closeDb(): Unit = {
+    open = false
+    sharedInstance.unregister(storeName)
+  }
+}
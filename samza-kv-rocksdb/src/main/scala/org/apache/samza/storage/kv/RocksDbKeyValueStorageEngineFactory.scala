@@ -21,7 +21,10 @@ package org.apache.samza.storage.kv
 
 import java.io.File
 
-import org.apache.samza.config.StorageConfig
+import scala.collection.JavaConverters._
+
+import org.apache.samza.SamzaException
+import org.apache.samza.config.{Config, StorageConfig, TaskConfig}
 import org.apache.samza.context.{ContainerContext, JobContext}
 import org.apache.samza.metrics.MetricsRegistry
 import org.apache.samza.storage.StorageEngineFactory.StoreMode
@@ -46,27 +49,110 @@ class RocksDbKeyValueStorageEngineFactory [K, V] extends BaseKeyValueStorageEngi
     val isLoggedStore = new StorageConfig(jobContext.getConfig).getChangelogStream(storeName).isPresent
     val rocksDbMetrics = new KeyValueStoreMetrics(storeName, registry)
     val numTasksForContainer = containerContext.getContainerModel.getTasks.keySet().size()
-    rocksDbMetrics.newGauge("rocksdb.block-cache-size",
-      () => RocksDbOptionsHelper.getBlockCacheSize(storageConfigSubset, numTasksForContainer))
+    val sharedInstanceEnabled =
+      storageConfigSubset.getBoolean(RocksDbOptionsHelper.ROCKSDB_SHARED_INSTANCE_ENABLED, false)
+    if (sharedInstanceEnabled) {
+      // before acquiring the container memory, which would otherwise not be released for an invalid store
+      validateSharedInstanceStore(storeName, jobContext.getConfig)
+    }
+    // released when the database of the store is closed, or if the store cannot be created
+    val containerMemory = if (RocksDbContainerMemory.isEnabled(jobContext.getConfig)) {
+      RocksDbContainerMemory.acquire(containerContext.getContainerModel.getId, jobContext.getConfig,
+        containerContext.getContainerMetricsRegistry)
+    } else {
+      null
+    }
+    try {
+      if (containerMemory != null) {
+        rocksDbMetrics.newGauge("rocksdb.block-cache-size", () => containerMemory.getCapacityBytes)
+      } else {
+        rocksDbMetrics.newGauge("rocksdb.block-cache-size",
+          () => RocksDbOptionsHelper.getBlockCacheSize(storageConfigSubset, numTasksForContainer))
+      }
+
+      val rocksDbOptions = RocksDbOptionsHelper.options(storageConfigSubset, numTasksForContainer, storeDir, storeMode,
+        containerMemory)
+      val rocksDbWriteOptions = new WriteOptions()
 
-    val rocksDbOptions = RocksDbOptionsHelper.options(storageConfigSubset, numTasksForContainer, storeDir, storeMode)
-    val rocksDbWriteOptions = new WriteOptions()
+      if (!storageConfigSubset.getBoolean(RocksDbOptionsHelper.ROCKSDB_WAL_ENABLED, false)) {
+        // if WAL not enabled, explicitly disable it
+        rocksDbWriteOptions.setDisableWAL(true)
+      }
 
-    if (!storageConfigSubset.getBoolean(RocksDbOptionsHelper.ROCKSDB_WAL_ENABLED, false)) {
-      // if WAL not enabled, explicitly disable it
-      rocksDbWriteOptions.setDisableWAL(true)
+      val rocksDbFlushOptions = new FlushOptions().setWaitForFlush(true)
+      val rocksDb = if (sharedInstanceEnabled) {
+        // the instance gets the memory that a standalone store would use, and is shared by all the stores of the task
+        val sharedInstance = RocksDbSharedInstance.register(storeName, storeDir, rocksDbOptions,
+          RocksDbOptionsHelper.getBlockCacheSize(storageConfigSubset, numTasksForContainer),
+          rocksDbOptions.writeBufferSize * rocksDbOptions.maxWriteBufferNumber, containerMemory)
+        new RocksDbColumnFamilyKeyValueStore(
+          sharedInstance,
+          storeDir,
+          rocksDbOptions,
+          storageConfigSubset,
+          isLoggedStore,
+          storeName,
+          rocksDbWriteOptions,
+          rocksDbFlushOptions,
+          rocksDbMetrics) {
+          override protected def closeDb(): Unit = {
+            super.closeDb()
+            releaseContainerMemory(containerMemory)
+          }
+        }
+      } else {
+        new RocksDbKeyValueStore(
+          storeDir,
+          rocksDbOptions,
+          storageConfigSubset,
+          isLoggedStore,
+          storeName,
+          rocksDbWriteOptions,
+          rocksDbFlushOptions,
+          rocksDbMetrics) {
+          override protected def closeDb(): Unit = {
+            super.closeDb()
+            releaseContainerMemory(containerMemory)
+          }
+        }
+      }
+      rocksDb
+    } catch {
+      case e: Throwable =>
+        releaseContainerMemory(containerMemory)
+        throw e
     }
+  }
 
-    val rocksDbFlushOptions = new FlushOptions().setWaitForFlush(true)
-    val rocksDb = new RocksDbKeyValueStore(
-      storeDir,
-      rocksDbOptions,
-      storageConfigSubset,
-      isLoggedStore,
-      storeName,
-      rocksDbWriteOptions,
-      rocksDbFlushOptions,
-      rocksDbMetrics)
-    rocksDb
+  private def releaseContainerMemory(containerMemory: RocksDbContainerMemory): Unit = {
+    if (containerMemory != null) {
+      containerMemory.release()
+    }
+  }
+
+  /**
+   * Stores in a shared instance cannot be checkpointed on their own, so they can only be backed up to and restored
+   * from their changelog without transactional state. TTL is a property of the whole database, so it is not
+   * supported either.
+   */
+  private def validateSharedInstanceStore(storeName: String, config: Config): Unit = {
+    val storageConfig = new StorageConfig(config)
+    val taskConfig = new TaskConfig(config)
+    if (config.containsKey("stores." + storeName + ".rocksdb.ttl.ms")) {
+      throw new SamzaException("Store %s cannot use rocksdb.ttl.ms with %s enabled."
+        format (storeName, RocksDbOptionsHelper.ROCKSDB_SHARED_INSTANCE_ENABLED))
+    }
+    val backupFactories = storageConfig.getStoreBackupFactories(storeName).asScala
+    if (backupFactories.exists(_ != StorageConfig.KAFKA_STATE_BACKEND_FACTORY)) {
+      throw new SamzaException("Store %s with %s enabled can only be backed up by %s, but is backed up by %s."
+        format (storeName, RocksDbOptionsHelper.ROCKSDB_SHARED_INSTANCE_ENABLED,
+        StorageConfig.KAFKA_STATE_BACKEND_FACTORY, backupFactories.mkString(", ")))
+    }
+    if (backupFactories.nonEmpty &&
+      (taskConfig.getTransactionalStateCheckpointEnabled || taskConfig.getTransactionalStateRestoreEnabled)) {
+      throw new SamzaException("Store %s with %s enabled requires %s and %s to be disabled."
+        format (storeName, RocksDbOptionsHelper.ROCKSDB_SHARED_INSTANCE_ENABLED,
+        TaskConfig.TRANSACTIONAL_STATE_CHECKPOINT_ENABLED, TaskConfig.TRANSACTIONAL_STATE_RESTORE_ENABLED))
+    }
   }
 }
@@ -22,7 +22,7 @@ package org.apache.samza.storage.kv
 import com.google.common.annotations.VisibleForTesting
 
 import java.io.File
-import java.nio.file.{Path, Paths}
+import java.nio.file.{Files, Path, Paths}
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import java.util.{Comparator, Optional}
@@ -31,7 +31,7 @@ import org.apache.samza.checkpoint.CheckpointId
 import org.apache.samza.config.Config
 import org.apache.samza.storage.StorageManagerUtil
 import org.apache.samza.util.{FileUtil, Logging}
-import org.rocksdb.{Checkpoint, FlushOptions, Options, ReadOptions, RocksDB, RocksDBException, RocksIterator, TtlDB, WriteBatch, WriteOptions}
+import org.rocksdb.{Checkpoint, ColumnFamilyHandle, EnvOptions, FlushOptions, IngestExternalFileOptions, Options, ReadOptions, RocksDB, RocksDBException, RocksIterator, Slice, SstFileWriter, TtlDB, WriteBatch, WriteOptions}
 
 import java.util
 
@@ -82,31 +82,9 @@ object RocksDbKeyValueStore extends Logging {
           RocksDB.open(options, dir.toString)
         }
 
-      // See https://github.com/facebook/rocksdb/blob/master/include/rocksdb/db.h for available properties
-      val rocksDbMetrics = Set (
-        "rocksdb.estimate-table-readers-mem", // indexes and bloom filters
-        "rocksdb.cur-size-active-mem-table", // approximate active memtable size in bytes
-        "rocksdb.cur-size-all-mem-tables", // approximate active and unflushed memtable size in bytes
-        "rocksdb.size-all-mem-tables", // approximate active, unflushed and pinned memtable size in bytes
-        "rocksdb.estimate-num-keys" // approximate number keys in the active and unflushed memtable and storage
-      )
-
-      val configuredMetrics = storeConfig
-        .get("rocksdb.metrics.list", "")
-        .split(",")
-        .map(property => property.trim)
-        .filter(!_.isEmpty)
-        .toSet
-
-      (configuredMetrics ++ rocksDbMetrics)
-        .foreach(property => metrics.newGauge(property, () =>
-          // Check isOwningHandle flag. The db is open iff the flag is true.
-          if (rocksDb.isOwningHandle) {
-            rocksDb.getProperty(property)
-          } else {
-            "0"
-          }
-        ))
+      // Check isOwningHandle flag. The db is open iff the flag is true.
+      registerPropertyGauges(storeConfig, metrics, property =>
+        if (rocksDb.isOwningHandle) rocksDb.getProperty(property) else "0")
 
       rocksDb
     } catch {
@@ -115,6 +93,30 @@ object RocksDbKeyValueStore extends Logging {
           rocksDBException)
     }
   }
+
+  /**
+    * Registers a gauge for each of the default and configured RocksDB properties of a store.
+    */
+  def registerPropertyGauges(storeConfig: Config, metrics: KeyValueStoreMetrics, getProperty: String => String) {
+    // See https://github.com/facebook/rocksdb/blob/master/include/rocksdb/db.h for available properties
+    val rocksDbMetrics = Set (
+      "rocksdb.estimate-table-readers-mem", // indexes and bloom filters
+      "rocksdb.cur-size-active-mem-table", // approximate active memtable size in bytes
+      "rocksdb.cur-size-all-mem-tables", // approximate active and unflushed memtable size in bytes
+      "rocksdb.size-all-mem-tables", // approximate active, unflushed and pinned memtable size in bytes
+      "rocksdb.estimate-num-keys" // approximate number keys in the active and unflushed memtable and storage
+    )
+
+    val configuredMetrics = storeConfig
+      .get("rocksdb.metrics.list", "")
+      .split(",")
+      .map(property => property.trim)
+      .filter(!_.isEmpty)
+      .toSet
+
+    (configuredMetrics ++ rocksDbMetrics)
+      .foreach(property => metrics.newGauge(property, () => getProperty(property)))
+  }
 }
 
 class RocksDbKeyValueStore(
@@ -125,12 +127,25 @@ class RocksDbKeyValueStore(
   val storeName: String,
   val writeOptions: WriteOptions = new WriteOptions(),
   val flushOptions: FlushOptions = new FlushOptions(),
-  val metrics: KeyValueStoreMetrics = new KeyValueStoreMetrics) extends KeyValueStore[Array[Byte], Array[Byte]] with Logging {
+  val metrics: KeyValueStoreMetrics = new KeyValueStoreMetrics)
+  extends KeyValueStore[Array[Byte], Array[Byte]] with IngestibleKeyValueStore with Logging {
 
   // lazy val here is important because the store directories do not exist yet, it can only be opened
   // after the directories are created, which happens much later from now.
-  @VisibleForTesting lazy val db = RocksDbKeyValueStore.openDB(dir, options, storeConfig, isLoggedStore, storeName, metrics)
-  private val lexicographic = new LexicographicComparator()
+  @VisibleForTesting lazy val db: RocksDB =
+    RocksDbKeyValueStore.openDB(dir, options, storeConfig, isLoggedStore, storeName, metrics)
+
+  /**
+    * The column family holding the data of the store, which is the default column family of its own database unless
+    * the database is shared with other stores.
+    */
+  protected lazy val columnFamily: ColumnFamilyHandle = db.getDefaultColumnFamily
+
+  /**
+    * The length of the fixed length prefix extractor, or 0 if there is none. With a prefix extractor, iterators which
+    * may cross prefixes must seek in total order, since the prefix bloom filters only hold the keys of a prefix.
+    */
+  private val prefixExtractorLength = storeConfig.getInt(RocksDbOptionsHelper.ROCKSDB_PREFIX_EXTRACTOR_LENGTH, 0)
 
   /**
     * null while the store is open. Set to an Exception holding the stacktrace at the time of first close by #close.
@@ -143,7 +158,7 @@ class RocksDbKeyValueStore(
   def get(key: Array[Byte]): Array[Byte] = ifOpen {
     metrics.gets.inc
     require(key != null, "Null key not allowed.")
-    val found = db.get(key)
+    val found = db.get(columnFamily, key)
     if (found != null) {
       metrics.bytesRead.inc(found.length)
     }
@@ -153,22 +168,22 @@ class RocksDbKeyValueStore(
   override def getAll(keys: java.util.List[Array[Byte]]): java.util.Map[Array[Byte], Array[Byte]] = ifOpen {
     metrics.getAlls.inc
     require(keys != null, "Null keys not allowed.")
-    val values = db.multiGetAsList(keys)
-    if (values != null) {
-      var bytesRead = 0L
-      val iterator = values.iterator
-      while (iterator.hasNext) {
-        val value = iterator.next
-        if (value != null) {
-          bytesRead += value.length
-        }
+    // a single multi-get for all the keys, instead of a lookup per key
+    val values = db.multiGetAsList(util.Collections.nCopies(keys.size, columnFamily), keys)
+    val map = new util.HashMap[Array[Byte], Array[Byte]](keys.size)
+    var bytesRead = 0L
+    val keyIterator = keys.iterator
+    val valueIterator = values.iterator
+    while (valueIterator.hasNext) {
+      val key = keyIterator.next
+      val value = valueIterator.next
+      // only the keys which are found are returned
+      if (value != null) {
+        bytesRead += value.length
+        map.put(key, value)
       }
-      metrics.bytesRead.inc(bytesRead)
-    }
-    val map = new util.HashMap[Array[Byte], Array[Byte]]
-    for (i <- 0 until keys.size()) {
-      map.put(keys.get(i), values.get(i))
     }
+    metrics.bytesRead.inc(bytesRead)
     map
   }
 
@@ -176,11 +191,11 @@ class RocksDbKeyValueStore(
     require(key != null, "Null key not allowed.")
     if (value == null) {
       metrics.deletes.inc
-      db.delete(writeOptions, key)
+      db.delete(columnFamily, writeOptions, key)
     } else {
       metrics.puts.inc
       metrics.bytesWritten.inc(key.length + value.length)
-      db.put(writeOptions, key, value)
+      db.put(columnFamily, writeOptions, key, value)
     }
   }
 
@@ -194,13 +209,13 @@ class RocksDbKeyValueStore(
       val curr = iter.next()
       if (curr.getValue == null) {
         deletes += 1
-        writeBatch.delete(curr.getKey)
+        writeBatch.delete(columnFamily, curr.getKey)
       } else {
         wrote += 1
         val key = curr.getKey
         val value = curr.getValue
         metrics.bytesWritten.inc(key.length + value.length)
-        writeBatch.put(key, value)
+        writeBatch.put(columnFamily, key, value)
       }
     }
     db.write(writeOptions, writeBatch)
@@ -213,30 +228,128 @@ class RocksDbKeyValueStore(
     put(key, null)
   }
 
+  /**
+    * Writes the run to an SST file with a [[SstFileWriter]] and ingests the file into the column family of the store.
+    * The file is assigned a sequence number newer than all the existing data, so its entries take precedence over
+    * the existing values and earlier runs. TTL stores suffix values with timestamps, so runs are written to them.
+    */
+  override def ingest(run: util.SortedMap[Array[Byte], Array[Byte]]): Unit = ifOpen {
+    if (storeConfig.containsKey("rocksdb.ttl.ms")) {
+      val entries = new util.ArrayList[Entry[Array[Byte], Array[Byte]]](run.size)
+      val iter = run.entrySet.iterator
+      while (iter.hasNext) {
+        val entry = iter.next()
+        entries.add(new Entry(entry.getKey, entry.getValue))
+      }
+      putAll(entries)
+    } else if (!run.isEmpty) {
+      ingestSstFile(run)
+    }
+  }
+
+  private def ingestSstFile(run: util.SortedMap[Array[Byte], Array[Byte]]): Unit = {
+    // in the store directory, so that it can be hard linked into the database instead of copied
+    val sstFile = Files.createTempFile(dir.toPath, "restore-run-", ".sst")
+    try {
+      val envOptions = new EnvOptions()
+      val writer = new SstFileWriter(envOptions, options)
+      var wrote = 0
+      var deletes = 0
+      try {
+        writer.open(sstFile.toString)
+        val iter = run.entrySet.iterator
+        while (iter.hasNext) {
+          val entry = iter.next()
+          if (entry.getValue == null) {
+            deletes += 1
+            writer.delete(entry.getKey)
+          } else {
+            wrote += 1
+            metrics.bytesWritten.inc(entry.getKey.length + entry.getValue.length)
+            writer.put(entry.getKey, entry.getValue)
+          }
+        }
+        writer.finish()
+      } finally {
+        writer.close()
+        envOptions.close()
+      }
+
+      val ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)
+      try {
+        db.ingestExternalFile(columnFamily, util.Collections.singletonList(sstFile.toString), ingestOptions)
+      } finally {
+        ingestOptions.close()
+      }
+      metrics.puts.inc(wrote)
+      metrics.deletes.inc(deletes)
+    } catch {
+      case e: RocksDBException =>
+        throw new SamzaException("Error ingesting a run of %d entries into store: %s" format (run.size, storeName), e)
+    } finally {
+      Files.deleteIfExists(sstFile)
+    }
+  }
+
+  override def deleteRange(from: Array[Byte], to: Array[Byte]): Unit = ifOpen {
+    metrics.deleteRanges.inc
+    require(from != null && to != null, "Null bound not allowed.")
+    db.deleteRange(columnFamily, writeOptions, from, to)
+  }
+
   def range(from: Array[Byte], to: Array[Byte]): KeyValueIterator[Array[Byte], Array[Byte]] = ifOpen {
     metrics.ranges.inc
     require(from != null && to != null, "Null bound not allowed.")
-    new RocksDbRangeIterator(db.newIterator(), from, to)
+    val readOptions = newReadOptions()
+    // stop the iterator at the end of the range inside RocksDB, instead of reading the next key to compare it
+    val upperBound = new Slice(to)
+    readOptions.setIterateUpperBound(upperBound)
+    new RocksDbRangeIterator(db.newIterator(columnFamily, readOptions), from, readOptions, upperBound)
+  }
+
+  override def prefixScan(prefix: Array[Byte]): KeyValueIterator[Array[Byte], Array[Byte]] = ifOpen {
+    metrics.prefixScans.inc
+    require(prefix != null, "Null prefix not allowed.")
+    val readOptions = new ReadOptions()
+    if (prefixExtractorLength > 0) {
+      if (prefix.length >= prefixExtractorLength) {
+        // the extracted prefix is the same for all the keys of the scan, so the prefix bloom filters can be used
+        readOptions.setPrefixSameAsStart(true)
+      } else {
+        readOptions.setTotalOrderSeek(true)
+      }
+    }
+    val upperBoundBytes = PrefixUtil.getUpperBound(prefix)
+    val upperBound = if (upperBoundBytes != null) new Slice(upperBoundBytes) else null
+    if (upperBound != null) {
+      readOptions.setIterateUpperBound(upperBound)
+    }
+    new RocksDbRangeIterator(db.newIterator(columnFamily, readOptions), prefix, readOptions, upperBound)
   }
 
   def all(): KeyValueIterator[Array[Byte], Array[Byte]] = ifOpen {
     metrics.alls.inc
-    val iter = db.newIterator()
+    val readOptions = newReadOptions()
+    val iter = db.newIterator(columnFamily, readOptions)
     iter.seekToFirst()
-    new RocksDbIterator(iter)
+    new RocksDbIterator(iter, readOptions)
   }
 
   override def snapshot(from: Array[Byte], to: Array[Byte]): KeyValueSnapshot[Array[Byte], Array[Byte]] = {
-    val readOptions = new ReadOptions()
+    val readOptions = newReadOptions()
+    val upperBound = new Slice(to)
+    readOptions.setIterateUpperBound(upperBound)
     readOptions.setSnapshot(db.getSnapshot)
 
     new KeyValueSnapshot[Array[Byte], Array[Byte]] {
       def iterator(): KeyValueIterator[Array[Byte], Array[Byte]] = {
-        new RocksDbRangeIterator(db.newIterator(readOptions), from, to)
+        new RocksDbRangeIterator(db.newIterator(columnFamily, readOptions), from)
       }
 
       def close() = {
         db.releaseSnapshot(readOptions.snapshot())
+        readOptions.close()
+        upperBound.close()
       }
     }
   }
@@ -247,7 +360,7 @@ class RocksDbKeyValueStore(
     if (storeConfig.getBoolean(RocksDbOptionsHelper.ROCKSDB_WAL_ENABLED, false)) {
       db.flushWal(true)
     } else {
-      db.flush(flushOptions)
+      db.flush(flushOptions, columnFamily)
     }
     trace("Flushed store: %s" format storeName)
   }
@@ -266,14 +379,14 @@ class RocksDbKeyValueStore(
     // if auto-compaction is disabled, e.g., when bulk-loading
     if(options.disableAutoCompactions()) {
       trace("Auto compaction is disabled, invoking compact range.")
-      db.compactRange()
+      db.compactRange(columnFamily)
     }
 
     try {
       trace("Closing.")
       if (stackAtFirstClose == null) { // first close
         stackAtFirstClose = new Exception()
-        db.close()
+        closeDb()
       } else {
         warn(new SamzaException("Close called again on a closed store: %s. Ignoring this close." +
           "Stack at first close is under 'Caused By'." format storeName, stackAtFirstClose))
@@ -283,6 +396,24 @@ class RocksDbKeyValueStore(
     }
   }
 
+  /**
+    * Closes the database of the store. Called once, when the store is first closed.
+    */
+  protected def closeDb(): Unit = {
+    db.close()
+  }
+
+  /**
+    * Returns the read options for iterators which may span multiple prefixes.
+    */
+  private def newReadOptions(): ReadOptions = {
+    val readOptions = new ReadOptions()
+    if (prefixExtractorLength > 0) {
+      readOptions.setTotalOrderSeek(true)
+    }
+    readOptions
+  }
+
   private def ifOpen[T](fn: => T): T = {
     stateChangeLock.readLock().lock()
     try {
@@ -297,12 +428,24 @@ class RocksDbKeyValueStore(
     }
   }
 
-  class RocksDbIterator(iter: RocksIterator) extends KeyValueIterator[Array[Byte], Array[Byte]] {
+  /**
+    * @param iter the RocksDB iterator
+    * @param readOptions the read options of the iterator, if they are owned by the iterator and closed with it
+    * @param upperBound the upper bound of the iterator, if it is owned by the iterator and closed with it
+    */
+  class RocksDbIterator(iter: RocksIterator, readOptions: ReadOptions = null, upperBound: Slice = null)
+    extends KeyValueIterator[Array[Byte], Array[Byte]] {
     private var open = true
 
     override def close() = ifOpen {
       open = false
       iter.close()
+      if (readOptions != null) {
+        readOptions.close()
+      }
+      if (upperBound != null) {
+        upperBound.close()
+      }
     }
 
     def isOpen() = ifOpen {
@@ -352,17 +495,13 @@ class RocksDbKeyValueStore(
     }
   }
 
-  class RocksDbRangeIterator(iter: RocksIterator, from: Array[Byte], to: Array[Byte]) extends RocksDbIterator(iter) {
-    // RocksDB's JNI interface does not expose getters/setters that allow the
-    // comparator to be pluggable, and the default is lexicographic, so it's
-    // safe to just force lexicographic comparator here for now.
-    val comparator: LexicographicComparator = lexicographic
+  /**
+    * An iterator starting at {@code from}, which relies on the upper bound of its read options to end the range.
+    */
+  class RocksDbRangeIterator(iter: RocksIterator, from: Array[Byte], readOptions: ReadOptions = null,
+    upperBound: Slice = null) extends RocksDbIterator(iter, readOptions, upperBound) {
     ifOpen(iter.seek(from))
 
-    override def hasNext() = ifOpen {
-      super.hasNext() && comparator.compare(peekKey(), to) < 0
-    }
-
     def seek(key: Array[Byte]) = {
       iter.seek(key)
     }
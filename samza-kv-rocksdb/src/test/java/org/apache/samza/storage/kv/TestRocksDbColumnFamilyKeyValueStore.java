@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage.kv;
+
+import com.google.common.collect.Iterators;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.apache.samza.checkpoint.CheckpointId;
+import org.apache.samza.config.Config;
+import org.apache.samza.config.MapConfig;
+import org.apache.samza.metrics.MetricsRegistryMap;
+import org.apache.samza.storage.StorageEngineFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.Options;
+import org.rocksdb.WriteOptions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRocksDbColumnFamilyKeyValueStore {
+  private static final String TASK_DIR_NAME = "Partition_0";
+
+  private File storeBaseDir;
+
+  @Before
+  public void setup() throws Exception {
+    storeBaseDir = Files.createTempDirectory("TestRocksDbColumnFamilyKeyValueStore").toFile();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    FileUtils.deleteDirectory(storeBaseDir);
+  }
+
+  @Test
+  public void testStoresShareInstance() {
+    RocksDbKeyValueStore store1 = createStore("store1");
+    RocksDbKeyValueStore store2 = createStore("store2");
+
+    store1.put(bytes("key"), bytes("value1"));
+    store2.put(bytes("key"), bytes("value2"));
+    store2.put(bytes("key2"), bytes("value2"));
+
+    assertTrue(store1.db() == store2.db());
+    assertArrayEquals(bytes("value1"), store1.get(bytes("key")));
+    assertArrayEquals(bytes("value2"), store2.get(bytes("key")));
+    assertNull(store1.get(bytes("key2")));
+    assertEquals(1, countAndClose(store1.all()));
+    assertEquals(2, countAndClose(store2.all()));
+    byte[] key2 = bytes("key2");
+    assertArrayEquals(bytes("value2"), store2.getAll(Arrays.asList(key2, bytes("key3"))).get(key2));
+
+    store2.delete(bytes("key"));
+    assertNull(store2.get(bytes("key")));
+    assertArrayEquals(bytes("value1"), store1.get(bytes("key")));
+    assertFalse(store1.checkpoint(CheckpointId.create()).isPresent());
+
+    File instanceDir = RocksDbSharedInstance.getInstanceDir(storeDir("store1"));
+    assertTrue(new File(instanceDir, "CURRENT").exists());
+    assertFalse(new File(storeDir("store1"), "CURRENT").exists());
+    assertTrue(storeDir("store1").exists());
+
+    store1.close();
+    // the instance stays open for the remaining store
+    assertArrayEquals(bytes("value2"), store2.get(bytes("key2")));
+    assertTrue(RocksDbSharedInstance.isRegistered(storeDir("store2")));
+    store2.close();
+    assertFalse(RocksDbSharedInstance.isRegistered(storeDir("store2")));
+  }
+
+  @Test
+  public void testReopen() {
+    RocksDbKeyValueStore store1 = createStore("store1");
+    RocksDbKeyValueStore store2 = createStore("store2");
+    store1.put(bytes("key"), bytes("value1"));
+    store2.put(bytes("key"), bytes("value2"));
+    store1.flush();
+    store2.flush();
+    store1.close();
+    store2.close();
+
+    // reopening a single store of the instance keeps the data of the others
+    store2 = createStore("store2");
+    assertArrayEquals(bytes("value2"), store2.get(bytes("key")));
+    store1 = createStore("store1");
+    assertArrayEquals(bytes("value1"), store1.get(bytes("key")));
+    store1.close();
+    store2.close();
+  }
+
+  @Test
+  public void testColumnFamilyClearedWhenStoreDirDeleted() throws Exception {
+    RocksDbKeyValueStore store1 = createStore("store1");
+    RocksDbKeyValueStore store2 = createStore("store2");
+    store1.put(bytes("key"), bytes("value1"));
+    store2.put(bytes("key"), bytes("value2"));
+    store1.flush();
+    store2.flush();
+    store1.close();
+    store2.close();
+
+    FileUtils.deleteDirectory(storeDir("store1"));
+    store1 = createStore("store1");
+    store2 = createStore("store2");
+    assertNull(store1.get(bytes("key")));
+    assertTrue(storeDir("store1").exists());
+    assertArrayEquals(bytes("value2"), store2.get(bytes("key")));
+    store1.close();
+    store2.close();
+  }
+
+  private RocksDbKeyValueStore createStore(String storeName) {
+    Config config = new MapConfig();
+    File storeDir = storeDir(storeName);
+    Options options = RocksDbOptionsHelper.options(config, 1, storeDir, StorageEngineFactory.StoreMode.ReadWrite);
+    RocksDbSharedInstance sharedInstance =
+        RocksDbSharedInstance.register(storeName, storeDir, options, 1024 * 1024, 1024 * 1024, null);
+    return new RocksDbColumnFamilyKeyValueStore(sharedInstance, storeDir, options, config, false, storeName,
+        new WriteOptions(), new FlushOptions().setWaitForFlush(true),
+        new KeyValueStoreMetrics(storeName, new MetricsRegistryMap()));
+  }
+
+  private File storeDir(String storeName) {
+    return new File(storeBaseDir, storeName + File.separator + TASK_DIR_NAME);
+  }
+
+  private static int countAndClose(KeyValueIterator<byte[], byte[]> iterator) {
+    int count = Iterators.size(iterator);
+    iterator.close();
+    return count;
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes();
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage.kv;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import org.apache.commons.io.FileUtils;
+import org.apache.samza.SamzaException;
+import org.apache.samza.config.Config;
+import org.apache.samza.config.JobConfig;
+import org.apache.samza.config.MapConfig;
+import org.apache.samza.context.ContainerContext;
+import org.apache.samza.context.ContainerContextImpl;
+import org.apache.samza.context.JobContextImpl;
+import org.apache.samza.job.model.ContainerModel;
+import org.apache.samza.metrics.Gauge;
+import org.apache.samza.metrics.MetricsRegistryMap;
+import org.apache.samza.storage.StorageEngineFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.Options;
+import org.rocksdb.WriteOptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRocksDbContainerMemory {
+  private static final Config CONFIG = new MapConfig(ImmutableMap.of(
+      RocksDbContainerMemory.SHARED_CACHE_ENABLED, "true",
+      RocksDbContainerMemory.SHARED_CACHE_SIZE_BYTES, String.valueOf(16 * 1024 * 1024),
+      RocksDbContainerMemory.SHARED_WRITE_BUFFER_SIZE_BYTES, String.valueOf(4 * 1024 * 1024)));
+
+  private File storeBaseDir;
+
+  @Before
+  public void setup() throws Exception {
+    storeBaseDir = Files.createTempDirectory("TestRocksDbContainerMemory").toFile();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    FileUtils.deleteDirectory(storeBaseDir);
+  }
+
+  @Test
+  public void testAcquireAndRelease() {
+    MetricsRegistryMap registry = new MetricsRegistryMap();
+    RocksDbContainerMemory memory = RocksDbContainerMemory.acquire("container-0", CONFIG, registry);
+    assertSame(memory, RocksDbContainerMemory.acquire("container-0", CONFIG, registry));
+    assertEquals(16 * 1024 * 1024L, memory.getCapacityBytes());
+    Gauge<?> capacity = (Gauge<?>) registry.getGroup(RocksDbContainerMemory.class.getName())
+        .get("rocksdb-shared-cache-capacity");
+    assertEquals(16 * 1024 * 1024L, capacity.getValue());
+    // reported once for the container, rather than by each store
+    assertTrue(registry.getGroup(RocksDbContainerMemory.class.getName())
+        .get("rocksdb-shared-cache-pinned-usage") instanceof Gauge);
+
+    RocksDbContainerMemory otherContainerMemory = RocksDbContainerMemory.acquire("container-1", CONFIG, null);
+    assertNotSame(memory, otherContainerMemory);
+    otherContainerMemory.release();
+
+    memory.release();
+    // still used by the second reference
+    assertSame(memory, RocksDbContainerMemory.acquire("container-0", CONFIG, registry));
+    memory.release();
+    memory.release();
+    assertEquals(0L, memory.getUsage());
+
+    RocksDbContainerMemory newMemory = RocksDbContainerMemory.acquire("container-0", CONFIG, registry);
+    assertNotSame(memory, newMemory);
+    newMemory.release();
+  }
+
+  @Test
+  public void testStoresShareCache() {
+    RocksDbContainerMemory memory = RocksDbContainerMemory.acquire("container-0", CONFIG, null);
+    RocksDbKeyValueStore store1 = createStore("store1", memory);
+    RocksDbKeyValueStore store2 = createStore("store2", memory);
+
+    byte[] value = new byte[1024];
+    for (int i = 0; i < 1000; i++) {
+      store1.put(("key" + i).getBytes(), value);
+      store2.put(("key" + i).getBytes(), value);
+    }
+    // the memtables of both stores are charged to the shared cache
+    assertTrue(memory.getUsage() >= 2 * 1000 * 1024);
+    assertTrue(memory.getUsage() <= memory.getCapacityBytes());
+
+    store1.close();
+    store2.close();
+    memory.release();
+  }
+
+  @Test
+  public void testReleasedIfStoreIsInvalid() {
+    Config config = new MapConfig(CONFIG, ImmutableMap.of(
+        JobConfig.JOB_NAME, "test-job",
+        "stores.store1." + RocksDbOptionsHelper.ROCKSDB_SHARED_INSTANCE_ENABLED, "true",
+        "stores.store1.rocksdb.ttl.ms", "1000"));
+    RocksDbContainerMemory memory = RocksDbContainerMemory.acquire("container-0", CONFIG, null);
+    ContainerContext containerContext =
+        new ContainerContextImpl(new ContainerModel("container-0", Collections.emptyMap()), null, null);
+    try {
+      new RocksDbKeyValueStorageEngineFactory<>().getKVStore("store1", new File(storeBaseDir, "store1"),
+          new MetricsRegistryMap(), JobContextImpl.fromConfigWithDefaults(config, null), containerContext,
+          StorageEngineFactory.StoreMode.ReadWrite);
+      fail("Expected the store to be rejected");
+    } catch (SamzaException e) {
+      // expected
+    }
+
+    // the invalid store holds no reference, so this releases the memory
+    memory.release();
+    RocksDbContainerMemory newMemory = RocksDbContainerMemory.acquire("container-0", CONFIG, null);
+    assertNotSame(memory, newMemory);
+    newMemory.release();
+  }
+
+  @Test(expected = SamzaException.class)
+  public void testWriteBufferLargerThanCache() {
+    new RocksDbContainerMemory("container-0", 1024, RocksDbContainerMemory.CACHE_TYPE_LRU, 2048);
+  }
+
+  @Test(expected = SamzaException.class)
+  public void testUnknownCacheType() {
+    new RocksDbContainerMemory("container-0", 1024, "unknown", 512);
+  }
+
+  private RocksDbKeyValueStore createStore(String storeName, RocksDbContainerMemory memory) {
+    File storeDir = new File(storeBaseDir, storeName);
+    Options options = RocksDbOptionsHelper.options(new MapConfig(), 1, storeDir,
+        StorageEngineFactory.StoreMode.ReadWrite, memory);
+    return new RocksDbKeyValueStore(storeDir, options, new MapConfig(), false, storeName, new WriteOptions(),
+        new FlushOptions(), new KeyValueStoreMetrics(storeName, new MetricsRegistryMap()));
+  }
+}
@@ -24,6 +24,7 @@ import com.google.common.primitives.Ints;
 import org.apache.samza.config.Config;
 import org.apache.samza.config.MapConfig;
 import org.apache.samza.metrics.MetricsRegistryMap;
+import org.apache.samza.storage.StorageEngineFactory;
 import org.junit.Test;
 import org.rocksdb.FlushOptions;
 import org.rocksdb.Options;
@@ -33,6 +34,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
@@ -82,6 +84,73 @@ public class TestRocksDbKeyValueStoreJava {
     store.close();
   }
 
+  @Test
+  public void testDeleteRange() throws Exception {
+    Config config = new MapConfig();
+    Options options = new Options();
+    options.setCreateIfMissing(true);
+
+    File dbDir = new File(System.getProperty("java.io.tmpdir") + "/dbStore" + System.currentTimeMillis());
+    RocksDbKeyValueStore store = new RocksDbKeyValueStore(dbDir, options, config, false, "dbStore",
+        new WriteOptions(), new FlushOptions(), new KeyValueStoreMetrics("dbStore", new MetricsRegistryMap()));
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    String prefix = "prefix";
+    for (int i = 0; i < 100; i++) {
+      store.put(genKey(outputStream, prefix, i), genValue());
+    }
+
+    store.deleteRange(genKey(outputStream, prefix, 10), genKey(outputStream, prefix, 90));
+
+    List<Integer> keys = new ArrayList<>();
+    KeyValueIterator<byte[], byte[]> iterator = store.all();
+    while (iterator.hasNext()) {
+      Entry<byte[], byte[]> entry = iterator.next();
+      keys.add(Ints.fromByteArray(Arrays.copyOfRange(entry.getKey(), prefix.getBytes().length, entry.getKey().length)));
+    }
+    iterator.close();
+    assertEquals(IntStream.concat(IntStream.range(0, 10), IntStream.range(90, 100)).boxed().collect(Collectors.toList()),
+        keys);
+
+    outputStream.close();
+    store.close();
+  }
+
+  @Test
+  public void testPrefixScan() throws Exception {
+    verifyPrefixScan(new MapConfig());
+  }
+
+  @Test
+  public void testPrefixScanWithPrefixExtractor() throws Exception {
+    verifyPrefixScan(new MapConfig(Collections.singletonMap(RocksDbOptionsHelper.ROCKSDB_PREFIX_EXTRACTOR_LENGTH, "3")));
+  }
+
+  private void verifyPrefixScan(Config config) throws Exception {
+    File dbDir = new File(System.getProperty("java.io.tmpdir") + "/dbStore" + System.currentTimeMillis());
+    Options options = RocksDbOptionsHelper.options(config, 1, dbDir, StorageEngineFactory.StoreMode.ReadWrite);
+    RocksDbKeyValueStore store = new RocksDbKeyValueStore(dbDir, options, config, false, "dbStore",
+        new WriteOptions(), new FlushOptions(), new KeyValueStoreMetrics("dbStore", new MetricsRegistryMap()));
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    for (String prefix : Arrays.asList("aaa", "aab", "abc")) {
+      for (int i = 0; i < 10; i++) {
+        store.put(genKey(outputStream, prefix, i), genValue());
+      }
+    }
+
+    // prefix as long as the extracted prefix
+    assertEquals(10, countAndClose(store.prefixScan("aab".getBytes())));
+    // prefix longer than the extracted prefix
+    assertEquals(1, countAndClose(store.prefixScan(genKey(outputStream, "aab", 3))));
+    // prefix shorter than the extracted prefix must still cover keys with different extracted prefixes
+    assertEquals(20, countAndClose(store.prefixScan("aa".getBytes())));
+    assertEquals(0, countAndClose(store.prefixScan("b".getBytes())));
+
+    outputStream.close();
+    store.close();
+  }
+
   @Test
   public void testPerf() throws Exception {
     Config config = new MapConfig();
@@ -133,6 +202,12 @@ public class TestRocksDbKeyValueStoreJava {
     return outputStream.toByteArray();
   }
 
+  private int countAndClose(KeyValueIterator<byte[], byte[]> iterator) {
+    int count = Iterators.size(iterator);
+    iterator.close();
+    return count;
+  }
+
   private byte[] genValue() {
     int randomVal = ThreadLocalRandom.current().nextInt();
     return Ints.toByteArray(randomVal);
@@ -22,6 +22,7 @@ package org.apache.samza.storage.kv
 
 import java.io.File
 import java.util
+import com.google.common.primitives.UnsignedBytes
 import org.apache.samza.SamzaException
 import org.apache.samza.config.MapConfig
 import org.apache.samza.metrics.{Counter, Gauge, MetricsRegistryMap, MetricsVisitor, Timer}
@@ -139,6 +140,40 @@ class TestRocksDbKeyValueStore
     new FileUtil().rm(dbDir)
   }
 
+  @Test
+  def testIngestOverridesExistingEntries(): Unit = {
+    val map = new util.HashMap[String, String]()
+    val config = new MapConfig(map)
+    val options = new Options()
+    options.setCreateIfMissing(true)
+
+    val dbDir = new File(System.getProperty("java.io.tmpdir") + File.separator + "samza-test-ingest", "rocksDbFiles")
+    new FileUtil().rm(dbDir)
+    val rocksDB = new RocksDbKeyValueStore(dbDir, options, config, false, "dbStore")
+    rocksDB.put("k1".getBytes("UTF-8"), "v1".getBytes("UTF-8"))
+    rocksDB.put("k2".getBytes("UTF-8"), "v2".getBytes("UTF-8"))
+
+    val run = new util.TreeMap[Array[Byte], Array[Byte]](UnsignedBytes.lexicographicalComparator())
+    run.put("k1".getBytes("UTF-8"), "v1-new".getBytes("UTF-8"))
+    run.put("k2".getBytes("UTF-8"), null)
+    run.put("k3".getBytes("UTF-8"), "v3".getBytes("UTF-8"))
+    rocksDB.ingest(run)
+
+    Assert.assertEquals("v1-new", new String(rocksDB.get("k1".getBytes("UTF-8")), "UTF-8"))
+    Assert.assertNull(rocksDB.get("k2".getBytes("UTF-8")))
+    Assert.assertEquals("v3", new String(rocksDB.get("k3".getBytes("UTF-8")), "UTF-8"))
+
+    // a later run overrides the earlier one, and no temporary sst files are left behind
+    val nextRun = new util.TreeMap[Array[Byte], Array[Byte]](UnsignedBytes.lexicographicalComparator())
+    nextRun.put("k3".getBytes("UTF-8"), "v3-new".getBytes("UTF-8"))
+    rocksDB.ingest(nextRun)
+    Assert.assertEquals("v3-new", new String(rocksDB.get("k3".getBytes("UTF-8")), "UTF-8"))
+    Assert.assertTrue(dbDir.list().forall(name => !name.startsWith("restore-run-")))
+
+    rocksDB.close()
+    new FileUtil().rm(dbDir)
+  }
+
   @Test
   def testIteratorWithRemoval(): Unit = {
     val lock = new Object
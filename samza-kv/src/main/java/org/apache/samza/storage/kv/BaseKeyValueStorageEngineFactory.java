@@ -21,6 +21,7 @@ package org.apache.samza.storage.kv;
 import java.io.File;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.samza.SamzaException;
 import org.apache.samza.config.Config;
@@ -53,6 +54,12 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
   private static final int DEFAULT_WRITE_BATCH_SIZE = 500;
   private static final String OBJECT_CACHE_SIZE = "object.cache.size";
   private static final int DEFAULT_OBJECT_CACHE_SIZE = 1000;
+  private static final String OBJECT_CACHE_SEGMENTS = "object.cache.segments";
+  private static final int DEFAULT_OBJECT_CACHE_SEGMENTS = 1;
+  private static final String OFF_HEAP_CACHE_ENABLED = "off.heap.cache.enabled";
+  private static final String RESTORE_INGEST_ENABLED = "restore.ingest.enabled";
+  private static final String RESTORE_INGEST_RUN_SIZE_BYTES = "restore.ingest.run.size.bytes";
+  private static final long DEFAULT_RESTORE_INGEST_RUN_SIZE_BYTES = 64L * 1024 * 1024;
 
   /**
    * Implement this to return a KeyValueStore instance for the given store name, which will be used as the underlying
@@ -116,6 +123,20 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
           String.format("cache.size for store %s cannot be less than batch.size as batched values reside in cache.",
               storeName));
     }
+    int cacheSegments = storageConfigSubset.getInt(OBJECT_CACHE_SEGMENTS, DEFAULT_OBJECT_CACHE_SEGMENTS);
+    if (cacheSegments < 1) {
+      throw new SamzaException(
+          String.format("object.cache.segments for store %s must be at least 1.", storeName));
+    }
+    long restoreIngestRunBytes = 0; // disabled
+    if (storageConfigSubset.getBoolean(RESTORE_INGEST_ENABLED, false)) {
+      restoreIngestRunBytes =
+          storageConfigSubset.getLong(RESTORE_INGEST_RUN_SIZE_BYTES, DEFAULT_RESTORE_INGEST_RUN_SIZE_BYTES);
+      if (restoreIngestRunBytes < 1) {
+        throw new SamzaException(
+            String.format("restore.ingest.run.size.bytes for store %s must be at least 1.", storeName));
+      }
+    }
     if (keySerde == null) {
       throw new SamzaException(
           String.format("Must define a key serde when using key value storage for store %s.", storeName));
@@ -129,9 +150,12 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
         getKVStore(storeName, storeDir, registry, jobContext, containerContext, storeMode);
     KeyValueStore<byte[], byte[]> maybeLoggedStore = buildMaybeLoggedStore(changelogSSP,
         storeName, registry, storePropertiesBuilder, rawStore, changelogCollector);
+    KeyValueStore<byte[], byte[]> maybeOffHeapCachedStore = buildMaybeOffHeapCachedStore(storeName, registry,
+        maybeLoggedStore, storageConfig, storageConfigSubset.getBoolean(OFF_HEAP_CACHE_ENABLED, false),
+        containerContext);
     // this also applies serialization and caching layers
     KeyValueStore<K, V> toBeAccessLoggedStore = buildStoreWithLargeMessageHandling(storeName, registry,
-        maybeLoggedStore, storageConfig, cacheSize, batchSize, keySerde, msgSerde);
+        maybeOffHeapCachedStore, storageConfig, cacheSize, cacheSegments, batchSize, keySerde, msgSerde);
     KeyValueStore<K, V> maybeAccessLoggedStore =
         buildMaybeAccessLoggedStore(storeName, toBeAccessLoggedStore, changelogCollector, changelogSSP, storageConfig,
             keySerde);
@@ -141,7 +165,7 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
     HighResolutionClock clock = buildClock(jobContext.getConfig());
     return new KeyValueStorageEngine<>(storeName, storeDir, storePropertiesBuilder.build(), nullSafeStore, rawStore,
         changelogSSP, changelogCollector, keyValueStorageEngineMetrics, batchSize,
-        ScalaJavaUtil.toScalaFunction(clock::nanoTime));
+        ScalaJavaUtil.toScalaFunction(clock::nanoTime), restoreIngestRunBytes);
   }
 
   /**
@@ -163,6 +187,28 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
     }
   }
 
+  /**
+   * Wraps {@code storeToWrap} with an {@link OffHeapCachedStore} if the off-heap cache is enabled for the store. The
+   * cache gets its memory from the {@link OffHeapSlabAllocator} of the container, which is shared by all the stores of
+   * the container.
+   * Otherwise, returns the original {@code storeToWrap}.
+   */
+  private static KeyValueStore<byte[], byte[]> buildMaybeOffHeapCachedStore(String storeName,
+      MetricsRegistry registry,
+      KeyValueStore<byte[], byte[]> storeToWrap,
+      StorageConfig storageConfig,
+      boolean offHeapCacheEnabled,
+      ContainerContext containerContext) {
+    if (!offHeapCacheEnabled) {
+      return storeToWrap;
+    } else {
+      OffHeapSlabAllocator allocator = OffHeapSlabAllocator.acquire(containerContext.getContainerModel().getId(),
+          storageConfig.getOffHeapCacheSizeBytes());
+      OffHeapCachedStoreMetrics offHeapCachedStoreMetrics = new OffHeapCachedStoreMetrics(storeName, registry);
+      return new OffHeapCachedStore(storeToWrap, allocator, offHeapCachedStoreMetrics);
+    }
+  }
+
   /**
    * Wraps {@code storeToWrap} with the proper layers to handle large messages.
    * If "disallow.large.messages" is enabled, then the message will be serialized and the size will be checked before
@@ -175,6 +221,7 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
       KeyValueStore<byte[], byte[]> storeToWrap,
       StorageConfig storageConfig,
       int cacheSize,
+      int cacheSegments,
       int batchSize,
       Serde<T> keySerde,
       Serde<U> msgSerde) {
@@ -186,7 +233,7 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
        * deserialized even when cached.
        */
       KeyValueStore<byte[], byte[]> maybeCachedStore =
-          buildMaybeCachedStore(storeName, registry, storeToWrap, cacheSize, batchSize);
+          buildMaybeCachedStore(storeName, registry, storeToWrap, cacheSize, cacheSegments, batchSize, key -> key);
       // this will throw a RecordTooLargeException when a large message is encountered
       LargeMessageSafeStore largeMessageSafeKeyValueStore =
           new LargeMessageSafeStore(maybeCachedStore, storeName, false, maxMessageSize);
@@ -204,19 +251,27 @@ public abstract class BaseKeyValueStorageEngineFactory<K, V> implements StorageE
        * Allows deserialized entries to be stored in the cache, but it means that a large message may end up in the
        * cache even though it was not persisted to the logged store.
        */
-      return buildMaybeCachedStore(storeName, registry, serializedStore, cacheSize, batchSize);
+      return buildMaybeCachedStore(storeName, registry, serializedStore, cacheSize, cacheSegments, batchSize,
+          keySerde::toBytes);
     }
   }
 
   /**
-   * Wraps {@code storeToWrap} with a {@link CachedStore} if caching is enabled.
-   * Otherwise, returns the {@code storeToWrap}.
+   * Wraps {@code storeToWrap} with a {@link CachedStore} if caching is enabled, or with a
+   * {@link SegmentedCachedStore} if the cache is also configured with more than one segment.
+   * Otherwise, returns the {@code storeToWrap}. The {@code keySerializer} serializes the keys as they are ordered by
+   * the underlying store, so the cache can find its keys in deleted ranges.
    */
   private static <T, U> KeyValueStore<T, U> buildMaybeCachedStore(String storeName, MetricsRegistry registry,
-      KeyValueStore<T, U> storeToWrap, int cacheSize, int batchSize) {
+      KeyValueStore<T, U> storeToWrap, int cacheSize, int cacheSegments, int batchSize,
+      Function<T, byte[]> keySerializer) {
     if (cacheSize > 0) {
       CachedStoreMetrics cachedStoreMetrics = new CachedStoreMetrics(storeName, registry);
-      return new CachedStore<>(storeToWrap, cacheSize, batchSize, cachedStoreMetrics);
+      if (cacheSegments > 1) {
+        return new SegmentedCachedStore<>(storeToWrap, cacheSize, batchSize, cacheSegments, cachedStoreMetrics,
+            keySerializer);
+      }
+      return new CachedStore<>(storeToWrap, cacheSize, batchSize, cachedStoreMetrics, keySerializer);
     } else {
       return storeToWrap;
     }
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.kv;
+
+import java.util.SortedMap;
+
+
+/**
+ * A raw key-value store that can ingest sorted runs of entries directly into its storage files, bypassing its regular
+ * write path (e.g. the memtable and compactions of RocksDB). Used by {@link KeyValueStorageEngine} to restore the
+ * store from its changelog when restore ingestion is enabled for the store.
+ */
+public interface IngestibleKeyValueStore {
+  /**
+   * Ingests a run of entries into the store. The entries take precedence over any existing values for their keys,
+   * including those from previously ingested runs.
+   *
+   * @param run entries with unique keys, sorted in unsigned lexicographic order. A null value deletes its key.
+   */
+  void ingest(SortedMap<byte[], byte[]> run);
+}
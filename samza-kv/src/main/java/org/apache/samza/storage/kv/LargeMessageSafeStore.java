@@ -21,6 +21,7 @@ package org.apache.samza.storage.kv;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.samza.checkpoint.CheckpointId;
@@ -55,6 +56,11 @@ public class LargeMessageSafeStore implements KeyValueStore<byte[], byte[]> {
     return store.get(key);
   }
 
+  @Override
+  public Map<byte[], byte[]> getAll(List<byte[]> keys) {
+    return store.getAll(keys);
+  }
+
   /**
    * This function puts a message in the store after validating its size.
    * It drops the large message if it has been configured to do so.
@@ -102,6 +108,11 @@ public class LargeMessageSafeStore implements KeyValueStore<byte[], byte[]> {
     store.deleteAll(keys);
   }
 
+  @Override
+  public void deleteRange(byte[] from, byte[] to) {
+    store.deleteRange(from, to);
+  }
+
   @Override
   public KeyValueIterator<byte[], byte[]> range(byte[] from, byte[] to) {
     return store.range(from, to);
@@ -112,6 +123,11 @@ public class LargeMessageSafeStore implements KeyValueStore<byte[], byte[]> {
     return store.snapshot(from, to);
   }
 
+  @Override
+  public KeyValueIterator<byte[], byte[]> prefixScan(byte[] prefix) {
+    return store.prefixScan(prefix);
+  }
+
   @Override
   public KeyValueIterator<byte[], byte[]> all() {
     return store.all();
@@ -23,7 +23,6 @@ import com.google.common.base.Supplier;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import org.apache.samza.SamzaException;
 import org.apache.samza.metrics.Counter;
@@ -78,7 +77,8 @@ public final class LocalTable<K, V, U> extends BaseReadWriteUpdateTable<K, V, U>
   @Override
   public Map<K, V> getAll(List<K> keys, Object ... args) {
     Map<K, V> result = instrument(metrics.numGetAlls, metrics.getAllNs, () -> kvStore.getAll(keys));
-    result.values().stream().filter(Objects::isNull).forEach(v -> incCounter(metrics.numMissedLookups));
+    // stores leave out keys which are not found, so a key is missed if it has no value in the result
+    keys.stream().filter(k -> result.get(k) == null).forEach(k -> incCounter(metrics.numMissedLookups));
     return result;
   }
 
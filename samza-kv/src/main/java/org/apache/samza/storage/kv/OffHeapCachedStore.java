@@ -0,0 +1,595 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.kv;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.UnsignedBytes;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.apache.samza.checkpoint.CheckpointId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A read-through, write-through cache of serialized entries, which keeps the values in off-heap slabs handed out by a
+ * container-wide {@link OffHeapSlabAllocator}. Unlike the {@link CachedStore}, it is bounded by the number of bytes
+ * used by the values rather than by the number of entries, and it does not add to the heap usage of the container
+ * beyond a small index entry per key.
+ *
+ * The slabs are split into power of two sized chunks, with one size class per chunk size. An entry is stored in a
+ * chunk of the smallest size class which fits its value. Values larger than a slab are not cached. A slab is returned
+ * to the allocator once the entries in all of its chunks have been deleted or replaced, so that other size classes and
+ * stores can use it.
+ *
+ * When a size class runs out of chunks and the allocator runs out of slabs, a slab is reassigned to it from another
+ * store of the container holding at least two more slabs than this one, or else from another size class of this store
+ * holding at least two more slabs than it, by evicting all the entries of that slab. Otherwise, the least recently used
+ * entry of the size class is evicted. A size class without any entry to evict takes a slab from any store or size class
+ * which has one, so that the first size classes and stores to fill the budget cannot starve the others.
+ *
+ * All the writes go to the underlying store before updating the cache, so range queries and snapshots are served by
+ * the underlying store directly.
+ *
+ * This class is thread safe. Like the {@link CachedStore}, it serializes the operations which use the cache. A store
+ * only takes slabs from another store if it can lock it without waiting, so that two stores taking slabs from each
+ * other cannot deadlock.
+ */
+public class OffHeapCachedStore implements KeyValueStore<byte[], byte[]> {
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapCachedStore.class);
+
+  private static final int MIN_CHUNK_SIZE_BYTES = 64;
+
+  private final KeyValueStore<byte[], byte[]> store;
+  private final OffHeapSlabAllocator allocator;
+  private final OffHeapCachedStoreMetrics metrics;
+  private final SizeClass[] sizeClasses;
+  private final Map<ByteBuffer, Chunk> index = new HashMap<>();
+  private final List<Slab> slabs = new ArrayList<>();
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** read without locking by the metrics and by the other stores of the allocator */
+  private volatile int cacheCount = 0;
+  private volatile long cacheUsedBytes = 0;
+  private volatile long cacheAllocatedBytes = 0;
+
+  /**
+   * @param store The store to cache
+   * @param allocator The allocator of the container, which must have been acquired for this store. It is released
+   *                  when this store is closed.
+   * @param metrics The metrics recording object for this cached store
+   */
+  public OffHeapCachedStore(KeyValueStore<byte[], byte[]> store, OffHeapSlabAllocator allocator,
+      OffHeapCachedStoreMetrics metrics) {
+    this.store = store;
+    this.allocator = allocator;
+    this.metrics = metrics;
+
+    int numSizeClasses = 1;
+    for (int chunkSize = MIN_CHUNK_SIZE_BYTES; chunkSize < allocator.getSlabSizeBytes(); chunkSize <<= 1) {
+      numSizeClasses++;
+    }
+    this.sizeClasses = new SizeClass[numSizeClasses];
+    for (int i = 0; i < numSizeClasses; i++) {
+      sizeClasses[i] = new SizeClass(Math.min(MIN_CHUNK_SIZE_BYTES << i, allocator.getSlabSizeBytes()));
+    }
+
+    metrics.setCacheSize(() -> cacheCount);
+    metrics.setCacheUsedBytes(() -> cacheUsedBytes);
+    metrics.setCacheAllocatedBytes(() -> cacheAllocatedBytes);
+    allocator.register(this);
+  }
+
+  @Override
+  public byte[] get(byte[] key) {
+    lock.lock();
+    try {
+      metrics.gets().inc();
+      Chunk chunk = index.get(ByteBuffer.wrap(key));
+      if (chunk != null) {
+        metrics.cacheHits().inc();
+        chunk.sizeClass.touch(chunk);
+        return chunk.read();
+      }
+      metrics.cacheMisses().inc();
+      byte[] value = store.get(key);
+      if (value != null) {
+        cache(key, value);
+      }
+      return value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<byte[], byte[]> getAll(List<byte[]> keys) {
+    lock.lock();
+    try {
+      metrics.gets().inc(keys.size());
+      Map<byte[], byte[]> returnValue = new HashMap<>(keys.size());
+      List<byte[]> misses = new ArrayList<>();
+      for (byte[] key : keys) {
+        Chunk chunk = index.get(ByteBuffer.wrap(key));
+        if (chunk != null) {
+          metrics.cacheHits().inc();
+          chunk.sizeClass.touch(chunk);
+          returnValue.put(key, chunk.read());
+        } else {
+          misses.add(key);
+        }
+      }
+      if (!misses.isEmpty()) {
+        metrics.cacheMisses().inc(misses.size());
+        for (Map.Entry<byte[], byte[]> entry : store.getAll(misses).entrySet()) {
+          if (entry.getValue() != null) {
+            cache(entry.getKey(), entry.getValue());
+            returnValue.put(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+      return returnValue;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    lock.lock();
+    try {
+      store.put(key, value);
+      update(key, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void putAll(List<Entry<byte[], byte[]>> entries) {
+    lock.lock();
+    try {
+      store.putAll(entries);
+      for (Entry<byte[], byte[]> entry : entries) {
+        update(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    lock.lock();
+    try {
+      store.delete(key);
+      invalidate(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void deleteAll(List<byte[]> keys) {
+    lock.lock();
+    try {
+      store.deleteAll(keys);
+      for (byte[] key : keys) {
+        invalidate(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Deletes the range from the underlying store, and drops the cached entries whose keys fall in the range, using the
+   * same unsigned lexicographical order as the underlying store.
+   */
+  @Override
+  public void deleteRange(byte[] from, byte[] to) {
+    lock.lock();
+    try {
+      store.deleteRange(from, to);
+      Comparator<byte[]> comparator = UnsignedBytes.lexicographicalComparator();
+      List<byte[]> cachedKeysInRange = index.keySet().stream()
+          .map(ByteBuffer::array)
+          .filter(key -> comparator.compare(key, from) >= 0 && comparator.compare(key, to) < 0)
+          .collect(Collectors.toList());
+      cachedKeysInRange.forEach(this::invalidate);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public KeyValueIterator<byte[], byte[]> range(byte[] from, byte[] to) {
+    return store.range(from, to);
+  }
+
+  @Override
+  public KeyValueSnapshot<byte[], byte[]> snapshot(byte[] from, byte[] to) {
+    return store.snapshot(from, to);
+  }
+
+  @Override
+  public KeyValueIterator<byte[], byte[]> prefixScan(byte[] prefix) {
+    return store.prefixScan(prefix);
+  }
+
+  @Override
+  public KeyValueIterator<byte[], byte[]> all() {
+    return store.all();
+  }
+
+  @Override
+  public void flush() {
+    store.flush();
+  }
+
+  @Override
+  public void close() {
+    LOG.trace("Closing.");
+    lock.lock();
+    try {
+      store.close();
+    } finally {
+      allocator.unregister(this);
+      index.clear();
+      for (SizeClass sizeClass : sizeClasses) {
+        sizeClass.clear();
+      }
+      allocator.releaseSlabs(slabs.stream().map(slab -> slab.buffer).collect(Collectors.toList()));
+      slabs.clear();
+      allocator.release();
+      cacheCount = 0;
+      cacheUsedBytes = 0;
+      cacheAllocatedBytes = 0;
+      // not released before, so that another store cannot take a slab which was already returned to the allocator
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<Path> checkpoint(CheckpointId id) {
+    return store.checkpoint(id);
+  }
+
+  @VisibleForTesting
+  KeyValueStore<byte[], byte[]> getStore() {
+    return store;
+  }
+
+  /**
+   * Replaces the cached value of the key, if any, with a value that was just written to the underlying store.
+   */
+  private void update(byte[] key, byte[] value) {
+    invalidate(key);
+    if (value != null) {
+      cache(key, value);
+    }
+  }
+
+  private void invalidate(byte[] key) {
+    Chunk chunk = index.remove(ByteBuffer.wrap(key));
+    if (chunk != null) {
+      cacheUsedBytes -= chunk.length;
+      chunk.sizeClass.free(chunk, true);
+      cacheCount = index.size();
+    }
+  }
+
+  private void cache(byte[] key, byte[] value) {
+    if (value.length > allocator.getSlabSizeBytes()) {
+      metrics.rejections().inc();
+      return;
+    }
+    SizeClass sizeClass = sizeClassFor(value.length);
+    Chunk chunk = sizeClass.allocate();
+    if (chunk == null) {
+      metrics.rejections().inc();
+      return;
+    }
+    chunk.write(key, value);
+    sizeClass.append(chunk);
+    index.put(chunk.key, chunk);
+    cacheCount = index.size();
+    cacheUsedBytes += value.length;
+  }
+
+  /**
+   * Takes a slab for the size class, which could not get one from the allocator, from another store or another size
+   * class of this store, as described in the class documentation.
+   *
+   * @return the slab, emptied of its entries, or null if there is no slab to take
+   */
+  private ByteBuffer reassignSlab(SizeClass sizeClass) {
+    boolean starved = sizeClass.eldest == null;
+    OffHeapCachedStore donorStore = null;
+    long donorStoreBytes = 0;
+    for (OffHeapCachedStore other : allocator.getStores()) {
+      long otherBytes = other.cacheAllocatedBytes;
+      if (other != this && otherBytes > donorStoreBytes) {
+        donorStore = other;
+        donorStoreBytes = otherBytes;
+      }
+    }
+    if (donorStore != null
+        && (starved || donorStoreBytes >= cacheAllocatedBytes + 2L * allocator.getSlabSizeBytes())) {
+      ByteBuffer buffer = donorStore.tryEvictSlab();
+      if (buffer != null) {
+        metrics.slabReassignments().inc();
+        return buffer;
+      }
+    }
+
+    SizeClass donorSizeClass = largestSizeClass(sizeClass);
+    if (donorSizeClass != null && (starved || donorSizeClass.numSlabs >= sizeClass.numSlabs + 2)) {
+      metrics.slabReassignments().inc();
+      return donorSizeClass.evictSlab();
+    }
+    return null;
+  }
+
+  /**
+   * Gives up a slab of the size class holding the most slabs, if this store is not locked by another thread.
+   *
+   * @return the slab, emptied of its entries, or null if this store is locked or holds no slab
+   */
+  private ByteBuffer tryEvictSlab() {
+    if (!lock.tryLock()) {
+      return null;
+    }
+    try {
+      SizeClass sizeClass = largestSizeClass(null);
+      return sizeClass != null ? sizeClass.evictSlab() : null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the size class holding the most slabs other than {@code excluded}, or null if none holds a slab
+   */
+  private SizeClass largestSizeClass(SizeClass excluded) {
+    SizeClass largest = null;
+    for (SizeClass sizeClass : sizeClasses) {
+      if (sizeClass != excluded && sizeClass.numSlabs > 0
+          && (largest == null || sizeClass.numSlabs > largest.numSlabs)) {
+        largest = sizeClass;
+      }
+    }
+    return largest;
+  }
+
+  private SizeClass sizeClassFor(int length) {
+    int i = 0;
+    while (sizeClasses[i].chunkSize < length) {
+      i++;
+    }
+    return sizeClasses[i];
+  }
+
+  /**
+   * The chunks of a given size. Chunks holding an entry are kept in LRU order, from least to most recently used.
+   */
+  private class SizeClass {
+    private final int chunkSize;
+    /** the slabs of this size class which have free chunks */
+    private final ArrayDeque<Slab> partialSlabs = new ArrayDeque<>();
+    private int numSlabs = 0;
+    private Chunk eldest = null;
+    private Chunk youngest = null;
+
+    SizeClass(int chunkSize) {
+      this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return a free chunk, carving a new or reassigned slab or evicting the least recently used entry if there is
+     * none, or null if there is no slab left to take and this size class holds no entries
+     */
+    private Chunk allocate() {
+      if (partialSlabs.isEmpty()) {
+        ByteBuffer buffer = allocator.allocateSlab();
+        if (buffer == null) {
+          buffer = reassignSlab(this);
+        }
+        if (buffer != null) {
+          Slab slab = new Slab(buffer);
+          slabs.add(slab);
+          numSlabs++;
+          cacheAllocatedBytes += buffer.capacity();
+          for (int offset = 0; offset + chunkSize <= buffer.capacity(); offset += chunkSize) {
+            Chunk chunk = new Chunk(this, slab, offset);
+            slab.chunks.add(chunk);
+            slab.freeChunks.add(chunk);
+          }
+          partialSlabs.add(slab);
+        } else if (eldest != null) {
+          Chunk evicted = eldest;
+          index.remove(evicted.key);
+          cacheUsedBytes -= evicted.length;
+          // the chunk is reused right away, so its slab is kept even if it has no other entries
+          free(evicted, false);
+          metrics.evictions().inc();
+        }
+      }
+      Slab slab = partialSlabs.peek();
+      if (slab == null) {
+        return null;
+      }
+      Chunk chunk = slab.freeChunks.poll();
+      slab.usedChunks++;
+      if (slab.freeChunks.isEmpty()) {
+        partialSlabs.poll();
+      }
+      return chunk;
+    }
+
+    /**
+     * @param releaseEmptySlab whether to return the slab of the chunk to the allocator if it holds no other entries
+     */
+    private void free(Chunk chunk, boolean releaseEmptySlab) {
+      unlink(chunk);
+      chunk.key = null;
+      chunk.length = 0;
+      Slab slab = chunk.slab;
+      if (slab.freeChunks.isEmpty()) {
+        partialSlabs.add(slab);
+      }
+      slab.freeChunks.add(chunk);
+      if (--slab.usedChunks == 0 && releaseEmptySlab) {
+        partialSlabs.remove(slab);
+        slabs.remove(slab);
+        numSlabs--;
+        cacheAllocatedBytes -= slab.buffer.capacity();
+        allocator.releaseSlabs(Collections.singletonList(slab.buffer));
+      }
+    }
+
+    /**
+     * Evicts all the entries of a slab of this size class, which must hold one, and removes it from this size class.
+     * An empty slab is preferred, and otherwise the slab of the least recently used entry is taken.
+     *
+     * @return the buffer of the slab, to be carved again by the caller
+     */
+    private ByteBuffer evictSlab() {
+      Slab slab = partialSlabs.stream().filter(partialSlab -> partialSlab.usedChunks == 0).findFirst()
+          .orElse(eldest != null ? eldest.slab : partialSlabs.peek());
+      for (Chunk chunk : slab.chunks) {
+        if (chunk.key != null) {
+          index.remove(chunk.key);
+          cacheUsedBytes -= chunk.length;
+          unlink(chunk);
+          metrics.evictions().inc();
+        }
+      }
+      cacheCount = index.size();
+      partialSlabs.remove(slab);
+      slabs.remove(slab);
+      numSlabs--;
+      cacheAllocatedBytes -= slab.buffer.capacity();
+      slab.buffer.clear();
+      return slab.buffer;
+    }
+
+    /**
+     * Drops all the slabs of this size class, which are returned to the allocator by the caller.
+     */
+    private void clear() {
+      partialSlabs.clear();
+      numSlabs = 0;
+      eldest = null;
+      youngest = null;
+    }
+
+    private void touch(Chunk chunk) {
+      if (chunk != youngest) {
+        unlink(chunk);
+        append(chunk);
+      }
+    }
+
+    private void append(Chunk chunk) {
+      chunk.prev = youngest;
+      chunk.next = null;
+      if (youngest != null) {
+        youngest.next = chunk;
+      } else {
+        eldest = chunk;
+      }
+      youngest = chunk;
+    }
+
+    private void unlink(Chunk chunk) {
+      if (chunk.prev != null) {
+        chunk.prev.next = chunk.next;
+      } else if (eldest == chunk) {
+        eldest = chunk.next;
+      }
+      if (chunk.next != null) {
+        chunk.next.prev = chunk.prev;
+      } else if (youngest == chunk) {
+        youngest = chunk.prev;
+      }
+      chunk.prev = null;
+      chunk.next = null;
+    }
+  }
+
+  /**
+   * A slab carved into the chunks of a single size class.
+   */
+  private static class Slab {
+    private final ByteBuffer buffer;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<>();
+    private int usedChunks = 0;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+
+  /**
+   * A region of a slab, which holds the value of a single entry when it is in use.
+   */
+  private static class Chunk {
+    private final SizeClass sizeClass;
+    private final Slab slab;
+    private final int offset;
+    private ByteBuffer key;
+    private int length;
+    private Chunk prev;
+    private Chunk next;
+
+    Chunk(SizeClass sizeClass, Slab slab, int offset) {
+      this.sizeClass = sizeClass;
+      this.slab = slab;
+      this.offset = offset;
+    }
+
+    private void write(byte[] key, byte[] value) {
+      // copied, since the caller may reuse the array, which would corrupt the index
+      this.key = ByteBuffer.wrap(Arrays.copyOf(key, key.length));
+      this.length = value.length;
+      slab.buffer.position(offset);
+      slab.buffer.put(value);
+    }
+
+    private byte[] read() {
+      byte[] value = new byte[length];
+      slab.buffer.position(offset);
+      slab.buffer.get(value);
+      return value;
+    }
+  }
+}
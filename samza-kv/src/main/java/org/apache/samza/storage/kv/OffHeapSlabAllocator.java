@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.kv;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Hands out fixed size, direct (off-heap) {@link ByteBuffer} slabs to the {@link OffHeapCachedStore}s of a container,
+ * so that their total memory usage stays within a single container-wide budget.
+ *
+ * There is one allocator per container, which is shared by reference counting: each store acquires it with
+ * {@link #acquire(String, long)} and releases it with {@link #release()} once it has returned its slabs. The slabs are
+ * freed when the last store of the container releases the allocator.
+ *
+ * Once the budget is used up, a store which needs a slab takes it from another registered store (see
+ * {@link #getStores()}), so that the first stores to fill the budget do not keep all of it.
+ *
+ * This class is thread safe.
+ */
+public class OffHeapSlabAllocator {
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapSlabAllocator.class);
+
+  static final int DEFAULT_SLAB_SIZE_BYTES = 1024 * 1024;
+
+  /** the allocators of the containers in this JVM, guarded by the class lock */
+  private static final Map<String, OffHeapSlabAllocator> ALLOCATORS = new HashMap<>();
+
+  private final String containerId;
+  private final int slabSizeBytes;
+  private final int maxSlabs;
+  /** slabs which have been returned by the stores, and can be handed out again without allocating */
+  private final ArrayDeque<ByteBuffer> freeSlabs = new ArrayDeque<>();
+  private int allocatedSlabs = 0;
+  /** the stores which hold slabs of this allocator, and may be asked to give them back */
+  private final Set<OffHeapCachedStore> stores = new LinkedHashSet<>();
+  /** the number of stores using this allocator, guarded by the class lock */
+  private int refCount = 0;
+
+  @VisibleForTesting
+  OffHeapSlabAllocator(String containerId, long capacityBytes, int slabSizeBytes) {
+    Preconditions.checkArgument(slabSizeBytes > 0, "Slab size must be positive.");
+    this.containerId = containerId;
+    this.slabSizeBytes = slabSizeBytes;
+    this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, capacityBytes / slabSizeBytes);
+  }
+
+  /**
+   * Returns the allocator of the container, creating it with {@code capacityBytes} if this is the first store of the
+   * container to acquire it. Every call must be matched with a call to {@link #release()}.
+   *
+   * @param containerId the id of the container
+   * @param capacityBytes the number of bytes which the caches of the container may use together
+   * @return the allocator of the container
+   */
+  public static synchronized OffHeapSlabAllocator acquire(String containerId, long capacityBytes) {
+    OffHeapSlabAllocator allocator = ALLOCATORS.computeIfAbsent(containerId, id -> {
+      LOG.info("Creating off-heap cache allocator for container {} with a capacity of {} bytes.", id, capacityBytes);
+      return new OffHeapSlabAllocator(id, capacityBytes, DEFAULT_SLAB_SIZE_BYTES);
+    });
+    allocator.refCount++;
+    return allocator;
+  }
+
+  /**
+   * Releases a reference to this allocator acquired with {@link #acquire(String, long)}. The caller must have returned
+   * all of its slabs with {@link #releaseSlabs(Collection)} before.
+   */
+  public void release() {
+    synchronized (OffHeapSlabAllocator.class) {
+      if (--refCount == 0) {
+        LOG.info("Releasing off-heap cache allocator for container {}.", containerId);
+        ALLOCATORS.remove(containerId, this);
+        synchronized (this) {
+          freeSlabs.clear();
+          allocatedSlabs = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return a slab of {@link #getSlabSizeBytes()} bytes, or null if the budget of the container is used up
+   */
+  public synchronized ByteBuffer allocateSlab() {
+    ByteBuffer slab = freeSlabs.poll();
+    if (slab != null) {
+      return slab;
+    }
+    if (allocatedSlabs >= maxSlabs) {
+      return null;
+    }
+    allocatedSlabs++;
+    return ByteBuffer.allocateDirect(slabSizeBytes);
+  }
+
+  /**
+   * Returns slabs previously handed out by {@link #allocateSlab()}, so that other stores can use them.
+   */
+  public synchronized void releaseSlabs(Collection<ByteBuffer> slabs) {
+    for (ByteBuffer slab : slabs) {
+      slab.clear();
+      freeSlabs.add(slab);
+    }
+  }
+
+  /**
+   * Registers a store, so that the other stores can take slabs from it once the budget is used up.
+   */
+  synchronized void register(OffHeapCachedStore store) {
+    stores.add(store);
+  }
+
+  /**
+   * Unregisters a store before it returns its slabs.
+   */
+  synchronized void unregister(OffHeapCachedStore store) {
+    stores.remove(store);
+  }
+
+  /**
+   * @return a copy of the registered stores, so that the caller can take slabs from them without holding the lock of
+   * this allocator
+   */
+  synchronized List<OffHeapCachedStore> getStores() {
+    return new ArrayList<>(stores);
+  }
+
+  public int getSlabSizeBytes() {
+    return slabSizeBytes;
+  }
+
+  public long getCapacityBytes() {
+    return (long) maxSlabs * slabSizeBytes;
+  }
+
+  /**
+   * @return the number of bytes in the slabs currently handed out to the stores
+   */
+  public synchronized long getUsedBytes() {
+    return (long) (allocatedSlabs - freeSlabs.size()) * slabSizeBytes;
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.kv;
+
+import java.util.Arrays;
+
+
+/**
+ * Helpers for stores implementing {@link KeyValueStore#prefixScan(Object)} over serialized keys.
+ */
+public class PrefixUtil {
+  private PrefixUtil() { }
+
+  /**
+   * Returns the smallest key which is greater than all the keys starting with {@code prefix}, in the lexicographic
+   * order of unsigned bytes. This is the exclusive upper bound of a prefix scan.
+   *
+   * @param prefix the prefix of the keys
+   * @return the exclusive upper bound of the keys starting with {@code prefix}, or null if there is none, i.e. if
+   *         the prefix is empty or only made of 0xff bytes
+   */
+  public static byte[] getUpperBound(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xff) {
+        byte[] upperBound = Arrays.copyOf(prefix, i + 1);
+        upperBound[i]++;
+        return upperBound;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,548 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.samza.storage.kv;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.UnsignedBytes;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.samza.checkpoint.CheckpointId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A write-behind caching layer with the same semantics as {@link CachedStore}, but which splits the cache into
+ * hash-striped segments. Each segment has its own lock, LRU cache and dirty list, so tasks accessing the store from
+ * multiple threads (task.max.concurrency &gt; 1) only contend when they hit the same segment.
+ *
+ * Accesses to the underlying store are serialized with a separate store lock, which is always acquired after the
+ * segment lock(s). Operations spanning multiple segments (flush, range, all and getAll) acquire the segment locks in
+ * segment order, so there are no lock order inversions.
+ *
+ * Dirty entries are written to the underlying store when a segment reaches its share of the write batch size, when a
+ * dirty entry is evicted from a segment, and on flush, which writes the dirty entries of all the segments in segment
+ * order. Since each key is in a single segment and its dirty entry always holds the latest value, the order across
+ * segments does not affect the content of the store or of its changelog.
+ *
+ * This class is thread safe.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class SegmentedCachedStore<K, V> implements KeyValueStore<K, V> {
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentedCachedStore.class);
+
+  private final KeyValueStore<K, V> store;
+  private final CachedStoreMetrics metrics;
+  private final Function<K, byte[]> keySerializer;
+  private final List<Segment> segments;
+  private final ReentrantLock storeLock = new ReentrantLock();
+
+  /** tracks whether an array has been used as a key. since this is dangerous with LinkedHashMap, we want to warn on it. **/
+  private volatile boolean containsArrayKeys = false;
+
+  /**
+   * @param store The store to cache
+   * @param cacheSize The number of entries to hold in the in-memory cache across all segments
+   * @param writeBatchSize The number of entries to batch together before forcing a write, across all segments
+   * @param numSegments The number of segments to split the cache into
+   * @param metrics The metrics recording object for this cached store
+   */
+  public SegmentedCachedStore(KeyValueStore<K, V> store, int cacheSize, int writeBatchSize, int numSegments,
+      CachedStoreMetrics metrics) {
+    this(store, cacheSize, writeBatchSize, numSegments, metrics, null);
+  }
+
+  /**
+   * @param store The store to cache
+   * @param cacheSize The number of entries to hold in the in-memory cache across all segments
+   * @param writeBatchSize The number of entries to batch together before forcing a write, across all segments
+   * @param numSegments The number of segments to split the cache into
+   * @param metrics The metrics recording object for this cached store
+   * @param keySerializer Serializes the keys as they are ordered by the underlying store, to find the cached keys in a
+   *                      deleted range, or null to find them by reading the range from the underlying store
+   */
+  public SegmentedCachedStore(KeyValueStore<K, V> store, int cacheSize, int writeBatchSize, int numSegments,
+      CachedStoreMetrics metrics, Function<K, byte[]> keySerializer) {
+    Preconditions.checkArgument(numSegments > 0, "Number of segments must be positive.");
+    this.store = store;
+    this.metrics = metrics;
+    this.keySerializer = keySerializer;
+    int segmentCacheSize = Math.max(cacheSize / numSegments, 1);
+    int segmentWriteBatchSize = Math.max(writeBatchSize / numSegments, 1);
+    this.segments = new ArrayList<>(numSegments);
+    for (int i = 0; i < numSegments; i++) {
+      segments.add(new Segment(segmentCacheSize, segmentWriteBatchSize));
+    }
+
+    metrics.setDirtyCount(this::getDirtyCount);
+    metrics.setCacheSize(this::getCacheCount);
+  }
+
+  @Override
+  public V get(K key) {
+    Segment segment = segmentFor(key);
+    lock(segment.lock);
+    try {
+      metrics.gets().inc();
+      CacheEntry<V> entry = segment.cache.get(key);
+      if (entry != null) {
+        metrics.cacheHits().inc();
+        return entry.value;
+      }
+      V value;
+      lock(storeLock);
+      try {
+        value = store.get(key);
+      } finally {
+        storeLock.unlock();
+      }
+      segment.cache.put(key, new CacheEntry<>(value));
+      segment.cacheCount = segment.cache.size();
+      return value;
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<K, V> getAll(List<K> keys) {
+    // group the keys by segment, ordered by segment index so the segment locks are acquired in order
+    TreeMap<Integer, List<K>> keysBySegment = new TreeMap<>();
+    for (K key : keys) {
+      keysBySegment.computeIfAbsent(segmentIndexFor(key), k -> new ArrayList<>()).add(key);
+    }
+
+    List<Segment> lockedSegments = new ArrayList<>(keysBySegment.size());
+    try {
+      for (Integer index : keysBySegment.keySet()) {
+        Segment segment = segments.get(index);
+        lock(segment.lock);
+        lockedSegments.add(segment);
+      }
+      metrics.gets().inc(keys.size());
+
+      Map<K, V> returnValue = new HashMap<>(keys.size());
+      List<K> misses = new ArrayList<>();
+      int hits = 0;
+      for (Map.Entry<Integer, List<K>> segmentKeys : keysBySegment.entrySet()) {
+        Segment segment = segments.get(segmentKeys.getKey());
+        for (K key : segmentKeys.getValue()) {
+          CacheEntry<V> entry = segment.cache.get(key);
+          if (entry != null) {
+            hits++;
+            // keys cached as absent by get are not returned
+            if (entry.value != null) {
+              returnValue.put(key, entry.value);
+            }
+          } else {
+            misses.add(key);
+          }
+        }
+      }
+      metrics.cacheHits().inc(hits);
+
+      if (!misses.isEmpty()) {
+        Map<K, V> fetched;
+        lock(storeLock);
+        try {
+          fetched = store.getAll(misses);
+        } finally {
+          storeLock.unlock();
+        }
+        for (Map.Entry<K, V> entry : fetched.entrySet()) {
+          Segment segment = segmentFor(entry.getKey());
+          if (entry.getValue() != null) {
+            returnValue.put(entry.getKey(), entry.getValue());
+          }
+          segment.cache.put(entry.getKey(), new CacheEntry<>(entry.getValue()));
+          segment.cacheCount = segment.cache.size();
+        }
+      }
+      return returnValue;
+    } finally {
+      for (Segment segment : lockedSegments) {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public void put(K key, V value) {
+    checkKeyIsArray(key);
+    Segment segment = segmentFor(key);
+    lock(segment.lock);
+    try {
+      metrics.puts().inc();
+      segment.put(key, value);
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  @Override
+  public void putAll(List<Entry<K, V>> entries) {
+    for (Entry<K, V> entry : entries) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Override
+  public void delete(K key) {
+    metrics.deletes().inc();
+    put(key, null);
+  }
+
+  /**
+   * Drops the cached entries in the range and deletes the range from the underlying store. Like the
+   * {@link CachedStore}, with a key serializer the cached keys in the range are found by comparing their serialized
+   * form with the range, and the dirty entries in it are dropped without being written out. Otherwise, the dirty
+   * entries are written out and the cached keys in the range are found by reading the range from the underlying store.
+   */
+  @Override
+  public void deleteRange(K from, K to) {
+    metrics.deleteRanges().inc();
+    if (keySerializer == null) {
+      withAllSegmentsFlushed(() -> {
+        if (getCacheCount() > 0) {
+          KeyValueIterator<K, V> iterator = store.range(from, to);
+          try {
+            while (iterator.hasNext()) {
+              K key = iterator.next().getKey();
+              Segment segment = segmentFor(key);
+              segment.cache.remove(key);
+              segment.cacheCount = segment.cache.size();
+            }
+          } finally {
+            iterator.close();
+          }
+        }
+        store.deleteRange(from, to);
+        return null;
+      });
+      return;
+    }
+
+    Comparator<byte[]> comparator = UnsignedBytes.lexicographicalComparator();
+    byte[] fromBytes = keySerializer.apply(from);
+    byte[] toBytes = keySerializer.apply(to);
+    withAllSegmentsLocked(() -> {
+      for (Segment segment : segments) {
+        Iterator<K> keys = segment.cache.keySet().iterator();
+        while (keys.hasNext()) {
+          K key = keys.next();
+          byte[] keyBytes = keySerializer.apply(key);
+          if (comparator.compare(keyBytes, fromBytes) >= 0 && comparator.compare(keyBytes, toBytes) < 0) {
+            keys.remove();
+            segment.dirty.remove(key);
+          }
+        }
+        segment.cacheCount = segment.cache.size();
+      }
+      store.deleteRange(from, to);
+      return null;
+    });
+  }
+
+  @Override
+  public KeyValueIterator<K, V> range(K from, K to) {
+    metrics.ranges().inc();
+    return new SegmentedCachedStoreIterator<>(withAllSegmentsFlushed(() -> store.range(from, to)));
+  }
+
+  @Override
+  public KeyValueIterator<K, V> prefixScan(K prefix) {
+    metrics.prefixScans().inc();
+    return new SegmentedCachedStoreIterator<>(withAllSegmentsFlushed(() -> store.prefixScan(prefix)));
+  }
+
+  @Override
+  public KeyValueIterator<K, V> all() {
+    metrics.alls().inc();
+    return new SegmentedCachedStoreIterator<>(withAllSegmentsFlushed(store::all));
+  }
+
+  @Override
+  public void flush() {
+    LOG.trace("Purging dirty entries from SegmentedCachedStore.");
+    metrics.flushes().inc();
+    withAllSegmentsFlushed(() -> {
+      store.flush();
+      return null;
+    });
+    LOG.trace("Flushed store.");
+  }
+
+  @Override
+  public void close() {
+    LOG.trace("Closing.");
+    flush();
+    lock(storeLock);
+    try {
+      store.close();
+    } finally {
+      storeLock.unlock();
+    }
+  }
+
+  @Override
+  public KeyValueSnapshot<K, V> snapshot(K from, K to) {
+    return store.snapshot(from, to);
+  }
+
+  @Override
+  public Optional<Path> checkpoint(CheckpointId id) {
+    return store.checkpoint(id);
+  }
+
+  public boolean hasArrayKeys() {
+    return containsArrayKeys;
+  }
+
+  @VisibleForTesting
+  KeyValueStore<K, V> getStore() {
+    return store;
+  }
+
+  /**
+   * Locks all the segments in order, writes out their dirty entries, then runs the operation on the underlying store
+   * while still holding the store lock.
+   */
+  private <T> T withAllSegmentsFlushed(Supplier<T> storeOperation) {
+    return withAllSegmentsLocked(() -> {
+      for (Segment segment : segments) {
+        segment.putAllDirtyEntries();
+      }
+      return storeOperation.get();
+    });
+  }
+
+  /**
+   * Locks all the segments in order, then the store lock, and runs the operation while holding all of them.
+   */
+  private <T> T withAllSegmentsLocked(Supplier<T> operation) {
+    int locked = 0;
+    try {
+      for (Segment segment : segments) {
+        lock(segment.lock);
+        locked++;
+      }
+      lock(storeLock);
+      try {
+        return operation.get();
+      } finally {
+        storeLock.unlock();
+      }
+    } finally {
+      for (int i = 0; i < locked; i++) {
+        segments.get(i).lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Acquires the lock, and records the time spent waiting for it if it is held by another thread.
+   */
+  private void lock(ReentrantLock lock) {
+    if (!lock.tryLock()) {
+      long startNs = System.nanoTime();
+      lock.lock();
+      metrics.lockContentions().inc();
+      metrics.lockWaitNs().update(System.nanoTime() - startNs);
+    }
+  }
+
+  private int segmentIndexFor(K key) {
+    if (segments.size() == 1 || key == null) {
+      return 0;
+    }
+    int hash = key.hashCode();
+    // spread the higher bits, since the hash codes of the keys are not always well distributed in the lower bits
+    return Math.floorMod(hash ^ (hash >>> 16), segments.size());
+  }
+
+  private Segment segmentFor(K key) {
+    return segments.get(segmentIndexFor(key));
+  }
+
+  private void checkKeyIsArray(K key) {
+    if (!containsArrayKeys && key != null && key.getClass().isArray()) {
+      // Warn the first time that we see an array key.
+      LOG.warn("Using arrays as keys results in unpredictable behavior since cache is implemented with a map. "
+          + "Consider using ByteBuffer, or a different key type, or turn off the cache altogether.");
+      containsArrayKeys = true;
+    }
+  }
+
+  private int getDirtyCount() {
+    int dirtyCount = 0;
+    for (Segment segment : segments) {
+      dirtyCount += segment.dirty.size();
+    }
+    return dirtyCount;
+  }
+
+  private int getCacheCount() {
+    int cacheCount = 0;
+    for (Segment segment : segments) {
+      cacheCount += segment.cacheCount;
+    }
+    return cacheCount;
+  }
+
+  /**
+   * A segment of the cache. All the fields must be accessed while holding the segment lock.
+   */
+  private class Segment {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int writeBatchSize;
+    /** the keys of the entries to be written out on flush from oldest to newest */
+    private final LinkedHashSet<K> dirty = new LinkedHashSet<>();
+    /** an lru cache of values that calls putAll() on dirty entries if necessary when discarding */
+    private final LinkedHashMap<K, CacheEntry<V>> cache;
+    /** the number of items currently in the cache, read without the lock by the metrics */
+    private volatile int cacheCount = 0;
+
+    Segment(int cacheSize, int writeBatchSize) {
+      this.writeBatchSize = writeBatchSize;
+      this.cache = new LinkedHashMap<K, CacheEntry<V>>((int) (cacheSize * 1.2), 1.0f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+          boolean evict = size() > cacheSize;
+          // if this entry hasn't been written out yet, flush it and all other dirty keys of the segment
+          if (evict && eldest.getValue().dirty) {
+            LOG.debug("Found a dirty entry. Calling putAll() on all dirty entries of the segment.");
+            lock(storeLock);
+            try {
+              putAllDirtyEntries();
+            } finally {
+              storeLock.unlock();
+            }
+          }
+          return evict;
+        }
+      };
+    }
+
+    private void put(K key, V value) {
+      // Move the key to the end of the dirty list (and remove any prior occurrences to dedupe).
+      dirty.remove(key);
+      dirty.add(key);
+
+      // Add the key to the cache (but don't allocate a new cache entry if we already have one).
+      CacheEntry<V> found = cache.get(key);
+      if (found == null) {
+        CacheEntry<V> entry = new CacheEntry<>(value);
+        entry.dirty = true;
+        cache.put(key, entry);
+        cacheCount = cache.size();
+      } else {
+        found.value = value;
+        found.dirty = true;
+      }
+
+      // putAll() dirty values if the write list is full, or on every write with array keys to support the
+      // legacy behavior of falling back to the underlying store for them.
+      if (dirty.size() >= writeBatchSize || containsArrayKeys) {
+        LOG.debug("Dirty count {} >= write batch size {}. Calling putAll() on all dirty entries of the segment.",
+            dirty.size(), writeBatchSize);
+        lock(storeLock);
+        try {
+          putAllDirtyEntries();
+        } finally {
+          storeLock.unlock();
+        }
+      }
+    }
+
+    /**
+     * The segment lock and the store lock must be held before calling this method.
+     */
+    private void putAllDirtyEntries() {
+      if (dirty.isEmpty()) {
+        return;
+      }
+      LOG.trace("Calling putAll() on dirty entries.");
+      // write out the contents of the dirty list oldest first
+      List<Entry<K, V>> batch = new ArrayList<>(dirty.size());
+      Iterator<K> dirtyKeys = dirty.iterator();
+      while (dirtyKeys.hasNext()) {
+        K key = dirtyKeys.next();
+        CacheEntry<V> entry = cache.get(key);
+        entry.dirty = false;
+        batch.add(new Entry<>(key, entry.value));
+      }
+      store.putAll(batch);
+      metrics.putAllDirtyEntriesBatchSize().inc(batch.size());
+      dirty.clear();
+    }
+  }
+
+  private static class SegmentedCachedStoreIterator<K, V> implements KeyValueIterator<K, V> {
+    private final KeyValueIterator<K, V> iter;
+
+    SegmentedCachedStoreIterator(KeyValueIterator<K, V> iter) {
+      this.iter = iter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iter.hasNext();
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      return iter.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("SegmentedCachedStore iterator doesn't support remove");
+    }
+
+    @Override
+    public void close() {
+      iter.close();
+    }
+  }
+
+  private static class CacheEntry<V> {
+    private V value;
+    private boolean dirty = false;
+
+    CacheEntry(V value) {
+      this.value = value;
+    }
+  }
+}
@@ -47,6 +47,8 @@ class AccessLoggedStore[K, V](
     val DELETE = 3
     val RANGE = 4
     val SNAPSHOT = 5
+    val DELETE_RANGE = 6
+    val PREFIX_SCAN = 7
   }
 
   val streamName = storageConfig.getAccessLogStream(changelogSystemStreamPartition.getSystemStream.getStream)
@@ -86,6 +88,13 @@ class AccessLoggedStore[K, V](
     logAccess(DBOperation.DELETE, serializeKeys(keys), store.deleteAll(keys))
   }
 
+  override def deleteRange(from: K, to: K): Unit = {
+    val list : util.ArrayList[K] = new util.ArrayList[K]()
+    list.add(from)
+    list.add(to)
+    logAccess(DBOperation.DELETE_RANGE, serializeKeys(list), store.deleteRange(from, to))
+  }
+
   def range(from: K, to: K): KeyValueIterator[K, V] = {
     val list : util.ArrayList[K] = new util.ArrayList[K]()
     list.add(from)
@@ -93,6 +102,12 @@ class AccessLoggedStore[K, V](
     logAccess(DBOperation.RANGE, serializeKeys(list), store.range(from, to))
   }
 
+  override def prefixScan(prefix: K): KeyValueIterator[K, V] = {
+    val list = new util.ArrayList[Array[Byte]]
+    list.add(toBytesOrNull(prefix))
+    logAccess(DBOperation.PREFIX_SCAN, list, store.prefixScan(prefix))
+  }
+
   def all(): KeyValueIterator[K, V] = {
     store.all()
   }
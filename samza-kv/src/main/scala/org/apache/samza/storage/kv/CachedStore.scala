@@ -26,6 +26,7 @@ import java.nio.file.Path
 import java.util.{Arrays, Optional}
 
 import com.google.common.annotations.VisibleForTesting
+import com.google.common.primitives.UnsignedBytes
 import org.apache.samza.checkpoint.CheckpointId
 
 /**
@@ -49,12 +50,18 @@ import org.apache.samza.checkpoint.CheckpointId
  * @param cacheSize The number of entries to hold in the in memory-cache
  * @param writeBatchSize The number of entries to batch together before forcing a write
  * @param metrics The metrics recording object for this cached store
+ * @param keySerializer Serializes the keys as they are ordered by the underlying store, to find the cached keys in a
+ *                      deleted range, or null to find them by reading the range from the underlying store
  */
 class CachedStore[K, V](
   val store: KeyValueStore[K, V],
   val cacheSize: Int,
   val writeBatchSize: Int,
-  val metrics: CachedStoreMetrics = new CachedStoreMetrics) extends KeyValueStore[K, V] with Logging {
+  val metrics: CachedStoreMetrics = new CachedStoreMetrics,
+  val keySerializer: java.util.function.Function[K, Array[Byte]] = null) extends KeyValueStore[K, V] with Logging {
+
+  def this(store: KeyValueStore[K, V], cacheSize: Int, writeBatchSize: Int, metrics: CachedStoreMetrics) =
+    this(store, cacheSize, writeBatchSize, metrics, null)
 
   /** the number of items in the dirty list */
   @volatile private var dirtyCount = 0
@@ -133,6 +140,13 @@ class CachedStore[K, V](
     new CachedStoreIterator(store.range(from, to))
   })
 
+  override def prefixScan(prefix: K): KeyValueIterator[K, V] = lock.synchronized({
+    metrics.prefixScans.inc
+    putAllDirtyEntries()
+
+    new CachedStoreIterator(store.prefixScan(prefix))
+  })
+
   override def all(): KeyValueIterator[K, V] = lock.synchronized({
     metrics.alls.inc
     putAllDirtyEntries()
@@ -149,18 +163,10 @@ class CachedStore[K, V](
       // Add the key to the front of the dirty list (and remove any prior
       // occurrences to dedupe).
       val found = cache.get(key)
-      if (found == null || found.dirty == null) {
-        this.dirtyCount += 1
-      } else {
-        // If we are removing the head of the list, move the head to the next
-        // element. See SAMZA-45 for details.
-        if (found.dirty.prev == null) {
-          this.dirty = found.dirty.next
-          this.dirty.prev = null
-        } else {
-          found.dirty.remove()
-        }
+      if (found != null && found.dirty != null) {
+        removeFromDirtyList(found)
       }
+      this.dirtyCount += 1
       this.dirty = new mutable.DoubleLinkedList(key, this.dirty)
 
       // Add the key to the cache (but don't allocate a new cache entry if we
@@ -254,6 +260,70 @@ class CachedStore[K, V](
     })
   }
 
+  /**
+   * Drops the cached entries in the range and deletes the range from the underlying store. With a key serializer, the
+   * cached keys in the range are found by comparing their serialized form with the range, and the dirty entries in it
+   * are dropped without being written out, since they are deleted anyway. Otherwise, the dirty entries are written out
+   * and the cached keys in the range are found by reading the range from the underlying store.
+   */
+  override def deleteRange(from: K, to: K) {
+    lock.synchronized({
+      metrics.deleteRanges.inc
+      if (keySerializer != null) {
+        val comparator = UnsignedBytes.lexicographicalComparator()
+        val fromBytes = keySerializer.apply(from)
+        val toBytes = keySerializer.apply(to)
+        val keysInRange = new java.util.ArrayList[K]()
+        val keys = cache.keySet.iterator
+        while (keys.hasNext) {
+          val key = keys.next
+          val keyBytes = keySerializer.apply(key)
+          if (comparator.compare(keyBytes, fromBytes) >= 0 && comparator.compare(keyBytes, toBytes) < 0) {
+            keysInRange.add(key)
+          }
+        }
+        val iter = keysInRange.iterator
+        while (iter.hasNext) {
+          val entry = cache.remove(iter.next)
+          if (entry.dirty != null) {
+            removeFromDirtyList(entry)
+          }
+        }
+      } else {
+        putAllDirtyEntries()
+        if (cacheCount > 0) {
+          val iter = store.range(from, to)
+          try {
+            while (iter.hasNext) {
+              cache.remove(iter.next.getKey)
+            }
+          } finally {
+            iter.close()
+          }
+        }
+      }
+      cacheCount = cache.size
+      store.deleteRange(from, to)
+    })
+  }
+
+  /**
+   * Removes the entry from the dirty list, so that it is not written out.
+   * The synchronization lock must be held before calling this method.
+   */
+  private def removeFromDirtyList(entry: CacheEntry[K, V]) {
+    // If we are removing the head of the list, move the head to the next
+    // element. See SAMZA-45 for details.
+    if (entry.dirty.prev == null) {
+      this.dirty = entry.dirty.next
+      this.dirty.prev = null
+    } else {
+      entry.dirty.remove()
+    }
+    entry.dirty = null
+    this.dirtyCount -= 1
+  }
+
   private def checkKeyIsArray(key: K) {
     if (!containsArrayKeys && key.isInstanceOf[Array[_]]) {
       // Warn the first time that we see an array key.
@@ -262,27 +332,38 @@ class CachedStore[K, V](
     }
   }
 
+  /**
+    * Looks up all the keys in the cache under a single lock acquisition, and the misses with a single getAll on the
+    * underlying store. Only the keys which are found are returned; keys cached as absent, or not found in the
+    * underlying store, are left out of the result.
+    */
   override def getAll(keys: java.util.List[K]): java.util.Map[K, V] = {
     lock.synchronized({
       metrics.gets.inc(keys.size)
       val returnValue = new java.util.HashMap[K, V](keys.size)
       val misses = new java.util.ArrayList[K]
+      var hits = 0
       val keysIterator = keys.iterator
       while (keysIterator.hasNext) {
         val key = keysIterator.next
         val cached = cache.get(key)
         if (cached != null) {
-          metrics.cacheHits.inc
-          returnValue.put(key, cached.value)
+          hits += 1
+          if (cached.value != null) {
+            returnValue.put(key, cached.value)
+          }
         } else {
           misses.add(key)
         }
       }
+      metrics.cacheHits.inc(hits)
       if (!misses.isEmpty) {
         val entryIterator = store.getAll(misses).entrySet.iterator
         while (entryIterator.hasNext) {
           val entry = entryIterator.next
-          returnValue.put(entry.getKey, entry.getValue)
+          if (entry.getValue != null) {
+            returnValue.put(entry.getKey, entry.getValue)
+          }
           cache.put(entry.getKey, new CacheEntry(entry.getValue, null))
         }
         cacheCount = cache.size // update outside the loop since it's used for metrics and not for time-sensitive logic
@@ -29,12 +29,16 @@ class CachedStoreMetrics(
 
   val gets = newCounter("gets")
   val ranges = newCounter("ranges")
+  val prefixScans = newCounter("prefix-scans")
   val alls = newCounter("alls")
   val cacheHits = newCounter("cache-hits")
   val puts = newCounter("puts")
   val deletes = newCounter("deletes")
+  val deleteRanges = newCounter("delete-ranges")
   val flushes = newCounter("flushes")
   val putAllDirtyEntriesBatchSize = newCounter("put-all-dirty-entries-batch-size")
+  val lockContentions = newCounter("lock-contentions")
+  val lockWaitNs = newTimer("lock-wait-ns")
 
   def setDirtyCount(getValue: () => Int) {
     newGauge("dirty-count", getValue)
@@ -30,6 +30,7 @@ import java.nio.file.Path
 import java.util.Optional
 
 import com.google.common.annotations.VisibleForTesting
+import com.google.common.primitives.UnsignedBytes
 import org.apache.samza.checkpoint.CheckpointId
 import org.apache.samza.context.Context
 
@@ -40,6 +41,9 @@ import org.apache.samza.context.Context
  *
  * There should be no implicit assumption that wrappedStore is a logical extension or a decorated view of rawStore
  * Either can exist independently
+ *
+ * If restoreIngestRunBytes is positive and rawStore is an [[IngestibleKeyValueStore]], restored entries are buffered
+ * into sorted runs of up to that many bytes, which are ingested into rawStore instead of written to it in batches.
  */
 class KeyValueStorageEngine[K, V](
   storeName: String,
@@ -51,10 +55,15 @@ class KeyValueStorageEngine[K, V](
   changelogCollector: MessageCollector,
   metrics: KeyValueStorageEngineMetrics = new KeyValueStorageEngineMetrics,
   batchSize: Int = 500,
-  val clock: () => Long = { System.nanoTime }) extends StorageEngine with KeyValueStore[K, V] with TimerUtil with Logging {
+  val clock: () => Long = { System.nanoTime },
+  restoreIngestRunBytes: Long = 0) extends StorageEngine with KeyValueStore[K, V] with TimerUtil with Logging {
 
   override def init(context: Context): Unit = {
     info("Calling init for wrapped store: " + storeName)
+    if (restoreIngestRunBytes > 0 && !rawStore.isInstanceOf[IngestibleKeyValueStore]) {
+      warn("Restore ingestion is enabled for store: " + storeName + ", but its store of type: " +
+        rawStore.getClass.getName + " does not support ingestion. It will be restored with batched writes instead.")
+    }
     wrapperStore.init(context);
   }
 
@@ -102,6 +111,13 @@ class KeyValueStorageEngine[K, V](
     }
   }
 
+  override def deleteRange(from: K, to: K) = {
+    updateTimer(metrics.deleteRangeNs) {
+      metrics.deleteRanges.inc()
+      wrapperStore.deleteRange(from, to)
+    }
+  }
+
   def range(from: K, to: K) = {
     updateTimer(metrics.rangeNs) {
       metrics.ranges.inc
@@ -109,6 +125,13 @@ class KeyValueStorageEngine[K, V](
     }
   }
 
+  override def prefixScan(prefix: K) = {
+    updateTimer(metrics.prefixScanNs) {
+      metrics.prefixScans.inc()
+      wrapperStore.prefixScan(prefix)
+    }
+  }
+
   def all() = {
     updateTimer(metrics.allNs) {
       metrics.alls.inc
@@ -122,9 +145,18 @@ class KeyValueStorageEngine[K, V](
    *
    * With transactional state disabled, iterator mode will always be 'restore'. With transactional state enabled,
    * iterator mode may switch from 'restore' to 'trim' at some point, but will not switch back to 'restore'.
+   *
+   * With restore ingestion, the last write to a key within a run wins, and later runs take precedence over earlier
+   * ones, so the restored store is the same as with batched writes.
    */
   def restore(iterator: ChangelogSSPIterator) {
-    info("Restoring entries for store: " + storeName + " in directory: " + storeDir.toString)
+    val ingestibleStore = rawStore match {
+      case store: IngestibleKeyValueStore if restoreIngestRunBytes > 0 => store
+      case _ => null
+    }
+    info("Restoring entries for store: " + storeName + " in directory: " + storeDir.toString +
+      (if (ingestibleStore != null) " by ingesting sorted runs of up to " + restoreIngestRunBytes + " bytes." else ""))
+    val restoreStartNs = clock()
     var restoredMessages = 0
     var restoredBytes = 0
     var trimmedMessages = 0
@@ -132,8 +164,24 @@ class KeyValueStorageEngine[K, V](
     var previousMode = ChangelogSSPIterator.Mode.RESTORE
 
     val batch = new java.util.ArrayList[Entry[Array[Byte], Array[Byte]]](batchSize)
+    val run = new java.util.TreeMap[Array[Byte], Array[Byte]](UnsignedBytes.lexicographicalComparator())
+    // upper bound of the bytes in the run, since overwritten entries are not subtracted
+    var runBytes = 0L
     var lastBatchFlushed = false
 
+    def flushBatch() {
+      if (ingestibleStore != null) {
+        if (!run.isEmpty) {
+          doIngest(ingestibleStore, run)
+          run.clear()
+          runBytes = 0
+        }
+      } else if (batch.size > 0) {
+        doPutAll(rawStore, batch)
+        batch.clear()
+      }
+    }
+
     while(iterator.hasNext && !Thread.currentThread().isInterrupted) {
       val envelope = iterator.next()
       val keyBytes = envelope.getKey.asInstanceOf[Array[Byte]]
@@ -146,17 +194,24 @@ class KeyValueStorageEngine[K, V](
             String.format("Illegal ChangelogSSPIterator mode change from TRIM to RESTORE for store: %s " +
               "in dir: %s with changelog SSP: {}.", storeName, storeDir, changelogSSP))
         }
-        batch.add(new Entry(keyBytes, valBytes))
-
-        if (batch.size >= batchSize) {
-          doPutAll(rawStore, batch)
-          batch.clear()
+        if (ingestibleStore != null) {
+          run.put(keyBytes, valBytes)
+          runBytes += keyBytes.length + (if (valBytes != null) valBytes.length else 0)
+          if (runBytes >= restoreIngestRunBytes) {
+            flushBatch()
+          }
+        } else {
+          batch.add(new Entry(keyBytes, valBytes))
+          if (batch.size >= batchSize) {
+            flushBatch()
+          }
         }
 
         // update metrics
         restoredMessages += 1
-        restoredBytes += keyBytes.length
-        if (valBytes != null) restoredBytes += valBytes.length
+        val messageBytes = keyBytes.length + (if (valBytes != null) valBytes.length else 0)
+        restoredBytes += messageBytes
+        metrics.restoreRate.inc(messageBytes)
         metrics.restoredMessagesGauge.set(restoredMessages)
         metrics.restoredBytesGauge.set(restoredBytes)
 
@@ -168,10 +223,7 @@ class KeyValueStorageEngine[K, V](
         // first write any open restore batches to store
         if (!lastBatchFlushed) {
           info(restoredMessages + " total entries restored for store: " + storeName + " in directory: " + storeDir.toString + ".")
-          if (batch.size > 0) {
-            doPutAll(rawStore, batch)
-            batch.clear()
-          }
+          flushBatch()
           lastBatchFlushed = true
         }
 
@@ -200,16 +252,14 @@ class KeyValueStorageEngine[K, V](
     // if the last batch isn't flushed yet (e.g., for non transactional state or no messages to trim), flush it now
     if (!lastBatchFlushed) {
       info(restoredMessages + " total entries restored for store: " + storeName + " in directory: " + storeDir.toString + ".")
-      if (batch.size > 0) {
-        doPutAll(rawStore, batch)
-        batch.clear()
-      }
+      flushBatch()
       lastBatchFlushed = true
     }
     info(trimmedMessages + " entries trimmed for store: " + storeName + " in directory: " + storeDir.toString + ".")
 
     // flush the store and the changelog producer
     flush() // TODO HIGH pmaheshw SAMZA-2338: Need a way to flush changelog producers. This only flushes the stores.
+    metrics.restoreNs.set(clock() - restoreStartNs)
 
     if (Thread.currentThread().isInterrupted) {
       warn("Received an interrupt during store restoration. Exiting without restoring the full state.")
@@ -254,6 +304,14 @@ class KeyValueStorageEngine[K, V](
     }
   }
 
+  private def doIngest(store: IngestibleKeyValueStore, run: java.util.SortedMap[Array[Byte], Array[Byte]]) = {
+    updateTimer(metrics.restoreIngestNs) {
+      metrics.restoreIngestedRuns.inc()
+      metrics.restoreIngestedEntries.inc(run.size)
+      store.ingest(run)
+    }
+  }
+
   override def getStoreProperties: StoreProperties = storeProperties
 
   override def snapshot(from: K, to: K): KeyValueSnapshot[K, V] = {
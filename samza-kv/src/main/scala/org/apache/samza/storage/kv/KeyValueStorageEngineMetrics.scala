@@ -33,10 +33,12 @@ class KeyValueStorageEngineMetrics(
   val putAlls = newCounter("put-alls")
   val deletes = newCounter("deletes")
   val deleteAlls = newCounter("delete-alls")
+  val deleteRanges = newCounter("delete-ranges")
   val flushes = newCounter("flushes")
   val checkpoints = newCounter("checkpoints")
   val alls = newCounter("alls")
   val ranges = newCounter("ranges")
+  val prefixScans = newCounter("prefix-scans")
   val snapshots = newCounter("snapshots")
 
   val getNs = newTimer("get-ns")
@@ -45,10 +47,12 @@ class KeyValueStorageEngineMetrics(
   val putAllNs = newTimer("put-all-ns")
   val deleteNs = newTimer("delete-ns")
   val deleteAllNs = newTimer("delete-all-ns")
+  val deleteRangeNs = newTimer("delete-range-ns")
   val flushNs = newTimer("flush-ns")
   val checkpointNs = newTimer("checkpoint-ns")
   val allNs = newTimer("all-ns")
   val rangeNs = newTimer("range-ns")
+  val prefixScanNs = newTimer("prefix-scan-ns")
   val snapshotNs = newTimer("snapshot-ns")
 
   val restoredMessagesGauge = newGauge("restored-messages", 0)
@@ -57,5 +61,14 @@ class KeyValueStorageEngineMetrics(
   val restoredBytesGauge = newGauge("restored-bytes", 0)
   val trimmedBytesGauge = newGauge("trimmed-bytes", 0)
 
+  // bytes restored from the changelog, and the time taken to restore the store
+  val restoreRate = newCounter("restore-rate")
+  val restoreNs = newGauge("restore-ns", 0L)
+
+  // sorted runs ingested into the store during restore, if restore ingestion is enabled
+  val restoreIngestedRuns = newCounter("restore-ingested-runs")
+  val restoreIngestedEntries = newCounter("restore-ingested-entries")
+  val restoreIngestNs = newTimer("restore-ingest-ns")
+
   override def getPrefix = storeName + "-"
 }
\ No newline at end of file
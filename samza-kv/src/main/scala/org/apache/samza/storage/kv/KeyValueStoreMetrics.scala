@@ -31,8 +31,10 @@ class KeyValueStoreMetrics(
   val putAlls = newCounter("putAlls")
   val deletes = newCounter("deletes")
   val deleteAlls = newCounter("deleteAlls")
+  val deleteRanges = newCounter("deleteRanges")
   val alls = newCounter("alls")
   val ranges = newCounter("ranges")
+  val prefixScans = newCounter("prefixScans")
   val flushes = newCounter("flushes")
   val bytesWritten = newCounter("bytes-written")
   val bytesRead = newCounter("bytes-read")
@@ -56,6 +56,11 @@ class LoggedStore[K, V](
     store.range(from, to)
   }
 
+  override def prefixScan(prefix: K) = {
+    metrics.prefixScans.inc
+    store.prefixScan(prefix)
+  }
+
   def all() = {
     metrics.alls.inc
     store.all()
@@ -104,6 +109,24 @@ class LoggedStore[K, V](
     store.deleteAll(keys)
   }
 
+  /**
+    * Perform the local range delete and log a delete for each key in the range out to the changelog, since the
+    * changelog does not support range deletes
+    */
+  override def deleteRange(from: K, to: K) = {
+    metrics.deleteRanges.inc
+    val iter = store.range(from, to)
+    try {
+      while (iter.hasNext) {
+        metrics.deletes.inc
+        collector.send(new OutgoingMessageEnvelope(systemStream, partitionId, iter.next.getKey, null))
+      }
+    } finally {
+      iter.close
+    }
+    store.deleteRange(from, to)
+  }
+
   def flush {
     trace("Flushing store.")
 
@@ -29,9 +29,11 @@ class LoggedStoreMetrics(
 
   val gets = newCounter("gets")
   val ranges = newCounter("ranges")
+  val prefixScans = newCounter("prefix-scans")
   val alls = newCounter("alls")
   val puts = newCounter("puts")
   val deletes = newCounter("deletes")
+  val deleteRanges = newCounter("delete-ranges")
   val flushes = newCounter("flushes")
 
   override def getPrefix = storeName + "-"
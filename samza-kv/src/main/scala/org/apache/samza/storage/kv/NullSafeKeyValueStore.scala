@@ -72,12 +72,23 @@ class NullSafeKeyValueStore[K, V](store: KeyValueStore[K, V]) extends KeyValueSt
     store.deleteAll(keys)
   }
 
+  override def deleteRange(from: K, to: K) = {
+    notNull(from, NullKeyErrorMessage)
+    notNull(to, NullKeyErrorMessage)
+    store.deleteRange(from, to)
+  }
+
   def range(from: K, to: K): KeyValueIterator[K, V] = {
     notNull(from, NullKeyErrorMessage)
     notNull(to, NullKeyErrorMessage)
     store.range(from, to)
   }
 
+  override def prefixScan(prefix: K): KeyValueIterator[K, V] = {
+    notNull(prefix, NullKeyErrorMessage)
+    store.prefixScan(prefix)
+  }
+
   def all(): KeyValueIterator[K, V] = {
     store.all
   }
@@ -45,13 +45,28 @@ class SerializedKeyValueStore[K, V](
 
   override def getAll(keys: java.util.List[K]): java.util.Map[K, V] = {
     metrics.gets.inc(keys.size)
-    val mapBytes = store.getAll(serializeKeys(keys))
+    // the stores return the serialized keys they were given, so the keys are mapped back to the requested keys by
+    // identity instead of being deserialized
+    val requestedKeys = new java.util.IdentityHashMap[Array[Byte], K](keys.size)
+    val keyBytes = new java.util.ArrayList[Array[Byte]](keys.size)
+    val keysIterator = keys.iterator
+    while (keysIterator.hasNext) {
+      val key = keysIterator.next
+      val bytes = toBytesOrNull(key, keySerde)
+      requestedKeys.put(bytes, key)
+      keyBytes.add(bytes)
+    }
+    val mapBytes = store.getAll(keyBytes)
     if (mapBytes != null) {
       val map = new java.util.HashMap[K, V](mapBytes.size)
       val entryIterator = mapBytes.entrySet.iterator
       while (entryIterator.hasNext) {
         val entry = entryIterator.next
-        map.put(fromBytesOrNull(entry.getKey, keySerde), fromBytesOrNull(entry.getValue, msgSerde))
+        if (entry.getValue != null) {
+          val requestedKey = requestedKeys.get(entry.getKey)
+          val key = if (requestedKey != null) requestedKey else fromBytesOrNull(entry.getKey, keySerde)
+          map.put(key, fromBytesOrNull(entry.getValue, msgSerde))
+        }
       }
       map
     } else {
@@ -102,6 +117,13 @@ class SerializedKeyValueStore[K, V](
     store.deleteAll(serializeKeys(keys))
   }
 
+  override def deleteRange(from: K, to: K) = {
+    metrics.deleteRanges.inc
+    val fromBytes = toBytesOrNull(from, keySerde)
+    val toBytes = toBytesOrNull(to, keySerde)
+    store.deleteRange(fromBytes, toBytes)
+  }
+
   def range(from: K, to: K): KeyValueIterator[K, V] = {
     metrics.ranges.inc
     val fromBytes = toBytesOrNull(from, keySerde)
@@ -109,6 +131,12 @@ class SerializedKeyValueStore[K, V](
     new DeserializingIterator(store.range(fromBytes, toBytes))
   }
 
+  override def prefixScan(prefix: K): KeyValueIterator[K, V] = {
+    metrics.prefixScans.inc
+    val prefixBytes = toBytesOrNull(prefix, keySerde)
+    new DeserializingIterator(store.prefixScan(prefixBytes))
+  }
+
   def all(): KeyValueIterator[K, V] = {
     metrics.alls.inc
     new DeserializingIterator(store.all)
@@ -28,9 +28,11 @@ class SerializedKeyValueStoreMetrics(
 
   val gets = newCounter("gets")
   val ranges = newCounter("ranges")
+  val prefixScans = newCounter("prefix-scans")
   val alls = newCounter("alls")
   val puts = newCounter("puts")
   val deletes = newCounter("deletes")
+  val deleteRanges = newCounter("delete-ranges")
   val flushes = newCounter("flushes")
   val bytesSerialized = newCounter("bytes-serialized")
   val bytesDeserialized = newCounter("bytes-deserialized")
@@ -28,6 +28,7 @@ import org.apache.samza.config.MapConfig;
 import org.apache.samza.config.StorageConfig;
 import org.apache.samza.context.ContainerContext;
 import org.apache.samza.context.JobContext;
+import org.apache.samza.job.model.ContainerModel;
 import org.apache.samza.metrics.Gauge;
 import org.apache.samza.metrics.MetricsRegistry;
 import org.apache.samza.serializers.Serde;
@@ -198,6 +199,53 @@ public class TestBaseKeyValueStorageEngineFactory {
     assertEquals(this.rawKeyValueStore, loggedStore.getStore());
   }
 
+  @Test
+  public void testWithLoggedStoreAndSegmentedCachedStore() {
+    Config config = new MapConfig(BASE_CONFIG,
+        ImmutableMap.of(String.format("stores.%s.object.cache.segments", STORE_NAME), "4"));
+    StorageEngine storageEngine = callGetStorageEngine(config, CHANGELOG_SSP);
+    KeyValueStorageEngine<?, ?> keyValueStorageEngine = baseStorageEngineValidation(storageEngine);
+    assertStoreProperties(keyValueStorageEngine.getStoreProperties(), true, true, false);
+    NullSafeKeyValueStore<?, ?> nullSafeKeyValueStore =
+        assertAndCast(keyValueStorageEngine.getWrapperStore(), NullSafeKeyValueStore.class);
+    SegmentedCachedStore<?, ?> cachedStore =
+        assertAndCast(nullSafeKeyValueStore.getStore(), SegmentedCachedStore.class);
+    SerializedKeyValueStore<?, ?> serializedKeyValueStore =
+        assertAndCast(cachedStore.getStore(), SerializedKeyValueStore.class);
+    LoggedStore<?, ?> loggedStore = assertAndCast(serializedKeyValueStore.getStore(), LoggedStore.class);
+    // type generics don't match due to wildcard type, but checking reference equality, so type generics don't matter
+    // noinspection AssertEqualsBetweenInconvertibleTypes
+    assertEquals(this.rawKeyValueStore, loggedStore.getStore());
+  }
+
+  @Test
+  public void testWithLoggedStoreAndOffHeapCachedStore() {
+    Config config = new MapConfig(BASE_CONFIG,
+        ImmutableMap.of(String.format("stores.%s.off.heap.cache.enabled", STORE_NAME), "true"));
+    when(this.containerContext.getContainerModel()).thenReturn(new ContainerModel("0", ImmutableMap.of()));
+    StorageEngine storageEngine = callGetStorageEngine(config, CHANGELOG_SSP);
+    KeyValueStorageEngine<?, ?> keyValueStorageEngine = baseStorageEngineValidation(storageEngine);
+    assertStoreProperties(keyValueStorageEngine.getStoreProperties(), true, true, false);
+    NullSafeKeyValueStore<?, ?> nullSafeKeyValueStore =
+        assertAndCast(keyValueStorageEngine.getWrapperStore(), NullSafeKeyValueStore.class);
+    CachedStore<?, ?> cachedStore = assertAndCast(nullSafeKeyValueStore.getStore(), CachedStore.class);
+    SerializedKeyValueStore<?, ?> serializedKeyValueStore =
+        assertAndCast(cachedStore.getStore(), SerializedKeyValueStore.class);
+    OffHeapCachedStore offHeapCachedStore =
+        assertAndCast(serializedKeyValueStore.getStore(), OffHeapCachedStore.class);
+    LoggedStore<?, ?> loggedStore = assertAndCast(offHeapCachedStore.getStore(), LoggedStore.class);
+    // type generics don't match due to wildcard type, but checking reference equality, so type generics don't matter
+    // noinspection AssertEqualsBetweenInconvertibleTypes
+    assertEquals(this.rawKeyValueStore, loggedStore.getStore());
+  }
+
+  @Test(expected = SamzaException.class)
+  public void testInvalidCacheSegments() {
+    Config config = new MapConfig(BASE_CONFIG,
+        ImmutableMap.of(String.format("stores.%s.object.cache.segments", STORE_NAME), "0"));
+    callGetStorageEngine(config, null);
+  }
+
   @Test
   public void testDisallowLargeMessages() {
     Config config = new MapConfig(BASE_CONFIG, DISABLE_CACHE, DISALLOW_LARGE_MESSAGES);
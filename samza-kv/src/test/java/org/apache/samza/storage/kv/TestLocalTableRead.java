@@ -119,6 +119,18 @@ public class TestLocalTableRead {
     Assert.assertEquals(0, getCallbackNs.getSnapshot().getAverage(), 0.001);
   }
 
+  @Test
+  public void testGetAllCountsKeysLeftOutOfResultAsMissed() throws Exception {
+    List<String> lookupKeys = Arrays.asList("k1", "k4", "k5");
+    when(kvStore.getAll(lookupKeys)).thenReturn(Collections.singletonMap("k1", "v1"));
+    ReadWriteUpdateTable table = createTable(false);
+    Assert.assertEquals(Collections.singletonMap("k1", "v1"), table.getAll(lookupKeys));
+    Assert.assertEquals(2, numMissedLookups.getCount());
+    Assert.assertEquals(Collections.singletonMap("k1", "v1"), table.getAllAsync(lookupKeys).get());
+    Assert.assertEquals(4, numMissedLookups.getCount());
+    Assert.assertEquals(2, numGetAlls.getCount());
+  }
+
   @Test
   public void testTimerDisabled() throws Exception {
     ReadWriteUpdateTable table = createTable(true);
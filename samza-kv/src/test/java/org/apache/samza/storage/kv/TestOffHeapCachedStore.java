@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.kv;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.UnsignedBytes;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.samza.checkpoint.CheckpointId;
+import org.apache.samza.metrics.MetricsRegistryMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+public class TestOffHeapCachedStore {
+  private static final int SLAB_SIZE = 1024;
+
+  @Test
+  public void testReadThrough() {
+    KeyValueStore<byte[], byte[]> store = spy(new InMemoryStore());
+    store.put(bytes("key"), bytes("value"));
+    OffHeapCachedStore cachedStore = newCachedStore(store, newAllocator(4));
+
+    assertArrayEquals(bytes("value"), cachedStore.get(bytes("key")));
+    assertArrayEquals(bytes("value"), cachedStore.get(bytes("key")));
+    verify(store, times(1)).get(any());
+    assertNull(cachedStore.get(bytes("missing")));
+  }
+
+  @Test
+  public void testWriteThrough() {
+    KeyValueStore<byte[], byte[]> store = spy(new InMemoryStore());
+    OffHeapCachedStore cachedStore = newCachedStore(store, newAllocator(4));
+
+    cachedStore.put(bytes("key"), bytes("value"));
+    assertArrayEquals(bytes("value"), store.get(bytes("key")));
+    assertArrayEquals(bytes("value"), cachedStore.get(bytes("key")));
+
+    // a larger value moves the entry to another size class
+    byte[] largeValue = new byte[300];
+    cachedStore.putAll(ImmutableList.of(new Entry<>(bytes("key"), largeValue)));
+    assertArrayEquals(largeValue, cachedStore.get(bytes("key")));
+
+    cachedStore.delete(bytes("key"));
+    assertNull(store.get(bytes("key")));
+    assertNull(cachedStore.get(bytes("key")));
+
+    // only the store reads above and the read after the delete went to the underlying store
+    verify(store, times(3)).get(any());
+  }
+
+  @Test
+  public void testDeleteRange() {
+    KeyValueStore<byte[], byte[]> store = spy(new InMemoryStore());
+    OffHeapCachedStore cachedStore = newCachedStore(store, newAllocator(4));
+    cachedStore.put(bytes("key1"), bytes("value1"));
+    cachedStore.put(bytes("key2"), bytes("value2"));
+    cachedStore.put(bytes("key3"), bytes("value3"));
+
+    cachedStore.deleteRange(bytes("key2"), bytes("key3"));
+    assertArrayEquals(bytes("value1"), cachedStore.get(bytes("key1")));
+    assertNull(cachedStore.get(bytes("key2")));
+    assertArrayEquals(bytes("value3"), cachedStore.get(bytes("key3")));
+    // the cached entries in the range are found from the index, so the range is only read by the default deleteRange
+    // of the underlying store, and only the deleted key is read again
+    verify(store, times(1)).range(any(), any());
+    verify(store, times(1)).get(any());
+    assertNull(store.get(bytes("key2")));
+  }
+
+  @Test
+  public void testGetAll() {
+    KeyValueStore<byte[], byte[]> store = spy(new InMemoryStore());
+    store.put(bytes("key1"), bytes("value1"));
+    store.put(bytes("key2"), bytes("value2"));
+    OffHeapCachedStore cachedStore = newCachedStore(store, newAllocator(4));
+    cachedStore.get(bytes("key1"));
+
+    Map<byte[], byte[]> result = cachedStore.getAll(Arrays.asList(bytes("key1"), bytes("key2"), bytes("key3")));
+    assertEquals(2, result.size());
+    verify(store, times(1)).getAll(any());
+
+    cachedStore.getAll(Arrays.asList(bytes("key1"), bytes("key2")));
+    verify(store, times(1)).getAll(any());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedEntryWhenBudgetIsUsedUp() {
+    OffHeapCachedStoreMetrics metrics = new OffHeapCachedStoreMetrics("store", new MetricsRegistryMap());
+    KeyValueStore<byte[], byte[]> store = spy(new InMemoryStore());
+    // a single slab holds two 512 byte chunks
+    OffHeapCachedStore cachedStore = new OffHeapCachedStore(store, newAllocator(1), metrics);
+
+    cachedStore.put(bytes("key1"), new byte[300]);
+    cachedStore.put(bytes("key2"), new byte[300]);
+    cachedStore.get(bytes("key1"));
+    cachedStore.put(bytes("key3"), new byte[300]);
+    assertEquals(1, metrics.evictions().getCount());
+
+    cachedStore.get(bytes("key1"));
+    cachedStore.get(bytes("key3"));
+    verify(store, never()).get(any());
+    cachedStore.get(bytes("key2"));
+    verify(store, times(1)).get(any());
+
+    // the small size class has nothing to evict, so it takes the slab of the other size class
+    cachedStore.put(bytes("key4"), bytes("value4"));
+    assertEquals(0, metrics.rejections().getCount());
+    assertEquals(1, metrics.slabReassignments().getCount());
+    // key1 was evicted to cache key2 again, and key2 and key3 went with the slab
+    assertEquals(4, metrics.evictions().getCount());
+    // values larger than a slab are never cached
+    cachedStore.put(bytes("key5"), new byte[SLAB_SIZE + 1]);
+    assertEquals(1, metrics.rejections().getCount());
+  }
+
+  @Test
+  public void testBudgetIsSharedAcrossStores() {
+    OffHeapSlabAllocator allocator = newAllocator(1);
+    OffHeapCachedStoreMetrics metrics = new OffHeapCachedStoreMetrics("store2", new MetricsRegistryMap());
+    OffHeapCachedStore cachedStore1 = newCachedStore(new InMemoryStore(), allocator);
+    OffHeapCachedStore cachedStore2 = new OffHeapCachedStore(new InMemoryStore(), allocator, metrics);
+
+    cachedStore1.put(bytes("key"), bytes("value"));
+    assertEquals(SLAB_SIZE, allocator.getUsedBytes());
+    // the second store has nothing to evict, so it takes the slab of the first one
+    cachedStore2.put(bytes("key"), bytes("value"));
+    assertEquals(0, metrics.rejections().getCount());
+    assertEquals(1, metrics.slabReassignments().getCount());
+    assertEquals(SLAB_SIZE, allocator.getUsedBytes());
+
+    // the slab is returned to the allocator once the store holding it is closed
+    cachedStore1.close();
+    assertEquals(SLAB_SIZE, allocator.getUsedBytes());
+    cachedStore2.close();
+    assertEquals(0, allocator.getUsedBytes());
+  }
+
+  @Test
+  public void testSlabsAreReassignedAcrossSizeClassesAndStores() {
+    OffHeapSlabAllocator allocator = newAllocator(4);
+    OffHeapCachedStoreMetrics metrics1 = new OffHeapCachedStoreMetrics("store1", new MetricsRegistryMap());
+    OffHeapCachedStoreMetrics metrics2 = new OffHeapCachedStoreMetrics("store2", new MetricsRegistryMap());
+    KeyValueStore<byte[], byte[]> store1 = spy(new InMemoryStore());
+    KeyValueStore<byte[], byte[]> store2 = spy(new InMemoryStore());
+    OffHeapCachedStore cachedStore1 = new OffHeapCachedStore(store1, allocator, metrics1);
+    OffHeapCachedStore cachedStore2 = new OffHeapCachedStore(store2, allocator, metrics2);
+
+    // the first store fills the budget with 512 byte chunks, two per slab
+    for (int i = 1; i <= 8; i++) {
+      cachedStore1.put(bytes("key" + i), new byte[300]);
+    }
+    assertEquals(4 * SLAB_SIZE, allocator.getUsedBytes());
+
+    // both size classes of the second store take a slab from the first store, evicting its least recently used entries
+    cachedStore2.put(bytes("small"), bytes("value"));
+    cachedStore2.put(bytes("large1"), new byte[300]);
+    assertEquals(2, metrics2.slabReassignments().getCount());
+    assertEquals(4, metrics1.evictions().getCount());
+    cachedStore2.put(bytes("large2"), new byte[300]);
+
+    // once the stores hold as many slabs as each other, they evict their own least recently used entries instead
+    cachedStore2.put(bytes("large3"), new byte[300]);
+    cachedStore1.put(bytes("key9"), new byte[300]);
+    assertEquals(2, metrics2.slabReassignments().getCount());
+    assertEquals(0, metrics1.slabReassignments().getCount());
+    assertEquals(1, metrics2.evictions().getCount());
+    assertEquals(5, metrics1.evictions().getCount());
+    assertEquals(0, metrics1.rejections().getCount());
+    assertEquals(0, metrics2.rejections().getCount());
+    assertEquals(4 * SLAB_SIZE, allocator.getUsedBytes());
+
+    for (String key : Arrays.asList("small", "large2", "large3")) {
+      cachedStore2.get(bytes(key));
+    }
+    verify(store2, never()).get(any());
+    for (int i = 6; i <= 9; i++) {
+      cachedStore1.get(bytes("key" + i));
+    }
+    verify(store1, never()).get(any());
+    cachedStore1.get(bytes("key5"));
+    verify(store1, times(1)).get(any());
+  }
+
+  @Test
+  public void testSlabIsReturnedOnceItsEntriesAreDeleted() {
+    OffHeapSlabAllocator allocator = newAllocator(1);
+    OffHeapCachedStoreMetrics metrics = new OffHeapCachedStoreMetrics("store", new MetricsRegistryMap());
+    OffHeapCachedStore cachedStore = new OffHeapCachedStore(new InMemoryStore(), allocator, metrics);
+
+    cachedStore.put(bytes("key1"), bytes("value1"));
+    cachedStore.put(bytes("key2"), bytes("value2"));
+    cachedStore.delete(bytes("key1"));
+    assertEquals(SLAB_SIZE, allocator.getUsedBytes());
+    cachedStore.put(bytes("key2"), null);
+    assertEquals(0, allocator.getUsedBytes());
+
+    // so that another size class can use it
+    cachedStore.put(bytes("key3"), new byte[300]);
+    assertEquals(0, metrics.rejections().getCount());
+    assertEquals(SLAB_SIZE, allocator.getUsedBytes());
+  }
+
+  @Test
+  public void testKeyIsCopied() {
+    KeyValueStore<byte[], byte[]> store = spy(new InMemoryStore());
+    OffHeapCachedStore cachedStore = newCachedStore(store, newAllocator(4));
+    byte[] key = bytes("key");
+    cachedStore.put(key, bytes("value"));
+    // the caller reuses its key array
+    key[0] = 'x';
+
+    assertArrayEquals(bytes("value"), cachedStore.get(bytes("key")));
+    verify(store, never()).get(any());
+    assertNull(cachedStore.get(bytes("xey")));
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    // a budget smaller than the entries, so that the threads also evict each other's entries
+    OffHeapCachedStore cachedStore = newCachedStore(new InMemoryStore(), newAllocator(2));
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String prefix = "thread" + t + "-";
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 10000; i++) {
+          byte[] key = bytes(prefix + (i % 50));
+          byte[] value = bytes(prefix + i);
+          cachedStore.put(key, value);
+          assertArrayEquals(value, cachedStore.get(key));
+          if (i % 7 == 0) {
+            cachedStore.delete(key);
+            assertNull(cachedStore.get(key));
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+  }
+
+  @Test
+  public void testAllocatorIsSharedWithinContainer() {
+    OffHeapSlabAllocator allocator1 = OffHeapSlabAllocator.acquire("testAllocatorIsSharedWithinContainer", SLAB_SIZE);
+    OffHeapSlabAllocator allocator2 = OffHeapSlabAllocator.acquire("testAllocatorIsSharedWithinContainer", SLAB_SIZE);
+    assertSame(allocator1, allocator2);
+    allocator1.release();
+    assertSame(allocator1, OffHeapSlabAllocator.acquire("testAllocatorIsSharedWithinContainer", SLAB_SIZE));
+    allocator1.release();
+    allocator2.release();
+    // the allocator is recreated once all of its stores have released it
+    OffHeapSlabAllocator allocator3 = OffHeapSlabAllocator.acquire("testAllocatorIsSharedWithinContainer", SLAB_SIZE);
+    assertNotSame(allocator1, allocator3);
+    allocator3.release();
+  }
+
+  private static OffHeapSlabAllocator newAllocator(int numSlabs) {
+    return new OffHeapSlabAllocator("container", (long) numSlabs * SLAB_SIZE, SLAB_SIZE);
+  }
+
+  private static OffHeapCachedStore newCachedStore(KeyValueStore<byte[], byte[]> store,
+      OffHeapSlabAllocator allocator) {
+    return new OffHeapCachedStore(store, allocator, new OffHeapCachedStoreMetrics("store", new MetricsRegistryMap()));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes();
+  }
+
+  /**
+   * A minimal byte array store backed by a sorted map.
+   */
+  private static class InMemoryStore implements KeyValueStore<byte[], byte[]> {
+    private final TreeMap<byte[], byte[]> map = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+
+    @Override
+    public byte[] get(byte[] key) {
+      return map.get(key);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+      if (value == null) {
+        map.remove(key);
+      } else {
+        map.put(key, value);
+      }
+    }
+
+    @Override
+    public void putAll(List<Entry<byte[], byte[]>> entries) {
+      entries.forEach(entry -> put(entry.getKey(), entry.getValue()));
+    }
+
+    @Override
+    public void delete(byte[] key) {
+      map.remove(key);
+    }
+
+    @Override
+    public KeyValueIterator<byte[], byte[]> range(byte[] from, byte[] to) {
+      return iterate(map.subMap(from, to));
+    }
+
+    @Override
+    public KeyValueIterator<byte[], byte[]> prefixScan(byte[] prefix) {
+      byte[] upperBound = PrefixUtil.getUpperBound(prefix);
+      return iterate(upperBound != null ? map.subMap(prefix, upperBound) : map.tailMap(prefix));
+    }
+
+    private KeyValueIterator<byte[], byte[]> iterate(SortedMap<byte[], byte[]> entries) {
+      Iterator<Map.Entry<byte[], byte[]>> iterator = entries.entrySet().iterator();
+      return new KeyValueIterator<byte[], byte[]>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public Entry<byte[], byte[]> next() {
+          Map.Entry<byte[], byte[]> next = iterator.next();
+          return new Entry<>(next.getKey(), next.getValue());
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+
+    @Override
+    public KeyValueIterator<byte[], byte[]> all() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+      map.clear();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public Optional<Path> checkpoint(CheckpointId id) {
+      return Optional.empty();
+    }
+  }
+}
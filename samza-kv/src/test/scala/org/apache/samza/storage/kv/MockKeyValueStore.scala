@@ -67,6 +67,9 @@ class MockKeyValueStore extends KeyValueStore[String, String] {
   override def range(from: String, to: String): KeyValueIterator[String, String] =
     new MockIterator(kvMap.subMap(from, to).entrySet().iterator())
 
+  override def prefixScan(prefix: String): KeyValueIterator[String, String] =
+    new MockIterator(kvMap.tailMap(prefix).entrySet().iterator().asScala.takeWhile(_.getKey.startsWith(prefix)).asJava)
+
   override def all(): KeyValueIterator[String, String] =
     new MockIterator(kvMap.entrySet().iterator())
 
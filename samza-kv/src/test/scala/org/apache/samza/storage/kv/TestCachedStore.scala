@@ -129,6 +129,83 @@ class TestCachedStore {
 
   }
 
+  @Test
+  def testDeleteRange() {
+    val kv = spy(new MockKeyValueStore())
+    val store = new CachedStore[String, String](kv, 100, 100)
+
+    for (i <- 1 to 4) {
+      store.put("test" + i + "-key", "test" + i + "-value")
+    }
+    store.flush()
+    // only test4-key is dirty when the range is deleted
+    store.put("test4-key", "test4-value2")
+
+    store.deleteRange("test2-key", "test4-key")
+    verify(kv).deleteRange("test2-key", "test4-key")
+    // without a key serializer, the range is read to find the cached keys in it, and by the default deleteRange
+    verify(kv, times(2)).range(anyObject(), anyObject())
+
+    assertEquals("test1-value", store.get("test1-key"))
+    assertNull(store.get("test2-key"))
+    assertNull(store.get("test3-key"))
+    assertEquals("test4-value2", store.get("test4-key"))
+    assertEquals("test4-value2", kv.get("test4-key"))
+  }
+
+  @Test
+  def testDeleteRangeWithKeySerializer() {
+    val kv = spy(new MockKeyValueStore())
+    val keySerializer = new java.util.function.Function[String, Array[Byte]] {
+      override def apply(key: String): Array[Byte] = key.getBytes("UTF-8")
+    }
+    val store = new CachedStore[String, String](kv, 100, 100, new CachedStoreMetrics, keySerializer)
+
+    for (i <- 1 to 4) {
+      store.put("test" + i + "-key", "test" + i + "-value")
+    }
+    store.flush()
+    // test3-key is dirty in the range, and test4-key is dirty outside of it
+    store.put("test3-key", "test3-value2")
+    store.put("test4-key", "test4-value2")
+
+    store.deleteRange("test2-key", "test4-key")
+    verify(kv).deleteRange("test2-key", "test4-key")
+    // the cached keys in the range are found without reading it, so it is only read by the default deleteRange
+    verify(kv, times(1)).range(anyObject(), anyObject())
+
+    assertEquals("test1-value", store.get("test1-key"))
+    assertNull(store.get("test2-key"))
+    assertNull(store.get("test3-key"))
+    assertEquals("test4-value2", store.get("test4-key"))
+    // only the keys in the range were dropped from the cache
+    verify(kv, times(2)).get(anyObject())
+
+    // the dirty entry in the range is dropped rather than written out
+    store.flush()
+    assertNull(kv.get("test3-key"))
+    assertEquals("test4-value2", kv.get("test4-key"))
+  }
+
+  @Test
+  def testGetAll() {
+    val kv = spy(new MockKeyValueStore())
+    kv.put("test1-key", "test1-value")
+    kv.put("test2-key", "test2-value")
+    val store = new CachedStore[String, String](kv, 100, 100)
+    // cached as absent
+    assertNull(store.get("test3-key"))
+    assertEquals("test1-value", store.get("test1-key"))
+
+    val result = store.getAll(Arrays.asList("test1-key", "test2-key", "test3-key", "test4-key"))
+    assertEquals(Map("test1-key" -> "test1-value", "test2-key" -> "test2-value").asJava, result)
+    // only the misses are read from the underlying store, with a single getAll
+    verify(kv).getAll(Arrays.asList("test2-key", "test4-key"))
+
+    assertEquals(result, store.getAll(Arrays.asList("test1-key", "test2-key", "test3-key")))
+    verify(kv, times(1)).getAll(anyObject())
+  }
+
   @Test
   def testPutAllDirtyEntries() {
     val kv = mock(classOf[KeyValueStore[String, String]])
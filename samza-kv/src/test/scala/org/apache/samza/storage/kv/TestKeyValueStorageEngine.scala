@@ -20,6 +20,7 @@
 package org.apache.samza.storage.kv
 
 import java.io.File
+import java.util
 import java.util.Arrays
 import java.util.concurrent.{Callable, ExecutionException, ExecutorService, Executors}
 
@@ -31,10 +32,13 @@ import org.apache.samza.system.{ChangelogSSPIterator, IncomingMessageEnvelope, S
 import org.apache.samza.task.MessageCollector
 import org.junit.Assert._
 import org.junit.{After, Before, Test}
+import org.mockito.Matchers.any
 import org.mockito.Mockito._
 import org.mockito.invocation.InvocationOnMock
 import org.mockito.stubbing.Answer
 
+import scala.collection.JavaConverters._
+
 class TestKeyValueStorageEngine {
   var engine: KeyValueStorageEngine[String, String] = null
   var metrics: KeyValueStorageEngineMetrics = null
@@ -165,6 +169,54 @@ class TestKeyValueStorageEngine {
 
     assertEquals(3, metrics.restoredMessagesGauge.getValue)
     assertEquals(15, metrics.restoredBytesGauge.getValue) // 3 keys * 2 bytes/key +  3 msgs * 3 bytes/msg
+    assertEquals(15, metrics.restoreRate.getCount)
+    assertTrue(metrics.restoreNs.getValue > 0)
+  }
+
+  @Test
+  def testRestoreIngestsSortedRuns(): Unit = {
+    val rawKv = mock(classOf[KeyValueStore[Array[Byte], Array[Byte]]],
+      withSettings().extraInterfaces(classOf[IngestibleKeyValueStore]))
+    val ingestedRuns = new util.ArrayList[util.List[(String, String)]]()
+    doAnswer(new Answer[Void] {
+      override def answer(invocation: InvocationOnMock): Void = {
+        val run = invocation.getArguments()(0).asInstanceOf[util.SortedMap[Array[Byte], Array[Byte]]]
+        val entries = new util.ArrayList[(String, String)]()
+        run.entrySet().asScala.foreach(e => entries.add((new String(e.getKey), Option(e.getValue).map(new String(_)).orNull)))
+        ingestedRuns.add(entries)
+        null
+      }
+    }).when(rawKv.asInstanceOf[IngestibleKeyValueStore]).ingest(any())
+    val ingestMetrics = new KeyValueStorageEngineMetrics
+    val ingestEngine = new KeyValueStorageEngine[String, String]("test-storeName", mock(classOf[File]),
+      mock(classOf[StoreProperties]), new MockKeyValueStore(), rawKv, mock(classOf[SystemStreamPartition]),
+      mock(classOf[MessageCollector]), ingestMetrics, clock = () => { getNextTimestamp() }, restoreIngestRunBytes = 5)
+
+    val changelogSSP = new SystemStreamPartition("TestSystem", "TestStream", new Partition(0))
+    val iterator = mock(classOf[ChangelogSSPIterator])
+    when(iterator.hasNext)
+      .thenReturn(true)
+      .thenReturn(true)
+      .thenReturn(true)
+      .thenReturn(true)
+      .thenReturn(false)
+    when(iterator.next())
+      .thenReturn(new IncomingMessageEnvelope(changelogSSP, "0", "b".getBytes, "1".getBytes))
+      .thenReturn(new IncomingMessageEnvelope(changelogSSP, "1", "a".getBytes, "2".getBytes))
+      .thenReturn(new IncomingMessageEnvelope(changelogSSP, "2", "b".getBytes, null))
+      .thenReturn(new IncomingMessageEnvelope(changelogSSP, "3", "c".getBytes, "3".getBytes))
+    when(iterator.getMode).thenReturn(Mode.RESTORE)
+
+    ingestEngine.restore(iterator)
+
+    // the first run is flushed once it reaches 5 bytes, with the later delete of "b" overriding its earlier put
+    assertEquals(2, ingestedRuns.size)
+    assertEquals(Arrays.asList(("a", "2"), ("b", null)), ingestedRuns.get(0))
+    assertEquals(Arrays.asList(("c", "3")), ingestedRuns.get(1))
+    verify(rawKv, never()).putAll(any())
+    assertEquals(2, ingestMetrics.restoreIngestedRuns.getCount)
+    assertEquals(3, ingestMetrics.restoreIngestedEntries.getCount)
+    assertEquals(4, ingestMetrics.restoredMessagesGauge.getValue)
   }
 
   @Test
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.samza.storage.kv
+
+import java.util
+import java.util.Arrays
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+
+import org.junit.Assert._
+import org.junit.Test
+import org.mockito.Matchers.anyObject
+import org.mockito.Mockito._
+
+import scala.collection.JavaConverters._
+
+class TestSegmentedCachedStore {
+  @Test
+  def testPutGetDelete() {
+    val kv = new MockKeyValueStore()
+    val store = new SegmentedCachedStore[String, String](kv, 100, 100, 4, new CachedStoreMetrics)
+
+    for (i <- 0 until 10) {
+      store.put("key" + i, "value" + i)
+    }
+    assertTrue("Entries should not have been written out yet", kv.kvMap.isEmpty)
+    for (i <- 0 until 10) {
+      assertEquals("value" + i, store.get("key" + i))
+    }
+
+    store.delete("key0")
+    assertNull(store.get("key0"))
+
+    store.flush()
+    assertNull(kv.get("key0"))
+    assertEquals("value1", kv.get("key1"))
+  }
+
+  @Test
+  def testGetFallsBackToStore() {
+    val kv = spy(new MockKeyValueStore())
+    kv.put("key", "value")
+    val store = new SegmentedCachedStore[String, String](kv, 100, 100, 4, new CachedStoreMetrics)
+
+    assertEquals("value", store.get("key"))
+    assertEquals("value", store.get("key"))
+    verify(kv, times(1)).get("key")
+  }
+
+  @Test
+  def testGetAllCallsStoreOnceForMisses() {
+    val kv = spy(new MockKeyValueStore())
+    kv.put("key1", "value1")
+    kv.put("key2", "value2")
+    val store = new SegmentedCachedStore[String, String](kv, 100, 100, 4, new CachedStoreMetrics)
+    store.put("key3", "value3")
+
+    val result = store.getAll(Arrays.asList("key1", "key2", "key3"))
+    assertEquals(Map("key1" -> "value1", "key2" -> "value2", "key3" -> "value3"), result.asScala.toMap)
+    verify(kv, times(1)).getAll(anyObject())
+
+    // all the keys are cached now
+    store.getAll(Arrays.asList("key1", "key2", "key3"))
+    verify(kv, times(1)).getAll(anyObject())
+  }
+
+  @Test
+  def testPutAllDirtyEntriesOnWriteBatchSize() {
+    val kv = spy(new MockKeyValueStore())
+    // a single segment behaves like the CachedStore
+    val store = new SegmentedCachedStore[String, String](kv, 4, 2, 1, new CachedStoreMetrics)
+
+    store.put("test1-key", "test1-value")
+    assertTrue("Entries should not have been written out yet", kv.kvMap.isEmpty)
+    store.put("test2-key", "test2-value")
+    assertEquals("Entries should be written out as soon as there are batchSize dirty entries", 2, kv.kvMap.size())
+    verify(kv, times(1)).putAll(anyObject())
+  }
+
+  @Test
+  def testIteratorFlushesAllSegments() {
+    val kv = new MockKeyValueStore()
+    val store = new SegmentedCachedStore[String, String](kv, 100, 100, 4, new CachedStoreMetrics)
+
+    val keys = Arrays.asList("test1-key", "test2-key", "test3-key")
+    val values = Arrays.asList("test1-value", "test2-value", "test3-value")
+    for (i <- 0 until 3) {
+      store.put(keys.get(i), values.get(i))
+    }
+
+    var iter = store.all()
+    for (i <- 0 until 3) {
+      assertTrue(iter.hasNext)
+      val entry = iter.next()
+      assertEquals(keys.get(i), entry.getKey)
+      assertEquals(values.get(i), entry.getValue)
+    }
+    assertFalse(iter.hasNext)
+
+    iter = store.range(keys.get(0), keys.get(2))
+    for (i <- 0 until 2) {
+      assertTrue(iter.hasNext)
+      assertEquals(keys.get(i), iter.next().getKey)
+    }
+    assertFalse(iter.hasNext)
+  }
+
+  @Test
+  def testDeleteRange() {
+    val kv = spy(new MockKeyValueStore())
+    val store = new SegmentedCachedStore[String, String](kv, 100, 100, 4, new CachedStoreMetrics)
+
+    for (i <- 1 to 4) {
+      store.put("test" + i + "-key", "test" + i + "-value")
+    }
+    store.deleteRange("test2-key", "test4-key")
+    // without a key serializer, the range is read to find the cached keys in it, and by the default deleteRange
+    verify(kv, times(2)).range(anyObject(), anyObject())
+
+    assertEquals("test1-value", store.get("test1-key"))
+    assertNull(store.get("test2-key"))
+    assertNull(store.get("test3-key"))
+    assertEquals("test4-value", store.get("test4-key"))
+    assertNull(kv.get("test2-key"))
+  }
+
+  @Test
+  def testDeleteRangeWithKeySerializer() {
+    val kv = spy(new MockKeyValueStore())
+    val keySerializer = new java.util.function.Function[String, Array[Byte]] {
+      override def apply(key: String): Array[Byte] = key.getBytes("UTF-8")
+    }
+    val store = new SegmentedCachedStore[String, String](kv, 100, 100, 4, new CachedStoreMetrics, keySerializer)
+
+    for (i <- 1 to 4) {
+      store.put("test" + i + "-key", "test" + i + "-value")
+    }
+    store.flush()
+    // test3-key is dirty in the range, and test4-key is dirty outside of it
+    store.put("test3-key", "test3-value2")
+    store.put("test4-key", "test4-value2")
+
+    store.deleteRange("test2-key", "test4-key")
+    // the cached keys in the range are found without reading it, so it is only read by the default deleteRange
+    verify(kv, times(1)).range(anyObject(), anyObject())
+
+    assertEquals("test1-value", store.get("test1-key"))
+    assertNull(store.get("test2-key"))
+    assertNull(store.get("test3-key"))
+    assertEquals("test4-value2", store.get("test4-key"))
+    // only the keys in the range were dropped from the cache
+    verify(kv, times(2)).get(anyObject())
+
+    // the dirty entry in the range is dropped rather than written out
+    store.flush()
+    assertNull(kv.get("test3-key"))
+    assertEquals("test4-value2", kv.get("test4-key"))
+  }
+
+  @Test
+  def testConcurrentPuts() {
+    val kv = new MockKeyValueStore() {
+      override def putAll(entries: util.List[Entry[String, String]]): Unit = synchronized { super.putAll(entries) }
+    }
+    val store = new SegmentedCachedStore[String, String](kv, 64, 16, 8, new CachedStoreMetrics)
+    val numThreads = 4
+    val numKeys = 1000
+    val executor = Executors.newFixedThreadPool(numThreads)
+    val start = new CountDownLatch(1)
+    for (t <- 0 until numThreads) {
+      executor.submit(new Runnable {
+        override def run(): Unit = {
+          start.await()
+          for (i <- 0 until numKeys) {
+            store.put("thread" + t + "-key" + i, "value" + i)
+          }
+        }
+      })
+    }
+    start.countDown()
+    executor.shutdown()
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS))
+
+    store.flush()
+    assertEquals(numThreads * numKeys, kv.kvMap.size())
+    for (t <- 0 until numThreads; i <- 0 until numKeys) {
+      assertEquals("value" + i, store.get("thread" + t + "-key" + i))
+    }
+  }
+}
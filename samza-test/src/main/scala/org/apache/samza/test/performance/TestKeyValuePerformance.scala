@@ -80,7 +80,8 @@ object TestKeyValuePerformance extends Logging {
     "rocksdb-write-performance" -> runTestMsgWritePerformance,
     "rocksdb-concurrent-write-performance" -> runTestConcurrentMsgWritePerformance,
     "get-all-vs-get-write-many-read-many" -> runTestGetAllVsGetWriteManyReadMany,
-    "get-all-vs-get-write-once-read-many" -> runTestGetAllVsGetWriteOnceReadMany)
+    "get-all-vs-get-write-once-read-many" -> runTestGetAllVsGetWriteOnceReadMany,
+    "get-all-vs-get-batched-lookups" -> runTestGetAllVsGetBatchedLookups)
 
   def main(args: Array[String]) {
     val cmdline = new CommandLine
@@ -192,6 +193,10 @@ object TestKeyValuePerformance extends Logging {
   def runTestGetAllVsGetWriteOnceReadMany(db: KeyValueStore[Array[Byte], Array[Byte]], config: Config) {
     new TestKeyValuePerformance().testGetAllVsGetWriteOnceReadMany(db, config)
   }
+
+  def runTestGetAllVsGetBatchedLookups(db: KeyValueStore[Array[Byte], Array[Byte]], config: Config) {
+    new TestKeyValuePerformance().testGetAllVsGetBatchedLookups(db, config)
+  }
 }
 
 class TestKeyValuePerformance extends Logging {
@@ -392,4 +397,52 @@ class TestKeyValuePerformance extends Logging {
       store.close()
     }
   }
+
+  /**
+   * Compares ::getAll with ::get for jobs which look up a batch of keys for each message, e.g. to enrich it. The store
+   * is loaded with a fixed key space, and each simulated message looks up a random batch of keys from it, so that the
+   * lookups are a mix of cache hits and misses once the key space is larger than the cache.
+   * @param store key-value store instance that is being tested
+   * @param config the test case's config
+   */
+  def testGetAllVsGetBatchedLookups(store: KeyValueStore[Array[Byte],Array[Byte]], config: Config): Unit = {
+    val keySpaceSize = config.getInt("key.space.size", 100000)
+    val messagesCount = config.getInt("message.count", 10000)
+    val keysPerMessage = config.getInt("keys.per.message", 200)
+    val valueSizeBytes = config.getInt("value.size.bytes", 100)
+    val timer = Stopwatch.createUnstarted
+    val uuidSerde = new UUIDSerde
+
+    info("key space size: %d, messages: %d, keys per message: %d, value size in bytes: %d"
+      .format(keySpaceSize, messagesCount, keysPerMessage, valueSizeBytes))
+    val keys = (0 until keySpaceSize).map(k => uuidSerde.toBytes(UUID.randomUUID)).toArray
+    keys.foreach(k => store.put(k, Random.nextString(valueSizeBytes).getBytes(Encoding)))
+    store.flush()
+
+    // the same batches are looked up with both methods
+    val batches = (0 until messagesCount)
+      .map(i => (0 until keysPerMessage).map(j => keys(Random.nextInt(keySpaceSize))).toList.asJava)
+
+    try {
+      // warm up the caches and the JIT with a pass of each
+      batches.foreach(store.getAll)
+      batches.foreach(_.asScala.foreach(store.get))
+
+      timer.reset().start()
+      batches.foreach(store.getAll)
+      val getAllTime = timer.stop().elapsed(TimeUnit.MILLISECONDS)
+
+      timer.reset().start()
+      batches.foreach(_.asScala.foreach(store.get))
+      val getTime = timer.stop().elapsed(TimeUnit.MILLISECONDS)
+
+      info("%12s%12s%12s%12s".format("Messages", "Keys/Msg", "get ms", "getAll ms"))
+      info("%12d%12d%12d%12d".format(messagesCount, keysPerMessage, getTime, getAllTime))
+      if (getAllTime > getTime) {
+        error("getAll was slower than get!")
+      }
+    } finally {
+      store.close()
+    }
+  }
 }